@@ -0,0 +1,145 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Message;
+import org.limeprotocol.messaging.Registrator;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializers;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.SmileEnvelopeSerializer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and Smile encodings of the envelopes with the documents of the messaging {@link Registrator}.
+ * The encoded size of each envelope is reported as the {@code bytes} secondary result, and the deserialization
+ * reads the message content, which is otherwise read only when used.
+ * Run with <pre>java -jar benchmarks/target/benchmarks.jar BinaryEncodingBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BinaryEncodingBenchmark {
+
+    @Param({"json", "smile"})
+    public String format;
+
+    @Param({"plainText", "chatState", "select", "mediaLink", "location", "receivedNotification",
+            "presenceCommand", "accountCommand", "contactCollectionCommand"})
+    public String envelope;
+
+    private BinaryEnvelopeSerializer envelopeSerializer;
+    private Envelope value;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        Registrator.registerDocuments();
+        envelopeSerializer = "smile".equals(format) ? new SmileEnvelopeSerializer() : new JsonEnvelopeSerializer();
+        value = new JacksonEnvelopeSerializer().deserialize(getJson(envelope));
+        if (value instanceof Message) {
+            // Binds the content, so it is serialized from the document instead of the read tokens
+            ((Message) value).getContent();
+        }
+        buffer = EnvelopeSerializers.serialize(envelopeSerializer, value);
+    }
+
+    @Benchmark
+    public byte[] serialize(EncodedSize encodedSize) {
+        return EnvelopeSerializers.serialize(envelopeSerializer, value);
+    }
+
+    @Benchmark
+    public Object deserialize(EncodedSize encodedSize) {
+        Envelope envelope = envelopeSerializer.deserialize(buffer, 0, buffer.length);
+        if (envelope instanceof Message) {
+            return ((Message) envelope).getContent();
+        }
+        return envelope;
+    }
+
+    /**
+     * Reports the encoded size of the envelope in each iteration.
+     * The events of the iterations are averaged in the run result, so it is the size in bytes.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void setUp(BinaryEncodingBenchmark benchmark) {
+            bytes = benchmark.buffer.length;
+        }
+    }
+
+    /**
+     * The JSON serializer, used by the same interface of the Smile one.
+     */
+    private static class JsonEnvelopeSerializer extends JacksonEnvelopeSerializer implements BinaryEnvelopeSerializer {
+    }
+
+    private static String getJson(String envelope) {
+        switch (envelope) {
+            case "plainText":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"to\":\"joao@takenet.com.br\",\"type\":\"text/plain\",\"content\":\"Hello world\"}";
+            case "chatState":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"to\":\"joao@takenet.com.br\",\"type\":\"application/vnd.lime.chatstate+json\"," +
+                        "\"content\":{\"state\":\"composing\"}}";
+            case "select":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"to\":\"joao@takenet.com.br\",\"type\":\"application/vnd.lime.select+json\"," +
+                        "\"content\":{\"text\":\"Choose an option\",\"options\":[{\"order\":1,\"text\":\"First\"}," +
+                        "{\"order\":2,\"text\":\"Second\"},{\"order\":3,\"text\":\"Third\",\"type\":\"text/plain\",\"value\":\"3\"}]}}";
+            case "mediaLink":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"to\":\"joao@takenet.com.br\",\"type\":\"application/vnd.lime.media-link+json\"," +
+                        "\"content\":{\"type\":\"image/jpeg\",\"size\":3124,\"uri\":\"http://takenet.com.br/images/1.jpg\"," +
+                        "\"previewUri\":\"http://takenet.com.br/images/1-preview.jpg\",\"text\":\"A picture\"}}";
+            case "location":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"to\":\"joao@takenet.com.br\",\"type\":\"application/vnd.lime.location+json\"," +
+                        "\"content\":{\"latitude\":-19.918899,\"longitude\":-43.959275,\"altitude\":853.5,\"text\":\"Here\"}}";
+            case "receivedNotification":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"joao@takenet.com.br/mobile\"," +
+                        "\"to\":\"andre@takenet.com.br/home\",\"event\":\"received\"}";
+            case "presenceCommand":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"method\":\"set\",\"uri\":\"/presence\",\"type\":\"application/vnd.lime.presence+json\"," +
+                        "\"resource\":{\"status\":\"available\",\"routingRule\":\"identity\",\"priority\":1}}";
+            case "accountCommand":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"postmaster@takenet.com.br/server\"," +
+                        "\"to\":\"andre@takenet.com.br/home\",\"method\":\"get\",\"status\":\"success\"," +
+                        "\"type\":\"application/vnd.lime.account+json\",\"resource\":{\"fullName\":\"Andre Bires\"," +
+                        "\"isTemporary\":false,\"inboxSize\":100,\"allowAnonymousSender\":false,\"allowUnknownSender\":true," +
+                        "\"storeMessageContent\":true,\"publishToDirectory\":false}}";
+            case "contactCollectionCommand":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"postmaster@takenet.com.br/server\"," +
+                        "\"to\":\"andre@takenet.com.br/home\",\"method\":\"get\",\"status\":\"success\"," +
+                        "\"type\":\"application/vnd.lime.collection+json\",\"resource\":{\"itemType\":\"application/vnd.lime.contact+json\"," +
+                        "\"total\":3,\"items\":[{\"identity\":\"joao@takenet.com.br\",\"name\":\"Joao\",\"isPending\":true}," +
+                        "{\"identity\":\"maria@takenet.com.br\",\"name\":\"Maria\",\"sharePresence\":false}," +
+                        "{\"identity\":\"pedro@takenet.com.br\",\"name\":\"Pedro\",\"shareAccountInfo\":true}]}}";
+            default:
+                throw new IllegalArgumentException("envelope");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannel;
+import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.network.InProcessTransport;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.network.tcp.NioTcpTransport;
+import org.limeprotocol.network.tcp.NioTcpTransportListener;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.security.GuestAuthentication;
+import org.limeprotocol.server.Authenticator;
+import org.limeprotocol.server.ServerChannel;
+import org.limeprotocol.server.ServerChannelImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a message echoed by a server channel.
+ * The in-process transport skips the serialization and the sockets,
+ * so its result is the overhead of the channels and their modules.
+ * Run with <pre>java -jar benchmarks/target/benchmarks.jar ChannelRoundtripBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ChannelRoundtripBenchmark {
+
+    @Param({"inprocess", "tcp"})
+    public String transport;
+
+    private NioTcpTransportListener transportListener;
+    private ClientChannel clientChannel;
+    private ServerChannel serverChannel;
+    private SynchronousQueue<Message> echoedMessages;
+    private Message message;
+
+    @Setup
+    public void setUp() throws Exception {
+        final BlockingQueue<Transport> serverTransports = new LinkedBlockingQueue<>();
+        Transport clientTransport;
+        if ("tcp".equals(transport)) {
+            transportListener = new NioTcpTransportListener(URI.create("net.tcp://localhost:0"));
+            transportListener.setAcceptListener(new TransportListener.TransportAcceptListener() {
+                @Override
+                public void onAccept(Transport transport) {
+                    serverTransports.add(transport);
+                }
+
+                @Override
+                public void onException(Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            transportListener.start();
+            clientTransport = new NioTcpTransport();
+            clientTransport.open(transportListener.getListenerUris()[0]);
+        } else {
+            InProcessTransport[] pair = InProcessTransport.createPair();
+            clientTransport = pair[0];
+            serverTransports.add(pair[1]);
+        }
+
+        serverChannel = new ServerChannelImpl(serverTransports.poll(5, TimeUnit.SECONDS), Node.parse("server@limeprotocol.org/default"));
+        serverChannel.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                try {
+                    serverChannel.sendMessage(message);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, false);
+        serverChannel.establishSession(new SessionCompression[]{SessionCompression.NONE}, new SessionEncryption[]{SessionEncryption.NONE},
+                new Authentication.AuthenticationScheme[]{Authentication.AuthenticationScheme.GUEST},
+                new Authenticator() {
+                    @Override
+                    public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                        listener.onAuthenticated(node);
+                    }
+                },
+                new ServerChannel.EstablishSessionListener() {
+                    @Override
+                    public void onEstablished(Node remoteNode) {
+                    }
+
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+                });
+
+        echoedMessages = new SynchronousQueue<>();
+        final BlockingQueue<Session> sessions = new LinkedBlockingQueue<>();
+        clientChannel = new ClientChannelImpl(clientTransport);
+        clientChannel.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                try {
+                    echoedMessages.put(message);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, false);
+        clientChannel.establishSession(SessionCompression.NONE, SessionEncryption.NONE, Identity.parse("client@limeprotocol.org"),
+                new GuestAuthentication(), "benchmark", new ClientChannel.EstablishSessionListener() {
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+
+                    @Override
+                    public void onReceiveSession(Session session) {
+                        sessions.add(session);
+                    }
+                });
+        Session session = sessions.poll(5, TimeUnit.SECONDS);
+        if (session == null || session.getState() != Session.SessionState.ESTABLISHED) {
+            throw new IllegalStateException("The session was not established");
+        }
+
+        message = new Message();
+        message.setTo(Node.parse("server@limeprotocol.org"));
+        message.setContent(new PlainDocument("Hello world", MediaType.parse("text/plain")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        clientChannel.getTransport().close();
+        serverChannel.getTransport().close();
+        if (transportListener != null) {
+            transportListener.stop();
+        }
+    }
+
+    @Benchmark
+    public Message roundtrip() throws Exception {
+        clientChannel.sendMessage(message);
+        return echoedMessages.take();
+    }
+}
@@ -0,0 +1,78 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializers;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the deserialization of the envelopes from the received bytes, for each envelope type.
+ * The 'messageContentFirst' parameter is a message with the content before the type, which is buffered.
+ * Run with the GC profiler for the allocation per envelope, in the 'gc.alloc.rate.norm' metric:
+ * <pre>java -jar benchmarks/target/benchmarks.jar EnvelopeDeserializationBenchmark -prof gc</pre>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnvelopeDeserializationBenchmark {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    @Param({"message", "messageContentFirst", "notification", "command", "session"})
+    public String envelope;
+
+    private EnvelopeSerializer envelopeSerializer;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+        buffer = getJson(envelope).getBytes(UTF8);
+    }
+
+    @Benchmark
+    public Envelope deserialize() {
+        return EnvelopeSerializers.deserialize(envelopeSerializer, buffer, 0, buffer.length);
+    }
+
+    private static String getJson(String envelope) {
+        switch (envelope) {
+            case "message":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"to\":\"joao@takenet.com.br\",\"type\":\"application/x-sample+json\"," +
+                        "\"content\":{\"text\":\"Hello world\",\"count\":5,\"tags\":[\"a\",\"b\"]},\"metadata\":{\"trace\":\"1\"}}";
+            case "messageContentFirst":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"andre@takenet.com.br/home\"," +
+                        "\"to\":\"joao@takenet.com.br\",\"content\":{\"text\":\"Hello world\",\"count\":5,\"tags\":[\"a\",\"b\"]}," +
+                        "\"type\":\"application/x-sample+json\",\"metadata\":{\"trace\":\"1\"}}";
+            case "notification":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"joao@takenet.com.br/mobile\"," +
+                        "\"to\":\"andre@takenet.com.br/home\",\"event\":\"received\"}";
+            case "command":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"postmaster@takenet.com.br/server\"," +
+                        "\"method\":\"get\",\"status\":\"success\",\"uri\":\"/presence\",\"type\":\"text/plain\",\"resource\":\"available\"}";
+            case "session":
+                return "{\"id\":\"9a6d5a2a-7f44-4e1f-8e43-2c9d1c7b5b10\",\"from\":\"postmaster@takenet.com.br/server\"," +
+                        "\"state\":\"authenticating\",\"scheme\":\"plain\",\"authentication\":{\"password\":\"Zg==\"}}";
+            default:
+                throw new IllegalArgumentException("envelope");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.*;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.shm.SharedMemoryTransport;
+import org.limeprotocol.network.shm.WaitStrategies;
+import org.limeprotocol.network.shm.WaitStrategy;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the roundtrip of an envelope over the shared memory transport with each wait strategy.
+ * The server echoes the envelopes and the benchmark thread spins until the echo, so the result is the handoff latency
+ * of both directions plus the serialization, without the overhead of a blocking queue.
+ * The file is created in '/dev/shm' when available.
+ * Run with <pre>java -jar benchmarks/target/benchmarks.jar SharedMemoryTransportBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SharedMemoryTransportBenchmark {
+
+    @Param({"busySpin", "backoff", "park"})
+    public String waitStrategy;
+
+    private File file;
+    private SharedMemoryTransport serverTransport;
+    private SharedMemoryTransport clientTransport;
+    private AtomicReference<Envelope> echoedEnvelope;
+    private Message message;
+
+    @Setup
+    public void setUp() throws Exception {
+        WaitStrategy strategy;
+        if ("busySpin".equals(waitStrategy)) {
+            strategy = WaitStrategies.busySpin();
+        } else if ("park".equals(waitStrategy)) {
+            strategy = WaitStrategies.park(WaitStrategies.DEFAULT_PARK_NANOS);
+        } else {
+            strategy = WaitStrategies.getDefault();
+        }
+        File directory = new File("/dev/shm");
+        if (!directory.isDirectory()) {
+            directory = new File(System.getProperty("java.io.tmpdir"));
+        }
+        file = new File(directory, "lime-bench-" + UUID.randomUUID());
+        serverTransport = SharedMemoryTransport.create(file, SharedMemoryTransport.DEFAULT_RING_CAPACITY,
+                new JacksonEnvelopeSerializer(), null, strategy, ThreadFactories.platform());
+        serverTransport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                try {
+                    serverTransport.send(envelope);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        clientTransport = new SharedMemoryTransport(new JacksonEnvelopeSerializer(), null, strategy, ThreadFactories.platform());
+        clientTransport.open(new URI(SharedMemoryTransport.URI_SCHEME, null, file.getAbsolutePath(), null));
+        echoedEnvelope = new AtomicReference<>();
+        clientTransport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                echoedEnvelope.set(envelope);
+            }
+        });
+
+        message = new Message();
+        message.setId(EnvelopeId.newId());
+        message.setTo(Node.parse("rules@limeprotocol.org/default"));
+        message.setContent(new PlainDocument("Hello world", MediaType.parse("text/plain")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        clientTransport.close();
+        serverTransport.close();
+        file.delete();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Envelope roundtrip() throws Exception {
+        clientTransport.send(message);
+        Envelope envelope;
+        while ((envelope = echoedEnvelope.getAndSet(null)) == null) {
+            if (!clientTransport.isConnected()) {
+                throw new IllegalStateException("The transport is closed");
+            }
+        }
+        return envelope;
+    }
+}
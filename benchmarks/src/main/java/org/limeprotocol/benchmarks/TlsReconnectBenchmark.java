@@ -0,0 +1,130 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.network.tcp.CipherSuitePolicy;
+import org.limeprotocol.network.tcp.CustomTrustManager;
+import org.limeprotocol.network.tcp.SocketTcpClient;
+import org.limeprotocol.network.tcp.SslContextCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of reconnecting to a TLS server over the loopback interface.
+ * The per-client context benchmark reproduces the previous behavior of {@link SocketTcpClient},
+ * which created a context for each client and enabled all supported cipher suites,
+ * so every reconnect did a full handshake.
+ * Run with <pre>java -jar benchmarks/target/benchmarks.jar TlsReconnectBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TlsReconnectBenchmark {
+
+    private SSLServerSocket serverSocket;
+    private Thread serverThread;
+    private InetSocketAddress serverAddress;
+    private X509TrustManager trustManager;
+    private SslContextCache sslContextCache;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream("/lime-benchmark.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        SSLContext serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        serverSocket = (SSLServerSocket)serverSslContext.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        SSLSocket socket = (SSLSocket)serverSocket.accept();
+                        try {
+                            socket.setTcpNoDelay(true);
+                            // The first write completes the handshake
+                            socket.getOutputStream().write(1);
+                            socket.getOutputStream().flush();
+                            while (socket.getInputStream().read() != -1) {
+                            }
+                        } finally {
+                            socket.close();
+                        }
+                    } catch (IOException e) {
+                        // The client closed the connection or the server was stopped
+                    }
+                }
+            }
+        }, "lime-benchmark-tls-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        trustManager = new CustomTrustManager(new X509Certificate[0]);
+        sslContextCache = new SslContextCache();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        serverThread.join();
+    }
+
+    @Benchmark
+    public int reconnect_perClientContext() throws Exception {
+        SSLContext sslContext = SSLContext.getInstance("SSL");
+        sslContext.init(null, new TrustManager[]{ trustManager }, null);
+        SSLSocket socket = (SSLSocket)sslContext.getSocketFactory().createSocket(serverAddress.getAddress(), serverAddress.getPort());
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setEnabledCipherSuites(socket.getSupportedCipherSuites());
+            socket.startHandshake();
+            return socket.getInputStream().read();
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public int reconnect_sharedContext() throws Exception {
+        SocketTcpClient client = new SocketTcpClient(trustManager, true, false, SocketTcpClient.DEFAULT_SO_TIMEOUT, sslContextCache, CipherSuitePolicy.getDefault());
+        try {
+            client.connect(serverAddress);
+            client.startTls();
+            return client.getInputStream().read();
+        } finally {
+            client.close();
+        }
+    }
+}
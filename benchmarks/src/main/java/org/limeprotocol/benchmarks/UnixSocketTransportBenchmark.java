@@ -0,0 +1,146 @@
+package org.limeprotocol.benchmarks;
+
+import org.limeprotocol.*;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.network.tcp.NioTcpTransportListener;
+import org.limeprotocol.network.tcp.TcpTransport;
+import org.limeprotocol.network.tcp.UnixDomainSockets;
+import org.limeprotocol.network.tcp.UnixSocketTransport;
+import org.limeprotocol.network.tcp.UnixSocketTransportListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Unix domain socket transport with the loopback TCP transport, for a client talking to a sidecar.
+ * The client is a {@link TcpTransport} or an {@link UnixSocketTransport}, which share the framing and the serialization,
+ * and the server echoes the envelopes. The sample time mode reports the latency percentiles, including the p99,
+ * and the pipelined benchmark reports the throughput with many envelopes in flight.
+ * Requires Java 16 or later for the 'unix' parameter.
+ * Run with <pre>java -jar benchmarks/target/benchmarks.jar UnixSocketTransportBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class UnixSocketTransportBenchmark {
+
+    private final static int PIPELINE_SIZE = 100;
+
+    @Param({"unix", "tcp"})
+    public String transport;
+
+    private TransportListener transportListener;
+    private Transport clientTransport;
+    private Transport serverTransport;
+    private File socketFile;
+    private BlockingQueue<Envelope> echoedEnvelopes;
+    private Message message;
+
+    @Setup
+    public void setUp() throws Exception {
+        final BlockingQueue<Transport> serverTransports = new LinkedBlockingQueue<>();
+        TransportListener.TransportAcceptListener acceptListener = new TransportListener.TransportAcceptListener() {
+            @Override
+            public void onAccept(Transport transport) {
+                serverTransports.add(transport);
+            }
+
+            @Override
+            public void onException(Exception e) {
+                e.printStackTrace();
+            }
+        };
+        if ("unix".equals(transport)) {
+            if (!UnixDomainSockets.isSupported()) {
+                throw new IllegalStateException("The Unix domain sockets require Java 16 or later");
+            }
+            socketFile = new File(System.getProperty("java.io.tmpdir"), "lime-bench-" + UUID.randomUUID() + ".sock");
+            transportListener = new UnixSocketTransportListener(new URI(UnixDomainSockets.URI_SCHEME, null, socketFile.getAbsolutePath(), null));
+            clientTransport = new UnixSocketTransport();
+        } else {
+            transportListener = new NioTcpTransportListener(URI.create("net.tcp://localhost:0"));
+            clientTransport = new TcpTransport();
+        }
+        transportListener.setAcceptListener(acceptListener);
+        transportListener.start();
+        clientTransport.open(transportListener.getListenerUris()[0]);
+
+        serverTransport = serverTransports.poll(5, TimeUnit.SECONDS);
+        if (serverTransport == null) {
+            throw new IllegalStateException("The connection was not accepted");
+        }
+        serverTransport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                try {
+                    serverTransport.send(envelope);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        echoedEnvelopes = new LinkedBlockingQueue<>();
+        clientTransport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                echoedEnvelopes.add(envelope);
+            }
+        });
+
+        message = new Message();
+        message.setId(EnvelopeId.newId());
+        message.setTo(Node.parse("sidecar@limeprotocol.org/default"));
+        message.setContent(new PlainDocument("Hello world", MediaType.parse("text/plain")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        clientTransport.close();
+        serverTransport.close();
+        transportListener.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Envelope roundtrip() throws Exception {
+        clientTransport.send(message);
+        return echoedEnvelopes.take();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(PIPELINE_SIZE)
+    public Envelope pipelinedRoundtrip() throws Exception {
+        for (int i = 0; i < PIPELINE_SIZE; i++) {
+            clientTransport.send(message);
+        }
+        Envelope envelope = null;
+        for (int i = 0; i < PIPELINE_SIZE; i++) {
+            envelope = echoedEnvelopes.take();
+        }
+        return envelope;
+    }
+}
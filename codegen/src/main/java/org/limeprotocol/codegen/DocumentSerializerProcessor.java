@@ -0,0 +1,410 @@
+package org.limeprotocol.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the serializer and the deserializer of the document classes annotated with
+ * 'org.limeprotocol.serialization.jackson.GenerateSerializers', which read and write the properties
+ * in straight-line code instead of the bean introspection of Jackson. The generated classes are listed in the
+ * provider file of the compilation, which is loaded by the 'CustomSerializerModule' of the core module.
+ * The properties are the same of the bean serialization with the core serializers: the public getters and
+ * setters, in the order of the fields, without the media type and the null values.
+ */
+public class DocumentSerializerProcessor extends AbstractProcessor {
+
+    final static String ANNOTATION_NAME = "org.limeprotocol.serialization.jackson.GenerateSerializers";
+    final static String PROVIDER_NAME = "org.limeprotocol.serialization.jackson.DocumentSerializerProvider";
+    final static String GENERATED_SUFFIX = "JsonSerializers";
+
+    private final static String DOCUMENT_NAME = "org.limeprotocol.Document";
+    private final static String MEDIA_TYPE_NAME = "org.limeprotocol.MediaType";
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+    private final List<String> generatedNames = new ArrayList<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION_NAME);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeProviderFile();
+            return false;
+        }
+        TypeElement annotation = elements.getTypeElement(ANNOTATION_NAME);
+        if (annotation == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "Only the document classes can have the generated serializers");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            if (isValid(type)) {
+                generate(type);
+            }
+        }
+        return true;
+    }
+
+    private boolean isValid(TypeElement type) {
+        Set<Modifier> modifiers = type.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT) ||
+                (type.getNestingKind() != NestingKind.TOP_LEVEL && !modifiers.contains(Modifier.STATIC))) {
+            error(type, "The document class must be public, not abstract and not an inner class");
+            return false;
+        }
+        TypeElement document = elements.getTypeElement(DOCUMENT_NAME);
+        if (document != null && !types.isAssignable(type.asType(), document.asType())) {
+            error(type, "The class must implement " + DOCUMENT_NAME);
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        error(type, "The document class must have a public constructor without parameters");
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        List<Property> properties = getProperties(type);
+        if (properties == null) {
+            return;
+        }
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String simpleName = getGeneratedSimpleName(type);
+        String generatedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            JavaFileObject sourceFile = filer.createSourceFile(generatedName, type);
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(new SerializersWriter(packageName, simpleName, type.getQualifiedName().toString(), properties).write());
+            }
+            generatedNames.add(generatedName);
+        } catch (IOException e) {
+            error(type, "Could not write the serializers: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the name of the generated class, which includes the enclosing classes of a nested document class.
+     */
+    private static String getGeneratedSimpleName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element enclosing = type.getEnclosingElement(); !(enclosing instanceof PackageElement); enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+        }
+        return name.append(GENERATED_SUFFIX).toString();
+    }
+
+    /**
+     * Gets the properties like the bean introspection, in the order of the fields of the class hierarchy.
+     * @return The properties or null, if some property is not supported.
+     */
+    private List<Property> getProperties(TypeElement type) {
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+            if (current.getQualifiedName().contentEquals("java.lang.Object")) {
+                break;
+            }
+            hierarchy.add(0, current);
+        }
+
+        Map<String, Property> propertiesByName = new LinkedHashMap<>();
+        for (TypeElement current : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                String name = field.getSimpleName().toString();
+                if (!field.getModifiers().contains(Modifier.STATIC) && !propertiesByName.containsKey(name)) {
+                    propertiesByName.put(name, new Property(name));
+                }
+            }
+        }
+        for (TypeElement current : hierarchy) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = method.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                    continue;
+                }
+                String methodName = method.getSimpleName().toString();
+                int parameterCount = method.getParameters().size();
+                String name;
+                if (parameterCount == 0 && method.getReturnType().getKind() != TypeKind.VOID &&
+                        (name = getPropertyName(methodName, "get")) != null) {
+                    getProperty(propertiesByName, name).getter = method;
+                } else if (parameterCount == 0 && method.getReturnType().getKind() == TypeKind.BOOLEAN &&
+                        (name = getPropertyName(methodName, "is")) != null) {
+                    Property property = getProperty(propertiesByName, name);
+                    if (property.getter == null) {
+                        property.getter = method;
+                    }
+                } else if (parameterCount == 1 && (name = getPropertyName(methodName, "set")) != null) {
+                    List<ExecutableElement> setters = getProperty(propertiesByName, name).setters;
+                    // An override replaces the setter of the superclass
+                    TypeMirror parameterType = method.getParameters().get(0).asType();
+                    for (int i = setters.size() - 1; i >= 0; i--) {
+                        if (types.isSameType(setters.get(i).getParameters().get(0).asType(), parameterType)) {
+                            setters.remove(i);
+                        }
+                    }
+                    setters.add(method);
+                }
+            }
+        }
+
+        List<Property> properties = new ArrayList<>();
+        boolean isMediaTypeRemoved = false;
+        for (Property property : propertiesByName.values()) {
+            if (property.getter == null && property.setters.isEmpty()) {
+                continue;
+            }
+            if (!isMediaTypeRemoved && property.getter != null && isType(property.getter.getReturnType(), MEDIA_TYPE_NAME)) {
+                // The media type of the document is not serialized, like in the core bean serializers
+                isMediaTypeRemoved = true;
+                property.getter = null;
+                if (property.setters.isEmpty()) {
+                    continue;
+                }
+            }
+            if (!property.resolve(type)) {
+                return null;
+            }
+            properties.add(property);
+        }
+        return properties;
+    }
+
+    private Property getProperty(Map<String, Property> propertiesByName, String name) {
+        Property property = propertiesByName.get(name);
+        if (property == null) {
+            property = new Property(name);
+            propertiesByName.put(name, property);
+        }
+        return property;
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    /**
+     * Gets the name of the property of an accessor, with the leading upper case characters in lower case,
+     * like the default naming of Jackson.
+     */
+    static String getPropertyName(String methodName, String prefix) {
+        if (!methodName.startsWith(prefix) || methodName.length() == prefix.length()) {
+            return null;
+        }
+        char[] name = methodName.substring(prefix.length()).toCharArray();
+        for (int i = 0; i < name.length && Character.isUpperCase(name[i]); i++) {
+            name[i] = Character.toLowerCase(name[i]);
+        }
+        return new String(name);
+    }
+
+    private boolean isType(TypeMirror type, String name) {
+        return type.getKind() == TypeKind.DECLARED &&
+                ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(name);
+    }
+
+    private void writeProviderFile() {
+        if (generatedNames.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + PROVIDER_NAME);
+            try (Writer writer = file.openWriter()) {
+                for (String generatedName : generatedNames) {
+                    writer.write(generatedName);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Could not write the serializers provider file: " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * A document property, with the accessors of the most derived class.
+     */
+    class Property {
+        final String name;
+        ExecutableElement getter;
+        final List<ExecutableElement> setters = new ArrayList<>();
+        ExecutableElement setter;
+        ValueKind getterKind;
+        ValueKind setterKind;
+
+        Property(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Chooses the setter and the value kinds.
+         * @return false if the property is not supported.
+         */
+        boolean resolve(TypeElement type) {
+            if (setters.size() == 1) {
+                setter = setters.get(0);
+            } else if (setters.size() > 1) {
+                // The overloads are resolved by the type of the getter
+                for (ExecutableElement candidate : setters) {
+                    if (getter != null && types.isSameType(candidate.getParameters().get(0).asType(), getter.getReturnType())) {
+                        setter = candidate;
+                    }
+                }
+                if (setter == null) {
+                    error(type, "The setters of the property '" + name + "' are ambiguous");
+                    return false;
+                }
+            }
+            if (getter != null && (getterKind = getKind(getter.getReturnType())) == null) {
+                error(getter, "The type of the property '" + name + "' is not supported");
+                return false;
+            }
+            if (setter != null && (setterKind = getKind(getSetterType())) == null) {
+                error(setter, "The type of the property '" + name + "' is not supported");
+                return false;
+            }
+            return true;
+        }
+
+        TypeMirror getSetterType() {
+            return setter.getParameters().get(0).asType();
+        }
+
+        /**
+         * Gets the source name of a type, without the type arguments.
+         */
+        String getRawName(TypeMirror type) {
+            return types.erasure(type).toString();
+        }
+
+        boolean isGeneric(TypeMirror type) {
+            return !types.isSameType(type, types.erasure(type));
+        }
+
+        private ValueKind getKind(TypeMirror type) {
+            switch (type.getKind()) {
+                case INT:
+                    return ValueKind.INT;
+                case LONG:
+                    return ValueKind.LONG;
+                case DOUBLE:
+                    return ValueKind.DOUBLE;
+                case BOOLEAN:
+                    return ValueKind.BOOLEAN;
+                case DECLARED:
+                case ARRAY:
+                    break;
+                default:
+                    // Other primitives and type variables
+                    return null;
+            }
+            if (isType(type, "java.lang.String")) {
+                return ValueKind.STRING;
+            }
+            if (isType(type, "java.lang.Integer")) {
+                return ValueKind.INTEGER_OBJECT;
+            }
+            if (isType(type, "java.lang.Long")) {
+                return ValueKind.LONG_OBJECT;
+            }
+            if (isType(type, "java.lang.Double")) {
+                return ValueKind.DOUBLE_OBJECT;
+            }
+            if (isType(type, "java.lang.Boolean")) {
+                return ValueKind.BOOLEAN_OBJECT;
+            }
+            return ValueKind.OTHER;
+        }
+    }
+
+    /**
+     * The kinds of values that are written and read directly, or by the serializers of the context for the others.
+     */
+    enum ValueKind {
+        STRING("readString"),
+        INT("readInt"),
+        INTEGER_OBJECT("readInteger"),
+        LONG("readPrimitiveLong"),
+        LONG_OBJECT("readLong"),
+        DOUBLE("readPrimitiveDouble"),
+        DOUBLE_OBJECT("readDouble"),
+        BOOLEAN("readPrimitiveBoolean"),
+        BOOLEAN_OBJECT("readBoolean"),
+        OTHER(null);
+
+        /**
+         * The method of the support class that reads the value.
+         */
+        final String readMethod;
+
+        ValueKind(String readMethod) {
+            this.readMethod = readMethod;
+        }
+
+        boolean isPrimitive() {
+            return this == INT || this == LONG || this == DOUBLE || this == BOOLEAN;
+        }
+    }
+}
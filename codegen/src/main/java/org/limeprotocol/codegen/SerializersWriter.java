@@ -0,0 +1,248 @@
+package org.limeprotocol.codegen;
+
+import org.limeprotocol.codegen.DocumentSerializerProcessor.Property;
+import org.limeprotocol.codegen.DocumentSerializerProcessor.ValueKind;
+
+import javax.lang.model.type.TypeMirror;
+import java.util.List;
+
+/**
+ * Writes the source of the serializers of a document class.
+ */
+class SerializersWriter {
+
+    private final String packageName;
+    private final String simpleName;
+    private final String documentName;
+    private final List<Property> properties;
+    private final StringBuilder source;
+    private int indentation;
+
+    /**
+     * @param packageName The package of the document class.
+     * @param simpleName The name of the generated class.
+     * @param qualifiedDocumentName The qualified name of the document class.
+     * @param properties The properties of the document, in the serialization order.
+     */
+    SerializersWriter(String packageName, String simpleName, String qualifiedDocumentName, List<Property> properties) {
+        this.packageName = packageName;
+        this.simpleName = simpleName;
+        this.documentName = packageName.isEmpty() ? qualifiedDocumentName : qualifiedDocumentName.substring(packageName.length() + 1);
+        this.properties = properties;
+        this.source = new StringBuilder();
+    }
+
+    String write() {
+        if (!packageName.isEmpty()) {
+            line("package " + packageName + ";");
+            line("");
+        }
+        line("import com.fasterxml.jackson.core.JsonGenerator;");
+        line("import com.fasterxml.jackson.core.JsonParser;");
+        line("import com.fasterxml.jackson.core.JsonToken;");
+        line("import com.fasterxml.jackson.core.io.SerializedString;");
+        line("import com.fasterxml.jackson.core.type.TypeReference;");
+        line("import com.fasterxml.jackson.databind.DeserializationContext;");
+        line("import com.fasterxml.jackson.databind.JsonDeserializer;");
+        line("import com.fasterxml.jackson.databind.JsonMappingException;");
+        line("import com.fasterxml.jackson.databind.SerializerProvider;");
+        line("import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;");
+        line("import com.fasterxml.jackson.databind.deser.std.StdDeserializer;");
+        line("import com.fasterxml.jackson.databind.module.SimpleModule;");
+        line("import com.fasterxml.jackson.databind.ser.std.StdSerializer;");
+        line("import org.limeprotocol.serialization.jackson.DocumentSerializerProvider;");
+        line("import org.limeprotocol.serialization.jackson.DocumentSerializerSupport;");
+        line("");
+        line("import java.io.IOException;");
+        line("");
+        line("/**");
+        line(" * Serializers of the {@link " + documentName + "} document, generated by the {@code " +
+                DocumentSerializerProcessor.class.getSimpleName() + "}.");
+        line(" */");
+        open("public final class " + simpleName + " implements DocumentSerializerProvider {");
+        line("");
+        line("@Override");
+        open("public void addSerializers(SimpleModule module) {");
+        line("module.addSerializer(" + documentName + ".class, new Serializer());");
+        line("module.addDeserializer(" + documentName + ".class, new Deserializer());");
+        close();
+        line("");
+        writeSerializer();
+        line("");
+        writeDeserializer();
+        close();
+        return source.toString();
+    }
+
+    private void writeSerializer() {
+        open("final static class Serializer extends StdSerializer<" + documentName + "> {");
+        line("");
+        for (Property property : properties) {
+            if (property.getter != null) {
+                line("private final static SerializedString " + getNameConstant(property) +
+                        " = new SerializedString(\"" + property.name + "\");");
+            }
+        }
+        line("");
+        open("Serializer() {");
+        line("super(" + documentName + ".class);");
+        close();
+        line("");
+        line("@Override");
+        open("public void serialize(" + documentName + " document, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {");
+        line("jsonGenerator.writeStartObject();");
+        for (Property property : properties) {
+            if (property.getter == null) {
+                continue;
+            }
+            String value = "document." + property.getter.getSimpleName() + "()";
+            if (property.getterKind.isPrimitive()) {
+                line("jsonGenerator.writeFieldName(" + getNameConstant(property) + ");");
+                line(getWriteStatement(property.getterKind, value));
+                continue;
+            }
+            String variable = property.name + "Value";
+            line(property.getter.getReturnType() + " " + variable + " = " + value + ";");
+            open("if (" + variable + " != null) {");
+            line("jsonGenerator.writeFieldName(" + getNameConstant(property) + ");");
+            line(getWriteStatement(property.getterKind, variable));
+            close();
+        }
+        line("jsonGenerator.writeEndObject();");
+        close();
+        close();
+    }
+
+    private static String getWriteStatement(ValueKind kind, String value) {
+        switch (kind) {
+            case STRING:
+                return "jsonGenerator.writeString(" + value + ");";
+            case INT:
+            case LONG:
+            case DOUBLE:
+                return "jsonGenerator.writeNumber(" + value + ");";
+            case INTEGER_OBJECT:
+                return "jsonGenerator.writeNumber(" + value + ".intValue());";
+            case LONG_OBJECT:
+                return "jsonGenerator.writeNumber(" + value + ".longValue());";
+            case DOUBLE_OBJECT:
+                return "jsonGenerator.writeNumber(" + value + ".doubleValue());";
+            case BOOLEAN:
+                return "jsonGenerator.writeBoolean(" + value + ");";
+            case BOOLEAN_OBJECT:
+                return "jsonGenerator.writeBoolean(" + value + ".booleanValue());";
+            default:
+                return "serializerProvider.defaultSerializeValue(" + value + ", jsonGenerator);";
+        }
+    }
+
+    private void writeDeserializer() {
+        open("final static class Deserializer extends StdDeserializer<" + documentName + "> implements ResolvableDeserializer {");
+        line("");
+        boolean hasUncheckedCast = false;
+        for (Property property : properties) {
+            if (property.setter != null && property.setterKind == ValueKind.OTHER) {
+                line("private JsonDeserializer<Object> " + property.name + "Deserializer;");
+                hasUncheckedCast |= property.isGeneric(property.getSetterType());
+            }
+        }
+        line("");
+        open("Deserializer() {");
+        line("super(" + documentName + ".class);");
+        close();
+        line("");
+        line("@Override");
+        open("public void resolve(DeserializationContext deserializationContext) throws JsonMappingException {");
+        for (Property property : properties) {
+            if (property.setter != null && property.setterKind == ValueKind.OTHER) {
+                line(property.name + "Deserializer = deserializationContext.findRootValueDeserializer(" +
+                        getJavaTypeExpression(property, property.getSetterType()) + ");");
+            }
+        }
+        close();
+        line("");
+        line("@Override");
+        open("public boolean isCachable() {");
+        line("return true;");
+        close();
+        line("");
+        line("@Override");
+        if (hasUncheckedCast) {
+            line("@SuppressWarnings(\"unchecked\")");
+        }
+        open("public " + documentName + " deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {");
+        line(documentName + " document = new " + documentName + "();");
+        open("for (JsonToken token = DocumentSerializerSupport.startObject(jsonParser, " + documentName + ".class); " +
+                "token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {");
+        line("String name = jsonParser.getCurrentName();");
+        line("JsonToken valueToken = jsonParser.nextToken();");
+        open("switch (name) {");
+        for (Property property : properties) {
+            if (property.setter == null) {
+                continue;
+            }
+            open("case \"" + property.name + "\":");
+            String value;
+            if (property.setterKind == ValueKind.OTHER) {
+                value = "valueToken == JsonToken.VALUE_NULL ? null : (" + property.getSetterType() + ") " +
+                        property.name + "Deserializer.deserialize(jsonParser, deserializationContext)";
+            } else {
+                value = "DocumentSerializerSupport." + property.setterKind.readMethod + "(jsonParser, deserializationContext)";
+            }
+            line("document." + property.setter.getSimpleName() + "(" + value + ");");
+            line("break;");
+            indentation--;
+        }
+        open("default:");
+        line("// Unknown properties are ignored");
+        line("jsonParser.skipChildren();");
+        line("break;");
+        indentation--;
+        close();
+        close();
+        line("return document;");
+        close();
+        close();
+    }
+
+    private static String getJavaTypeExpression(Property property, TypeMirror type) {
+        if (property.isGeneric(type)) {
+            return "deserializationContext.getTypeFactory().constructType(new TypeReference<" + type + ">() { })";
+        }
+        return "deserializationContext.constructType(" + property.getRawName(type) + ".class)";
+    }
+
+    /**
+     * Gets the name of the constant of the property name, in upper case with underscores.
+     */
+    private static String getNameConstant(Property property) {
+        StringBuilder constant = new StringBuilder();
+        for (char c : property.name.toCharArray()) {
+            if (Character.isUpperCase(c) && constant.length() > 0) {
+                constant.append('_');
+            }
+            constant.append(Character.toUpperCase(c));
+        }
+        return constant.append("_NAME").toString();
+    }
+
+    private void open(String text) {
+        line(text);
+        indentation++;
+    }
+
+    private void close() {
+        indentation--;
+        line("}");
+    }
+
+    private void line(String text) {
+        if (!text.isEmpty()) {
+            for (int i = 0; i < indentation; i++) {
+                source.append("    ");
+            }
+            source.append(text);
+        }
+        source.append('\n');
+    }
+}
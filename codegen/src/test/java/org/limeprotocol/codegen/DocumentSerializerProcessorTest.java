@@ -0,0 +1,419 @@
+package org.limeprotocol.codegen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.jackson.CustomSerializerModule;
+import org.limeprotocol.serialization.jackson.DocumentSerializerProvider;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DocumentSerializerProcessorTest {
+
+    private final static String ANNOTATION_IMPORTS =
+            "import org.limeprotocol.*;\n" +
+            "import org.limeprotocol.serialization.jackson.GenerateSerializers;\n";
+
+    private File outputDirectory;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDirectory = Files.createTempDirectory("codegen").toFile();
+        diagnostics = new DiagnosticCollector<>();
+    }
+
+    @After
+    public void tearDown() {
+        delete(outputDirectory);
+    }
+
+    /**
+     * Compiles the sources with the processor, to the output directory.
+     * @param sources The pairs of qualified class names and sources.
+     * @return true if the compilation succeeded.
+     */
+    private boolean compile(String... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<JavaFileObject> compilationUnits = new ArrayList<>();
+        for (int i = 0; i < sources.length; i += 2) {
+            compilationUnits.add(new StringSource(sources[i], sources[i + 1]));
+        }
+        List<String> options = Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", outputDirectory.getPath(),
+                "-s", outputDirectory.getPath());
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits);
+            task.setProcessors(Collections.singleton(new DocumentSerializerProcessor()));
+            return task.call();
+        }
+    }
+
+    private List<String> getErrors() {
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+
+    private String readOutput(String path) throws IOException {
+        File file = new File(outputDirectory, path);
+        assertTrue("The file " + path + " was not written: " + getErrors(), file.exists());
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String document(String className, String members) {
+        return "package fixtures;\n" + ANNOTATION_IMPORTS +
+                "@GenerateSerializers\n" +
+                "public class " + className + " extends DocumentBase {\n" +
+                "    public " + className + "() { super(MediaType.parse(\"application/x-fixture+json\")); }\n" +
+                members +
+                "}\n";
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void process_documentClass_writesSerializersAndProviderFile() throws IOException {
+        // Arrange
+        String source = document("Fixture",
+                "    private String text;\n" +
+                "    public String getText() { return text; }\n" +
+                "    public void setText(String text) { this.text = text; }\n");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertTrue(getErrors().toString(), actual);
+        String generated = readOutput("fixtures/FixtureJsonSerializers.java");
+        assertTrue(generated.contains("public final class FixtureJsonSerializers implements DocumentSerializerProvider"));
+        assertTrue(generated.contains("document.setText(DocumentSerializerSupport.readString(jsonParser, deserializationContext));"));
+        assertTrue(new File(outputDirectory, "fixtures/FixtureJsonSerializers.class").exists());
+        assertEquals("fixtures.FixtureJsonSerializers\n",
+                readOutput("META-INF/services/" + DocumentSerializerProcessor.PROVIDER_NAME));
+    }
+
+    @Test
+    public void process_interface_reportsError() throws IOException {
+        // Arrange
+        String source = "package fixtures;\n" + ANNOTATION_IMPORTS +
+                "@GenerateSerializers\n" +
+                "public interface Fixture extends Document { }\n";
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(Collections.singletonList("Only the document classes can have the generated serializers"), getErrors());
+    }
+
+    @Test
+    public void process_abstractClass_reportsError() throws IOException {
+        // Arrange
+        String source = document("Fixture", "").replace("public class", "public abstract class");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(Collections.singletonList("The document class must be public, not abstract and not an inner class"), getErrors());
+    }
+
+    @Test
+    public void process_innerClass_reportsError() throws IOException {
+        // Arrange
+        String source = "package fixtures;\n" + ANNOTATION_IMPORTS +
+                "public class Outer {\n" +
+                "    @GenerateSerializers\n" +
+                "    public class Fixture extends DocumentBase {\n" +
+                "        public Fixture() { super(MediaType.parse(\"application/x-fixture+json\")); }\n" +
+                "    }\n" +
+                "}\n";
+
+        // Act
+        boolean actual = compile("fixtures.Outer", source);
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(Collections.singletonList("The document class must be public, not abstract and not an inner class"), getErrors());
+    }
+
+    @Test
+    public void process_classNotImplementingDocument_reportsError() throws IOException {
+        // Arrange
+        String source = "package fixtures;\n" + ANNOTATION_IMPORTS +
+                "@GenerateSerializers\n" +
+                "public class Fixture { }\n";
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(Collections.singletonList("The class must implement org.limeprotocol.Document"), getErrors());
+    }
+
+    @Test
+    public void process_constructorWithParameters_reportsError() throws IOException {
+        // Arrange
+        String source = document("Fixture", "").replace("public Fixture()", "public Fixture(String text)");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(Collections.singletonList("The document class must have a public constructor without parameters"), getErrors());
+    }
+
+    @Test
+    public void process_overloadedSettersWithoutGetterType_reportsError() throws IOException {
+        // Arrange
+        String source = document("Fixture",
+                "    public void setValue(String value) { }\n" +
+                "    public void setValue(Integer value) { }\n");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(Collections.singletonList("The setters of the property 'value' are ambiguous"), getErrors());
+    }
+
+    @Test
+    public void process_unsupportedPropertyType_reportsError() throws IOException {
+        // Arrange
+        String source = document("Fixture",
+                "    public char getInitial() { return 'a'; }\n");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(Collections.singletonList("The type of the property 'initial' is not supported"), getErrors());
+    }
+
+    @Test
+    public void process_overloadedSetters_usesSetterOfGetterType() throws IOException {
+        // Arrange
+        String source = document("Fixture",
+                "    private String value;\n" +
+                "    public void setValue(Integer value) { this.value = String.valueOf(value); }\n" +
+                "    public String getValue() { return value; }\n" +
+                "    public void setValue(String value) { this.value = value; }\n");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertTrue(getErrors().toString(), actual);
+        String generated = readOutput("fixtures/FixtureJsonSerializers.java");
+        assertTrue(generated.contains("document.setValue(DocumentSerializerSupport.readString(jsonParser, deserializationContext));"));
+        assertFalse(generated.contains("readInteger"));
+    }
+
+    @Test
+    public void process_overriddenSetter_usesSetterOfSubclass() throws IOException {
+        // Arrange
+        String baseSource = "package fixtures;\n" + ANNOTATION_IMPORTS +
+                "public abstract class Base extends DocumentBase {\n" +
+                "    protected Long size;\n" +
+                "    public Base() { super(MediaType.parse(\"application/x-fixture+json\")); }\n" +
+                "    public void setSize(Long size) { this.size = size; }\n" +
+                "}\n";
+        String source = "package fixtures;\n" + ANNOTATION_IMPORTS +
+                "@GenerateSerializers\n" +
+                "public class Fixture extends Base {\n" +
+                "    @Override\n" +
+                "    public void setSize(Long size) { this.size = size == null ? null : size * 2; }\n" +
+                "}\n";
+
+        // Act
+        boolean actual = compile("fixtures.Base", baseSource, "fixtures.Fixture", source);
+
+        // Assert
+        assertTrue(getErrors().toString(), actual);
+        String generated = readOutput("fixtures/FixtureJsonSerializers.java");
+        assertTrue(generated.contains("document.setSize(DocumentSerializerSupport.readLong(jsonParser, deserializationContext));"));
+    }
+
+    @Test
+    public void process_isAndGetAccessors_usesGetAccessor() throws IOException {
+        // Arrange
+        String source = document("Fixture",
+                "    private boolean active;\n" +
+                "    public boolean isActive() { return !active; }\n" +
+                "    public boolean getActive() { return active; }\n" +
+                "    public boolean isEnabled() { return active; }\n");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertTrue(getErrors().toString(), actual);
+        String generated = readOutput("fixtures/FixtureJsonSerializers.java");
+        assertTrue(generated.contains("jsonGenerator.writeBoolean(document.getActive());"));
+        assertFalse(generated.contains("document.isActive()"));
+        assertTrue(generated.contains("jsonGenerator.writeBoolean(document.isEnabled());"));
+    }
+
+    @Test
+    public void process_mediaTypeProperties_removesOnlyTheFirstGetter() throws IOException {
+        // Arrange
+        String source = document("Fixture",
+                "    private MediaType contentType;\n" +
+                "    public MediaType getContentType() { return contentType; }\n" +
+                "    public void setContentType(MediaType contentType) { this.contentType = contentType; }\n");
+
+        // Act
+        boolean actual = compile("fixtures.Fixture", source);
+
+        // Assert
+        assertTrue(getErrors().toString(), actual);
+        String generated = readOutput("fixtures/FixtureJsonSerializers.java");
+        assertFalse(generated.contains("MEDIA_TYPE_NAME"));
+        assertFalse(generated.contains("getMediaType()"));
+        assertTrue(generated.contains("CONTENT_TYPE_NAME = new SerializedString(\"contentType\")"));
+        assertTrue(generated.contains("document.setContentType("));
+    }
+
+    @Test
+    public void process_nestedDocumentClass_namesGeneratedClassAfterEnclosingClasses() throws IOException {
+        // Arrange
+        String source = "package fixtures;\n" + ANNOTATION_IMPORTS +
+                "public class Outer {\n" +
+                "    public static class Middle {\n" +
+                "        @GenerateSerializers\n" +
+                "        public static class Fixture extends DocumentBase {\n" +
+                "            public Fixture() { super(MediaType.parse(\"application/x-fixture+json\")); }\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n";
+
+        // Act
+        boolean actual = compile("fixtures.Outer", source);
+
+        // Assert
+        assertTrue(getErrors().toString(), actual);
+        String generated = readOutput("fixtures/Outer_Middle_FixtureJsonSerializers.java");
+        assertTrue(generated.contains("module.addSerializer(Outer.Middle.Fixture.class, new Serializer());"));
+        assertEquals("fixtures.Outer_Middle_FixtureJsonSerializers\n",
+                readOutput("META-INF/services/" + DocumentSerializerProcessor.PROVIDER_NAME));
+    }
+
+    @Test
+    public void generatedSerializers_allValueKinds_serializeLikeBeanSerialization() throws Exception {
+        // Arrange
+        String source = document("Fixture",
+                "    private String text; private int count; private Integer total; private long size; private Long length;\n" +
+                "    private double ratio; private Double price; private boolean enabled; private Boolean visible;\n" +
+                "    private Identity owner; private String[] tags; private java.util.List<Identity> members;\n" +
+                "    private java.util.Map<String, Integer> scores;\n" +
+                "    public String getText() { return text; } public void setText(String text) { this.text = text; }\n" +
+                "    public int getCount() { return count; } public void setCount(int count) { this.count = count; }\n" +
+                "    public Integer getTotal() { return total; } public void setTotal(Integer total) { this.total = total; }\n" +
+                "    public long getSize() { return size; } public void setSize(long size) { this.size = size; }\n" +
+                "    public Long getLength() { return length; } public void setLength(Long length) { this.length = length; }\n" +
+                "    public double getRatio() { return ratio; } public void setRatio(double ratio) { this.ratio = ratio; }\n" +
+                "    public Double getPrice() { return price; } public void setPrice(Double price) { this.price = price; }\n" +
+                "    public boolean isEnabled() { return enabled; } public void setEnabled(boolean enabled) { this.enabled = enabled; }\n" +
+                "    public Boolean getVisible() { return visible; } public void setVisible(Boolean visible) { this.visible = visible; }\n" +
+                "    public Identity getOwner() { return owner; } public void setOwner(Identity owner) { this.owner = owner; }\n" +
+                "    public String[] getTags() { return tags; } public void setTags(String[] tags) { this.tags = tags; }\n" +
+                "    public java.util.List<Identity> getMembers() { return members; }\n" +
+                "    public void setMembers(java.util.List<Identity> members) { this.members = members; }\n" +
+                "    public java.util.Map<String, Integer> getScores() { return scores; }\n" +
+                "    public void setScores(java.util.Map<String, Integer> scores) { this.scores = scores; }\n");
+        assertTrue(getErrors().toString(), compile("fixtures.Fixture", source));
+        String json = "{\"text\":\"Hello\",\"count\":1,\"total\":2,\"size\":3,\"length\":4,\"ratio\":5.5,\"price\":6.5," +
+                "\"enabled\":true,\"visible\":false,\"owner\":\"john@limeprotocol.org\",\"tags\":[\"a\",\"b\"]," +
+                "\"members\":[\"mary@limeprotocol.org\"],\"scores\":{\"x\":7}}";
+        String emptyJson = "{\"count\":0,\"size\":0,\"ratio\":0.0,\"enabled\":false}";
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { outputDirectory.toURI().toURL() }, getClass().getClassLoader())) {
+            Class<?> documentClass = classLoader.loadClass("fixtures.Fixture");
+            SimpleModule generatedModule = new SimpleModule();
+            ((DocumentSerializerProvider) classLoader.loadClass("fixtures.FixtureJsonSerializers").newInstance()).addSerializers(generatedModule);
+            ObjectMapper beanMapper = JacksonEnvelopeSerializer.createObjectMapper().registerModule(new CustomSerializerModule());
+            ObjectMapper generatedMapper = JacksonEnvelopeSerializer.createObjectMapper()
+                    .registerModule(new CustomSerializerModule())
+                    .registerModule(generatedModule);
+
+            // Act
+            Object document = generatedMapper.readValue(json, documentClass);
+            String actual = generatedMapper.writeValueAsString(document);
+            String actualEmpty = generatedMapper.writeValueAsString(documentClass.newInstance());
+
+            // Assert
+            assertEquals(beanMapper.writeValueAsString(beanMapper.readValue(json, documentClass)), actual);
+            assertEquals(json, actual);
+            assertEquals(beanMapper.writeValueAsString(documentClass.newInstance()), actualEmpty);
+            assertEquals(emptyJson, actualEmpty);
+        }
+    }
+
+    @Test
+    public void getPropertyName_leadingUpperCaseCharacters_returnsThemInLowerCase() {
+        // Act
+        String actual = DocumentSerializerProcessor.getPropertyName("getURLPath", "get");
+
+        // Assert
+        assertEquals("urlpath", actual);
+        assertNull(DocumentSerializerProcessor.getPropertyName("get", "get"));
+        assertNull(DocumentSerializerProcessor.getPropertyName("setText", "get"));
+    }
+
+    private static class StringSource extends SimpleJavaFileObject {
+
+        private final String source;
+
+        StringSource(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}
@@ -1,11 +1,25 @@
 package org.limeprotocol;
 
+import org.limeprotocol.util.CanonicalCache;
 import org.limeprotocol.util.Cast;
 import org.limeprotocol.util.StringUtils;
 
 public class Identity {
+    // Keeps the parsed values, which are never changed and only copied to the returned instances
+    private final static CanonicalCache<Identity> cache = new CanonicalCache<Identity>(1024) {
+        @Override
+        protected Identity create(String value) {
+            Identity identity = parse(value);
+            identity.hashCode();
+            return identity;
+        }
+    };
+
     private String name;
     private String domain;
+    // Computed in the first use and cleared by the setters
+    private String string;
+    private int hashCode;
 
     public Identity(String name, String domain){
         setName(name);
@@ -18,6 +32,7 @@ public class Identity {
 
     public void setName(String name) {
         this.name = name;
+        clearCachedValues();
     }
 
     public String getDomain() {
@@ -26,6 +41,17 @@ public class Identity {
 
     public void setDomain(String domain) {
         this.domain = domain;
+        clearCachedValues();
+    }
+
+    void copyCachedValues(Identity identity) {
+        string = identity.string;
+        hashCode = identity.hashCode;
+    }
+
+    void clearCachedValues() {
+        string = null;
+        hashCode = 0;
     }
 
     @Override
@@ -51,18 +77,30 @@ public class Identity {
 
     @Override
     public int hashCode() {
-        return this.toString().toLowerCase().hashCode();
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            hashCode = this.toString().toLowerCase().hashCode();
+            this.hashCode = hashCode;
+        }
+        return hashCode;
     }
 
     @Override
     public String toString() {
+        String string = this.string;
+        if (string == null) {
+            string = formatString();
+            this.string = string;
+        }
+        return string;
+    }
+
+    String formatString() {
         if (StringUtils.isNullOrWhiteSpace(this.domain)) {
             return this.name;
         }
         else {
-            return String.format("%1$s@%2$s",
-                                name == null ? "" : name,
-                                domain);
+            return (name == null ? "" : name) + "@" + domain;
         }
     }
 
@@ -84,4 +122,18 @@ public class Identity {
 
         return new Identity(name, domain);
     }
+
+    /**
+     * Gets a new identity with the values of the string, which is parsed only if not cached.
+     * @param string
+     */
+    public static Identity valueOf(String string) {
+        if (StringUtils.isNullOrWhiteSpace(string)) {
+            throw new IllegalArgumentException("s");
+        }
+        Identity cachedIdentity = cache.get(string);
+        Identity identity = new Identity(cachedIdentity.getName(), cachedIdentity.getDomain());
+        identity.copyCachedValues(cachedIdentity);
+        return identity;
+    }
 }
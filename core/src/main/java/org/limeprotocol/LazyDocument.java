@@ -0,0 +1,14 @@
+package org.limeprotocol;
+
+/**
+ * A document that keeps its serialized value and is read only when it's used,
+ * so the envelopes that are only forwarded are not bound to the document classes.
+ */
+public interface LazyDocument extends Document {
+
+    /**
+     * Gets the document, which is read from the serialized value in the first call.
+     * @return
+     */
+    Document getDocument();
+}
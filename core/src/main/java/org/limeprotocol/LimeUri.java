@@ -2,6 +2,7 @@ package org.limeprotocol;
 
 import java.net.URI;
 
+import org.limeprotocol.util.CanonicalCache;
 import org.limeprotocol.util.Cast;
 import org.limeprotocol.util.StringUtils;
 
@@ -12,9 +13,17 @@ import java.net.URISyntaxException;
  * Represents a URI from the lime scheme.
  */
 public final class LimeUri {
+    private final static CanonicalCache<LimeUri> cache = new CanonicalCache<LimeUri>(256) {
+        @Override
+        protected LimeUri create(String value) {
+            return new LimeUri(value);
+        }
+    };
+
     private URI absoluteUri;
     public static final String LIME_URI_SCHEME = "lime";
     private String path;
+    private int hashCode;
 
     public LimeUri(String uriPath) {
         if (StringUtils.isNullOrWhiteSpace(uriPath)) {
@@ -73,7 +82,12 @@ public final class LimeUri {
     @Override
     public int hashCode() {
         //TODO: Check if toLowerCase is the same that ToLowerCaseIgnoreCase
-        return this.toString().toLowerCase().hashCode();
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            hashCode = this.toString().toLowerCase().hashCode();
+            this.hashCode = hashCode;
+        }
+        return hashCode;
     }
 
     @Override
@@ -95,6 +109,17 @@ public final class LimeUri {
         return new LimeUri(value);
     }
 
+    /**
+     * Gets the shared instance of the URI of the value, which is parsed only if not cached.
+     * @param value
+     */
+    public static LimeUri valueOf(String value) {
+        if (StringUtils.isNullOrWhiteSpace(value)) {
+            throw new IllegalArgumentException("uriPath");
+        }
+        return cache.get(value);
+    }
+
     public static URI getBaseUri(Identity authority) throws MalformedURLException {
         return URI.create(StringUtils.format("{0}://{1}/", LIME_URI_SCHEME, authority));
     }
@@ -1,10 +1,20 @@
 package org.limeprotocol;
 
+import org.limeprotocol.util.CanonicalCache;
 import org.limeprotocol.util.Cast;
 import org.limeprotocol.util.StringUtils;
 
+import java.util.Locale;
+
 public class MediaType {
 
+    private final static CanonicalCache<MediaType> cache = new CanonicalCache<MediaType>(256) {
+        @Override
+        protected MediaType create(String value) {
+            return parse(value);
+        }
+    };
+
     /**
      * The top-level type
      * identifier. The valid values
@@ -27,6 +37,10 @@ public class MediaType {
      */
     private boolean isJson;
 
+    // Computed in the first use, since the values don't change
+    private String string;
+    private int hashCode;
+
     public MediaType() {
 
     }
@@ -65,11 +79,15 @@ public class MediaType {
      **/
     @Override
     public String toString() {
-        if (StringUtils.isNullOrWhiteSpace(this.suffix)) {
-            return StringUtils.format("{0}/{1}", this.type, this.subtype);
-        } else {
-            return StringUtils.format("{0}/{1}+{2}", this.type, this.subtype, this.suffix);
+        String string = this.string;
+        if (string == null) {
+            string = (this.type == null ? "" : this.type) + "/" + (this.subtype == null ? "" : this.subtype);
+            if (!StringUtils.isNullOrWhiteSpace(this.suffix)) {
+                string += "+" + this.suffix;
+            }
+            this.string = string;
         }
+        return string;
     }
 
     /**
@@ -78,7 +96,13 @@ public class MediaType {
      */
     @Override
     public int hashCode() {
-        return this.toString().hashCode();
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            // Ignores the case, like the equals method
+            hashCode = this.toString().toLowerCase(Locale.ROOT).hashCode();
+            this.hashCode = hashCode;
+        }
+        return hashCode;
     }
 
     /**
@@ -130,6 +154,17 @@ public class MediaType {
         return new MediaType(type, subtype, suffix);
     }
 
+    /**
+     * Gets the shared instance of the media type of the String, which is parsed only if not cached.
+     * @param s
+     */
+    public static MediaType valueOf(String s) {
+        if (StringUtils.isNullOrWhiteSpace(s)) {
+            throw new IllegalArgumentException("value");
+        }
+        return cache.get(s);
+    }
+
     /**
      * Try parses the String to a MediaType object.
      *
@@ -21,6 +21,10 @@ public class Message extends Envelope {
     }
 
     public Document getContent() {
+        if (content instanceof LazyDocument) {
+            // The content is read in the first access
+            content = ((LazyDocument) content).getDocument();
+        }
         return content;
     }
 
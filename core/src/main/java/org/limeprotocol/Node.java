@@ -1,11 +1,21 @@
 package org.limeprotocol;
 
 
+import org.limeprotocol.util.CanonicalCache;
 import org.limeprotocol.util.Cast;
 import org.limeprotocol.util.StringUtils;
 
 public class Node extends Identity {
 
+    // Keeps the parsed values, which are never changed and only copied to the returned instances
+    private final static CanonicalCache<Node> cache = new CanonicalCache<Node>(1024) {
+        @Override
+        protected Node create(String value) {
+            Node node = parse(value);
+            node.hashCode();
+            return node;
+        }
+    };
 
     private String instance;
     private boolean isComplete;
@@ -34,12 +44,13 @@ public class Node extends Identity {
 
     public void setInstance(String instance) {
         this.instance = instance;
+        clearCachedValues();
     }
 
     @Override
-    public String toString() {
-        //'\0' == '' (Empty character)
-        String nodeString = StringUtils.format("{0}/{1}", super.toString(), instance);
+    String formatString() {
+        String identityString = super.formatString();
+        String nodeString = (identityString == null ? "" : identityString) + "/" + (instance == null ? "" : instance);
         nodeString = StringUtils.trimEnd(nodeString, "/");
 
         return nodeString;
@@ -78,6 +89,19 @@ public class Node extends Identity {
             throw new IllegalArgumentException("s");
         }
 
+        // Common form, with a single name, domain and instance, parsed without splitting
+        int separatorIndex = s.indexOf('@');
+        int instanceIndex = s.indexOf('/', separatorIndex + 1);
+        if (separatorIndex > 0 && separatorIndex < s.length() - 1 && s.indexOf('@', separatorIndex + 1) < 0 &&
+                instanceIndex != separatorIndex + 1 && instanceIndex != s.length() - 1 &&
+                (instanceIndex < 0 || s.indexOf('/', instanceIndex + 1) < 0)) {
+            String name = s.substring(0, separatorIndex);
+            return new Node(
+                    StringUtils.isNullOrWhiteSpace(name) ? null : name,
+                    instanceIndex < 0 ? s.substring(separatorIndex + 1) : s.substring(separatorIndex + 1, instanceIndex),
+                    instanceIndex < 0 ? null : s.substring(instanceIndex + 1));
+        }
+
         Identity identity = Identity.parse(s);
 
         String[] splittedDomain = identity.getDomain() != null ? identity.getDomain().split("/") : null;
@@ -89,6 +113,17 @@ public class Node extends Identity {
         return new Node(name, domain, instance);
     }
 
+    /**
+     * Gets a new node with the values of the string, which is parsed only if not cached.
+     */
+    public static Node valueOf(String s)
+    {
+        if (StringUtils.isNullOrWhiteSpace(s)) {
+            throw new IllegalArgumentException("s");
+        }
+        return cache.get(s).copy();
+    }
+
     /**
      * Creates an Identity instance based on the Node identity
      */
@@ -114,7 +149,9 @@ public class Node extends Identity {
      * @return A new object that is a copy of this instance.
      */
     public Node copy(){
-        return new Node(getName(), getDomain(), getInstance());
+        Node node = new Node(getName(), getDomain(), getInstance());
+        node.copyCachedValues(this);
+        return node;
     }
 
 }
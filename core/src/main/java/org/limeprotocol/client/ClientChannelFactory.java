@@ -0,0 +1,15 @@
+package org.limeprotocol.client;
+
+import java.io.IOException;
+
+/**
+ * Defines a factory for client channels.
+ */
+public interface ClientChannelFactory {
+
+    /**
+     * Creates a new channel in the NEW session state, with an open transport.
+     * @return
+     */
+    ClientChannel create() throws IOException;
+}
@@ -166,21 +166,26 @@ public class ClientChannelImpl extends ChannelBase implements ClientChannel {
     }
 
     @Override
-    protected synchronized void raiseOnReceiveSession(Session session) {
-        setSessionId(session.getId());
-        setState(session.getState());
-
-        if (session.getState() == ESTABLISHED) {
-            setLocalNode(session.getTo());
-            setRemoteNode(session.getFrom());
-        } else if (session.getState() == FINISHED || session.getState() == FAILED) {
-            try {
-                getTransport().close();
-            } catch (IOException e) {
-                throw new RuntimeException("An error occurred while closing the transport", e);
+    protected void raiseOnReceiveSession(Session session) {
+        getReceiveLock().lock();
+        try {
+            setSessionId(session.getId());
+            setState(session.getState());
+
+            if (session.getState() == ESTABLISHED) {
+                setLocalNode(session.getTo());
+                setRemoteNode(session.getFrom());
+            } else if (session.getState() == FINISHED || session.getState() == FAILED) {
+                try {
+                    getTransport().close();
+                } catch (IOException e) {
+                    throw new RuntimeException("An error occurred while closing the transport", e);
+                }
             }
+            super.raiseOnReceiveSession(session);
+        } finally {
+            getReceiveLock().unlock();
         }
-        super.raiseOnReceiveSession(session);
     }
 
     private static class SessionEstablishing implements SessionChannelListener {
@@ -0,0 +1,439 @@
+package org.limeprotocol.client;
+
+import org.limeprotocol.*;
+import org.limeprotocol.network.CommandChannel;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.NotificationChannel;
+import org.limeprotocol.security.Authentication;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.limeprotocol.Session.SessionState.ESTABLISHED;
+
+/**
+ * Distributes the sent envelopes between multiple sessions of the same identity.
+ * The envelopes are sharded by the destination node, so the envelopes for a
+ * recipient are sent through the same session and keep their order while the session is healthy.
+ * Sessions that are not established or with a disconnected transport are skipped
+ * and their envelopes are sent through the next healthy session in the pool.
+ * The listeners are registered in the channels of the pool, so they should be added after the sessions are established.
+ */
+public class ClientChannelPool implements MessageChannel, CommandChannel, NotificationChannel {
+
+    private final ClientChannelFactory channelFactory;
+    private final int size;
+    private final SessionCompression compression;
+    private final SessionEncryption encryption;
+    private final Identity identity;
+    private final Authentication authentication;
+    private final String instance;
+    private volatile List<ClientChannel> channels;
+    private final ConcurrentMap<Object, Object> singleReceiveListeners;
+
+    /**
+     * Creates a pool that establishes its sessions with the channels created by the factory.
+     * Each session uses a distinct instance, with the index of the session appended to the specified instance.
+     * @param channelFactory
+     * @param size The number of sessions of the pool.
+     * @param compression Chosen compression, or null for the first one supported by the server
+     * @param encryption Chosen encryption, or null for the first one supported by the server
+     * @param identity
+     * @param authentication
+     * @param instance
+     */
+    public ClientChannelPool(ClientChannelFactory channelFactory, int size, SessionCompression compression, SessionEncryption encryption,
+                             Identity identity, Authentication authentication, String instance) {
+        if (channelFactory == null) {
+            throw new IllegalArgumentException("channelFactory");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("size");
+        }
+        if (identity == null) {
+            throw new IllegalArgumentException("identity");
+        }
+        if (authentication == null) {
+            throw new IllegalArgumentException("authentication");
+        }
+        this.channelFactory = channelFactory;
+        this.size = size;
+        this.compression = compression;
+        this.encryption = encryption;
+        this.identity = identity;
+        this.authentication = authentication;
+        this.instance = instance;
+        this.channels = Collections.emptyList();
+        this.singleReceiveListeners = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a pool with channels that already have established sessions.
+     * @param channels
+     */
+    public ClientChannelPool(List<? extends ClientChannel> channels) {
+        if (channels == null || channels.isEmpty()) {
+            throw new IllegalArgumentException("channels");
+        }
+        this.channelFactory = null;
+        this.size = channels.size();
+        this.compression = null;
+        this.encryption = null;
+        this.identity = null;
+        this.authentication = null;
+        this.instance = null;
+        this.channels = Collections.unmodifiableList(new ArrayList<ClientChannel>(channels));
+        this.singleReceiveListeners = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates the channels and establishes their sessions concurrently.
+     * The sessions that fail to be established are kept out of the rotation.
+     * @param timeout The maximum time, in milliseconds, to wait for the sessions.
+     * @return The number of established sessions.
+     * @throws IOException If none of the sessions could be established, or if a channel could not be created,
+     * in which case the channels already created are closed.
+     */
+    public synchronized int establishSessions(long timeout) throws IOException {
+        if (channelFactory == null) {
+            throw new IllegalStateException("The pool was created with established channels");
+        }
+        if (!channels.isEmpty()) {
+            throw new IllegalStateException("The sessions are already established");
+        }
+
+        final List<ClientChannel> createdChannels = new ArrayList<>(size);
+        final CountDownLatch establishedLatch = new CountDownLatch(size);
+        final AtomicInteger establishedCount = new AtomicInteger();
+        final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+
+        try {
+            for (int i = 0; i < size; i++) {
+                ClientChannel channel = channelFactory.create();
+                createdChannels.add(channel);
+                String channelInstance = instance == null ? String.valueOf(i) : instance + "-" + i;
+                try {
+                    channel.establishSession(compression, encryption, identity, authentication, channelInstance,
+                            new ClientChannel.EstablishSessionListener() {
+                                @Override
+                                public void onFailure(Exception exception) {
+                                    failures.add(exception);
+                                    establishedLatch.countDown();
+                                }
+
+                                @Override
+                                public void onReceiveSession(Session session) {
+                                    if (session.getState() == ESTABLISHED) {
+                                        establishedCount.incrementAndGet();
+                                    }
+                                    establishedLatch.countDown();
+                                }
+                            });
+                } catch (IOException e) {
+                    failures.add(e);
+                    establishedLatch.countDown();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The channels created before the failure would be left open, since they are not in the pool
+            closeTransports(createdChannels);
+            throw e;
+        }
+
+        try {
+            establishedLatch.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            closeTransports(createdChannels);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The session establishment was interrupted");
+        }
+
+        channels = Collections.unmodifiableList(createdChannels);
+        if (establishedCount.get() == 0) {
+            IOException exception = new IOException("Could not establish any session of the pool");
+            if (!failures.isEmpty()) {
+                exception.initCause(failures.get(0));
+            }
+            throw exception;
+        }
+        return establishedCount.get();
+    }
+
+    /**
+     * Gets the channels of the pool.
+     * @return
+     */
+    public List<ClientChannel> getChannels() {
+        return channels;
+    }
+
+    /**
+     * Gets the number of channels that are currently in the rotation.
+     * @return
+     */
+    public int getHealthyCount() {
+        int count = 0;
+        for (ClientChannel channel : channels) {
+            if (isHealthy(channel)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the channel that sends the envelopes for the specified destination.
+     * @param to The destination node, or null for the server.
+     * @return
+     */
+    public ClientChannel getChannel(Node to) {
+        List<ClientChannel> channels = this.channels;
+        if (channels.isEmpty()) {
+            throw new IllegalStateException("The sessions are not established");
+        }
+        int hash = to == null ? 0 : to.hashCode();
+        // Spreads the higher bits, since the node hash codes come from strings
+        hash ^= (hash >>> 16);
+        int start = (hash & Integer.MAX_VALUE) % channels.size();
+        for (int i = 0; i < channels.size(); i++) {
+            ClientChannel channel = channels.get((start + i) % channels.size());
+            if (isHealthy(channel)) {
+                return channel;
+            }
+        }
+        throw new IllegalStateException("There's no established session in the pool");
+    }
+
+    /**
+     * Sends a message through the channel of the destination node.
+     * @param message
+     */
+    @Override
+    public void sendMessage(Message message) throws IOException {
+        if (message == null) {
+            throw new IllegalArgumentException("message");
+        }
+        ClientChannel channel = getChannel(message.getTo());
+        try {
+            channel.sendMessage(message);
+        } catch (IOException e) {
+            removeFromRotation(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a command through the channel of the destination node.
+     * @param command
+     */
+    @Override
+    public void sendCommand(Command command) throws IOException {
+        if (command == null) {
+            throw new IllegalArgumentException("command");
+        }
+        ClientChannel channel = getChannel(command.getTo());
+        try {
+            channel.sendCommand(command);
+        } catch (IOException e) {
+            removeFromRotation(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a notification through the channel of the destination node.
+     * @param notification
+     */
+    @Override
+    public void sendNotification(Notification notification) throws IOException {
+        if (notification == null) {
+            throw new IllegalArgumentException("notification");
+        }
+        ClientChannel channel = getChannel(notification.getTo());
+        try {
+            channel.sendNotification(notification);
+        } catch (IOException e) {
+            removeFromRotation(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the listener for receiving messages from all channels of the pool.
+     * @param listener
+     * @param removeAfterReceive
+     */
+    @Override
+    public void addMessageListener(final MessageChannelListener listener, boolean removeAfterReceive) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        MessageChannelListener channelListener = listener;
+        if (removeAfterReceive) {
+            final AtomicBoolean received = new AtomicBoolean();
+            channelListener = new MessageChannelListener() {
+                @Override
+                public void onReceiveMessage(Message message) {
+                    if (received.compareAndSet(false, true)) {
+                        removeMessageListener(listener);
+                        listener.onReceiveMessage(message);
+                    }
+                }
+            };
+            singleReceiveListeners.put(listener, channelListener);
+        }
+        for (ClientChannel channel : channels) {
+            channel.addMessageListener(channelListener, false);
+        }
+    }
+
+    /**
+     * Removes the specified listener from all channels of the pool.
+     * @param listener
+     */
+    @Override
+    public void removeMessageListener(MessageChannelListener listener) {
+        Object channelListener = singleReceiveListeners.remove(listener);
+        for (ClientChannel channel : channels) {
+            channel.removeMessageListener(channelListener != null ? (MessageChannelListener) channelListener : listener);
+        }
+    }
+
+    /**
+     * Sets the listener for receiving commands from all channels of the pool.
+     * @param listener
+     * @param removeAfterReceive
+     */
+    @Override
+    public void addCommandListener(final CommandChannelListener listener, boolean removeAfterReceive) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        CommandChannelListener channelListener = listener;
+        if (removeAfterReceive) {
+            final AtomicBoolean received = new AtomicBoolean();
+            channelListener = new CommandChannelListener() {
+                @Override
+                public void onReceiveCommand(Command command) {
+                    if (received.compareAndSet(false, true)) {
+                        removeCommandListener(listener);
+                        listener.onReceiveCommand(command);
+                    }
+                }
+            };
+            singleReceiveListeners.put(listener, channelListener);
+        }
+        for (ClientChannel channel : channels) {
+            channel.addCommandListener(channelListener, false);
+        }
+    }
+
+    /**
+     * Removes the specified listener from all channels of the pool.
+     * @param listener
+     */
+    @Override
+    public void removeCommandListener(CommandChannelListener listener) {
+        Object channelListener = singleReceiveListeners.remove(listener);
+        for (ClientChannel channel : channels) {
+            channel.removeCommandListener(channelListener != null ? (CommandChannelListener) channelListener : listener);
+        }
+    }
+
+    /**
+     * Sets the listener for receiving notifications from all channels of the pool.
+     * @param listener
+     * @param removeAfterReceive
+     */
+    @Override
+    public void addNotificationListener(final NotificationChannelListener listener, boolean removeAfterReceive) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        NotificationChannelListener channelListener = listener;
+        if (removeAfterReceive) {
+            final AtomicBoolean received = new AtomicBoolean();
+            channelListener = new NotificationChannelListener() {
+                @Override
+                public void onReceiveNotification(Notification notification) {
+                    if (received.compareAndSet(false, true)) {
+                        removeNotificationListener(listener);
+                        listener.onReceiveNotification(notification);
+                    }
+                }
+            };
+            singleReceiveListeners.put(listener, channelListener);
+        }
+        for (ClientChannel channel : channels) {
+            channel.addNotificationListener(channelListener, false);
+        }
+    }
+
+    /**
+     * Removes the specified listener from all channels of the pool.
+     * @param listener
+     */
+    @Override
+    public void removeNotificationListener(NotificationChannelListener listener) {
+        Object channelListener = singleReceiveListeners.remove(listener);
+        for (ClientChannel channel : channels) {
+            channel.removeNotificationListener(channelListener != null ? (NotificationChannelListener) channelListener : listener);
+        }
+    }
+
+    /**
+     * Finishes the established sessions and closes the transports of all channels.
+     */
+    public void close() throws IOException {
+        IOException exception = null;
+        for (ClientChannel channel : channels) {
+            try {
+                if (channel.getState() == ESTABLISHED && channel.getTransport().isConnected()) {
+                    channel.sendFinishingSession();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The transport is closed below
+            }
+            try {
+                channel.getTransport().close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static boolean isHealthy(ClientChannel channel) {
+        return channel.getState() == ESTABLISHED && channel.getTransport().isConnected();
+    }
+
+    private static void closeTransports(List<ClientChannel> channels) {
+        for (ClientChannel channel : channels) {
+            try {
+                channel.getTransport().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void removeFromRotation(ClientChannel channel) {
+        // A failed write may leave a partial envelope in the stream, so the transport can't be reused
+        try {
+            channel.getTransport().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package org.limeprotocol.client;
+
+import org.limeprotocol.*;
+import org.limeprotocol.network.ChannelModule;
+import org.limeprotocol.network.CommandChannel;
+import org.limeprotocol.network.EnvelopeSendException;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.NotificationChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.limeprotocol.Session.SessionState.ESTABLISHED;
+
+/**
+ * Client channel that establishes a new session when the current one is lost.
+ * The reconnection is retried with a jittered exponential backoff, using the same
+ * compression, encryption and authentication of the first session.
+ * The envelopes sent while there's no established session are buffered and sent
+ * in order after the session is established again, so an envelope which send failed
+ * may be received twice by the remote node.
+ * The listeners and modules added to this channel are registered in each new session channel.
+ */
+public class ResilientClientChannel implements MessageChannel, CommandChannel, NotificationChannel {
+
+    public final static long DEFAULT_MIN_RECONNECT_DELAY = 100;
+    public final static long DEFAULT_MAX_RECONNECT_DELAY = 30000;
+    public final static int DEFAULT_MAX_BUFFERED_ENVELOPES = 1024;
+    public final static long DEFAULT_ESTABLISH_TIMEOUT = 30000;
+
+    private final ClientChannelFactory channelFactory;
+    private final SessionCompression compression;
+    private final SessionEncryption encryption;
+    private final Identity identity;
+    private final Authentication authentication;
+    private final String instance;
+    private final long minReconnectDelay;
+    private final long maxReconnectDelay;
+    private final long establishTimeout;
+
+    private final Queue<Envelope> bufferedEnvelopes;
+    private final Lock sendLock;
+    private final AtomicBoolean isReconnecting;
+    private final Collection<ChannelModule<Message>> messageModules;
+    private final Collection<ChannelModule<Notification>> notificationModules;
+    private final Collection<ChannelModule<Command>> commandModules;
+    private final ConcurrentMap<MessageChannelListener, MessageChannelListener> messageListeners;
+    private final ConcurrentMap<NotificationChannelListener, NotificationChannelListener> notificationListeners;
+    private final ConcurrentMap<CommandChannelListener, CommandChannelListener> commandListeners;
+
+    private volatile ClientChannel channel;
+    private volatile boolean isClosed;
+
+    public ResilientClientChannel(ClientChannelFactory channelFactory, SessionCompression compression, SessionEncryption encryption,
+                                  Identity identity, Authentication authentication, String instance) {
+        this(channelFactory, compression, encryption, identity, authentication, instance,
+                DEFAULT_MIN_RECONNECT_DELAY, DEFAULT_MAX_RECONNECT_DELAY, DEFAULT_MAX_BUFFERED_ENVELOPES, DEFAULT_ESTABLISH_TIMEOUT);
+    }
+
+    /**
+     * @param channelFactory The factory for the channel of each session.
+     * @param compression Chosen compression, or null for the first one supported by the server
+     * @param encryption Chosen encryption, or null for the first one supported by the server
+     * @param identity
+     * @param authentication
+     * @param instance
+     * @param minReconnectDelay The delay, in milliseconds, before the first reconnection attempt.
+     * @param maxReconnectDelay The maximum delay, in milliseconds, between the reconnection attempts.
+     * @param maxBufferedEnvelopes The maximum number of envelopes kept while there's no established session.
+     * @param establishTimeout The maximum time, in milliseconds, to wait for each session establishment.
+     */
+    public ResilientClientChannel(ClientChannelFactory channelFactory, SessionCompression compression, SessionEncryption encryption,
+                                  Identity identity, Authentication authentication, String instance,
+                                  long minReconnectDelay, long maxReconnectDelay, int maxBufferedEnvelopes, long establishTimeout) {
+        if (channelFactory == null) {
+            throw new IllegalArgumentException("channelFactory");
+        }
+        if (identity == null) {
+            throw new IllegalArgumentException("identity");
+        }
+        if (authentication == null) {
+            throw new IllegalArgumentException("authentication");
+        }
+        if (minReconnectDelay <= 0) {
+            throw new IllegalArgumentException("minReconnectDelay");
+        }
+        if (maxReconnectDelay < minReconnectDelay) {
+            throw new IllegalArgumentException("maxReconnectDelay");
+        }
+        if (maxBufferedEnvelopes <= 0) {
+            throw new IllegalArgumentException("maxBufferedEnvelopes");
+        }
+        if (establishTimeout <= 0) {
+            throw new IllegalArgumentException("establishTimeout");
+        }
+        this.channelFactory = channelFactory;
+        this.compression = compression;
+        this.encryption = encryption;
+        this.identity = identity;
+        this.authentication = authentication;
+        this.instance = instance;
+        this.minReconnectDelay = minReconnectDelay;
+        this.maxReconnectDelay = maxReconnectDelay;
+        this.establishTimeout = establishTimeout;
+        this.bufferedEnvelopes = new ArrayBlockingQueue<>(maxBufferedEnvelopes);
+        this.sendLock = new ReentrantLock();
+        this.isReconnecting = new AtomicBoolean();
+        this.messageModules = new ConcurrentLinkedQueue<>();
+        this.notificationModules = new ConcurrentLinkedQueue<>();
+        this.commandModules = new ConcurrentLinkedQueue<>();
+        this.messageListeners = new ConcurrentHashMap<>();
+        this.notificationListeners = new ConcurrentHashMap<>();
+        this.commandListeners = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Establishes the first session.
+     * If the session is lost after this call, a new one is established in background.
+     * @throws IOException If the session could not be established.
+     */
+    public void establishSession() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("The channel is closed");
+        }
+        if (channel != null) {
+            throw new IllegalStateException("The session is already established");
+        }
+        connect();
+    }
+
+    /**
+     * Gets the channel of the current session, or null if the first session was not established.
+     * @return
+     */
+    public ClientChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Indicates if the current session is established and its transport is connected.
+     * @return
+     */
+    public boolean isEstablished() {
+        return isHealthy(channel);
+    }
+
+    /**
+     * Gets the number of envelopes waiting for a session to be sent.
+     * @return
+     */
+    public int getBufferedCount() {
+        return bufferedEnvelopes.size();
+    }
+
+    /**
+     * Gets the message modules registered in each new session channel.
+     * The modules added after a session is established are registered from the next session.
+     * @return
+     */
+    public Collection<ChannelModule<Message>> getMessageModules() {
+        return messageModules;
+    }
+
+    /**
+     * Gets the notification modules registered in each new session channel.
+     * The modules added after a session is established are registered from the next session.
+     * @return
+     */
+    public Collection<ChannelModule<Notification>> getNotificationModules() {
+        return notificationModules;
+    }
+
+    /**
+     * Gets the command modules registered in each new session channel.
+     * The modules added after a session is established are registered from the next session.
+     * @return
+     */
+    public Collection<ChannelModule<Command>> getCommandModules() {
+        return commandModules;
+    }
+
+    /**
+     * Sends a message to the remote node, or buffers it if there's no established session.
+     * @param message
+     */
+    @Override
+    public void sendMessage(Message message) throws IOException {
+        if (message == null) {
+            throw new IllegalArgumentException("message");
+        }
+        send(message);
+    }
+
+    /**
+     * Sends a command to the remote node, or buffers it if there's no established session.
+     * @param command
+     */
+    @Override
+    public void sendCommand(Command command) throws IOException {
+        if (command == null) {
+            throw new IllegalArgumentException("command");
+        }
+        send(command);
+    }
+
+    /**
+     * Sends a notification to the remote node, or buffers it if there's no established session.
+     * @param notification
+     */
+    @Override
+    public void sendNotification(Notification notification) throws IOException {
+        if (notification == null) {
+            throw new IllegalArgumentException("notification");
+        }
+        send(notification);
+    }
+
+    /**
+     * Sets the listener for receiving messages from the current and next sessions.
+     * @param listener
+     * @param removeAfterReceive
+     */
+    @Override
+    public void addMessageListener(final MessageChannelListener listener, boolean removeAfterReceive) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        MessageChannelListener channelListener = listener;
+        if (removeAfterReceive) {
+            channelListener = new MessageChannelListener() {
+                @Override
+                public void onReceiveMessage(Message message) {
+                    if (messageListeners.remove(listener, this)) {
+                        ClientChannel channel = ResilientClientChannel.this.channel;
+                        if (channel != null) {
+                            channel.removeMessageListener(this);
+                        }
+                        listener.onReceiveMessage(message);
+                    }
+                }
+            };
+        }
+        if (messageListeners.putIfAbsent(listener, channelListener) == null) {
+            ClientChannel channel = this.channel;
+            if (channel != null) {
+                channel.addMessageListener(channelListener, false);
+            }
+        }
+    }
+
+    /**
+     * Removes the specified listener.
+     * @param listener
+     */
+    @Override
+    public void removeMessageListener(MessageChannelListener listener) {
+        MessageChannelListener channelListener = messageListeners.remove(listener);
+        ClientChannel channel = this.channel;
+        if (channelListener != null && channel != null) {
+            channel.removeMessageListener(channelListener);
+        }
+    }
+
+    /**
+     * Sets the listener for receiving commands from the current and next sessions.
+     * @param listener
+     * @param removeAfterReceive
+     */
+    @Override
+    public void addCommandListener(final CommandChannelListener listener, boolean removeAfterReceive) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        CommandChannelListener channelListener = listener;
+        if (removeAfterReceive) {
+            channelListener = new CommandChannelListener() {
+                @Override
+                public void onReceiveCommand(Command command) {
+                    if (commandListeners.remove(listener, this)) {
+                        ClientChannel channel = ResilientClientChannel.this.channel;
+                        if (channel != null) {
+                            channel.removeCommandListener(this);
+                        }
+                        listener.onReceiveCommand(command);
+                    }
+                }
+            };
+        }
+        if (commandListeners.putIfAbsent(listener, channelListener) == null) {
+            ClientChannel channel = this.channel;
+            if (channel != null) {
+                channel.addCommandListener(channelListener, false);
+            }
+        }
+    }
+
+    /**
+     * Removes the specified listener.
+     * @param listener
+     */
+    @Override
+    public void removeCommandListener(CommandChannelListener listener) {
+        CommandChannelListener channelListener = commandListeners.remove(listener);
+        ClientChannel channel = this.channel;
+        if (channelListener != null && channel != null) {
+            channel.removeCommandListener(channelListener);
+        }
+    }
+
+    /**
+     * Sets the listener for receiving notifications from the current and next sessions.
+     * @param listener
+     * @param removeAfterReceive
+     */
+    @Override
+    public void addNotificationListener(final NotificationChannelListener listener, boolean removeAfterReceive) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        NotificationChannelListener channelListener = listener;
+        if (removeAfterReceive) {
+            channelListener = new NotificationChannelListener() {
+                @Override
+                public void onReceiveNotification(Notification notification) {
+                    if (notificationListeners.remove(listener, this)) {
+                        ClientChannel channel = ResilientClientChannel.this.channel;
+                        if (channel != null) {
+                            channel.removeNotificationListener(this);
+                        }
+                        listener.onReceiveNotification(notification);
+                    }
+                }
+            };
+        }
+        if (notificationListeners.putIfAbsent(listener, channelListener) == null) {
+            ClientChannel channel = this.channel;
+            if (channel != null) {
+                channel.addNotificationListener(channelListener, false);
+            }
+        }
+    }
+
+    /**
+     * Removes the specified listener.
+     * @param listener
+     */
+    @Override
+    public void removeNotificationListener(NotificationChannelListener listener) {
+        NotificationChannelListener channelListener = notificationListeners.remove(listener);
+        ClientChannel channel = this.channel;
+        if (channelListener != null && channel != null) {
+            channel.removeNotificationListener(channelListener);
+        }
+    }
+
+    /**
+     * Finishes the current session and stops reconnecting.
+     * The buffered envelopes are discarded.
+     */
+    public void close() throws IOException {
+        isClosed = true;
+        bufferedEnvelopes.clear();
+        ClientChannel channel = this.channel;
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (isHealthy(channel)) {
+                channel.sendFinishingSession();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The transport is closed below
+        }
+        channel.getTransport().close();
+    }
+
+    private void send(Envelope envelope) throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("The channel is closed");
+        }
+        // A lock instead of a monitor, so a virtual thread blocked in the socket write is not pinned
+        sendLock.lock();
+        try {
+            ClientChannel channel = this.channel;
+            if (bufferedEnvelopes.isEmpty() && isHealthy(channel)) {
+                try {
+                    send(channel, envelope);
+                    return;
+                } catch (IOException | IllegalStateException e) {
+                    // Closing the transport starts the reconnection
+                    closeTransport(channel);
+                }
+            }
+            if (!bufferedEnvelopes.offer(envelope)) {
+                throw new EnvelopeSendException(envelope, new IOException("The outbound buffer is full"));
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private static void send(ClientChannel channel, Envelope envelope) throws IOException {
+        if (envelope instanceof Message) {
+            channel.sendMessage((Message) envelope);
+        } else if (envelope instanceof Notification) {
+            channel.sendNotification((Notification) envelope);
+        } else if (envelope instanceof Command) {
+            channel.sendCommand((Command) envelope);
+        }
+    }
+
+    private void connect() throws IOException {
+        final ClientChannel channel = channelFactory.create();
+        // Added instead of set, so the listener registered by the factory, if any, is kept
+        channel.getTransport().addStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                if (ResilientClientChannel.this.channel == channel) {
+                    startReconnect();
+                }
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+
+        // Registered before the session is established, for receiving the envelopes sent by the server right after it
+        channel.getMessageModules().addAll(messageModules);
+        channel.getNotificationModules().addAll(notificationModules);
+        channel.getCommandModules().addAll(commandModules);
+        for (MessageChannelListener listener : messageListeners.values()) {
+            channel.addMessageListener(listener, false);
+        }
+        for (NotificationChannelListener listener : notificationListeners.values()) {
+            channel.addNotificationListener(listener, false);
+        }
+        for (CommandChannelListener listener : commandListeners.values()) {
+            channel.addCommandListener(listener, false);
+        }
+
+        final CountDownLatch establishedLatch = new CountDownLatch(1);
+        final AtomicReference<Session> receivedSession = new AtomicReference<>();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        channel.establishSession(compression, encryption, identity, authentication, instance,
+                new ClientChannel.EstablishSessionListener() {
+                    @Override
+                    public void onFailure(Exception exception) {
+                        failure.set(exception);
+                        establishedLatch.countDown();
+                    }
+
+                    @Override
+                    public void onReceiveSession(Session session) {
+                        receivedSession.set(session);
+                        establishedLatch.countDown();
+                    }
+                });
+        try {
+            if (!establishedLatch.await(establishTimeout, TimeUnit.MILLISECONDS)) {
+                closeTransport(channel);
+                throw new IOException("The session establishment timed out");
+            }
+        } catch (InterruptedException e) {
+            closeTransport(channel);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The session establishment was interrupted");
+        }
+        if (failure.get() != null) {
+            closeTransport(channel);
+            throw new IOException("Could not establish the session", failure.get());
+        }
+        if (receivedSession.get().getState() != ESTABLISHED) {
+            closeTransport(channel);
+            throw new IOException(String.format("The session was not established, the state is '%s'", receivedSession.get().getState()));
+        }
+
+        sendLock.lock();
+        try {
+            this.channel = channel;
+            Envelope envelope;
+            while ((envelope = bufferedEnvelopes.peek()) != null) {
+                try {
+                    send(channel, envelope);
+                } catch (IOException | IllegalStateException e) {
+                    closeTransport(channel);
+                    throw new IOException("Could not send the buffered envelopes", e);
+                }
+                bufferedEnvelopes.poll();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+        if (isClosed) {
+            close();
+        }
+    }
+
+    private void startReconnect() {
+        if (isClosed || !isReconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = ThreadFactories.newThread(ThreadFactories.getDefault(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reconnect();
+                } finally {
+                    isReconnecting.set(false);
+                }
+                // The session may have been lost again before the flag was reset
+                ClientChannel channel = ResilientClientChannel.this.channel;
+                if (!isClosed && channel != null && !channel.getTransport().isConnected()) {
+                    startReconnect();
+                }
+            }
+        }, "lime-reconnect", true);
+        thread.start();
+    }
+
+    private void reconnect() {
+        int attempt = 0;
+        while (!isClosed) {
+            try {
+                Thread.sleep(getReconnectDelay(attempt));
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (isClosed) {
+                return;
+            }
+            try {
+                connect();
+                return;
+            } catch (IOException | RuntimeException e) {
+                attempt++;
+            }
+        }
+    }
+
+    /**
+     * Gets a random delay between the half and the full exponential backoff value,
+     * to avoid all clients reconnecting at the same time after a server restart.
+     */
+    private long getReconnectDelay(int attempt) {
+        long delay = maxReconnectDelay;
+        if (attempt < 31) {
+            delay = Math.min(maxReconnectDelay, minReconnectDelay << attempt);
+        }
+        if (delay <= 0) {
+            delay = maxReconnectDelay;
+        }
+        long halfDelay = delay / 2;
+        return halfDelay + ThreadLocalRandom.current().nextLong(delay - halfDelay + 1);
+    }
+
+    private static boolean isHealthy(ClientChannel channel) {
+        return channel != null && channel.getState() == ESTABLISHED && channel.getTransport().isConnected();
+    }
+
+    private static void closeTransport(ClientChannel channel) {
+        try {
+            channel.getTransport().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
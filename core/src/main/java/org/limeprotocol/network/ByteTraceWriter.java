@@ -0,0 +1,16 @@
+package org.limeprotocol.network;
+
+/**
+ * Trace writer that receives the raw frames, so the transports don't need to decode them to strings.
+ */
+public interface ByteTraceWriter extends TraceWriter {
+    /**
+     * Trace a slice of a UTF-8 encoded buffer.
+     * The buffer can be reused by the caller after the method returns, so it must be copied if kept.
+     * @param buffer
+     * @param offset
+     * @param length
+     * @param operation
+     */
+    void trace(byte[] buffer, int offset, int length, DataOperation operation);
+}
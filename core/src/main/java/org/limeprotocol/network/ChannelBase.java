@@ -8,6 +8,8 @@ import org.limeprotocol.network.modules.ReplyPingChannelModule;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.limeprotocol.Session.SessionState.*;
 
@@ -33,6 +35,9 @@ public abstract class ChannelBase implements Channel {
     private final Queue<MessageChannelListener> singleReceiveMessageListeners;
     private final Queue<SessionChannelListener> sessionChannelListeners;
     private final Transport.TransportEnvelopeListener transportEnvelopeListener;
+    // Locks instead of monitors, since the listeners may block and the transport listener can be a virtual thread
+    private final Lock receiveLock;
+    private final Lock stateLock;
 
     protected ChannelBase(Transport transport, boolean fillEnvelopeRecipients, boolean autoReplyPings, long pingInterval, long pingDisconnectionInterval) {
         if (transport == null) {
@@ -51,6 +56,8 @@ public abstract class ChannelBase implements Channel {
         singleReceiveMessageListeners = new LinkedBlockingQueue<>();
         sessionChannelListeners = new LinkedBlockingQueue<>();
         transportEnvelopeListener = new ChannelTransportEnvelopeListener();
+        receiveLock = new ReentrantLock();
+        stateLock = new ReentrantLock();
 
         setState(NEW);
 
@@ -130,15 +137,20 @@ public abstract class ChannelBase implements Channel {
         return state;
     }
 
-    protected synchronized void setState(Session.SessionState state) {
+    protected void setState(Session.SessionState state) {
         if (state == null) {
             throw new IllegalArgumentException("state");
         }
-        this.state = state;
-
-        onStateChanged(messageModules, state);
-        onStateChanged(notificationModules, state);
-        onStateChanged(commandModules, state);
+        stateLock.lock();
+        try {
+            this.state = state;
+
+            onStateChanged(messageModules, state);
+            onStateChanged(notificationModules, state);
+            onStateChanged(commandModules, state);
+        } finally {
+            stateLock.unlock();
+        }
     }
 
     @Override
@@ -271,56 +283,76 @@ public abstract class ChannelBase implements Channel {
      * @param listener
      */
     @Override
-    public synchronized void enqueueSessionListener(SessionChannelListener listener) {
+    public void enqueueSessionListener(SessionChannelListener listener) {
         if (listener == null) {
             throw new IllegalArgumentException("listener");
         }
-        sessionChannelListeners.add(listener);
-        setupTransportListener();
+        stateLock.lock();
+        try {
+            sessionChannelListeners.add(listener);
+            setupTransportListener();
+        } finally {
+            stateLock.unlock();
+        }
     }
 
-    protected synchronized void raiseOnReceiveMessage(Message message) {
-        ensureSessionEstablished();
+    protected void raiseOnReceiveMessage(Message message) {
+        receiveLock.lock();
+        try {
+            ensureSessionEstablished();
 
-        message = invokeModulesOnReceiving(message, messageModules);
-        if (message != null) {
-            for (MessageChannelListener listener : snapshot(singleReceiveMessageListeners, messageListeners)) {
-                try {
-                    listener.onReceiveMessage(message);
-                } catch (Exception e) {
-                    e.printStackTrace();
+            message = invokeModulesOnReceiving(message, messageModules);
+            if (message != null) {
+                for (MessageChannelListener listener : snapshot(singleReceiveMessageListeners, messageListeners)) {
+                    try {
+                        listener.onReceiveMessage(message);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+        } finally {
+            receiveLock.unlock();
         }
     }
 
-    protected synchronized void raiseOnReceiveCommand(Command command) {
-        ensureSessionEstablished();
+    protected void raiseOnReceiveCommand(Command command) {
+        receiveLock.lock();
+        try {
+            ensureSessionEstablished();
 
-        command = invokeModulesOnReceiving(command, commandModules);
-        if (command != null) {
-            for (CommandChannelListener listener : snapshot(singleReceiveCommandListeners, commandListeners)) {
-                try {
-                    listener.onReceiveCommand(command);
-                } catch (Exception e) {
-                    e.printStackTrace();
+            command = invokeModulesOnReceiving(command, commandModules);
+            if (command != null) {
+                for (CommandChannelListener listener : snapshot(singleReceiveCommandListeners, commandListeners)) {
+                    try {
+                        listener.onReceiveCommand(command);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+        } finally {
+            receiveLock.unlock();
         }
     }
 
-    protected synchronized void raiseOnReceiveNotification(Notification notification) {
-        ensureSessionEstablished();
+    protected void raiseOnReceiveNotification(Notification notification) {
+        receiveLock.lock();
+        try {
+            ensureSessionEstablished();
 
-        notification = invokeModulesOnReceiving(notification, notificationModules);
-        if (notification != null) {
-            for (NotificationChannelListener listener : snapshot(singleReceiveNotificationListeners, notificationListeners)) {
-                try {
-                    listener.onReceiveNotification(notification);
-                } catch (Exception e) {
-                    e.printStackTrace();
+            notification = invokeModulesOnReceiving(notification, notificationModules);
+            if (notification != null) {
+                for (NotificationChannelListener listener : snapshot(singleReceiveNotificationListeners, notificationListeners)) {
+                    try {
+                        listener.onReceiveNotification(notification);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+        } finally {
+            receiveLock.unlock();
         }
     }
 
@@ -333,20 +365,34 @@ public abstract class ChannelBase implements Channel {
         return envelope;
     }
 
-    protected synchronized void raiseOnReceiveSession(Session session) {
-        if (getState() != ESTABLISHED) {
-            // Remove the envelope listener to signal the transport
-            // that we are not expecting another envelope for now.
-            transport.setEnvelopeListener(null);
-        }
+    protected void raiseOnReceiveSession(Session session) {
+        receiveLock.lock();
+        try {
+            if (getState() != ESTABLISHED) {
+                // Remove the envelope listener to signal the transport
+                // that we are not expecting another envelope for now.
+                transport.setEnvelopeListener(null);
+            }
 
-        // Remove the first listener of the queue
-        SessionChannelListener listener = sessionChannelListeners.poll();
-        if (listener != null) {
-            listener.onReceiveSession(session);
+            // Remove the first listener of the queue
+            SessionChannelListener listener = sessionChannelListeners.poll();
+            if (listener != null) {
+                listener.onReceiveSession(session);
+            }
+        } finally {
+            receiveLock.unlock();
         }
     }
 
+    /**
+     * Gets the lock held while the received envelopes are raised to the listeners,
+     * for the overrides of the raiseOnReceive methods that change the channel before calling the base method.
+     * @return
+     */
+    protected final Lock getReceiveLock() {
+        return receiveLock;
+    }
+
 
     private void ensureSessionEstablished() {
         if (getState() != ESTABLISHED) {
@@ -354,8 +400,17 @@ public abstract class ChannelBase implements Channel {
         }
     }
     
-    private synchronized void setupTransportListener() {
-        transport.setEnvelopeListener(transportEnvelopeListener);
+    /**
+     * Registers the channel listener in the transport,
+     * resuming the envelopes reception after a session envelope is received.
+     */
+    protected void setupTransportListener() {
+        stateLock.lock();
+        try {
+            transport.setEnvelopeListener(transportEnvelopeListener);
+        } finally {
+            stateLock.unlock();
+        }
     }
 
     private <TListener> void addListener(TListener listener, boolean removeAfterReceive, Set<TListener> listeners, Queue<TListener> singleReceiveListeners) {
@@ -0,0 +1,30 @@
+package org.limeprotocol.network;
+
+import org.limeprotocol.Envelope;
+
+import java.io.IOException;
+
+/**
+ * Indicates that an envelope accepted by a transport for asynchronous sending could not be delivered.
+ * It is reported to the transport state listener, once for each failed envelope.
+ */
+public class EnvelopeSendException extends IOException {
+
+    private final Envelope envelope;
+
+    public EnvelopeSendException(Envelope envelope, Throwable cause) {
+        super("Could not send the envelope with id '" + (envelope != null ? envelope.getId() : null) + "'", cause);
+        if (envelope == null) {
+            throw new IllegalArgumentException("envelope");
+        }
+        this.envelope = envelope;
+    }
+
+    /**
+     * Gets the envelope that was not sent.
+     * @return
+     */
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+}
@@ -0,0 +1,267 @@
+package org.limeprotocol.network;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transport that connects two endpoints in the same process.
+ * The envelope instances are handed to the remote endpoint through a bounded queue, without serialization,
+ * so the sender should not change an envelope after sending it.
+ * A send waits for the remote queue capacity up to a timeout, so two endpoints that send from their listener
+ * threads to each other with full queues fail instead of waiting forever.
+ * Each endpoint raises the received envelopes in its own listener thread.
+ * Closing an endpoint closes the remote endpoint after it receives the pending envelopes, like a socket shutdown.
+ */
+public class InProcessTransport extends TransportBase implements Transport {
+
+    public final static int DEFAULT_CAPACITY = 1024;
+    public final static long DEFAULT_SEND_TIMEOUT = 30000;
+
+    // Interval for checking the queue capacity when the remote endpoint is not consuming
+    private final static long CAPACITY_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Queue<Envelope> queue;
+    private final AtomicInteger queuedCount;
+    private final int capacity;
+    private final long sendTimeout;
+    private final EnvelopeListener envelopeListener;
+
+    private InProcessTransport remoteTransport;
+    // Read by the listener thread without synchronization
+    private volatile TransportEnvelopeListener transportEnvelopeListener;
+    private volatile boolean isConnected;
+    private volatile boolean isRemoteClosed;
+
+    private InProcessTransport(int capacity, long sendTimeout) {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queuedCount = new AtomicInteger();
+        this.capacity = capacity;
+        this.sendTimeout = sendTimeout;
+        this.envelopeListener = new EnvelopeListener();
+        this.isConnected = true;
+    }
+
+    /**
+     * Creates two connected transports.
+     * @return The two endpoints of the connection.
+     */
+    public static InProcessTransport[] createPair() {
+        return createPair(DEFAULT_CAPACITY, ThreadFactories.getDefault());
+    }
+
+    /**
+     * Creates two connected transports.
+     * @param capacity The maximum number of envelopes waiting to be received by each endpoint.
+     *                 The senders wait when the remote endpoint queue is full.
+     * @param threadFactory The factory for the listener threads.
+     * @return The two endpoints of the connection.
+     */
+    public static InProcessTransport[] createPair(int capacity, ThreadFactory threadFactory) {
+        return createPair(capacity, DEFAULT_SEND_TIMEOUT, threadFactory);
+    }
+
+    /**
+     * Creates two connected transports.
+     * @param capacity The maximum number of envelopes waiting to be received by each endpoint.
+     *                 The senders wait when the remote endpoint queue is full.
+     * @param sendTimeout The maximum time, in milliseconds, that a sender waits for the remote queue capacity.
+     * @param threadFactory The factory for the listener threads.
+     * @return The two endpoints of the connection.
+     */
+    public static InProcessTransport[] createPair(int capacity, long sendTimeout, ThreadFactory threadFactory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        if (sendTimeout <= 0) {
+            throw new IllegalArgumentException("sendTimeout");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        InProcessTransport transport1 = new InProcessTransport(capacity, sendTimeout);
+        InProcessTransport transport2 = new InProcessTransport(capacity, sendTimeout);
+        transport1.remoteTransport = transport2;
+        transport2.remoteTransport = transport1;
+        transport1.envelopeListener.start(ThreadFactories.newThread(threadFactory, transport1.envelopeListener, "lime-inprocess-listener", true));
+        transport2.envelopeListener.start(ThreadFactories.newThread(threadFactory, transport2.envelopeListener, "lime-inprocess-listener", true));
+        return new InProcessTransport[] { transport1, transport2 };
+    }
+
+    /**
+     * Sends an envelope to the remote endpoint.
+     * If the remote queue is full, waits until the remote endpoint receives some envelope.
+     *
+     * @param envelope
+     * @throws IOException If the transport is closed or the remote queue is still full after the send timeout.
+     */
+    @Override
+    public void send(Envelope envelope) throws IOException {
+        if (envelope == null) {
+            throw new IllegalArgumentException("envelope");
+        }
+        if (!isConnected) {
+            throw new IOException("The transport is closed");
+        }
+        long deadline = 0;
+        while (!remoteTransport.offer(envelope)) {
+            if (!isConnected || !remoteTransport.isConnected()) {
+                throw new IOException("The transport is closed");
+            }
+            if (deadline == 0) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeout);
+            } else if (System.nanoTime() - deadline >= 0) {
+                throw new IOException("The remote queue is still full after the send timeout");
+            }
+            LockSupport.parkNanos(this, CAPACITY_WAIT_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Interrupted while waiting for the remote queue capacity");
+            }
+        }
+    }
+
+    @Override
+    public void setEnvelopeListener(TransportEnvelopeListener listener) {
+        super.setEnvelopeListener(listener);
+        this.transportEnvelopeListener = listener;
+        if (listener != null) {
+            // Resumes the delivery of the queued envelopes
+            envelopeListener.wakeUp();
+        }
+    }
+
+    @Override
+    protected TransportEnvelopeListener getEnvelopeListener() {
+        return transportEnvelopeListener;
+    }
+
+    /**
+     * Checks if the transport is connected.
+     * @return
+     */
+    @Override
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * Gets the number of envelopes waiting to be received by this endpoint.
+     * @return
+     */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * The transport pair is connected when created, so there's nothing to open.
+     *
+     * @param uri
+     */
+    @Override
+    protected void performOpen(URI uri) throws IOException {
+        if (!isConnected) {
+            throw new IllegalStateException("The transport is closed and cannot be reopened");
+        }
+    }
+
+    @Override
+    protected void performClose() throws IOException {
+        if (!isConnected) {
+            return;
+        }
+        isConnected = false;
+        envelopeListener.stop();
+        remoteTransport.onRemoteClosed();
+    }
+
+    private boolean offer(Envelope envelope) {
+        if (!isConnected) {
+            return false;
+        }
+        if (queuedCount.incrementAndGet() > capacity) {
+            queuedCount.decrementAndGet();
+            return false;
+        }
+        queue.add(envelope);
+        envelopeListener.wakeUp();
+        return true;
+    }
+
+    private void onRemoteClosed() {
+        isRemoteClosed = true;
+        envelopeListener.wakeUp();
+    }
+
+    /**
+     * Raises the queued envelopes while there's an envelope listener registered.
+     */
+    private class EnvelopeListener implements Runnable {
+
+        private volatile Thread thread;
+        private volatile boolean isWaiting;
+
+        void start(Thread thread) {
+            this.thread = thread;
+            thread.start();
+        }
+
+        void wakeUp() {
+            if (isWaiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void stop() {
+            Thread thread = this.thread;
+            if (thread != null && thread != Thread.currentThread()) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (isConnected) {
+                Envelope envelope = null;
+                if (getEnvelopeListener() != null) {
+                    envelope = queue.poll();
+                }
+                if (envelope != null) {
+                    queuedCount.decrementAndGet();
+                    try {
+                        raiseOnReceive(envelope);
+                    } catch (Exception e) {
+                        raiseOnException(e);
+                    }
+                    continue;
+                }
+                if (isRemoteClosed && queue.isEmpty()) {
+                    // All the envelopes sent by the remote endpoint were received
+                    closeFromRemote();
+                    return;
+                }
+                isWaiting = true;
+                if (isConnected && (getEnvelopeListener() == null || (queue.isEmpty() && !isRemoteClosed))) {
+                    LockSupport.park(this);
+                }
+                isWaiting = false;
+            }
+        }
+
+        private void closeFromRemote() {
+            try {
+                InProcessTransport.this.close();
+            } catch (IOException e) {
+                raiseOnException(e);
+            }
+        }
+    }
+}
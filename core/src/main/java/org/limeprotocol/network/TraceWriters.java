@@ -0,0 +1,28 @@
+package org.limeprotocol.network;
+
+import java.nio.charset.Charset;
+
+/**
+ * Utility methods for tracing the raw frames with any {@link TraceWriter} implementation.
+ */
+public class TraceWriters {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Trace a slice of a UTF-8 encoded buffer.
+     * If the trace writer doesn't support bytes, the slice is decoded to a string.
+     * @param traceWriter
+     * @param buffer
+     * @param offset
+     * @param length
+     * @param operation
+     */
+    public static void trace(TraceWriter traceWriter, byte[] buffer, int offset, int length, TraceWriter.DataOperation operation) {
+        if (traceWriter instanceof ByteTraceWriter) {
+            ((ByteTraceWriter) traceWriter).trace(buffer, offset, length, operation);
+        } else {
+            traceWriter.trace(new String(buffer, offset, length, UTF8), operation);
+        }
+    }
+}
@@ -30,6 +30,19 @@ public interface Transport extends Closeable {
      * @param transportStateListener
      */
     void setStateListener(TransportStateListener transportStateListener);
+
+    /**
+     *  Adds a listener for receiving state change events, which is raised after the one registered by
+     *  {@link #setStateListener(TransportStateListener)}.
+     * @param transportStateListener
+     */
+    void addStateListener(TransportStateListener transportStateListener);
+
+    /**
+     *  Removes a listener added by {@link #addStateListener(TransportStateListener)}.
+     * @param transportStateListener
+     */
+    void removeStateListener(TransportStateListener transportStateListener);
     
     /**
      * Opens the transport connection with the specified Uri.
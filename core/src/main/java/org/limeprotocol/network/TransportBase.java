@@ -7,6 +7,9 @@ import org.limeprotocol.SessionEncryption;
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  *  Base class for transport implementation.
@@ -17,12 +20,16 @@ public abstract class TransportBase implements Transport {
     private SessionEncryption encryption;
     private TransportEnvelopeListener transportEnvelopeListener;
     private TransportStateListener transportStateListener;
+    private final Collection<TransportStateListener> transportStateListeners;
+    private final Lock closeLock;
     private boolean closingInvoked;
     private boolean closedInvoked;
 
     protected TransportBase() {
         compression = SessionCompression.NONE;
         encryption = SessionEncryption.NONE;
+        closeLock = new ReentrantLock();
+        transportStateListeners = new CopyOnWriteArrayList<>();
     }
 
     @Override
@@ -34,6 +41,19 @@ public abstract class TransportBase implements Transport {
     public void setStateListener(TransportStateListener listener) {
         this.transportStateListener = listener;
     }
+
+    @Override
+    public void addStateListener(TransportStateListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        transportStateListeners.add(listener);
+    }
+
+    @Override
+    public void removeStateListener(TransportStateListener listener) {
+        transportStateListeners.remove(listener);
+    }
     
     @Override
     public SessionCompression[] getSupportedCompression() {
@@ -72,23 +92,34 @@ public abstract class TransportBase implements Transport {
     }
 
     @Override
-    public synchronized void close() throws IOException {
-        if (!closingInvoked) {
-            raiseOnClosing();
-            closingInvoked = true;
-        }
-        performClose();
-        if (!closedInvoked) {
-            raiseOnClosed();
-            closedInvoked = true;
+    public void close() throws IOException {
+        // A lock instead of a monitor, so a virtual thread closing the socket or raising the listeners is not pinned
+        closeLock.lock();
+        try {
+            if (!closingInvoked) {
+                raiseOnClosing();
+                closingInvoked = true;
+            }
+            performClose();
+            if (!closedInvoked) {
+                raiseOnClosed();
+                closedInvoked = true;
+            }
+        } finally {
+            closeLock.unlock();
         }
     }
 
     @Override
     public void open(URI uri) throws IOException{
         performOpen(uri);
-        closingInvoked = false;
-        closedInvoked = false;
+        closeLock.lock();
+        try {
+            closingInvoked = false;
+            closedInvoked = false;
+        } finally {
+            closeLock.unlock();
+        }
     }
 
     /**
@@ -117,28 +148,43 @@ public abstract class TransportBase implements Transport {
 
     protected void raiseOnException(Exception e) {
         TransportStateListener listener = getStateListener();
+        if (listener == null && transportStateListeners.isEmpty()) {
+            System.out.println("An transport exception was received while there's no listener registered: " + e.toString());
+            return;
+        }
         if (listener != null) {
             listener.onException(e);
-        } else {
-            System.out.println("An transport exception was received while there's no listener registered: " + e.toString());
+        }
+        for (TransportStateListener addedListener : transportStateListeners) {
+            addedListener.onException(e);
         }
     }
 
     protected void raiseOnClosing() {
         TransportStateListener listener = getStateListener();
+        if (listener == null && transportStateListeners.isEmpty()) {
+            System.out.println("The transport is about to be closed while there's no listener registered");
+            return;
+        }
         if (listener != null) {
             listener.onClosing();
-        } else {
-            System.out.println("The transport is about to be closed while there's no listener registered");
+        }
+        for (TransportStateListener addedListener : transportStateListeners) {
+            addedListener.onClosing();
         }
     }
 
     protected void raiseOnClosed() {
         TransportStateListener listener = getStateListener();
+        if (listener == null && transportStateListeners.isEmpty()) {
+            System.out.println("The transport was closed while there's no listener registered");
+            return;
+        }
         if (listener != null) {
             listener.onClosed();
-        } else {
-            System.out.println("The transport was closed while there's no listener registered");
+        }
+        for (TransportStateListener addedListener : transportStateListeners) {
+            addedListener.onClosed();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package org.limeprotocol.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Defines a listener that accepts the connections from remote nodes as transports.
+ */
+public interface TransportListener extends Closeable {
+
+    /**
+     * Gets the listening URIs.
+     * After the listener is started, the URIs contain the bound addresses.
+     * @return
+     */
+    URI[] getListenerUris();
+
+    /**
+     * Starts listening for connections.
+     * The accept listener must be registered before the call.
+     */
+    void start() throws IOException;
+
+    /**
+     * Stops listening for connections.
+     * The transports already accepted are not affected.
+     */
+    void stop() throws IOException;
+
+    /**
+     * Indicates if the listener is accepting connections.
+     * @return
+     */
+    boolean isListening();
+
+    /**
+     * Register the specified listener for receiving the accepted transports.
+     * @param transportAcceptListener
+     */
+    void setAcceptListener(TransportAcceptListener transportAcceptListener);
+
+    /**
+     * Defines a listener for the accepted transports.
+     */
+    public interface TransportAcceptListener {
+        /**
+         * Occurs when a connection is accepted.
+         * The transport is already open and doesn't receive envelopes until an envelope listener is registered.
+         * @param transport
+         */
+        void onAccept(Transport transport);
+
+        /**
+         * Occurs when an exception is thrown while accepting a connection.
+         * @param e The thrown exception.
+         */
+        void onException(Exception e);
+    }
+}
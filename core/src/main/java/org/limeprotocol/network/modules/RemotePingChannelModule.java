@@ -4,6 +4,8 @@ import org.limeprotocol.*;
 import org.limeprotocol.client.ClientChannel;
 import org.limeprotocol.network.Channel;
 import org.limeprotocol.network.ChannelModule;
+import org.limeprotocol.server.ServerChannel;
+import org.limeprotocol.util.ThreadFactories;
 
 import java.util.UUID;
 import java.util.concurrent.*;
@@ -58,7 +60,7 @@ public final class RemotePingChannelModule implements ChannelModule {
     }
 
     public static RemotePingChannelModule createAndRegister(Channel channel, long pingInterval, long pingDisconnectionInterval) {
-        return createAndRegister(channel, pingInterval, pingDisconnectionInterval, Executors.newSingleThreadScheduledExecutor());
+        return createAndRegister(channel, pingInterval, pingDisconnectionInterval, Executors.newSingleThreadScheduledExecutor(ThreadFactories.getDefault()));
     }
 
     public static RemotePingChannelModule createAndRegister(Channel channel, long pingInterval, long pingDisconnectionInterval, ScheduledExecutorService executor) {
@@ -104,6 +106,8 @@ public final class RemotePingChannelModule implements ChannelModule {
                         schedulePing();
                     } else if (channel instanceof ClientChannel) {
                         ((ClientChannel) channel).sendFinishingSession();
+                    } else if (channel instanceof ServerChannel) {
+                        ((ServerChannel) channel).sendFinishedSession();
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
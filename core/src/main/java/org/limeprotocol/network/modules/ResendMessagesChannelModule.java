@@ -6,6 +6,7 @@ import org.limeprotocol.Notification;
 import org.limeprotocol.Session;
 import org.limeprotocol.network.Channel;
 import org.limeprotocol.network.ChannelModule;
+import org.limeprotocol.util.ThreadFactories;
 
 import java.io.IOException;
 import java.util.*;
@@ -25,6 +26,7 @@ public final class ResendMessagesChannelModule implements ChannelModule {
     private final Notification.Event expectedEvent;
     private final ConcurrentMap<String, SentMessage> sentMessageMap;
     private final BlockingQueue<SentMessage> sentMessageQueue;
+    private final ThreadFactory threadFactory;
 
     private Channel channel;
     private boolean unbindWhenClosed;
@@ -35,12 +37,25 @@ public final class ResendMessagesChannelModule implements ChannelModule {
     }
 
     public ResendMessagesChannelModule(int resendMessageTryCount, long resendMessageInterval, Notification.Event expectedEvent) {
+        this(resendMessageTryCount, resendMessageInterval, expectedEvent, ThreadFactories.getDefault());
+    }
+
+    /**
+     * Creates a module that consumes the sent messages queue in a thread created by the specified factory.
+     * @param resendMessageTryCount
+     * @param resendMessageInterval
+     * @param expectedEvent
+     * @param threadFactory
+     */
+    public ResendMessagesChannelModule(int resendMessageTryCount, long resendMessageInterval, Notification.Event expectedEvent, ThreadFactory threadFactory) {
         if (expectedEvent == Notification.Event.FAILED) throw new IllegalArgumentException("Invalid expected event");
+        if (threadFactory == null) throw new IllegalArgumentException("threadFactory");
         this.resendMessageTryCount = resendMessageTryCount;
         this.resendMessageInterval = resendMessageInterval;
         this.expectedEvent = expectedEvent;
         this.sentMessageMap = new ConcurrentHashMap<>();
         this.sentMessageQueue = new ArrayBlockingQueue<>(100);
+        this.threadFactory = threadFactory;
     }
 
     public boolean isBound() {
@@ -79,9 +94,7 @@ public final class ResendMessagesChannelModule implements ChannelModule {
     @Override
     public synchronized void onStateChanged(Session.SessionState state) {
         if (state == ESTABLISHED) {
-            consumerThread = new Thread(
-                new QueueConsumer()
-            );
+            consumerThread = ThreadFactories.newThread(threadFactory, new QueueConsumer(), "lime-resend", false);
             consumerThread.start();
         } else if (unbindWhenClosed && (state == FINISHED || state == FAILED)) {
             unbind();
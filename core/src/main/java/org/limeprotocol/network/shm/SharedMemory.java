@@ -0,0 +1,93 @@
+package org.limeprotocol.network.shm;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Ordered access to the memory of direct buffers, like the mapped files shared with other processes.
+ * The ByteBuffer methods don't define the visibility of the writes to other threads or processes,
+ * so the ring buffer positions are written with release semantics and read with acquire semantics
+ * by the {@link Unsafe} methods, which are available in the HotSpot based runtimes.
+ */
+final class SharedMemory {
+
+    private final static Unsafe UNSAFE;
+    private final static long ADDRESS_OFFSET;
+    private final static long BYTE_ARRAY_BASE_OFFSET;
+
+    static {
+        Unsafe unsafe = null;
+        long addressOffset = 0;
+        long byteArrayBaseOffset = 0;
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = (Unsafe) field.get(null);
+            addressOffset = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            byteArrayBaseOffset = unsafe.arrayBaseOffset(byte[].class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+        }
+        UNSAFE = unsafe;
+        ADDRESS_OFFSET = addressOffset;
+        BYTE_ARRAY_BASE_OFFSET = byteArrayBaseOffset;
+    }
+
+    private SharedMemory() {
+    }
+
+    static boolean isSupported() {
+        return UNSAFE != null;
+    }
+
+    /**
+     * Gets the address of the memory of a direct buffer.
+     * The buffer must be referenced while the address is used, since the memory is released with it.
+     * @param buffer
+     * @return
+     */
+    static long getAddress(ByteBuffer buffer) {
+        if (UNSAFE == null) {
+            throw new UnsupportedOperationException("The shared memory access is not supported by the runtime");
+        }
+        if (buffer == null || !buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer");
+        }
+        return UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+    }
+
+    static int getIntVolatile(long address) {
+        return UNSAFE.getIntVolatile(null, address);
+    }
+
+    static void putIntOrdered(long address, int value) {
+        UNSAFE.putOrderedInt(null, address, value);
+    }
+
+    static boolean compareAndSetInt(long address, int expected, int value) {
+        return UNSAFE.compareAndSwapInt(null, address, expected, value);
+    }
+
+    static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    static void putLongOrdered(long address, long value) {
+        UNSAFE.putOrderedLong(null, address, value);
+    }
+
+    static void copy(byte[] source, int offset, long address, int length) {
+        UNSAFE.copyMemory(source, BYTE_ARRAY_BASE_OFFSET + offset, null, address, length);
+    }
+
+    static void copy(long address, byte[] destination, int offset, int length) {
+        UNSAFE.copyMemory(null, address, destination, BYTE_ARRAY_BASE_OFFSET + offset, length);
+    }
+
+    static void zero(long address, int length) {
+        UNSAFE.setMemory(address, length, (byte) 0);
+    }
+}
@@ -0,0 +1,172 @@
+package org.limeprotocol.network.shm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Single producer and single consumer ring buffer of length prefixed frames, in a region of a direct buffer.
+ * The region starts with the consumer position, in its own cache lines, followed by the frames.
+ * Each frame has a 4 bytes length header and is aligned to 8 bytes. A frame is published by the ordered write
+ * of its header after the payload, and the consumer zeroes the frames that it reads before releasing the space,
+ * so a zero header indicates that there is no frame to read. A frame that doesn't fit in the end of the region
+ * is written in the start, after a padding header.
+ * The producer and the consumer can be in different processes, but each side must be used by a single thread at a time.
+ */
+final class SharedMemoryRing {
+
+    /**
+     * The length of the region header.
+     */
+    final static int HEADER_LENGTH = 128;
+
+    private final static int FRAME_HEADER_LENGTH = 4;
+    private final static int FRAME_ALIGNMENT = 8;
+    private final static int PADDING_FRAME = -1;
+
+    // Keeps the memory referenced while the addresses are used
+    private final ByteBuffer buffer;
+    private final long headAddress;
+    private final long dataAddress;
+    private final int capacity;
+    private final int mask;
+
+    // Producer state
+    private long tail;
+    private long headCache;
+
+    // Consumer state
+    private long head;
+
+    /**
+     * @param buffer A direct buffer, like a mapped file.
+     * @param offset The offset of the region in the buffer, multiple of 8.
+     * @param capacity The length of the frames space, power of 2.
+     */
+    SharedMemoryRing(ByteBuffer buffer, int offset, int capacity) {
+        if (buffer == null || !buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer");
+        }
+        if (offset < 0 || offset % FRAME_ALIGNMENT != 0) {
+            throw new IllegalArgumentException("offset");
+        }
+        if (capacity < FRAME_ALIGNMENT * 2 || Integer.bitCount(capacity) != 1 ||
+                (long) offset + getLength(capacity) > buffer.capacity()) {
+            throw new IllegalArgumentException("capacity");
+        }
+        this.buffer = buffer;
+        this.headAddress = SharedMemory.getAddress(buffer) + offset;
+        this.dataAddress = headAddress + HEADER_LENGTH;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.head = SharedMemory.getLongVolatile(headAddress);
+        this.headCache = head;
+        this.tail = findTail(head);
+    }
+
+    /**
+     * Gets the length of a region with the specified capacity.
+     * @param capacity
+     * @return
+     */
+    static int getLength(int capacity) {
+        return HEADER_LENGTH + capacity;
+    }
+
+    /**
+     * Gets the maximum payload length of a frame.
+     * It's limited to half of the capacity, so a frame always fits after a padding.
+     * @return
+     */
+    int getMaxFrameLength() {
+        return capacity / 2 - FRAME_HEADER_LENGTH;
+    }
+
+    /**
+     * Writes a frame, if there's space. Must be called only by the producer.
+     * @param payload
+     * @param offset
+     * @param length
+     * @return false if the ring is full.
+     */
+    boolean offer(byte[] payload, int offset, int length) {
+        if (length <= 0 || length > getMaxFrameLength()) {
+            throw new IllegalArgumentException("length");
+        }
+        int frameLength = align(FRAME_HEADER_LENGTH + length);
+        int index = (int) (tail & mask);
+        int toEnd = capacity - index;
+        int required = frameLength > toEnd ? toEnd + frameLength : frameLength;
+        if (capacity - (tail - headCache) < required) {
+            headCache = SharedMemory.getLongVolatile(headAddress);
+            if (capacity - (tail - headCache) < required) {
+                return false;
+            }
+        }
+        if (frameLength > toEnd) {
+            SharedMemory.putIntOrdered(dataAddress + index, PADDING_FRAME);
+            tail += toEnd;
+            index = 0;
+        }
+        SharedMemory.copy(payload, offset, dataAddress + index + FRAME_HEADER_LENGTH, length);
+        SharedMemory.putIntOrdered(dataAddress + index, length);
+        tail += frameLength;
+        return true;
+    }
+
+    /**
+     * Reads the next frame. Must be called only by the consumer.
+     * @return The frame payload or null if the ring is empty.
+     */
+    byte[] poll() {
+        while (true) {
+            int index = (int) (head & mask);
+            long frameAddress = dataAddress + index;
+            int length = SharedMemory.getIntVolatile(frameAddress);
+            if (length == 0) {
+                return null;
+            }
+            if (length == PADDING_FRAME) {
+                // Only the header was written, the remaining space is already zeroed
+                SharedMemory.zero(frameAddress, FRAME_HEADER_LENGTH);
+                head += capacity - index;
+                SharedMemory.putLongOrdered(headAddress, head);
+                continue;
+            }
+            byte[] payload = new byte[length];
+            SharedMemory.copy(frameAddress + FRAME_HEADER_LENGTH, payload, 0, length);
+            int frameLength = align(FRAME_HEADER_LENGTH + length);
+            SharedMemory.zero(frameAddress, frameLength);
+            head += frameLength;
+            SharedMemory.putLongOrdered(headAddress, head);
+            return payload;
+        }
+    }
+
+    /**
+     * Indicates if there's no frame to read. Must be called only by the consumer.
+     * @return
+     */
+    boolean isEmpty() {
+        return SharedMemory.getIntVolatile(dataAddress + (head & mask)) == 0;
+    }
+
+    /**
+     * Finds the producer position after the frames that were not read yet,
+     * so the producer side can be attached to a ring already in use.
+     */
+    private long findTail(long head) {
+        long position = head;
+        while (position - head < capacity) {
+            int index = (int) (position & mask);
+            int length = SharedMemory.getIntVolatile(dataAddress + index);
+            if (length == 0) {
+                break;
+            }
+            position += length == PADDING_FRAME ? capacity - index : align(FRAME_HEADER_LENGTH + length);
+        }
+        return position;
+    }
+
+    private static int align(int length) {
+        return (length + FRAME_ALIGNMENT - 1) & -FRAME_ALIGNMENT;
+    }
+}
@@ -0,0 +1,403 @@
+package org.limeprotocol.network.shm;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.TraceWriters;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportBase;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializers;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transport between two processes of the same host over a memory mapped file, like a file in '/dev/shm'.
+ * The file has two single producer and single consumer ring buffers, one for each direction, with the serialized envelopes
+ * in length prefixed frames. The envelopes are exchanged without system calls, and the idle threads wait by the
+ * {@link WaitStrategy}, which defines the trade-off between the latency and the CPU usage.
+ * The server endpoint creates the file with the {@link #create(File)} methods and a client endpoint attaches to it by
+ * opening the 'net.shm' URI with the file path, like 'net.shm:///dev/shm/lime'. Each file connects a single client.
+ * Closing an endpoint closes the remote endpoint after it receives the pending envelopes, but the termination of a
+ * process without closing its endpoint is not detected.
+ * Requires a runtime with the sun.misc.Unsafe class, like the HotSpot based runtimes.
+ */
+public class SharedMemoryTransport extends TransportBase implements Transport {
+
+    public final static String URI_SCHEME = "net.shm";
+    public final static int DEFAULT_RING_CAPACITY = 1024 * 1024;
+
+    // File header layout, with the states in distinct cache lines
+    private final static int MAGIC = 0x4c494d45;
+    private final static int VERSION = 1;
+    private final static int MAGIC_OFFSET = 0;
+    private final static int VERSION_OFFSET = 4;
+    private final static int CAPACITY_OFFSET = 8;
+    private final static int SERVER_STATE_OFFSET = 64;
+    private final static int CLIENT_STATE_OFFSET = 128;
+    private final static int FILE_HEADER_LENGTH = 256;
+
+    private final static int STATE_NONE = 0;
+    private final static int STATE_ATTACHED = 1;
+    private final static int STATE_CLOSED = 2;
+
+    // Interval for checking if the remote endpoint was closed while there's no envelope listener
+    private final static long PAUSED_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final EnvelopeSerializer envelopeSerializer;
+    private final TraceWriter traceWriter;
+    private final WaitStrategy waitStrategy;
+    private final ThreadFactory threadFactory;
+    private final ReentrantLock sendLock;
+    private final EnvelopeListener envelopeListener;
+
+    private File file;
+    private MappedByteBuffer mappedBuffer;
+    private boolean isServer;
+    private long localStateAddress;
+    private long remoteStateAddress;
+    private SharedMemoryRing inboundRing;
+    private SharedMemoryRing outboundRing;
+    // Read by the listener thread without synchronization
+    private volatile TransportEnvelopeListener transportEnvelopeListener;
+    private volatile boolean isConnected;
+
+    public SharedMemoryTransport() {
+        this(new JacksonEnvelopeSerializer(), null);
+    }
+
+    public SharedMemoryTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter) {
+        this(envelopeSerializer, traceWriter, WaitStrategies.getDefault(), ThreadFactories.getDefault());
+    }
+
+    /**
+     * @param waitStrategy The strategy for the listener thread while there's no envelope to receive
+     *                     and for the senders while the remote ring is full.
+     * @param threadFactory The factory for the listener thread.
+     */
+    public SharedMemoryTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, WaitStrategy waitStrategy,
+                                 ThreadFactory threadFactory) {
+        if (envelopeSerializer == null) {
+            throw new IllegalArgumentException("envelopeSerializer");
+        }
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("waitStrategy");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        if (!SharedMemory.isSupported()) {
+            throw new UnsupportedOperationException("The shared memory transport is not supported by the runtime");
+        }
+        this.envelopeSerializer = envelopeSerializer;
+        this.traceWriter = traceWriter;
+        this.waitStrategy = waitStrategy;
+        this.threadFactory = threadFactory;
+        this.sendLock = new ReentrantLock();
+        this.envelopeListener = new EnvelopeListener();
+    }
+
+    /**
+     * Creates the file and the server endpoint, which is connected while waiting for the client.
+     * An existing file is replaced, without affecting the endpoints attached to it.
+     * @param file
+     * @return
+     */
+    public static SharedMemoryTransport create(File file) throws IOException {
+        return create(file, DEFAULT_RING_CAPACITY, new JacksonEnvelopeSerializer(), null, WaitStrategies.getDefault(),
+                ThreadFactories.getDefault());
+    }
+
+    /**
+     * Creates the file and the server endpoint, which is connected while waiting for the client.
+     * An existing file is replaced, without affecting the endpoints attached to it.
+     * @param file
+     * @param ringCapacity The length of each ring buffer, power of 2. The envelopes are limited to half of it.
+     * @param waitStrategy The strategy for the listener thread while there's no envelope to receive
+     *                     and for the senders while the remote ring is full.
+     * @param threadFactory The factory for the listener thread.
+     * @return
+     */
+    public static SharedMemoryTransport create(File file, int ringCapacity, EnvelopeSerializer envelopeSerializer,
+                                               TraceWriter traceWriter, WaitStrategy waitStrategy, ThreadFactory threadFactory) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file");
+        }
+        if (ringCapacity < 1024 || Integer.bitCount(ringCapacity) != 1 ||
+                getFileLength(ringCapacity) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ringCapacity");
+        }
+        SharedMemoryTransport transport = new SharedMemoryTransport(envelopeSerializer, traceWriter, waitStrategy, threadFactory);
+        // Replaces the file instead of truncating it, since the truncation of a mapped file breaks the processes that mapped it
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not replace the file '" + file + "'");
+        }
+        MappedByteBuffer mappedBuffer = map(file, getFileLength(ringCapacity));
+        long address = SharedMemory.getAddress(mappedBuffer);
+        mappedBuffer.putInt(VERSION_OFFSET, VERSION);
+        mappedBuffer.putInt(CAPACITY_OFFSET, ringCapacity);
+        SharedMemory.putIntOrdered(address + SERVER_STATE_OFFSET, STATE_ATTACHED);
+        // The magic number is the last, so the clients see the initialized header
+        SharedMemory.putIntOrdered(address + MAGIC_OFFSET, MAGIC);
+        transport.start(file, mappedBuffer, ringCapacity, true);
+        return transport;
+    }
+
+    /**
+     * Sends an envelope to the remote endpoint.
+     * If the remote ring is full, waits until the remote endpoint receives some envelope.
+     *
+     * @param envelope
+     */
+    @Override
+    public void send(Envelope envelope) throws IOException {
+        if (envelope == null) {
+            throw new IllegalArgumentException("envelope");
+        }
+        if (!isConnected) {
+            throw new IOException("The transport is not connected");
+        }
+        byte[] payload = EnvelopeSerializers.serialize(envelopeSerializer, envelope);
+        if (traceWriter != null && traceWriter.isEnabled()) {
+            TraceWriters.trace(traceWriter, payload, 0, payload.length, TraceWriter.DataOperation.SEND);
+        }
+        if (payload.length > outboundRing.getMaxFrameLength()) {
+            throw new IOException("The envelope size exceeds the maximum of " + outboundRing.getMaxFrameLength() + " bytes");
+        }
+        sendLock.lock();
+        try {
+            int idleCount = 0;
+            while (true) {
+                if (!isConnected || isRemoteClosed()) {
+                    throw new IOException("The transport is closed");
+                }
+                if (outboundRing.offer(payload, 0, payload.length)) {
+                    return;
+                }
+                waitStrategy.idle(idleCount);
+                if (idleCount < Integer.MAX_VALUE) {
+                    idleCount++;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted while waiting for the remote ring capacity");
+                }
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public void setEnvelopeListener(TransportEnvelopeListener listener) {
+        super.setEnvelopeListener(listener);
+        this.transportEnvelopeListener = listener;
+        if (listener != null) {
+            // Resumes the reading of the inbound ring
+            envelopeListener.wakeUp();
+        }
+    }
+
+    @Override
+    protected TransportEnvelopeListener getEnvelopeListener() {
+        return transportEnvelopeListener;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * Attaches to the file of a server endpoint.
+     *
+     * @param uri The file path, with the 'net.shm' scheme.
+     */
+    @Override
+    protected void performOpen(URI uri) throws IOException {
+        if (!URI_SCHEME.equals(uri.getScheme())) {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is '" + URI_SCHEME + "'");
+        }
+        if (uri.getPath() == null || uri.getPath().isEmpty()) {
+            throw new IllegalArgumentException("The URI path is required");
+        }
+        if (mappedBuffer != null) {
+            throw new IllegalStateException("The transport is already opened");
+        }
+
+        File file = new File(uri.getPath());
+        if (!file.isFile()) {
+            throw new IOException("The file '" + file + "' was not found");
+        }
+        MappedByteBuffer mappedBuffer = map(file, -1);
+        long address = SharedMemory.getAddress(mappedBuffer);
+        if (mappedBuffer.capacity() < FILE_HEADER_LENGTH ||
+                SharedMemory.getIntVolatile(address + MAGIC_OFFSET) != MAGIC ||
+                mappedBuffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("The file '" + file + "' is not a shared memory transport file");
+        }
+        int ringCapacity = mappedBuffer.getInt(CAPACITY_OFFSET);
+        if (mappedBuffer.capacity() != getFileLength(ringCapacity)) {
+            throw new IOException("The file '" + file + "' has an invalid length");
+        }
+        if (SharedMemory.getIntVolatile(address + SERVER_STATE_OFFSET) == STATE_CLOSED) {
+            throw new IOException("The server endpoint is closed");
+        }
+        if (!SharedMemory.compareAndSetInt(address + CLIENT_STATE_OFFSET, STATE_NONE, STATE_ATTACHED)) {
+            throw new IOException("The file '" + file + "' is already attached by a client");
+        }
+        start(file, mappedBuffer, ringCapacity, false);
+    }
+
+    @Override
+    protected void performClose() throws IOException {
+        if (!isConnected) {
+            return;
+        }
+        isConnected = false;
+        SharedMemory.putIntOrdered(localStateAddress, STATE_CLOSED);
+        envelopeListener.stop();
+        if (isServer) {
+            // The server removes the file, so no client can attach to it
+            file.delete();
+        }
+    }
+
+    private void start(File file, MappedByteBuffer mappedBuffer, int ringCapacity, boolean isServer) {
+        long address = SharedMemory.getAddress(mappedBuffer);
+        SharedMemoryRing serverRing = new SharedMemoryRing(mappedBuffer, FILE_HEADER_LENGTH, ringCapacity);
+        SharedMemoryRing clientRing = new SharedMemoryRing(mappedBuffer, FILE_HEADER_LENGTH + SharedMemoryRing.getLength(ringCapacity),
+                ringCapacity);
+        this.file = file;
+        this.mappedBuffer = mappedBuffer;
+        this.isServer = isServer;
+        if (isServer) {
+            localStateAddress = address + SERVER_STATE_OFFSET;
+            remoteStateAddress = address + CLIENT_STATE_OFFSET;
+            outboundRing = serverRing;
+            inboundRing = clientRing;
+        } else {
+            localStateAddress = address + CLIENT_STATE_OFFSET;
+            remoteStateAddress = address + SERVER_STATE_OFFSET;
+            outboundRing = clientRing;
+            inboundRing = serverRing;
+        }
+        isConnected = true;
+        envelopeListener.start(ThreadFactories.newThread(threadFactory, envelopeListener, "lime-shm-listener", true));
+    }
+
+    private boolean isRemoteClosed() {
+        return SharedMemory.getIntVolatile(remoteStateAddress) == STATE_CLOSED;
+    }
+
+    private static long getFileLength(int ringCapacity) {
+        return FILE_HEADER_LENGTH + 2L * SharedMemoryRing.getLength(ringCapacity);
+    }
+
+    /**
+     * Maps a file, which is created with the specified length if not negative.
+     * The mapping remains valid after the file is closed.
+     */
+    private static MappedByteBuffer map(File file, long length) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            if (length >= 0) {
+                randomAccessFile.setLength(length);
+            } else {
+                length = randomAccessFile.length();
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("The file '" + file + "' is too large");
+            }
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    /**
+     * Raises the envelopes of the inbound ring while there's an envelope listener registered.
+     */
+    private class EnvelopeListener implements Runnable {
+
+        private volatile Thread thread;
+        private volatile boolean isWaiting;
+
+        void start(Thread thread) {
+            this.thread = thread;
+            thread.start();
+        }
+
+        void wakeUp() {
+            if (isWaiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void stop() {
+            Thread thread = this.thread;
+            if (thread != null && thread != Thread.currentThread()) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+            while (isConnected) {
+                if (getEnvelopeListener() != null) {
+                    byte[] payload = inboundRing.poll();
+                    if (payload != null) {
+                        idleCount = 0;
+                        raiseOnReceive(payload);
+                        continue;
+                    }
+                }
+                if (isRemoteClosed() && inboundRing.isEmpty()) {
+                    // All the envelopes sent by the remote endpoint were received
+                    closeFromRemote();
+                    return;
+                }
+                if (getEnvelopeListener() == null) {
+                    isWaiting = true;
+                    if (isConnected && getEnvelopeListener() == null) {
+                        LockSupport.parkNanos(this, PAUSED_WAIT_NANOS);
+                    }
+                    isWaiting = false;
+                    continue;
+                }
+                waitStrategy.idle(idleCount);
+                if (idleCount < Integer.MAX_VALUE) {
+                    idleCount++;
+                }
+            }
+        }
+
+        private void raiseOnReceive(byte[] payload) {
+            try {
+                if (traceWriter != null && traceWriter.isEnabled()) {
+                    TraceWriters.trace(traceWriter, payload, 0, payload.length, TraceWriter.DataOperation.RECEIVE);
+                }
+                SharedMemoryTransport.this.raiseOnReceive(
+                        EnvelopeSerializers.deserialize(envelopeSerializer, payload, 0, payload.length));
+            } catch (Exception e) {
+                raiseOnException(e);
+            }
+        }
+
+        private void closeFromRemote() {
+            try {
+                SharedMemoryTransport.this.close();
+            } catch (IOException e) {
+                raiseOnException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.limeprotocol.network.shm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Provides the wait strategies for the shared memory transport.
+ * The busy spin has the lowest latency, without any system call, but keeps a CPU core busy while idle.
+ * The park releases the CPU, but each wait is a system call and the latency depends on the timer resolution of the system.
+ * The backoff spins for a while before yielding and parking, so it has the spin latency under load and releases the CPU when idle.
+ */
+public final class WaitStrategies {
+
+    public final static int DEFAULT_SPINS = 10000;
+    public final static int DEFAULT_YIELDS = 100;
+    public final static long DEFAULT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final static WaitStrategy BUSY_SPIN = new WaitStrategy() {
+        @Override
+        public void idle(int idleCount) {
+        }
+    };
+
+    private final static WaitStrategy DEFAULT_BACKOFF = backoff(DEFAULT_SPINS, DEFAULT_YIELDS, DEFAULT_PARK_NANOS);
+
+    private WaitStrategies() {
+    }
+
+    /**
+     * Gets a strategy that polls again without waiting.
+     * @return
+     */
+    public static WaitStrategy busySpin() {
+        return BUSY_SPIN;
+    }
+
+    /**
+     * Gets a strategy that parks the thread between the polls.
+     * @param parkNanos The park time, in nanoseconds.
+     * @return
+     */
+    public static WaitStrategy park(final long parkNanos) {
+        if (parkNanos <= 0) {
+            throw new IllegalArgumentException("parkNanos");
+        }
+        return new WaitStrategy() {
+            @Override
+            public void idle(int idleCount) {
+                LockSupport.parkNanos(this, parkNanos);
+            }
+        };
+    }
+
+    /**
+     * Gets a strategy that spins, then yields and then parks the thread between the polls.
+     * @param spins The number of polls without waiting.
+     * @param yields The number of polls after yielding the thread, after the spins.
+     * @param parkNanos The park time, in nanoseconds, after the yields.
+     * @return
+     */
+    public static WaitStrategy backoff(final int spins, final int yields, final long parkNanos) {
+        if (spins < 0) {
+            throw new IllegalArgumentException("spins");
+        }
+        if (yields < 0) {
+            throw new IllegalArgumentException("yields");
+        }
+        if (parkNanos <= 0) {
+            throw new IllegalArgumentException("parkNanos");
+        }
+        return new WaitStrategy() {
+            @Override
+            public void idle(int idleCount) {
+                if (idleCount < spins) {
+                    return;
+                }
+                if (idleCount - spins < yields) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, parkNanos);
+                }
+            }
+        };
+    }
+
+    /**
+     * Gets the backoff strategy with the default parameters.
+     * @return
+     */
+    public static WaitStrategy getDefault() {
+        return DEFAULT_BACKOFF;
+    }
+}
@@ -0,0 +1,14 @@
+package org.limeprotocol.network.shm;
+
+/**
+ * Defines how a thread waits between the polls of a shared memory ring buffer that found no frame to read or no space to write.
+ * The implementations must be thread-safe, since the same instance is used by the listener and the sender threads.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Waits before the next poll.
+     * @param idleCount The number of consecutive polls that found nothing, starting at 0.
+     */
+    void idle(int idleCount);
+}
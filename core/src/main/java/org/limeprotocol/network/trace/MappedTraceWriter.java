@@ -0,0 +1,307 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.network.ByteTraceWriter;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Trace writer that appends the raw frames and their timestamps to a rotating log of memory mapped files.
+ * The callers copy the frames to a lock-free queue and return, and a background thread writes them to the log,
+ * so the transport threads don't wait for the disk. The frames are dropped when the queue is full.
+ * Each segment of the log is a file in the log directory, and the oldest segments are deleted
+ * when the maximum number of segments is reached. The log can be decoded by the {@link TraceLogDecoder}.
+ */
+public class MappedTraceWriter implements ByteTraceWriter, Closeable {
+
+    public final static int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public final static int DEFAULT_MAX_SEGMENTS = 8;
+    public final static int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+
+    // Segment layout: the header followed by the records, until a zero length or the end of the file
+    final static int MAGIC = 0x4c4d5452;
+    final static int VERSION = 1;
+    final static int SEGMENT_HEADER_LENGTH = 16;
+    // Record layout: the data length plus one, so an empty record is not taken as the end,
+    // the timestamp, the operation and the data
+    final static int RECORD_HEADER_LENGTH = 4 + 8 + 1;
+
+    private final static String SEGMENT_PREFIX = "lime-trace-";
+    private final static String SEGMENT_EXTENSION = ".log";
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final AtomicReferenceArray<TraceRecord> queue;
+    private final int mask;
+    private final AtomicLong tail;
+    private final AtomicLong head;
+    private final AtomicLong droppedCount;
+    // The callers between the check of the closed flag and the filling of their slot
+    private final AtomicInteger enqueuingCount;
+    private final CountDownLatch flusherStopped;
+    private final Thread flusherThread;
+
+    private volatile boolean isClosed;
+
+    // Used only by the flusher thread
+    private long nextSequence;
+    private MappedByteBuffer segment;
+
+    /**
+     * @param directory The directory of the log segments, which is created if not exists.
+     */
+    public MappedTraceWriter(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, DEFAULT_QUEUE_CAPACITY, ThreadFactories.platform());
+    }
+
+    /**
+     * @param directory The directory of the log segments, which is created if not exists.
+     * @param segmentSize The size of each segment file, in bytes. Larger frames are dropped.
+     * @param maxSegments The maximum number of segments in the directory.
+     * @param queueCapacity The maximum number of frames waiting to be written, power of 2.
+     * @param threadFactory The factory for the writer thread.
+     */
+    public MappedTraceWriter(File directory, int segmentSize, int maxSegments, int queueCapacity, ThreadFactory threadFactory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory");
+        }
+        if (segmentSize <= SEGMENT_HEADER_LENGTH + RECORD_HEADER_LENGTH) {
+            throw new IllegalArgumentException("segmentSize");
+        }
+        if (maxSegments <= 0) {
+            throw new IllegalArgumentException("maxSegments");
+        }
+        if (queueCapacity <= 0 || Integer.bitCount(queueCapacity) != 1) {
+            throw new IllegalArgumentException("queueCapacity");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the directory '" + directory + "'");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.queue = new AtomicReferenceArray<>(queueCapacity);
+        this.mask = queueCapacity - 1;
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+        this.droppedCount = new AtomicLong();
+        this.enqueuingCount = new AtomicInteger();
+        this.flusherStopped = new CountDownLatch(1);
+
+        File[] segments = listSegments(directory);
+        nextSequence = segments.length == 0 ? 0 : getSequence(segments[segments.length - 1]) + 1;
+        rotate();
+        this.flusherThread = ThreadFactories.newThread(threadFactory, new Flusher(), "lime-trace-flusher", true);
+        flusherThread.start();
+    }
+
+    /**
+     * Lists the segments of a log directory, from the oldest to the newest.
+     * @param directory
+     * @return
+     */
+    public static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && getSequence(file) >= 0;
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    @Override
+    public void trace(String data, DataOperation operation) {
+        if (data == null) {
+            throw new IllegalArgumentException("data");
+        }
+        enqueue(new TraceRecord(System.currentTimeMillis(), operation, data.getBytes(UTF8)));
+    }
+
+    @Override
+    public void trace(byte[] buffer, int offset, int length, DataOperation operation) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer");
+        }
+        enqueue(new TraceRecord(System.currentTimeMillis(), operation, Arrays.copyOfRange(buffer, offset, offset + length)));
+    }
+
+    /**
+     * Indicates if the writer is not closed.
+     * @return
+     */
+    @Override
+    public boolean isEnabled() {
+        return !isClosed;
+    }
+
+    /**
+     * Gets the number of frames that were dropped because the queue was full or they didn't fit in a segment.
+     * @return
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Writes the queued frames and stops the writer thread.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        LockSupport.unpark(flusherThread);
+        try {
+            flusherStopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(TraceRecord record) {
+        // Counted before the check, so the flusher waits for the slot of a caller that saw the writer open
+        enqueuingCount.incrementAndGet();
+        try {
+            if (isClosed) {
+                return;
+            }
+            // Claims a slot while the queue is not full, so multiple callers never wait for each other
+            long position;
+            do {
+                position = tail.get();
+                if (position - head.get() >= queue.length()) {
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+            } while (!tail.compareAndSet(position, position + 1));
+            queue.lazySet((int) (position & mask), record);
+        } finally {
+            enqueuingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the queued records, in the order of the slots. Must be called only by the flusher thread.
+     * @return The number of written records.
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            TraceRecord record = queue.get(index);
+            if (record == null) {
+                // The queue is empty or the slot was claimed but not filled yet
+                return count;
+            }
+            queue.lazySet(index, null);
+            head.lazySet(++position);
+            write(record);
+            count++;
+        }
+    }
+
+    private void write(TraceRecord record) throws IOException {
+        byte[] data = record.getData();
+        int recordLength = RECORD_HEADER_LENGTH + data.length;
+        if (SEGMENT_HEADER_LENGTH + recordLength > segmentSize) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        if (segment.remaining() < recordLength) {
+            rotate();
+        }
+        int position = segment.position();
+        segment.position(position + 4);
+        segment.putLong(record.getTimestamp());
+        segment.put((byte) record.getOperation().ordinal());
+        segment.put(data);
+        // The length is written the last, so a record interrupted by a crash is read as the end of the segment
+        segment.putInt(position, data.length + 1);
+    }
+
+    /**
+     * Starts a new segment and deletes the oldest ones.
+     */
+    private void rotate() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        File file = new File(directory, String.format("%s%019d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_EXTENSION));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(segmentSize);
+            segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+        segment.putLong(System.currentTimeMillis());
+
+        File[] segments = listSegments(directory);
+        for (int i = 0; i < segments.length - maxSegments; i++) {
+            segments[i].delete();
+        }
+    }
+
+    private static long getSequence(File file) {
+        String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_EXTENSION)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private class Flusher implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (!isClosed) {
+                    if (drain() == 0) {
+                        LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+                    }
+                }
+                // Writes the records enqueued before the close, including the slots being filled
+                while (enqueuingCount.get() > 0) {
+                    Thread.yield();
+                }
+                drain();
+                segment.force();
+            } catch (IOException e) {
+                isClosed = true;
+                e.printStackTrace();
+            } finally {
+                flusherStopped.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.limeprotocol.network.trace;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Command line tool that decodes the trace logs written by the {@link MappedTraceWriter} to JSON,
+ * with a line for each record, like <pre>{"timestamp":"2015-01-01T00:00:00.000Z","operation":"SEND","envelope":{...}}</pre>
+ * The frames that are not JSON objects are decoded as the 'data' string.
+ * Usage: <pre>java org.limeprotocol.network.trace.TraceLogDecoder &lt;directory or segment file&gt;...</pre>
+ */
+public class TraceLogDecoder {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final JsonFactory jsonFactory;
+    private final DateFormat dateFormat;
+
+    public TraceLogDecoder() {
+        this.jsonFactory = new JsonFactory();
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        this.dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: TraceLogDecoder <directory or segment file>...");
+            System.exit(1);
+        }
+        Writer writer = new OutputStreamWriter(System.out, UTF8);
+        TraceLogDecoder decoder = new TraceLogDecoder();
+        for (String arg : args) {
+            decoder.decode(new File(arg), writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Decodes a segment or all the segments of a log directory, from the oldest to the newest.
+     * @param file A segment file or a log directory.
+     * @param writer
+     * @return The number of decoded records.
+     */
+    public int decode(File file, Writer writer) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file");
+        }
+        if (writer == null) {
+            throw new IllegalArgumentException("writer");
+        }
+        if (!file.isDirectory()) {
+            return decodeSegment(file, writer);
+        }
+        int count = 0;
+        for (File segment : MappedTraceWriter.listSegments(file)) {
+            count += decodeSegment(segment, writer);
+        }
+        return count;
+    }
+
+    private int decodeSegment(File file, Writer writer) throws IOException {
+        int count = 0;
+        try (TraceLogReader reader = new TraceLogReader(file)) {
+            TraceRecord record;
+            while ((record = reader.read()) != null) {
+                writeRecord(record, writer);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void writeRecord(TraceRecord record, Writer writer) throws IOException {
+        String data = new String(record.getData(), UTF8);
+        JsonGenerator generator = jsonFactory.createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeStringField("timestamp", dateFormat.format(new Date(record.getTimestamp())));
+        generator.writeStringField("operation", record.getOperation().toString());
+        if (data.trim().startsWith("{")) {
+            // The frame is the serialized envelope
+            generator.writeFieldName("envelope");
+            generator.writeRawValue(data.trim());
+        } else {
+            generator.writeStringField("data", data);
+        }
+        generator.writeEndObject();
+        generator.close();
+        writer.write('\n');
+    }
+}
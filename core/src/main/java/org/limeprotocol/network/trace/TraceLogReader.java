@@ -0,0 +1,73 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.network.TraceWriter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the records of a segment written by the {@link MappedTraceWriter}.
+ */
+public class TraceLogReader implements Closeable {
+
+    private final static TraceWriter.DataOperation[] OPERATIONS = TraceWriter.DataOperation.values();
+
+    private final File file;
+    private MappedByteBuffer segment;
+
+    public TraceLogReader(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file");
+        }
+        this.file = file;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        }
+        if (segment.remaining() < MappedTraceWriter.SEGMENT_HEADER_LENGTH ||
+                segment.getInt() != MappedTraceWriter.MAGIC ||
+                segment.getInt() != MappedTraceWriter.VERSION) {
+            throw new IOException("The file '" + file + "' is not a trace log segment");
+        }
+        // The creation time
+        segment.getLong();
+    }
+
+    /**
+     * Reads the next record.
+     * @return The record or null in the end of the segment.
+     */
+    public TraceRecord read() throws IOException {
+        if (segment == null) {
+            throw new IllegalStateException("The reader is closed");
+        }
+        if (segment.remaining() < MappedTraceWriter.RECORD_HEADER_LENGTH) {
+            return null;
+        }
+        // The length is written plus one
+        int length = segment.getInt(segment.position()) - 1;
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > segment.remaining() - MappedTraceWriter.RECORD_HEADER_LENGTH) {
+            throw new IOException("Invalid record length in the file '" + file + "'");
+        }
+        segment.position(segment.position() + 4);
+        long timestamp = segment.getLong();
+        int operation = segment.get();
+        if (operation < 0 || operation >= OPERATIONS.length) {
+            throw new IOException("Invalid record operation in the file '" + file + "'");
+        }
+        byte[] data = new byte[length];
+        segment.get(data);
+        return new TraceRecord(timestamp, OPERATIONS[operation], data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+    }
+}
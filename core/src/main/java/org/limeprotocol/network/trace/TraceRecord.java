@@ -0,0 +1,42 @@
+package org.limeprotocol.network.trace;
+
+import org.limeprotocol.network.TraceWriter;
+
+/**
+ * A frame of a trace log.
+ */
+public class TraceRecord {
+
+    private final long timestamp;
+    private final TraceWriter.DataOperation operation;
+    private final byte[] data;
+
+    /**
+     * @param timestamp The time of the trace, in milliseconds since the epoch.
+     * @param operation
+     * @param data The UTF-8 encoded frame.
+     */
+    public TraceRecord(long timestamp, TraceWriter.DataOperation operation, byte[] data) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("data");
+        }
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.data = data;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public TraceWriter.DataOperation getOperation() {
+        return operation;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,45 @@
+package org.limeprotocol.serialization;
+
+import org.limeprotocol.Envelope;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Defines an envelope serializer with a binary encoding, instead of the UTF-8 JSON.
+ * The envelopes can't be represented as strings, so this is not an {@link EnvelopeSerializer} and
+ * only the transports that send bytes, like the TCP ones, accept it.
+ * The envelopes are not delimited by their bytes, so the stream transports send them
+ * prefixed by their length.
+ */
+public interface BinaryEnvelopeSerializer {
+
+    /**
+     * Serialize an envelope to a stream.
+     * The stream is not flushed nor closed, and may have part of the envelope if the serialization fails.
+     * @param envelope
+     * @param outputStream
+     */
+    void serialize(Envelope envelope, OutputStream outputStream) throws IOException;
+
+    /**
+     * Serialize an envelope to a buffer.
+     * The envelope is written in the buffer position, which is advanced.
+     * @param envelope
+     * @param buffer
+     * @return The number of written bytes.
+     * @throws java.nio.BufferOverflowException If the envelope doesn't fit in the buffer, which is not changed.
+     */
+    int serialize(Envelope envelope, ByteBuffer buffer);
+
+    /**
+     * Deserialize an envelope from a slice of a buffer.
+     * The buffer is not retained after the call returns.
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return
+     */
+    Envelope deserialize(byte[] buffer, int offset, int length);
+}
@@ -0,0 +1,42 @@
+package org.limeprotocol.serialization;
+
+import org.limeprotocol.Envelope;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Defines an envelope serializer that is able to work directly with
+ * the UTF-8 bytes of the envelopes, without intermediate strings.
+ */
+public interface ByteEnvelopeSerializer extends EnvelopeSerializer {
+
+    /**
+     * Serialize an envelope to a stream, with the UTF-8 encoding.
+     * The stream is not flushed nor closed, and may have part of the envelope if the serialization fails.
+     * @param envelope
+     * @param outputStream
+     */
+    void serialize(Envelope envelope, OutputStream outputStream) throws IOException;
+
+    /**
+     * Serialize an envelope to a buffer, with the UTF-8 encoding.
+     * The envelope is written in the buffer position, which is advanced.
+     * @param envelope
+     * @param buffer
+     * @return The number of written bytes.
+     * @throws java.nio.BufferOverflowException If the envelope doesn't fit in the buffer, which is not changed.
+     */
+    int serialize(Envelope envelope, ByteBuffer buffer);
+
+    /**
+     * Deserialize an envelope from a slice of a UTF-8 encoded buffer.
+     * The buffer is not retained after the call returns.
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return
+     */
+    Envelope deserialize(byte[] buffer, int offset, int length);
+}
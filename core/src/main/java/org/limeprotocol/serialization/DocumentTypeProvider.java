@@ -0,0 +1,21 @@
+package org.limeprotocol.serialization;
+
+import org.limeprotocol.Document;
+import org.limeprotocol.MediaType;
+
+import java.util.Map;
+
+/**
+ * Provides the document classes of a module for deserialization support, by their media types, so the classes
+ * are registered without being instantiated.
+ * The implementations are loaded by the {@link SerializationUtil} in the first lookup, from the
+ * 'META-INF/services/org.limeprotocol.serialization.DocumentTypeProvider' files.
+ */
+public interface DocumentTypeProvider {
+
+    /**
+     * Adds the document classes to the map, by their media types.
+     * @param documentTypes
+     */
+    void addDocumentTypes(Map<MediaType, Class<? extends Document>> documentTypes);
+}
@@ -0,0 +1,119 @@
+package org.limeprotocol.serialization;
+
+import org.limeprotocol.Envelope;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Utility methods for using the byte oriented serialization
+ * with any {@link EnvelopeSerializer} implementation.
+ */
+public class EnvelopeSerializers {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static int INITIAL_BUFFER_SIZE = 1024;
+    // Buffers larger than this are not kept by the threads after the serialization
+    private final static int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private final static ThreadLocal<SerializationBuffer> serializationBuffer = new ThreadLocal<SerializationBuffer>() {
+        @Override
+        protected SerializationBuffer initialValue() {
+            return new SerializationBuffer();
+        }
+    };
+
+    /**
+     * Serialize an envelope to a UTF-8 encoded array.
+     * If the serializer supports bytes, the envelope is written to a buffer of the current thread
+     * and copied to the array, without an intermediate string.
+     * @param envelopeSerializer
+     * @param envelope
+     * @return
+     */
+    public static byte[] serialize(EnvelopeSerializer envelopeSerializer, Envelope envelope) {
+        if (!(envelopeSerializer instanceof ByteEnvelopeSerializer)) {
+            return envelopeSerializer.serialize(envelope).getBytes(UTF8);
+        }
+        SerializationBuffer buffer = serializationBuffer.get();
+        try {
+            ((ByteEnvelopeSerializer) envelopeSerializer).serialize(envelope, buffer);
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            // Not thrown by the buffer
+            throw new IllegalArgumentException("Could not serialize the envelope", e);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Serialize an envelope to an array in the binary format of the serializer,
+     * by a buffer of the current thread.
+     * @param envelopeSerializer
+     * @param envelope
+     * @return
+     */
+    public static byte[] serialize(BinaryEnvelopeSerializer envelopeSerializer, Envelope envelope) {
+        SerializationBuffer buffer = serializationBuffer.get();
+        try {
+            envelopeSerializer.serialize(envelope, buffer);
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            // Not thrown by the buffer
+            throw new IllegalArgumentException("Could not serialize the envelope", e);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Serialize an envelope to a stream, with the UTF-8 encoding.
+     * The stream is not flushed nor closed.
+     * @param envelopeSerializer
+     * @param envelope
+     * @param outputStream
+     */
+    public static void serialize(EnvelopeSerializer envelopeSerializer, Envelope envelope, OutputStream outputStream) throws IOException {
+        if (envelopeSerializer instanceof ByteEnvelopeSerializer) {
+            ((ByteEnvelopeSerializer) envelopeSerializer).serialize(envelope, outputStream);
+        } else {
+            outputStream.write(envelopeSerializer.serialize(envelope).getBytes(UTF8));
+        }
+    }
+
+    /**
+     * Deserialize an envelope from a slice of a UTF-8 encoded buffer.
+     * If the serializer doesn't support bytes, the slice is decoded to a string.
+     * @param envelopeSerializer
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static Envelope deserialize(EnvelopeSerializer envelopeSerializer, byte[] buffer, int offset, int length) {
+        if (envelopeSerializer instanceof ByteEnvelopeSerializer) {
+            return ((ByteEnvelopeSerializer) envelopeSerializer).deserialize(buffer, offset, length);
+        }
+        return envelopeSerializer.deserialize(new String(buffer, offset, length, UTF8));
+    }
+
+    /**
+     * Reusable buffer of a thread, which drops the large arrays after each use.
+     */
+    private static class SerializationBuffer extends ByteArrayOutputStream {
+
+        SerializationBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        void release() {
+            reset();
+            if (buf.length > MAX_RETAINED_BUFFER_SIZE) {
+                buf = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+    }
+}
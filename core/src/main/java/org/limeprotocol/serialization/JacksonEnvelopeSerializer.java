@@ -1,99 +1,160 @@
 package org.limeprotocol.serialization;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.*;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.limeprotocol.*;
-import org.limeprotocol.security.*;
 import org.limeprotocol.serialization.jackson.CustomSerializerModule;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
-import static org.limeprotocol.security.Authentication.AuthenticationScheme;
-
-public class JacksonEnvelopeSerializer implements EnvelopeSerializer {
+public class JacksonEnvelopeSerializer implements ByteEnvelopeSerializer {
 
     private final static ObjectMapper templateObjectMapper;
     private final static ObjectMapper objectMapper;
 
     static {
-        templateObjectMapper = new ObjectMapper()
-                .setSerializationInclusion(Include.NON_NULL)
-                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        templateObjectMapper = createObjectMapper(new MappingJsonFactory());
 
         objectMapper = createObjectMapper().registerModule(new CustomSerializerModule());
     }
 
+    private final ObjectMapper mapper;
+
+    public JacksonEnvelopeSerializer() {
+        this(objectMapper);
+    }
+
+    /**
+     * Creates a serializer that uses the specified mapper, like one of a binary data format.
+     * @param mapper A mapper with the {@link CustomSerializerModule}.
+     */
+    protected JacksonEnvelopeSerializer(ObjectMapper mapper) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("mapper");
+        }
+        this.mapper = mapper;
+    }
+
     public static ObjectMapper createObjectMapper() {
         return templateObjectMapper.copy();
     }
 
+    /**
+     * Creates a mapper with the settings of the envelopes for the data format of the specified factory.
+     * @param jsonFactory
+     * @return
+     */
+    public static ObjectMapper createObjectMapper(JsonFactory jsonFactory) {
+        return new ObjectMapper(jsonFactory)
+                .setSerializationInclusion(Include.NON_NULL)
+                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
     public static ObjectMapper getObjectMapper() { return objectMapper; }
 
     @Override
     public String serialize(Envelope envelope) {
         try {
-            return getObjectMapper().writeValueAsString(envelope);
+            return mapper.writeValueAsString(envelope);
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    /**
+     * Serialize an envelope to a stream, by a generator of the mapper format that uses the
+     * reusable buffers of the current thread.
+     * @param envelope
+     * @param outputStream
+     */
     @Override
-    public Envelope deserialize(String envelopeString) {
+    public void serialize(Envelope envelope, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+        // The stream is owned by the caller
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        try {
+            mapper.writeValue(generator, envelope);
+        } finally {
+            // Writes the generator buffer to the stream and releases it
+            generator.close();
+        }
+    }
+
+    @Override
+    public int serialize(Envelope envelope, ByteBuffer buffer) {
+        int position = buffer.position();
+        ByteBufferOutputStream outputStream = new ByteBufferOutputStream(buffer);
         try {
-            ObjectNode node;
-            node = (ObjectNode) getObjectMapper().readTree(envelopeString);
-
-            if (node.has("content")) {
-                return  getObjectMapper().convertValue(node, Message.class);
-            } else if (node.has("event")) {
-                return getObjectMapper().convertValue(node, Notification.class);
-            } else if (node.has("method")) {
-                return  getObjectMapper().convertValue(node, Command.class);
-            } else if (node.has("state")) {
-                return deserializeSession(node);
-            } else {
-                throw new IllegalArgumentException("Envelope deserialization not implemented for this value");
+            serialize(envelope, outputStream);
+        } catch (IOException | RuntimeException e) {
+            buffer.position(position);
+            if (outputStream.isOverflow) {
+                throw new BufferOverflowException();
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
             }
+            throw new IllegalArgumentException(e);
+        }
+        return buffer.position() - position;
+    }
+
+    @Override
+    public Envelope deserialize(String envelopeString) {
+        try {
+            return mapper.readValue(envelopeString, Envelope.class);
         } catch (IOException e) {
             throw new IllegalArgumentException("JSON string is not a valid envelope", e);
         }
     }
 
-    private Session deserializeSession(ObjectNode node) {
-        JsonNode schemeNode = node.get("scheme");
-        JsonNode authenticationNode = node.get("authentication");
+    @Override
+    public Envelope deserialize(byte[] buffer, int offset, int length) {
+        try {
+            return mapper.readValue(buffer, offset, length, Envelope.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(mapper.getFactory().getFormatName() + " buffer is not a valid envelope", e);
+        }
+    }
+
+    /**
+     * Writes to a buffer and records the overflow, since the generator may wrap the exception.
+     */
+    private static class ByteBufferOutputStream extends OutputStream {
 
-        node.remove("scheme");
-        node.remove("authentication");
+        private final ByteBuffer buffer;
+        private boolean isOverflow;
 
-        Session session = getObjectMapper().convertValue(node, Session.class);
-        Authentication authentication = deserializeAuthentication(schemeNode, authenticationNode);
-        session.setAuthentication(authentication);
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
 
-        return session;
-    }
+        @Override
+        public void write(int b) {
+            ensureRemaining(1);
+            buffer.put((byte) b);
+        }
 
-    private Authentication deserializeAuthentication(JsonNode schemeNode, JsonNode authenticationNode) {
-        AuthenticationScheme scheme = getObjectMapper().convertValue(schemeNode, AuthenticationScheme.class);
-        if (scheme == null) {
-            return null;
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureRemaining(len);
+            buffer.put(b, off, len);
         }
-        switch (scheme) {
-            case GUEST:
-                return new GuestAuthentication();
-            case PLAIN:
-                return getObjectMapper().convertValue(authenticationNode, PlainAuthentication.class);
-            case TRANSPORT:
-                return new TransportAuthentication();
-            case KEY:
-                return new KeyAuthentication();
-            case EXTERNAL:
-                return new ExternalAuthentication();
-            default:
-                throw new IllegalArgumentException("JSON string is not a valid session envelope");
+
+        private void ensureRemaining(int length) {
+            if (buffer.remaining() < length) {
+                isOverflow = true;
+                throw new BufferOverflowException();
+            }
         }
     }
 }
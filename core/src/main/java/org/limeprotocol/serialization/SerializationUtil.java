@@ -4,14 +4,22 @@ import org.limeprotocol.Document;
 import org.limeprotocol.MediaType;
 
 import java.lang.reflect.Modifier;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.ServiceLoader;
 
 /**
  * Utility methods used in the serialization process.
  */
 public class SerializationUtil {
-    private static final Map<MediaType, Class<? extends Document>> documentTypesMap = new HashMap<>();
+    private static final Object documentTypesLock = new Object();
+
+    /**
+     * The registered document types, which are replaced by a copy in each registration,
+     * so the lookups don't lock.
+     */
+    private static volatile Map<MediaType, Class<? extends Document>> documentTypesMap;
 
     /**
      * Registers a document type for deserialization support.
@@ -22,19 +30,37 @@ public class SerializationUtil {
             throw new IllegalArgumentException("The class cannot be abstract");
         }
 
+        MediaType mediaType;
         try {
             Document document = documentClass.getConstructor().newInstance();
-            MediaType mediaType = document.getMediaType();
-
-            synchronized (documentTypesMap) {
-                if (documentTypesMap.containsKey(mediaType)) {
-                    documentTypesMap.remove(mediaType);
-                }
-                documentTypesMap.put(mediaType, documentClass);
-            }
+            mediaType = document.getMediaType();
         } catch (Exception e) {
             throw new IllegalArgumentException("The document class does not have an empty constructor");
         }
+        registerDocumentClass(mediaType, documentClass);
+    }
+
+    /**
+     * Registers a document type of a media type for deserialization support, without instantiating the class.
+     * @param mediaType
+     * @param documentClass
+     */
+    public static void registerDocumentClass(MediaType mediaType, Class<? extends Document> documentClass) {
+        if (mediaType == null) {
+            throw new IllegalArgumentException("mediaType");
+        }
+        if (documentClass == null) {
+            throw new IllegalArgumentException("documentClass");
+        }
+        if (Modifier.isAbstract(documentClass.getModifiers())) {
+            throw new IllegalArgumentException("The class cannot be abstract");
+        }
+
+        synchronized (documentTypesLock) {
+            Map<MediaType, Class<? extends Document>> documentTypes = new HashMap<>(getDocumentTypes());
+            documentTypes.put(mediaType, documentClass);
+            documentTypesMap = Collections.unmodifiableMap(documentTypes);
+        }
     }
 
     /**
@@ -43,6 +69,31 @@ public class SerializationUtil {
      * @return
      */
     public static Class<? extends Document> findDocumentClassFor(MediaType mediaType) {
-        return documentTypesMap.get(mediaType);
+        return getDocumentTypes().get(mediaType);
+    }
+
+    private static Map<MediaType, Class<? extends Document>> getDocumentTypes() {
+        Map<MediaType, Class<? extends Document>> documentTypes = documentTypesMap;
+        if (documentTypes == null) {
+            synchronized (documentTypesLock) {
+                documentTypes = documentTypesMap;
+                if (documentTypes == null) {
+                    documentTypes = Collections.unmodifiableMap(loadDocumentTypes());
+                    documentTypesMap = documentTypes;
+                }
+            }
+        }
+        return documentTypes;
+    }
+
+    /**
+     * Loads the document types of the providers in the classpath.
+     */
+    private static Map<MediaType, Class<? extends Document>> loadDocumentTypes() {
+        Map<MediaType, Class<? extends Document>> documentTypes = new HashMap<>();
+        for (DocumentTypeProvider provider : ServiceLoader.load(DocumentTypeProvider.class, SerializationUtil.class.getClassLoader())) {
+            provider.addDocumentTypes(documentTypes);
+        }
+        return documentTypes;
     }
-}
\ No newline at end of file
+}
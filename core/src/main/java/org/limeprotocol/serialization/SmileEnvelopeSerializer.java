@@ -0,0 +1,52 @@
+package org.limeprotocol.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.serialization.jackson.CustomSerializerModule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes the envelopes in the Smile binary format, with the same object model of the JSON envelopes,
+ * for the links between nodes that use this serializer in both sides.
+ * The envelopes are written without the Smile header, since the transport frames have their length.
+ */
+public class SmileEnvelopeSerializer implements BinaryEnvelopeSerializer {
+
+    private final static ObjectMapper smileObjectMapper;
+
+    static {
+        SmileFactory smileFactory = new SmileFactory()
+                .configure(SmileGenerator.Feature.WRITE_HEADER, false)
+                .configure(SmileParser.Feature.REQUIRE_HEADER, false);
+
+        smileObjectMapper = JacksonEnvelopeSerializer.createObjectMapper(smileFactory).registerModule(new CustomSerializerModule());
+    }
+
+    // Only the byte methods are used, since the string ones would produce invalid text
+    private final JacksonEnvelopeSerializer serializer;
+
+    public SmileEnvelopeSerializer() {
+        this.serializer = new JacksonEnvelopeSerializer(smileObjectMapper);
+    }
+
+    @Override
+    public void serialize(Envelope envelope, OutputStream outputStream) throws IOException {
+        serializer.serialize(envelope, outputStream);
+    }
+
+    @Override
+    public int serialize(Envelope envelope, ByteBuffer buffer) {
+        return serializer.serialize(envelope, buffer);
+    }
+
+    @Override
+    public Envelope deserialize(byte[] buffer, int offset, int length) {
+        return serializer.deserialize(buffer, offset, length);
+    }
+}
@@ -0,0 +1,121 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.limeprotocol.Document;
+import org.limeprotocol.JsonDocument;
+import org.limeprotocol.LazyDocument;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.PlainDocument;
+import org.limeprotocol.serialization.SerializationUtil;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * A document value kept as the buffered JSON tokens, which are read to the document class of the media type
+ * only in the first access and written back token for token by the {@link DocumentSerializer} while not read.
+ */
+final class BufferedDocument implements LazyDocument {
+
+    private final static JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final TokenBuffer buffer;
+    private final MediaType mediaType;
+    private Document document;
+
+    BufferedDocument(TokenBuffer buffer, MediaType mediaType) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer");
+        }
+        if (mediaType == null) {
+            throw new IllegalArgumentException("mediaType");
+        }
+        this.buffer = buffer;
+        this.mediaType = mediaType;
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Gets the document, reading the buffered value in the first call.
+     * @return
+     * @throws IllegalStateException If the value is not valid for the media type.
+     */
+    @Override
+    public Document getDocument() {
+        if (document == null) {
+            try {
+                document = readDocument();
+            } catch (IOException e) {
+                throw new IllegalStateException("The value is not a valid '" + mediaType + "' document", e);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Indicates if the document was read from the buffered value.
+     * @return
+     */
+    boolean isRead() {
+        return document != null;
+    }
+
+    /**
+     * Writes the buffered value.
+     * @param jsonGenerator
+     */
+    void write(JsonGenerator jsonGenerator) throws IOException {
+        buffer.serialize(jsonGenerator);
+    }
+
+    /**
+     * Gets the read document as string or, while not read, the buffered value as JSON,
+     * so logging the envelope doesn't read it nor fails if it's invalid.
+     * @return
+     */
+    @Override
+    public String toString() {
+        if (document != null) {
+            return document.toString();
+        }
+        StringWriter writer = new StringWriter();
+        try {
+            JsonGenerator jsonGenerator = JSON_FACTORY.createGenerator(writer);
+            try {
+                buffer.serialize(jsonGenerator);
+            } finally {
+                jsonGenerator.close();
+            }
+        } catch (IOException e) {
+            return "The buffered '" + mediaType + "' document could not be written";
+        }
+        return writer.toString();
+    }
+
+    private Document readDocument() throws IOException {
+        JsonParser jsonParser = buffer.asParser();
+        try {
+            jsonParser.nextToken();
+            Class<? extends Document> documentClass = SerializationUtil.findDocumentClassFor(mediaType);
+            if (documentClass != null) {
+                return jsonParser.readValueAs(documentClass);
+            }
+            if (mediaType.isJson()) {
+                JsonDocument jsonDocument = jsonParser.readValueAs(JsonDocument.class);
+                jsonDocument.setMediaType(mediaType);
+                return jsonDocument;
+            }
+            // Like the text of a tree node, which is empty for the containers
+            return new PlainDocument(jsonParser.getCurrentToken().isStructStart() ? "" : jsonParser.getText(), mediaType);
+        } finally {
+            jsonParser.close();
+        }
+    }
+}
@@ -10,23 +10,14 @@ import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
 import org.limeprotocol.*;
 import org.limeprotocol.security.Authentication;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.*;
 
 import static org.limeprotocol.security.Authentication.AuthenticationScheme;
 
 public class CustomSerializerModule extends SimpleModule {
 
-    private final Class<?> ignoreDocumentContainerClass;
-
     public CustomSerializerModule() {
-        this(null);
-    }
-
-    CustomSerializerModule(Class<?> ignoreDocumentContainerClass) {
         super("CustomSerializers", new Version(1, 0, 0, null));
-        this.ignoreDocumentContainerClass = ignoreDocumentContainerClass;
 
         // Custom serializers
         addSerializer(Enum.class, new EnumSerializer());
@@ -41,6 +32,14 @@ public class CustomSerializerModule extends SimpleModule {
         addDeserializer(MediaType.class, new MediaTypeDeserializer());
         addDeserializer(LimeUri.class, new LimeUriDeserializer());
         addDeserializer(DocumentCollection.class, new DocumentCollectionDeserializer());
+        addDeserializer(Envelope.class, new EnvelopeDeserializer());
+
+        setMixInAnnotation(Message.class, MessageMixin.class);
+
+        // Generated serializers of the document classes, instead of the bean serialization
+        for (DocumentSerializerProvider provider : ServiceLoader.load(DocumentSerializerProvider.class, CustomSerializerModule.class.getClassLoader())) {
+            provider.addSerializers(this);
+        }
     }
 
     @Override
@@ -60,32 +59,12 @@ public class CustomSerializerModule extends SimpleModule {
         context.addBeanDeserializerModifier(new BeanDeserializerModifier() {
             @Override
             public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
-                try {
-                    // Check for custom document container deserializers.
-                    // DocumentContainers are classes that have a 'MediaType' and a 'Document' properties, like Message, Command, and other contained objects.
-                    Class documentContainerClass = beanDesc.getBeanClass();
-                    if (!documentContainerClass.equals(ignoreDocumentContainerClass) &&
-                            !Modifier.isAbstract(documentContainerClass.getModifiers())) {
-                        Method method = documentContainerClass.getMethod("getType");
-                        if (method.getReturnType().equals(MediaType.class)) {
-                            for (Method setDocumentMethod : documentContainerClass.getMethods()) {
-                                String methodName = setDocumentMethod.getName();
-                                if (methodName.startsWith("set") &&
-                                        setDocumentMethod.getParameterTypes().length == 1 &&
-                                        setDocumentMethod.getParameterTypes()[0] == Document.class) {
-
-                                    String documentNodeName = methodName.substring(3, methodName.length()).toLowerCase();
-                                    return new DocumentContainerDeserializer<>(documentContainerClass, documentNodeName);
-                                }
-                            }
-                        }
-                    }
-                } catch (NoSuchMethodException e) {
-
-                } catch (Exception e) {
-                    e.printStackTrace();
+                // Check for document containers, like Message, Command and other contained objects.
+                DocumentContainerDeserializer documentContainerDeserializer =
+                        DocumentContainerDeserializer.create(beanDesc.getBeanClass(), deserializer);
+                if (documentContainerDeserializer != null) {
+                    return documentContainerDeserializer;
                 }
-
                 return super.modifyDeserializer(config, beanDesc, deserializer);
             }
         });
@@ -123,13 +102,4 @@ public class CustomSerializerModule extends SimpleModule {
             }
         });
     }
-
-    private <T> SimpleModule addDocumentContainerDeserializer(Class<T> type, String documentNodeName) {
-        // This is needed to avoid StackOverflow inside the DocumentContainerDeserializer class, since it uses the mapper to deserialize the object.
-        if (!type.equals(ignoreDocumentContainerClass)) {
-            DocumentContainerDeserializer deserializer = new DocumentContainerDeserializer<>(type, documentNodeName);
-            addDeserializer(type, deserializer);
-        }
-        return this;
-    }
 }
@@ -28,7 +28,7 @@ public class DocumentCollectionDeserializer extends JsonDeserializer<DocumentCol
         ObjectNode objectNode = objectCodec.readTree(jsonParser);
         DocumentCollection collection = new DocumentCollection();
 
-        MediaType itemType = MediaType.parse(objectNode.get("itemType").asText());
+        MediaType itemType = MediaType.valueOf(objectNode.get("itemType").asText());
         ArrayNode documentsNode = (ArrayNode) objectNode.get("items");
         Document[] items = new Document[documentsNode.size()];
 
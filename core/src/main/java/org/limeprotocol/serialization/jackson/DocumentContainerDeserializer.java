@@ -1,101 +1,187 @@
 package org.limeprotocol.serialization.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.limeprotocol.Document;
 import org.limeprotocol.JsonDocument;
 import org.limeprotocol.MediaType;
 import org.limeprotocol.PlainDocument;
-import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
-import org.limeprotocol.util.StringUtils;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.reflect.Modifier;
 
 import static org.limeprotocol.serialization.SerializationUtil.findDocumentClassFor;
 
-public class DocumentContainerDeserializer<T> extends JsonDeserializer<T> {
+/**
+ * Deserializes the classes that contain a document and its media type, like {@link org.limeprotocol.Message}.
+ * The 'type' and document properties are read by this class and the other properties by the default
+ * bean deserializer of the container, which is the delegatee. The document setter is resolved once, when the
+ * deserializer is created, and invoked by a method handle.
+ */
+public class DocumentContainerDeserializer extends DelegatingDeserializer {
 
-    private static final Map<Class, ObjectMapper> documentContainerObjectMapperMap = new HashMap<>();
-    private static final Object syncRoot = new Object();
+    private final static MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Document.class);
 
-    private final Class<T> type;
     private final String documentNodeName;
+    private final MethodHandle documentSetter;
 
-    public DocumentContainerDeserializer(Class<T> type, String documentNodeName) {
-        this.type = type;
+    private DocumentContainerDeserializer(JsonDeserializer<?> delegatee, String documentNodeName, MethodHandle documentSetter) {
+        super(delegatee);
         this.documentNodeName = documentNodeName;
+        this.documentSetter = documentSetter;
     }
 
-    @Override
-    public T deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
-        ObjectCodec objectCodec = jsonParser.getCodec();
-        ObjectNode objectNode = objectCodec.readTree(jsonParser);
-
-        ObjectMapper mapper = getObjectMapper();
-        Document document = deserializeDocument(objectNode, documentNodeName, mapper);
-        T value = mapper.convertValue(objectNode, type);
-
-        if (document != null) {
-            try {
-                Method method = type.getMethod("set" + StringUtils.toProperCase(documentNodeName), Document.class);
-                method.invoke(value, document);
-            } catch (NoSuchMethodException e) {
-                e.printStackTrace();
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
+    /**
+     * Creates a deserializer for a class, if it is a document container.
+     * @param type
+     * @param defaultDeserializer The default deserializer of the class, for the other properties.
+     * @return The deserializer or null, if the class is not a document container.
+     */
+    static DocumentContainerDeserializer create(Class<?> type, JsonDeserializer<?> defaultDeserializer) {
+        // Document containers are classes that have a 'MediaType' type property and a 'Document' property
+        if (Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        Method typeGetter = null;
+        Method documentSetter = null;
+        for (Method method : type.getMethods()) {
+            String methodName = method.getName();
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (methodName.equals("getType") && parameterTypes.length == 0) {
+                typeGetter = method;
+            } else if (documentSetter == null && methodName.startsWith("set") &&
+                    parameterTypes.length == 1 && parameterTypes[0] == Document.class) {
+                documentSetter = method;
             }
         }
+        if (typeGetter == null || typeGetter.getReturnType() != MediaType.class || documentSetter == null) {
+            return null;
+        }
+        String documentNodeName = documentSetter.getName().substring(3).toLowerCase();
+        try {
+            return new DocumentContainerDeserializer(defaultDeserializer, documentNodeName,
+                    MethodHandles.publicLookup().unreflect(documentSetter).asType(SETTER_TYPE));
+        } catch (IllegalAccessException e) {
+            // The setter of a public method in a non public class
+            return null;
+        }
+    }
 
-        return value;
+    @Override
+    protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+        return new DocumentContainerDeserializer(newDelegatee, documentNodeName, documentSetter);
     }
 
-    private ObjectMapper getObjectMapper() {
-        ObjectMapper mapper = documentContainerObjectMapperMap.get(type);
-        if (mapper == null) {
-            synchronized (syncRoot) {
-                mapper = documentContainerObjectMapperMap.get(type);
-                if (mapper == null) {
-                    // Creates a new mapper that excludes the current type in the custom serialization registration
-                    // to avoid stackoverflow exceptions in the convertValue call bellow.
-                    mapper = JacksonEnvelopeSerializer.createObjectMapper().registerModule(new CustomSerializerModule(type));
-                    documentContainerObjectMapperMap.put(type, mapper);
-                }
+    @Override
+    public Object deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = jsonParser.nextToken();
+        }
+        // The properties for the delegatee, except the document and its type
+        TokenBuffer properties = new TokenBuffer(jsonParser.getCodec(), false);
+        properties.writeStartObject();
+        boolean hasType = false;
+        MediaType mediaType = null;
+        boolean hasDocument = false;
+        Object document = null;
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            String name = jsonParser.getCurrentName();
+            jsonParser.nextToken();
+            if (name.equals("type")) {
+                hasType = true;
+                mediaType = jsonParser.getCurrentToken() == JsonToken.VALUE_NULL ? null : MediaType.valueOf(jsonParser.getText());
+            } else if (name.equals(documentNodeName)) {
+                hasDocument = true;
+                document = EnvelopeDeserializer.readOrBufferDocument(jsonParser, deserializationContext, mediaType);
+            } else {
+                properties.writeFieldName(name);
+                properties.copyCurrentStructure(jsonParser);
             }
         }
-        return mapper;
-    }
-
-    private static Document deserializeDocument(ObjectNode node, String documentNodeName, ObjectMapper mapper) {
-        JsonNode typeNode = node.get("type");
-        if (typeNode == null) return null;
-        MediaType mediaType = mapper.convertValue(typeNode, MediaType.class);
-        if (mediaType == null) return null;
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonMappingException("The document container must be a JSON object", jsonParser.getCurrentLocation());
+        }
 
-        JsonNode documentNode = node.get(documentNodeName);
-        if (documentNode == null) {
-            if (mediaType.isJson()) {
-                return new JsonDocument(mediaType);
-            } else {
-                return new PlainDocument(mediaType);
+        Document containerDocument = null;
+        if (mediaType == null || !hasDocument) {
+            // Without the document or its type, the properties are read by the delegatee
+            if (hasType) {
+                properties.writeFieldName("type");
+                if (mediaType == null) {
+                    properties.writeNull();
+                } else {
+                    properties.writeString(mediaType.toString());
+                }
+            }
+            if (hasDocument) {
+                properties.writeFieldName(documentNodeName);
+                writeDocument(properties, document, jsonParser, deserializationContext);
             }
+        } else if (document != null) {
+            containerDocument = EnvelopeDeserializer.readBufferedDocument(document, jsonParser, deserializationContext, mediaType);
+        }
+        if (containerDocument == null && mediaType != null) {
+            // A type without the document value is an empty document
+            containerDocument = mediaType.isJson() ? new JsonDocument(mediaType) : new PlainDocument(mediaType);
+        }
+        properties.writeEndObject();
+
+        Object value;
+        JsonParser propertiesParser = properties.asParser(jsonParser.getCodec());
+        try {
+            propertiesParser.nextToken();
+            value = _delegatee.deserialize(propertiesParser, deserializationContext);
+        } finally {
+            propertiesParser.close();
+        }
+        if (containerDocument != null) {
+            setDocument(value, containerDocument);
         }
+        return value;
+    }
 
-        node.remove(documentNodeName);
-        node.remove("type");
+    private void setDocument(Object value, Document document) throws JsonMappingException {
+        try {
+            documentSetter.invokeExact(value, document);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new JsonMappingException("Could not set the document of the container", null, e);
+        }
+    }
 
-        return getDocument(documentNode, mediaType, mapper);
+    /**
+     * Writes a document value that was read without the media type, which is buffered.
+     */
+    private static void writeDocument(TokenBuffer properties, Object document, JsonParser jsonParser,
+                                      DeserializationContext deserializationContext) throws IOException {
+        if (document == null) {
+            properties.writeNull();
+            return;
+        }
+        if (!(document instanceof TokenBuffer)) {
+            // The document was read with a type that was replaced by a null type
+            throw new JsonMappingException("The document type is required", jsonParser.getCurrentLocation());
+        }
+        JsonParser documentParser = ((TokenBuffer) document).asParser(jsonParser.getCodec());
+        try {
+            documentParser.nextToken();
+            properties.copyCurrentStructure(documentParser);
+        } finally {
+            documentParser.close();
+        }
     }
 
     static Document getDocument(JsonNode documentNode, MediaType mediaType, ObjectMapper mapper) {
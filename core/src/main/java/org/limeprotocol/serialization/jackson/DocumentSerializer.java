@@ -20,6 +20,16 @@ public class DocumentSerializer extends StdSerializer<Document> {
 
     @Override
     public void serialize(Document document, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException, JsonProcessingException {
+        if (document instanceof BufferedDocument) {
+            BufferedDocument bufferedDocument = (BufferedDocument) document;
+            if (!bufferedDocument.isRead()) {
+                // The value was not used, so it's written as it was read
+                bufferedDocument.write(jsonGenerator);
+            } else {
+                serializerProvider.defaultSerializeValue(bufferedDocument.getDocument(), jsonGenerator);
+            }
+            return;
+        }
         MediaType mediaType = document.getMediaType();
         if (mediaType.isJson()) {
             defaultSerializer.serialize(document, jsonGenerator, serializerProvider);
@@ -0,0 +1,18 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Provides the serializers and deserializers of document classes, instead of the bean serialization.
+ * The implementations are loaded by the {@link CustomSerializerModule} from the
+ * 'META-INF/services/org.limeprotocol.serialization.jackson.DocumentSerializerProvider' files,
+ * like the ones written for the classes annotated with {@link GenerateSerializers}.
+ */
+public interface DocumentSerializerProvider {
+
+    /**
+     * Adds the serializers and deserializers to the module.
+     * @param module
+     */
+    void addSerializers(SimpleModule module);
+}
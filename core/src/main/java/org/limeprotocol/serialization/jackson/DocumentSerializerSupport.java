@@ -0,0 +1,113 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import java.io.IOException;
+
+/**
+ * Methods used by the generated deserializers, which read the common tokens directly
+ * and the others by the deserializers of the context, for the same coercions of the bean deserialization.
+ */
+public final class DocumentSerializerSupport {
+
+    private DocumentSerializerSupport() {
+    }
+
+    /**
+     * Moves the parser to the first property of an object.
+     * @param jsonParser
+     * @param type The document class, for the error message.
+     * @return The current token, which is a field name or the end of the object.
+     */
+    public static JsonToken startObject(JsonParser jsonParser, Class<?> type) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = jsonParser.nextToken();
+        }
+        if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            throw new JsonMappingException("The " + type.getSimpleName() + " value must be a JSON object", jsonParser.getCurrentLocation());
+        }
+        return token;
+    }
+
+    public static String readString(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return jsonParser.getText();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return deserializationContext.readValue(jsonParser, String.class);
+    }
+
+    public static Integer readInteger(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return jsonParser.getIntValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return deserializationContext.readValue(jsonParser, Integer.class);
+    }
+
+    public static int readInt(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        Integer value = readInteger(jsonParser, deserializationContext);
+        return value == null ? 0 : value;
+    }
+
+    public static Long readLong(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return jsonParser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return deserializationContext.readValue(jsonParser, Long.class);
+    }
+
+    public static long readPrimitiveLong(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        Long value = readLong(jsonParser, deserializationContext);
+        return value == null ? 0L : value;
+    }
+
+    public static Double readDouble(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+            return jsonParser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return deserializationContext.readValue(jsonParser, Double.class);
+    }
+
+    public static double readPrimitiveDouble(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        Double value = readDouble(jsonParser, deserializationContext);
+        return value == null ? 0d : value;
+    }
+
+    public static Boolean readBoolean(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.VALUE_TRUE) {
+            return Boolean.TRUE;
+        }
+        if (token == JsonToken.VALUE_FALSE) {
+            return Boolean.FALSE;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return deserializationContext.readValue(jsonParser, Boolean.class);
+    }
+
+    public static boolean readPrimitiveBoolean(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        Boolean value = readBoolean(jsonParser, deserializationContext);
+        return value != null && value;
+    }
+}
@@ -7,6 +7,8 @@ import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
 import org.limeprotocol.util.StringUtils;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Deserializer class that can deserialize instances of
@@ -17,22 +19,37 @@ import java.io.IOException;
  */
 public class EnumDeserializer extends StdScalarDeserializer<Enum<?>> {
 
+    private final Map<String, Enum<?>> valuesByText;
+
     protected EnumDeserializer(Class<Enum<?>> clazz) {
         super(clazz);
+        // The camel case names are computed once, instead of for each value
+        valuesByText = new HashMap<>();
+        for (Enum<?> enumValue : clazz.getEnumConstants()) {
+            String text = StringUtils.toCamelCase(enumValue.toString());
+            if (!valuesByText.containsKey(text)) {
+                valuesByText.put(text, enumValue);
+            }
+        }
     }
 
     @Override
     public Enum<?> deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
         String text = jp.getText();
-        Class<?> type = handledType();
-        for (Object value: type.getEnumConstants()) {
-            Enum<?> enumValue = (Enum<?>)type.cast(value);
-            if (StringUtils.toCamelCase(enumValue.toString()).equals(text)) {
-                return enumValue;
-            }
+        Enum<?> enumValue = valuesByText.get(text);
+        if (enumValue != null) {
+            return enumValue;
         }
 
-        throw new RuntimeException("Cannot deserialize enum " + type.getName() + " from " + text);
+        throw new RuntimeException("Cannot deserialize enum " + handledType().getName() + " from " + text);
+    }
+
+    /**
+     * Allows the context to reuse the instance, which is immutable.
+     */
+    @Override
+    public boolean isCachable() {
+        return true;
     }
 
 }
\ No newline at end of file
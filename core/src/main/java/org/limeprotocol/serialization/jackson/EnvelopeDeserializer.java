@@ -0,0 +1,370 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.limeprotocol.*;
+import org.limeprotocol.security.*;
+import org.limeprotocol.serialization.SerializationUtil;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.limeprotocol.security.Authentication.AuthenticationScheme;
+
+/**
+ * Deserializes the envelopes in a single pass over the JSON tokens, without building a tree.
+ * The values are read as the properties arrive and the envelope type is defined by the 'content', 'event',
+ * 'method' or 'state' properties. A document is read directly when its 'type' property was already read,
+ * or buffered until the end of the envelope otherwise, like the authentication before the 'scheme' property.
+ * The message contents that are objects or arrays are kept buffered and read only in the first access,
+ * so the messages that are only forwarded are not bound to the document classes.
+ */
+public class EnvelopeDeserializer extends JsonDeserializer<Envelope> {
+
+    @Override
+    public Envelope deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = jsonParser.nextToken();
+        }
+        EnvelopeFields fields = new EnvelopeFields();
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            String name = jsonParser.getCurrentName();
+            jsonParser.nextToken();
+            readField(name, jsonParser, deserializationContext, fields);
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw mappingException(jsonParser, "The envelope must be a JSON object");
+        }
+        return fields.toEnvelope(jsonParser, deserializationContext);
+    }
+
+    /**
+     * Reads the node through the cache, so the repeated addresses are parsed only once.
+     */
+    private static Node readNode(JsonParser jsonParser) throws IOException {
+        return Node.valueOf(jsonParser.getText());
+    }
+
+    private static void readField(String name, JsonParser jsonParser, DeserializationContext deserializationContext,
+                                  EnvelopeFields fields) throws IOException {
+        boolean isNull = jsonParser.getCurrentToken() == JsonToken.VALUE_NULL;
+        switch (name) {
+            case "id":
+                fields.id = isNull ? null : jsonParser.getValueAsString();
+                break;
+            case "from":
+                fields.from = isNull ? null : readNode(jsonParser);
+                break;
+            case "to":
+                fields.to = isNull ? null : readNode(jsonParser);
+                break;
+            case "pp":
+                fields.pp = isNull ? null : readNode(jsonParser);
+                break;
+            case "metadata":
+                fields.metadata = isNull ? null : readMetadata(jsonParser, deserializationContext);
+                break;
+            case "type":
+                fields.type = isNull ? null : MediaType.valueOf(jsonParser.getText());
+                break;
+            case "content":
+                fields.hasContent = true;
+                // The objects and arrays are buffered and read only when the content is used
+                fields.content = jsonParser.getCurrentToken().isStructStart() ? bufferValue(jsonParser) :
+                        readOrBufferDocument(jsonParser, deserializationContext, fields.type);
+                break;
+            case "resource":
+                fields.resource = readOrBufferDocument(jsonParser, deserializationContext, fields.type);
+                break;
+            case "event":
+                fields.hasEvent = true;
+                fields.event = readValue(jsonParser, deserializationContext, Notification.Event.class);
+                break;
+            case "method":
+                fields.hasMethod = true;
+                fields.method = readValue(jsonParser, deserializationContext, Command.CommandMethod.class);
+                break;
+            case "uri":
+                fields.uri = isNull ? null : LimeUri.valueOf(jsonParser.getText());
+                break;
+            case "status":
+                fields.status = readValue(jsonParser, deserializationContext, Command.CommandStatus.class);
+                break;
+            case "reason":
+                fields.reason = readValue(jsonParser, deserializationContext, Reason.class);
+                break;
+            case "state":
+                fields.hasState = true;
+                fields.state = readValue(jsonParser, deserializationContext, Session.SessionState.class);
+                break;
+            case "encryptionOptions":
+                fields.encryptionOptions = readValue(jsonParser, deserializationContext, SessionEncryption[].class);
+                break;
+            case "encryption":
+                fields.encryption = readValue(jsonParser, deserializationContext, SessionEncryption.class);
+                break;
+            case "compressionOptions":
+                fields.compressionOptions = readValue(jsonParser, deserializationContext, SessionCompression[].class);
+                break;
+            case "compression":
+                fields.compression = readValue(jsonParser, deserializationContext, SessionCompression.class);
+                break;
+            case "schemeOptions":
+                fields.schemeOptions = readValue(jsonParser, deserializationContext, AuthenticationScheme[].class);
+                break;
+            case "scheme":
+                fields.scheme = readValue(jsonParser, deserializationContext, AuthenticationScheme.class);
+                break;
+            case "authentication":
+                if (isNull) {
+                    fields.authentication = null;
+                } else if (fields.scheme != null) {
+                    fields.authentication = readAuthentication(jsonParser, deserializationContext, fields.scheme);
+                } else {
+                    fields.authentication = bufferValue(jsonParser);
+                }
+                break;
+            default:
+                // Unknown properties are ignored
+                jsonParser.skipChildren();
+                break;
+        }
+    }
+
+    private static JsonMappingException mappingException(JsonParser jsonParser, String message) {
+        return new JsonMappingException(message, jsonParser.getCurrentLocation());
+    }
+
+    /**
+     * Reads a value by the deserializer of its class, which is not called for null values.
+     */
+    private static <T> T readValue(JsonParser jsonParser, DeserializationContext deserializationContext, Class<T> type) throws IOException {
+        if (jsonParser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return deserializationContext.readValue(jsonParser, type);
+    }
+
+    private static Map<String, String> readMetadata(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        if (jsonParser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw mappingException(jsonParser, "The metadata must be a JSON object");
+        }
+        Map<String, String> metadata = new LinkedHashMap<>();
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = jsonParser.getCurrentName();
+            jsonParser.nextToken();
+            metadata.put(key, readValue(jsonParser, deserializationContext, String.class));
+        }
+        return metadata;
+    }
+
+    /**
+     * Reads the document if the type is known, or buffers its tokens otherwise.
+     * @return A {@link Document}, a {@link TokenBuffer} or null.
+     */
+    static Object readOrBufferDocument(JsonParser jsonParser, DeserializationContext deserializationContext,
+                                               MediaType mediaType) throws IOException {
+        if (jsonParser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (mediaType == null) {
+            return bufferValue(jsonParser);
+        }
+        return readDocument(jsonParser, deserializationContext, mediaType);
+    }
+
+    static TokenBuffer bufferValue(JsonParser jsonParser) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(jsonParser.getCodec(), false);
+        buffer.copyCurrentStructure(jsonParser);
+        return buffer;
+    }
+
+    private static Document readDocument(JsonParser jsonParser, DeserializationContext deserializationContext,
+                                         MediaType mediaType) throws IOException {
+        Class<? extends Document> documentClass = SerializationUtil.findDocumentClassFor(mediaType);
+        if (documentClass != null) {
+            return deserializationContext.readValue(jsonParser, documentClass);
+        }
+        if (mediaType.isJson()) {
+            JsonDocument jsonDocument = deserializationContext.readValue(jsonParser, JsonDocument.class);
+            jsonDocument.setMediaType(mediaType);
+            return jsonDocument;
+        }
+        String text;
+        if (jsonParser.getCurrentToken().isStructStart()) {
+            // Like the text of a tree node, which is empty for the containers
+            jsonParser.skipChildren();
+            text = "";
+        } else {
+            text = jsonParser.getText();
+        }
+        return new PlainDocument(text, mediaType);
+    }
+
+    /**
+     * Reads a buffered value, after the end of the envelope.
+     */
+    static Document readBufferedDocument(Object value, JsonParser jsonParser, DeserializationContext deserializationContext,
+                                                 MediaType mediaType) throws IOException {
+        if (!(value instanceof TokenBuffer)) {
+            return (Document) value;
+        }
+        if (mediaType == null) {
+            throw mappingException(jsonParser, "The document type is required");
+        }
+        JsonParser bufferParser = ((TokenBuffer) value).asParser(jsonParser.getCodec());
+        try {
+            bufferParser.nextToken();
+            return readDocument(bufferParser, deserializationContext, mediaType);
+        } finally {
+            bufferParser.close();
+        }
+    }
+
+    /**
+     * Reads the authentication of a scheme.
+     * @param jsonParser The parser in the authentication value, or null if there's no value.
+     */
+    private static Authentication readAuthentication(JsonParser jsonParser, DeserializationContext deserializationContext,
+                                                     AuthenticationScheme scheme) throws IOException {
+        if (scheme == AuthenticationScheme.PLAIN) {
+            return jsonParser == null ? null : deserializationContext.readValue(jsonParser, PlainAuthentication.class);
+        }
+        if (jsonParser != null) {
+            jsonParser.skipChildren();
+        }
+        switch (scheme) {
+            case GUEST:
+                return new GuestAuthentication();
+            case TRANSPORT:
+                return new TransportAuthentication();
+            case KEY:
+                return new KeyAuthentication();
+            case EXTERNAL:
+                return new ExternalAuthentication();
+            default:
+                throw new JsonMappingException("The authentication scheme is not supported");
+        }
+    }
+
+    /**
+     * The values of the properties, until the envelope type is known.
+     */
+    private static class EnvelopeFields {
+        String id;
+        Node from;
+        Node to;
+        Node pp;
+        Map<String, String> metadata;
+        MediaType type;
+        boolean hasContent;
+        Object content;
+        Object resource;
+        boolean hasEvent;
+        Notification.Event event;
+        boolean hasMethod;
+        Command.CommandMethod method;
+        LimeUri uri;
+        Command.CommandStatus status;
+        Reason reason;
+        boolean hasState;
+        Session.SessionState state;
+        SessionEncryption[] encryptionOptions;
+        SessionEncryption encryption;
+        SessionCompression[] compressionOptions;
+        SessionCompression compression;
+        AuthenticationScheme[] schemeOptions;
+        AuthenticationScheme scheme;
+        /**
+         * An {@link Authentication}, a {@link TokenBuffer} or null.
+         */
+        Object authentication;
+
+        Envelope toEnvelope(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+            Envelope envelope;
+            if (hasContent) {
+                Message message = new Message();
+                message.setContent(getContent(jsonParser, deserializationContext));
+                envelope = message;
+            } else if (hasEvent) {
+                Notification notification = new Notification();
+                notification.setEvent(event);
+                notification.setReason(reason);
+                envelope = notification;
+            } else if (hasMethod) {
+                Command command = new Command();
+                command.setMethod(method);
+                command.setUri(uri);
+                command.setStatus(status);
+                command.setReason(reason);
+                command.setResource(getDocument(resource, jsonParser, deserializationContext));
+                envelope = command;
+            } else if (hasState) {
+                Session session = new Session();
+                session.setState(state);
+                session.setEncryptionOptions(encryptionOptions);
+                session.setEncryption(encryption);
+                session.setCompressionOptions(compressionOptions);
+                session.setCompression(compression);
+                session.setSchemeOptions(schemeOptions);
+                session.setReason(reason);
+                session.setAuthentication(getAuthentication(jsonParser, deserializationContext));
+                envelope = session;
+            } else {
+                throw mappingException(jsonParser, "Envelope deserialization not implemented for this value");
+            }
+            envelope.setId(id);
+            envelope.setFrom(from);
+            envelope.setTo(to);
+            envelope.setPp(pp);
+            envelope.setMetadata(metadata);
+            return envelope;
+        }
+
+        /**
+         * Gets the message content, which is a {@link BufferedDocument} if the value was buffered.
+         */
+        private Document getContent(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+            if (content instanceof TokenBuffer && type != null) {
+                return new BufferedDocument((TokenBuffer) content, type);
+            }
+            return getDocument(content, jsonParser, deserializationContext);
+        }
+
+        /**
+         * Gets the document of a container, which is empty if there's a type without the document value.
+         */
+        private Document getDocument(Object value, JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+            if (value != null) {
+                return readBufferedDocument(value, jsonParser, deserializationContext, type);
+            }
+            if (type == null) {
+                return null;
+            }
+            return type.isJson() ? new JsonDocument(type) : new PlainDocument(type);
+        }
+
+        private Authentication getAuthentication(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+            if (scheme == null) {
+                return null;
+            }
+            if (!(authentication instanceof TokenBuffer)) {
+                return authentication != null ? (Authentication) authentication :
+                        readAuthentication(null, deserializationContext, scheme);
+            }
+            JsonParser bufferParser = ((TokenBuffer) authentication).asParser(jsonParser.getCodec());
+            try {
+                bufferParser.nextToken();
+                return readAuthentication(bufferParser, deserializationContext, scheme);
+            } finally {
+                bufferParser.close();
+            }
+        }
+    }
+}
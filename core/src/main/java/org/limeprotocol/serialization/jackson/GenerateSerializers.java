@@ -0,0 +1,18 @@
+package org.limeprotocol.serialization.jackson;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the serializer and the deserializer of a document class are generated in the compilation
+ * by the processor of the lime-java-codegen module, which must be in the compiler class path.
+ * The generated class is named after the document class, with the 'JsonSerializers' suffix,
+ * and is a {@link DocumentSerializerProvider} loaded by the {@link CustomSerializerModule}.
+ * The document properties are the pairs of public getters and setters, like in the bean serialization.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateSerializers {
+}
@@ -11,6 +11,6 @@ public class IdentityDeserializer extends JsonDeserializer<Identity> {
 
     @Override
     public Identity deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
-        return Identity.parse(jsonParser.getText());
+        return Identity.valueOf(jsonParser.getText());
     }
 }
@@ -15,6 +15,6 @@ public class LimeUriDeserializer extends JsonDeserializer<LimeUri> {
     public LimeUri deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
         String mediaTypeString = jsonParser.getText();
 
-        return LimeUri.parse(mediaTypeString);
+        return LimeUri.valueOf(mediaTypeString);
     }
 }
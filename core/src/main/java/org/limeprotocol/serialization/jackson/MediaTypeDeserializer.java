@@ -14,6 +14,6 @@ public class MediaTypeDeserializer extends JsonDeserializer<MediaType> {
     public MediaType deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
         String mediaTypeString = jsonParser.getText();
 
-        return MediaType.parse(mediaTypeString);
+        return MediaType.valueOf(mediaTypeString);
     }
 }
@@ -0,0 +1,18 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.limeprotocol.Document;
+
+/**
+ * Serializes the message content from the field instead of the getter,
+ * so a {@link org.limeprotocol.LazyDocument} content is not read to be written.
+ */
+abstract class MessageMixin {
+
+    @JsonProperty
+    private Document content;
+
+    @JsonIgnore
+    public abstract Document getContent();
+}
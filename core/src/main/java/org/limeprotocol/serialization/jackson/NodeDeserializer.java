@@ -11,6 +11,6 @@ public class NodeDeserializer extends JsonDeserializer<Node> {
 
     @Override
     public Node deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
-        return Node.parse(jsonParser.getText());
+        return Node.valueOf(jsonParser.getText());
     }
 }
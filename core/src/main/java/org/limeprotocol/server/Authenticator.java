@@ -0,0 +1,45 @@
+package org.limeprotocol.server;
+
+import org.limeprotocol.Node;
+import org.limeprotocol.Reason;
+import org.limeprotocol.security.Authentication;
+
+/**
+ * Defines the authentication of the nodes that are establishing a session with a server.
+ * The authentication result is reported to a listener, so implementations can
+ * check the credentials asynchronously without blocking the transport threads.
+ */
+public interface Authenticator {
+
+    /**
+     * Authenticates the specified node.
+     * @param node The node informed by the client, which may not have an instance.
+     * @param authentication
+     * @param listener
+     */
+    void authenticate(Node node, Authentication authentication, AuthenticationListener listener);
+
+    /**
+     * Defines a listener for the authentication result.
+     * Only one of the methods should be called for each authentication.
+     */
+    public interface AuthenticationListener {
+        /**
+         * Occurs when the node is authenticated.
+         * @param node The node to be assigned to the session.
+         */
+        void onAuthenticated(Node node);
+
+        /**
+         * Occurs when the authentication scheme requires another roundtrip with the client.
+         * @param authentication The authentication data to be sent to the client.
+         */
+        void onRoundtrip(Authentication authentication);
+
+        /**
+         * Occurs when the node is not authenticated.
+         * @param reason
+         */
+        void onFailure(Reason reason);
+    }
+}
@@ -0,0 +1,95 @@
+package org.limeprotocol.server;
+
+import org.limeprotocol.*;
+import org.limeprotocol.network.Channel;
+import org.limeprotocol.security.Authentication;
+
+import java.io.IOException;
+
+/**
+ * Defines the communication channel between a server and a client node.
+ */
+public interface ServerChannel extends Channel {
+
+    /**
+     * Sends a negotiating session envelope to the client with the available options
+     * and listen for the client choice.
+     * @param compressionOptions
+     * @param encryptionOptions
+     * @param sessionListener
+     */
+    void sendNegotiatingOptions(SessionCompression[] compressionOptions, SessionEncryption[] encryptionOptions, SessionChannelListener sessionListener) throws IOException;
+
+    /**
+     * Sends a negotiating session envelope to confirm the client choice
+     * and applies the options to the transport.
+     * @param compression
+     * @param encryption
+     */
+    void sendNegotiatingSession(SessionCompression compression, SessionEncryption encryption) throws IOException;
+
+    /**
+     * Sends an authenticating session envelope to the client with the available schemes
+     * and listen for the client authentication.
+     * @param schemeOptions
+     * @param sessionListener
+     */
+    void sendAuthenticatingSession(Authentication.AuthenticationScheme[] schemeOptions, SessionChannelListener sessionListener) throws IOException;
+
+    /**
+     * Sends an authenticating session envelope to the client with the roundtrip data of the authentication scheme
+     * and listen for the client response.
+     * @param authenticationRoundtrip
+     * @param sessionListener
+     */
+    void sendAuthenticatingSession(Authentication authenticationRoundtrip, SessionChannelListener sessionListener) throws IOException;
+
+    /**
+     * Sends an established session envelope to the client, assigning the specified node to the session.
+     * @param node
+     */
+    void sendEstablishedSession(Node node) throws IOException;
+
+    /**
+     * Sends a finished session envelope to the client and closes the transport.
+     */
+    void sendFinishedSession() throws IOException;
+
+    /**
+     * Sends a failed session envelope to the client and closes the transport.
+     * @param reason
+     */
+    void sendFailedSession(Reason reason) throws IOException;
+
+    /**
+     * Performs the session negotiation and authentication with the client.
+     * The establishment is driven by the received envelopes, so no thread is held while waiting for the client.
+     * @param compressionOptions The compression options. If there's only one option for compression and encryption, the negotiation is skipped.
+     * @param encryptionOptions The encryption options.
+     * @param schemeOptions The authentication scheme options.
+     * @param authenticator
+     * @param listener
+     */
+    void establishSession(SessionCompression[] compressionOptions, SessionEncryption[] encryptionOptions,
+                          Authentication.AuthenticationScheme[] schemeOptions, Authenticator authenticator,
+                          EstablishSessionListener listener)
+            throws IOException;
+
+    /**
+     * Defines listener for session establishment
+     */
+    public interface EstablishSessionListener {
+        /**
+         * Occurs when the session is established.
+         * @param remoteNode The node assigned to the session.
+         */
+        void onEstablished(Node remoteNode);
+
+        /**
+         * Occurs if the session establishment fails.
+         * The authentication and negotiation failures are reported as a {@link org.limeprotocol.network.LimeException}.
+         * @param exception
+         */
+        void onFailure(Exception exception);
+    }
+}
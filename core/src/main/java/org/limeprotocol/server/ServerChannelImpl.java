@@ -0,0 +1,367 @@
+package org.limeprotocol.server;
+
+import org.limeprotocol.*;
+import org.limeprotocol.network.ChannelBase;
+import org.limeprotocol.network.LimeException;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.security.Authentication;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.limeprotocol.Session.SessionState.*;
+
+/**
+ * Server side channel implementation.
+ * The session establishment doesn't hold any thread while waiting for the client,
+ * so a node can keep many idle sessions with a small number of transport threads.
+ * Note that a ping interval creates a scheduler per channel and should be avoided with many sessions.
+ */
+public class ServerChannelImpl extends ChannelBase implements ServerChannel {
+
+    public ServerChannelImpl(Transport transport, Node serverNode) {
+        this(transport, serverNode, false);
+    }
+
+    public ServerChannelImpl(Transport transport, Node serverNode, boolean fillEnvelopeRecipients) {
+        this(transport, serverNode, fillEnvelopeRecipients, false);
+    }
+
+    public ServerChannelImpl(Transport transport, Node serverNode, boolean fillEnvelopeRecipients, boolean autoReplyPings) {
+        this(transport, serverNode, fillEnvelopeRecipients, autoReplyPings, 0, 0);
+    }
+
+    public ServerChannelImpl(Transport transport, Node serverNode, boolean fillEnvelopeRecipients, boolean autoReplyPings,
+                             long pingInterval, long pingDisconnectionInterval) {
+        super(transport, fillEnvelopeRecipients, autoReplyPings, pingInterval, pingDisconnectionInterval);
+        if (serverNode == null) {
+            throw new IllegalArgumentException("serverNode");
+        }
+        setLocalNode(serverNode);
+        setSessionId(EnvelopeId.newId());
+    }
+
+    /**
+     * Sends a negotiating session envelope to the client with the available options
+     * and listen for the client choice.
+     *
+     * @param compressionOptions
+     * @param encryptionOptions
+     * @param sessionListener
+     */
+    @Override
+    public void sendNegotiatingOptions(SessionCompression[] compressionOptions, SessionEncryption[] encryptionOptions, SessionChannelListener sessionListener) throws IOException {
+        if (getState() != NEW) {
+            throw new IllegalStateException(String.format("Cannot start the session negotiation in the '%s' state", getState()));
+        }
+        if (compressionOptions == null || compressionOptions.length == 0) {
+            throw new IllegalArgumentException("compressionOptions");
+        }
+        if (encryptionOptions == null || encryptionOptions.length == 0) {
+            throw new IllegalArgumentException("encryptionOptions");
+        }
+        setState(NEGOTIATING);
+        enqueueSessionListener(sessionListener);
+        Session session = createSession(NEGOTIATING);
+        session.setCompressionOptions(compressionOptions);
+        session.setEncryptionOptions(encryptionOptions);
+        sendSession(session);
+    }
+
+    /**
+     * Sends a negotiating session envelope to confirm the client choice
+     * and applies the options to the transport.
+     *
+     * @param compression
+     * @param encryption
+     */
+    @Override
+    public void sendNegotiatingSession(SessionCompression compression, SessionEncryption encryption) throws IOException {
+        if (getState() != NEGOTIATING) {
+            throw new IllegalStateException(String.format("Cannot negotiate a session in the '%s' state", getState()));
+        }
+        if (compression == null) {
+            throw new IllegalArgumentException("compression");
+        }
+        if (encryption == null) {
+            throw new IllegalArgumentException("encryption");
+        }
+        Session session = createSession(NEGOTIATING);
+        session.setCompression(compression);
+        session.setEncryption(encryption);
+        sendSession(session);
+
+        // The transport options apply to the envelopes sent after the confirmation
+        if (compression != getTransport().getCompression()) {
+            getTransport().setCompression(compression);
+        }
+        if (encryption != getTransport().getEncryption()) {
+            getTransport().setEncryption(encryption);
+        }
+    }
+
+    /**
+     * Sends an authenticating session envelope to the client with the available schemes
+     * and listen for the client authentication.
+     *
+     * @param schemeOptions
+     * @param sessionListener
+     */
+    @Override
+    public void sendAuthenticatingSession(Authentication.AuthenticationScheme[] schemeOptions, SessionChannelListener sessionListener) throws IOException {
+        if (getState() != NEW && getState() != NEGOTIATING) {
+            throw new IllegalStateException(String.format("Cannot start the session authentication in the '%s' state", getState()));
+        }
+        if (schemeOptions == null || schemeOptions.length == 0) {
+            throw new IllegalArgumentException("schemeOptions");
+        }
+        setState(AUTHENTICATING);
+        enqueueSessionListener(sessionListener);
+        Session session = createSession(AUTHENTICATING);
+        session.setSchemeOptions(schemeOptions);
+        sendSession(session);
+    }
+
+    /**
+     * Sends an authenticating session envelope to the client with the roundtrip data of the authentication scheme
+     * and listen for the client response.
+     *
+     * @param authenticationRoundtrip
+     * @param sessionListener
+     */
+    @Override
+    public void sendAuthenticatingSession(Authentication authenticationRoundtrip, SessionChannelListener sessionListener) throws IOException {
+        if (getState() != AUTHENTICATING) {
+            throw new IllegalStateException(String.format("Cannot authenticate a session in the '%s' state", getState()));
+        }
+        if (authenticationRoundtrip == null) {
+            throw new IllegalArgumentException("authenticationRoundtrip");
+        }
+        enqueueSessionListener(sessionListener);
+        Session session = createSession(AUTHENTICATING);
+        session.setAuthentication(authenticationRoundtrip);
+        sendSession(session);
+    }
+
+    /**
+     * Sends an established session envelope to the client, assigning the specified node to the session.
+     *
+     * @param node
+     */
+    @Override
+    public void sendEstablishedSession(Node node) throws IOException {
+        establish(node);
+        setupTransportListener();
+    }
+
+    /**
+     * Sends a finished session envelope to the client and closes the transport.
+     */
+    @Override
+    public void sendFinishedSession() throws IOException {
+        if (getState() != ESTABLISHED) {
+            throw new IllegalStateException(String.format("Cannot finish a session in the '%s' state", getState()));
+        }
+        Session session = createSession(FINISHED);
+        session.setTo(getRemoteNode());
+        sendSession(session);
+        setState(FINISHED);
+        getTransport().close();
+    }
+
+    /**
+     * Sends a failed session envelope to the client and closes the transport.
+     *
+     * @param reason
+     */
+    @Override
+    public void sendFailedSession(Reason reason) throws IOException {
+        if (getState() == FINISHED || getState() == FAILED) {
+            throw new IllegalStateException(String.format("Cannot fail a session in the '%s' state", getState()));
+        }
+        if (reason == null) {
+            throw new IllegalArgumentException("reason");
+        }
+        Session session = createSession(FAILED);
+        session.setTo(getRemoteNode());
+        session.setReason(reason);
+        sendSession(session);
+        setState(FAILED);
+        getTransport().close();
+    }
+
+    @Override
+    public void establishSession(SessionCompression[] compressionOptions, SessionEncryption[] encryptionOptions,
+                                 Authentication.AuthenticationScheme[] schemeOptions, Authenticator authenticator,
+                                 EstablishSessionListener listener) throws IOException {
+        if (getState() != NEW) {
+            throw new IllegalStateException(String.format("Cannot establish a session in the '%s' state", getState()));
+        }
+        if (compressionOptions == null || compressionOptions.length == 0) {
+            throw new IllegalArgumentException("compressionOptions");
+        }
+        if (encryptionOptions == null || encryptionOptions.length == 0) {
+            throw new IllegalArgumentException("encryptionOptions");
+        }
+        if (schemeOptions == null || schemeOptions.length == 0) {
+            throw new IllegalArgumentException("schemeOptions");
+        }
+        if (authenticator == null) {
+            throw new IllegalArgumentException("authenticator");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+
+        // Waits for the new session envelope from the client
+        enqueueSessionListener(new SessionEstablishing(compressionOptions, encryptionOptions, schemeOptions,
+                authenticator, listener));
+    }
+
+    @Override
+    protected void raiseOnReceiveSession(Session session) {
+        getReceiveLock().lock();
+        try {
+            if (getState() == ESTABLISHED && session.getState() == FINISHING) {
+                try {
+                    sendFinishedSession();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            super.raiseOnReceiveSession(session);
+        } finally {
+            getReceiveLock().unlock();
+        }
+    }
+
+    private void establish(Node node) throws IOException {
+        if (getState() != NEW && getState() != NEGOTIATING && getState() != AUTHENTICATING) {
+            throw new IllegalStateException(String.format("Cannot establish a session in the '%s' state", getState()));
+        }
+        if (node == null) {
+            throw new IllegalArgumentException("node");
+        }
+        setRemoteNode(node);
+        Session session = createSession(ESTABLISHED);
+        session.setTo(node);
+        sendSession(session);
+        setState(ESTABLISHED);
+    }
+
+    private Session createSession(Session.SessionState state) {
+        Session session = new Session();
+        session.setId(getSessionId());
+        session.setFrom(getLocalNode());
+        session.setState(state);
+        return session;
+    }
+
+    private class SessionEstablishing implements SessionChannelListener, Authenticator.AuthenticationListener {
+
+        private final SessionCompression[] compressionOptions;
+        private final SessionEncryption[] encryptionOptions;
+        private final Authentication.AuthenticationScheme[] schemeOptions;
+        private final Authenticator authenticator;
+        private final EstablishSessionListener listener;
+
+        public SessionEstablishing(SessionCompression[] compressionOptions, SessionEncryption[] encryptionOptions,
+                                   Authentication.AuthenticationScheme[] schemeOptions, Authenticator authenticator,
+                                   EstablishSessionListener listener) {
+            this.compressionOptions = compressionOptions;
+            this.encryptionOptions = encryptionOptions;
+            this.schemeOptions = schemeOptions;
+            this.authenticator = authenticator;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onReceiveSession(Session receivedSession) {
+            try {
+                if (getState() == NEW) {
+                    if (receivedSession.getState() != NEW) {
+                        fail(ReasonCodes.SESSION_INVALID_ACTION_FOR_STATE, "A new session was expected");
+                    } else if (!isNoneOnly(compressionOptions, SessionCompression.NONE) ||
+                            !isNoneOnly(encryptionOptions, SessionEncryption.NONE)) {
+                        // A single option other than none is also negotiated, so it is applied to the transport
+                        sendNegotiatingOptions(compressionOptions, encryptionOptions, this);
+                    } else {
+                        sendAuthenticatingSession(schemeOptions, this);
+                    }
+                } else if (getState() == NEGOTIATING) {
+                    if (receivedSession.getState() != NEGOTIATING ||
+                            !Arrays.asList(compressionOptions).contains(receivedSession.getCompression()) ||
+                            !Arrays.asList(encryptionOptions).contains(receivedSession.getEncryption())) {
+                        fail(ReasonCodes.SESSION_NEGOTIATION_INVALID_OPTIONS, "An invalid negotiation option was selected");
+                    } else {
+                        sendNegotiatingSession(receivedSession.getCompression(), receivedSession.getEncryption());
+                        sendAuthenticatingSession(schemeOptions, this);
+                    }
+                } else if (getState() == AUTHENTICATING) {
+                    if (receivedSession.getState() != AUTHENTICATING ||
+                            receivedSession.getFrom() == null ||
+                            receivedSession.getAuthentication() == null ||
+                            !Arrays.asList(schemeOptions).contains(receivedSession.getScheme())) {
+                        fail(ReasonCodes.SESSION_AUTHENTICATION_FAILED, "An invalid authentication was received");
+                    } else {
+                        authenticator.authenticate(receivedSession.getFrom(), receivedSession.getAuthentication(), this);
+                    }
+                }
+            } catch (Exception e) {
+                onException(e);
+            }
+        }
+
+        private <T> boolean isNoneOnly(T[] options, T none) {
+            return options.length == 1 && options[0] == none;
+        }
+
+        @Override
+        public void onAuthenticated(Node node) {
+            try {
+                establish(node);
+                listener.onEstablished(node);
+                // Receives the envelopes only after the listener had the chance to register the channel listeners
+                setupTransportListener();
+            } catch (Exception e) {
+                onException(e);
+            }
+        }
+
+        @Override
+        public void onRoundtrip(Authentication authentication) {
+            try {
+                sendAuthenticatingSession(authentication, this);
+            } catch (Exception e) {
+                onException(e);
+            }
+        }
+
+        @Override
+        public void onFailure(Reason reason) {
+            try {
+                fail(reason);
+            } catch (Exception e) {
+                onException(e);
+            }
+        }
+
+        private void fail(int reasonCode, String reasonDescription) throws IOException {
+            fail(new Reason(reasonCode, reasonDescription));
+        }
+
+        private void fail(Reason reason) throws IOException {
+            sendFailedSession(reason);
+            listener.onFailure(new LimeException(reason));
+        }
+
+        private void onException(Exception exception) {
+            try {
+                getTransport().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            listener.onFailure(exception);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.limeprotocol.util;
+
+/**
+ * Bounded cache of the instances parsed from strings, so the repeated values resolve to a shared instance.
+ * The entries are kept in a fixed size array indexed by the hash of the string, and an entry is replaced by
+ * the next string with the same index, so the lookups don't lock nor allocate and the size never grows.
+ * The cached instances are shared by the threads and must not be changed.
+ * @param <T>
+ */
+public abstract class CanonicalCache<T> {
+
+    private final Entry<T>[] entries;
+    private final int mask;
+
+    /**
+     * @param size The number of entries, which must be a power of two.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected CanonicalCache(int size) {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("size");
+        }
+        this.entries = (Entry<T>[]) new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Gets the shared instance of the value, creating it if the value is not cached.
+     * @param value
+     * @return
+     */
+    public T get(String value) {
+        int hash = value.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        // The entries have only final fields, so they can be read and replaced without synchronization
+        Entry<T> entry = entries[index];
+        if (entry != null && entry.value.equals(value)) {
+            return entry.instance;
+        }
+        T instance = create(value);
+        entries[index] = new Entry<>(value, instance);
+        return instance;
+    }
+
+    /**
+     * Creates the instance of a value that is not cached.
+     * @param value
+     * @return
+     */
+    protected abstract T create(String value);
+
+    private final static class Entry<T> {
+        private final String value;
+        private final T instance;
+
+        Entry(String value, T instance) {
+            this.value = value;
+            this.instance = instance;
+        }
+    }
+}
@@ -45,6 +45,10 @@ public class StringUtils {
         return new String(encodeBase64(value.getBytes(), false));
     }
 
+    public static String toBase64(byte[] value) {
+        return new String(encodeBase64(value, false));
+    }
+
     public static String toCamelCase(String s){
 
         String[] parts = s.split("_");
@@ -0,0 +1,123 @@
+package org.limeprotocol.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides the thread factories used by the transports, channels and modules.
+ * In the JDK 21 or later, virtual threads can be used instead of platform threads,
+ * so blocked listeners and callers don't hold an OS thread.
+ * The default factory can be defined by the 'org.limeprotocol.threads' system property,
+ * with the 'platform' or 'virtual' values.
+ */
+public final class ThreadFactories {
+
+    public final static String THREADS_PROPERTY = "org.limeprotocol.threads";
+
+    private final static ThreadFactory PLATFORM_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable);
+        }
+    };
+
+    private final static ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+
+    private static volatile ThreadFactory defaultThreadFactory;
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * Gets the factory for platform threads.
+     * @return
+     */
+    public static ThreadFactory platform() {
+        return PLATFORM_THREAD_FACTORY;
+    }
+
+    /**
+     * Gets the factory for virtual threads.
+     * @return
+     * @throws UnsupportedOperationException If the runtime doesn't support virtual threads.
+     */
+    public static ThreadFactory virtual() {
+        if (VIRTUAL_THREAD_FACTORY == null) {
+            throw new UnsupportedOperationException("Virtual threads require the JDK 21 or later");
+        }
+        return VIRTUAL_THREAD_FACTORY;
+    }
+
+    /**
+     * Indicates if the runtime supports virtual threads.
+     * @return
+     */
+    public static boolean isVirtualSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Gets the factory used when none is specified.
+     * @return
+     */
+    public static ThreadFactory getDefault() {
+        if (defaultThreadFactory == null) {
+            synchronized (ThreadFactories.class) {
+                if (defaultThreadFactory == null) {
+                    defaultThreadFactory = "virtual".equalsIgnoreCase(System.getProperty(THREADS_PROPERTY)) && isVirtualSupported() ?
+                            VIRTUAL_THREAD_FACTORY :
+                            PLATFORM_THREAD_FACTORY;
+                }
+            }
+        }
+        return defaultThreadFactory;
+    }
+
+    /**
+     * Defines the factory used when none is specified.
+     * It affects only the instances created after the call.
+     * @param threadFactory
+     */
+    public static void setDefault(ThreadFactory threadFactory) {
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        defaultThreadFactory = threadFactory;
+    }
+
+    /**
+     * Creates an unstarted thread with the specified factory.
+     * @param threadFactory
+     * @param runnable
+     * @param name
+     * @param daemon Indicates if the thread should be a daemon. Virtual threads are always daemon threads.
+     * @return
+     */
+    public static Thread newThread(ThreadFactory threadFactory, Runnable runnable, String name, boolean daemon) {
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        Thread thread = threadFactory.newThread(runnable);
+        if (thread == null) {
+            throw new IllegalStateException("The thread factory rejected the task");
+        }
+        if (name != null) {
+            thread.setName(name);
+        }
+        if (daemon && !thread.isDaemon()) {
+            thread.setDaemon(true);
+        }
+        return thread;
+    }
+
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            // Thread.ofVirtual().factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factoryMethod = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factoryMethod.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
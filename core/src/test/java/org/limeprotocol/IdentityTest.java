@@ -291,4 +291,60 @@ public class IdentityTest {
         Identity identity = Identity.parse(identityString);
     }
     //endregion
-}
\ No newline at end of file
+
+    //region valueOf method
+    @Test
+    public void valueOf_SameString_ReturnsEqualInstances() {
+        // Arrange
+        String identityString = "theName@theDomain";
+
+        // Act
+        Identity identity1 = Identity.valueOf(identityString);
+        Identity identity2 = Identity.valueOf(new String(identityString));
+
+        // Assert
+        assertNotSame(identity1, identity2);
+        assertEquals(identity1, identity2);
+        assertEquals(Identity.parse(identityString), identity1);
+        assertEquals(Identity.parse(identityString).hashCode(), identity1.hashCode());
+        assertEquals(identityString, identity1.toString());
+    }
+
+    @Test
+    public void valueOf_SetName_ChangesOnlyTheReturnedInstance() {
+        // Arrange
+        Identity identity = Identity.valueOf("theName@theDomain");
+
+        // Act
+        identity.setName("otherName");
+
+        // Assert
+        assertEquals("otherName@theDomain", identity.toString());
+        assertEquals(Identity.parse("otherName@theDomain").hashCode(), identity.hashCode());
+        assertEquals("theName@theDomain", Identity.valueOf("theName@theDomain").toString());
+    }
+
+    @Test
+    public void valueOf_SetNodeInstance_ChangesOnlyTheReturnedNode() {
+        // Arrange
+        String nodeString = "theName@theDomain/theInstance";
+        Node node = Node.valueOf(nodeString);
+
+        // Act
+        node.setInstance("otherInstance");
+
+        // Assert
+        assertEquals("theName@theDomain/otherInstance", node.toString());
+        Node actual = Node.valueOf(nodeString);
+        assertNotSame(node, actual);
+        assertEquals(nodeString, actual.toString());
+        assertEquals(Node.parse(nodeString).hashCode(), actual.hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valueOf_EmptyString_ThrowsIllegalArgumentException() {
+        // Act
+        Identity.valueOf("");
+    }
+    //endregion
+}
@@ -0,0 +1,197 @@
+package org.limeprotocol.client;
+
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.testHelpers.TestClientChannel;
+import org.limeprotocol.testHelpers.TestTransport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.Session.SessionState;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class ClientChannelPoolTest {
+
+    private List<TestClientChannel> channels;
+
+    private ClientChannelPool getTarget(int size) {
+        channels = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            channels.add(new TestClientChannel(new TestTransport(), SessionState.ESTABLISHED, false,
+                    createNode(), createNode(), EnvelopeId.newId(), false, false));
+        }
+        return new ClientChannelPool(channels);
+    }
+
+    private int getSentCount(TestClientChannel channel) {
+        return ((TestTransport)channel.getTransport()).getSentEnvelopes().length;
+    }
+
+    @Test
+    public void sendMessage_sameDestination_sendsThroughSameChannel() throws IOException {
+        // Arrange
+        ClientChannelPool target = getTarget(4);
+        Node to = createNode();
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            Message message = createMessage(createTextContent());
+            message.setTo(new Node(to.getName(), to.getDomain().toUpperCase(), to.getInstance()));
+            target.sendMessage(message);
+        }
+
+        // Assert
+        TestClientChannel channel = (TestClientChannel)target.getChannel(to);
+        assertEquals(20, getSentCount(channel));
+        Envelope[] sentEnvelopes = ((TestTransport)channel.getTransport()).getSentEnvelopes();
+        for (Envelope sentEnvelope : sentEnvelopes) {
+            assertEquals(to, sentEnvelope.getTo());
+        }
+    }
+
+    @Test
+    public void sendMessage_manyDestinations_distributesBetweenChannels() throws IOException {
+        // Arrange
+        ClientChannelPool target = getTarget(4);
+
+        // Act
+        for (int i = 0; i < 400; i++) {
+            target.sendMessage(createMessage(createTextContent()));
+        }
+
+        // Assert
+        int total = 0;
+        for (TestClientChannel channel : channels) {
+            assertTrue(getSentCount(channel) > 0);
+            total += getSentCount(channel);
+        }
+        assertEquals(400, total);
+    }
+
+    @Test
+    public void sendNotification_channelNotEstablished_sendsThroughNextHealthyChannel() throws IOException {
+        // Arrange
+        ClientChannelPool target = getTarget(4);
+        Notification notification = createNotification(Notification.Event.RECEIVED);
+        TestClientChannel unhealthyChannel = (TestClientChannel)target.getChannel(notification.getTo());
+        unhealthyChannel.setState(SessionState.FAILED);
+
+        // Act
+        target.sendNotification(notification);
+
+        // Assert
+        assertEquals(0, getSentCount(unhealthyChannel));
+        assertEquals(3, target.getHealthyCount());
+        assertNotSame(unhealthyChannel, target.getChannel(notification.getTo()));
+        assertEquals(1, getSentCount((TestClientChannel)target.getChannel(notification.getTo())));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sendCommand_noHealthyChannel_throwsIllegalStateException() throws IOException {
+        // Arrange
+        ClientChannelPool target = getTarget(2);
+        for (TestClientChannel channel : channels) {
+            channel.setState(SessionState.FINISHED);
+        }
+
+        // Act
+        target.sendCommand(createCommand());
+    }
+
+    @Test
+    public void addMessageListener_removeAfterReceive_raisesOnceForAllChannels() {
+        // Arrange
+        ClientChannelPool target = getTarget(2);
+        final List<Message> receivedMessages = new ArrayList<>();
+        target.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedMessages.add(message);
+            }
+        }, true);
+        Message message1 = createMessage(createTextContent());
+        Message message2 = createMessage(createTextContent());
+
+        // Act
+        channels.get(0).raiseOnReceiveMessage(message1);
+        channels.get(1).raiseOnReceiveMessage(message2);
+
+        // Assert
+        assertEquals(1, receivedMessages.size());
+        assertSame(message1, receivedMessages.get(0));
+    }
+
+    @Test
+    public void establishSessions_factory_authenticatesDistinctInstances() throws IOException {
+        // Arrange
+        final List<TestTransport> transports = new ArrayList<>();
+        ClientChannelFactory channelFactory = new ClientChannelFactory() {
+            @Override
+            public ClientChannel create() throws IOException {
+                TestTransport transport = new TestTransport();
+                transport.addNextEnvelopeToReturn(createSession(SessionState.AUTHENTICATING));
+                transport.addNextEnvelopeToReturn(createSession(SessionState.ESTABLISHED));
+                transports.add(transport);
+                return new ClientChannelImpl(transport);
+            }
+        };
+        ClientChannelPool target = new ClientChannelPool(channelFactory, 3, null, null, createIdentity(),
+                createPlainAuthentication(), "sender");
+
+        // Act
+        int actual = target.establishSessions(1000);
+
+        // Assert
+        assertEquals(3, actual);
+        assertEquals(3, target.getHealthyCount());
+        Set<String> instances = new HashSet<>();
+        for (TestTransport transport : transports) {
+            Session authenticatingSession = (Session)transport.getSentEnvelopes()[1];
+            assertEquals(SessionState.AUTHENTICATING, authenticatingSession.getState());
+            instances.add(authenticatingSession.getFrom().getInstance());
+        }
+        assertEquals(3, instances.size());
+        assertTrue(instances.contains("sender-0"));
+    }
+
+    @Test
+    public void establishSessions_factoryThrows_closesCreatedChannelsAndThrows() {
+        // Arrange
+        final List<TestTransport> transports = new ArrayList<>();
+        ClientChannelFactory channelFactory = new ClientChannelFactory() {
+            @Override
+            public ClientChannel create() throws IOException {
+                if (transports.size() == 2) {
+                    throw new IOException("Could not connect");
+                }
+                TestTransport transport = new TestTransport();
+                transport.addNextEnvelopeToReturn(createSession(SessionState.AUTHENTICATING));
+                transport.addNextEnvelopeToReturn(createSession(SessionState.ESTABLISHED));
+                transports.add(transport);
+                return new ClientChannelImpl(transport);
+            }
+        };
+        ClientChannelPool target = new ClientChannelPool(channelFactory, 3, null, null, createIdentity(),
+                createPlainAuthentication(), "sender");
+
+        try {
+            // Act
+            target.establishSessions(1000);
+            fail("The exception was not thrown");
+        } catch (IOException e) {
+            // Assert
+            assertEquals("Could not connect", e.getMessage());
+            assertEquals(2, transports.size());
+            for (TestTransport transport : transports) {
+                assertTrue(transport.isClosed());
+            }
+            assertTrue(target.getChannels().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.limeprotocol.client;
+
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.network.EnvelopeSendException;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.testHelpers.TestClientChannel;
+import org.limeprotocol.testHelpers.TestTransport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.Session.SessionState;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class ResilientClientChannelTest {
+
+    private final BlockingQueue<TestClientChannel> createdChannels = new LinkedBlockingQueue<>();
+
+    private ResilientClientChannel getTarget(ClientChannelFactory channelFactory, int maxBufferedEnvelopes) {
+        return new ResilientClientChannel(channelFactory, SessionCompression.NONE, SessionEncryption.NONE,
+                createIdentity(), createPlainAuthentication(), createInstanceName(), 10, 50, maxBufferedEnvelopes, 1000);
+    }
+
+    private ClientChannelFactory createChannelFactory(final CountDownLatch reconnectLatch) {
+        return createChannelFactory(reconnectLatch, null, null);
+    }
+
+    private ClientChannelFactory createChannelFactory(final CountDownLatch reconnectLatch, final Transport.TransportStateListener stateListener,
+                                                      final Envelope envelopeAfterEstablished) {
+        return new ClientChannelFactory() {
+            @Override
+            public ClientChannel create() throws IOException {
+                if (!createdChannels.isEmpty()) {
+                    try {
+                        reconnectLatch.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                ConnectedTestTransport transport = new ConnectedTestTransport(envelopeAfterEstablished);
+                transport.setStateListener(stateListener);
+                transport.addNextEnvelopeToReturn(createSession(SessionState.AUTHENTICATING));
+                transport.addNextEnvelopeToReturn(createSession(SessionState.ESTABLISHED));
+                TestClientChannel channel = new TestClientChannel(transport, SessionState.NEW, false, null, null, null, false, false);
+                createdChannels.add(channel);
+                return channel;
+            }
+        };
+    }
+
+    private static Envelope[] getSentEnvelopes(ClientChannel channel) {
+        return ((TestTransport)channel.getTransport()).getSentEnvelopes();
+    }
+
+    private static void waitUntilEstablished(ResilientClientChannel target, ClientChannel previousChannel) throws InterruptedException {
+        for (int i = 0; i < 500 && (target.getChannel() == previousChannel || !target.isEstablished()); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void establishSession_newChannel_authenticatesAndSends() throws IOException {
+        // Arrange
+        ResilientClientChannel target = getTarget(createChannelFactory(new CountDownLatch(0)), 10);
+        Message message = createMessage(createTextContent());
+
+        // Act
+        target.establishSession();
+        target.sendMessage(message);
+
+        // Assert
+        assertTrue(target.isEstablished());
+        Envelope[] sentEnvelopes = getSentEnvelopes(target.getChannel());
+        assertEquals(3, sentEnvelopes.length);
+        assertSame(message, sentEnvelopes[2]);
+    }
+
+    @Test
+    public void sendMessage_transportClosed_buffersAndSendsAfterReconnect() throws Exception {
+        // Arrange
+        CountDownLatch reconnectLatch = new CountDownLatch(1);
+        ResilientClientChannel target = getTarget(createChannelFactory(reconnectLatch), 10);
+        target.establishSession();
+        ClientChannel firstChannel = target.getChannel();
+        firstChannel.getTransport().close();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            messages.add(createMessage(createTextContent()));
+        }
+
+        // Act
+        for (Message message : messages) {
+            target.sendMessage(message);
+        }
+        int bufferedCount = target.getBufferedCount();
+        reconnectLatch.countDown();
+        waitUntilEstablished(target, firstChannel);
+
+        // Assert
+        assertEquals(3, bufferedCount);
+        assertNotSame(firstChannel, target.getChannel());
+        assertEquals(0, target.getBufferedCount());
+        Envelope[] sentEnvelopes = getSentEnvelopes(target.getChannel());
+        assertEquals(5, sentEnvelopes.length);
+        for (int i = 0; i < messages.size(); i++) {
+            assertSame(messages.get(i), sentEnvelopes[i + 2]);
+        }
+    }
+
+    @Test
+    public void addMessageListener_afterReconnect_receivesFromNewChannel() throws Exception {
+        // Arrange
+        ResilientClientChannel target = getTarget(createChannelFactory(new CountDownLatch(0)), 10);
+        final List<Message> receivedMessages = new ArrayList<>();
+        target.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedMessages.add(message);
+            }
+        }, false);
+        target.establishSession();
+        ClientChannel firstChannel = target.getChannel();
+        createdChannels.clear();
+        Message message = createMessage(createTextContent());
+
+        // Act
+        firstChannel.getTransport().close();
+        waitUntilEstablished(target, firstChannel);
+        TestClientChannel secondChannel = createdChannels.poll(5, TimeUnit.SECONDS);
+        secondChannel.raiseOnReceiveMessage(message);
+
+        // Assert
+        assertSame(secondChannel, target.getChannel());
+        assertEquals(1, receivedMessages.size());
+        assertSame(message, receivedMessages.get(0));
+    }
+
+    @Test
+    public void establishSession_messageReceivedRightAfterEstablished_raisesToListener() throws Exception {
+        // Arrange
+        Message message = createMessage(createTextContent());
+        ResilientClientChannel target = getTarget(createChannelFactory(new CountDownLatch(0), null, message), 10);
+        final List<Message> receivedMessages = new ArrayList<>();
+        target.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedMessages.add(message);
+            }
+        }, false);
+
+        // Act
+        target.establishSession();
+
+        // Assert
+        assertEquals(1, receivedMessages.size());
+        assertSame(message, receivedMessages.get(0));
+    }
+
+    @Test
+    public void establishSession_factorySetStateListener_keepsListener() throws Exception {
+        // Arrange
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        ResilientClientChannel target = getTarget(createChannelFactory(new CountDownLatch(0), new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                closedLatch.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        }, null), 10);
+        target.establishSession();
+        ClientChannel firstChannel = target.getChannel();
+
+        // Act
+        firstChannel.getTransport().close();
+        waitUntilEstablished(target, firstChannel);
+
+        // Assert
+        assertTrue(closedLatch.await(1, TimeUnit.SECONDS));
+        assertNotSame(firstChannel, target.getChannel());
+        assertTrue(target.isEstablished());
+    }
+
+    @Test(expected = EnvelopeSendException.class)
+    public void sendMessage_bufferFull_throwsEnvelopeSendException() throws Exception {
+        // Arrange
+        ResilientClientChannel target = getTarget(createChannelFactory(new CountDownLatch(1)), 2);
+        target.establishSession();
+        target.getChannel().getTransport().close();
+        target.sendMessage(createMessage(createTextContent()));
+        target.sendMessage(createMessage(createTextContent()));
+
+        // Act
+        target.sendMessage(createMessage(createTextContent()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sendMessage_closedChannel_throwsIllegalStateException() throws Exception {
+        // Arrange
+        ResilientClientChannel target = getTarget(createChannelFactory(new CountDownLatch(0)), 10);
+        target.establishSession();
+        target.close();
+
+        // Act
+        target.sendMessage(createMessage(createTextContent()));
+    }
+
+    private static class ConnectedTestTransport extends TestTransport {
+        private Envelope envelopeAfterEstablished;
+
+        public ConnectedTestTransport(Envelope envelopeAfterEstablished) {
+            this.envelopeAfterEstablished = envelopeAfterEstablished;
+        }
+
+        @Override
+        public void send(Envelope envelope) throws IOException {
+            super.send(envelope);
+            // The established session is received after the second session envelope is sent
+            if (envelopeAfterEstablished != null && getSentEnvelopes().length == 2) {
+                Envelope receivedEnvelope = envelopeAfterEstablished;
+                envelopeAfterEstablished = null;
+                raiseOnReceive(receivedEnvelope);
+            }
+        }
+
+        @Override
+        public boolean isConnected() {
+            return !isClosed();
+        }
+    }
+}
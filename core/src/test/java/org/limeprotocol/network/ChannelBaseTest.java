@@ -996,7 +996,43 @@ public class ChannelBaseTest {
         verify(listener1, times(1)).onReceiveMessage(message);
         verify(listener2, times(2)).onReceiveMessage(message);
     }
-    
+
+    @Test
+    public void raiseOnReceiveMessage_concurrentCalls_callsListenerOneAtATime() throws InterruptedException {
+        // Arrange
+        final Semaphore enteredSemaphore = new Semaphore(0);
+        final Semaphore releaseSemaphore = new Semaphore(0);
+        final Message message = createMessage(createPlainDocument());
+        final ChannelBase target = getTarget(Session.SessionState.ESTABLISHED);
+        target.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                enteredSemaphore.release();
+                releaseSemaphore.acquireUninterruptibly();
+            }
+        }, false);
+        Runnable raise = new Runnable() {
+            @Override
+            public void run() {
+                ((TestChannel)target).raiseOnReceiveMessage(message);
+            }
+        };
+        Thread thread1 = new Thread(raise);
+        Thread thread2 = new Thread(raise);
+
+        // Act
+        thread1.start();
+        thread2.start();
+
+        // Assert
+        assertTrue(enteredSemaphore.tryAcquire(1, TimeUnit.SECONDS));
+        assertFalse(enteredSemaphore.tryAcquire(200, TimeUnit.MILLISECONDS));
+        releaseSemaphore.release(2);
+        assertTrue(enteredSemaphore.tryAcquire(1, TimeUnit.SECONDS));
+        thread1.join(1000);
+        thread2.join(1000);
+    }
+
     @Test(expected = IllegalStateException.class)
     public void raiseOnReceiveMessage_finishedSessionSate_throwsIllegalOperationException() {
         // Arrange
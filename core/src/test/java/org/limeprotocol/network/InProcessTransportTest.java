@@ -0,0 +1,314 @@
+package org.limeprotocol.network;
+
+import org.junit.After;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannel;
+import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.security.GuestAuthentication;
+import org.limeprotocol.server.Authenticator;
+import org.limeprotocol.server.ServerChannel;
+import org.limeprotocol.server.ServerChannelImpl;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class InProcessTransportTest {
+
+    private InProcessTransport[] pair;
+
+    @After
+    public void tearDown() throws IOException {
+        if (pair != null) {
+            pair[0].close();
+            pair[1].close();
+        }
+    }
+
+    private InProcessTransport[] getTarget() {
+        return getTarget(InProcessTransport.DEFAULT_CAPACITY);
+    }
+
+    private InProcessTransport[] getTarget(int capacity) {
+        pair = InProcessTransport.createPair(capacity, ThreadFactories.platform());
+        return pair;
+    }
+
+    private static BlockingQueue<Envelope> listen(Transport transport) {
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        transport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        return receivedEnvelopes;
+    }
+
+    @Test
+    public void send_connectedPair_remoteReceivesSameInstance() throws Exception {
+        // Arrange
+        InProcessTransport[] target = getTarget();
+        BlockingQueue<Envelope> receivedEnvelopes = listen(target[1]);
+        Message message = createMessage(createTextContent());
+
+        // Act
+        target[0].send(message);
+
+        // Assert
+        assertSame(message, receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        assertTrue(target[0].isConnected());
+        assertTrue(target[1].isConnected());
+    }
+
+    @Test
+    public void send_noEnvelopeListener_keepsEnvelopesUntilListenerIsSet() throws Exception {
+        // Arrange
+        InProcessTransport[] target = getTarget();
+        Message message1 = createMessage(createTextContent());
+        Message message2 = createMessage(createTextContent());
+
+        // Act
+        target[0].send(message1);
+        target[0].send(message2);
+        Thread.sleep(50);
+        int queuedCount = target[1].getQueuedCount();
+        BlockingQueue<Envelope> receivedEnvelopes = listen(target[1]);
+
+        // Assert
+        assertEquals(2, queuedCount);
+        assertSame(message1, receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        assertSame(message2, receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void send_remoteQueueFull_waitsUntilRemoteReceives() throws Exception {
+        // Arrange
+        final InProcessTransport[] target = getTarget(1);
+        final Message message1 = createMessage(createTextContent());
+        final Message message2 = createMessage(createTextContent());
+        final CountDownLatch sentLatch = new CountDownLatch(1);
+        target[0].send(message1);
+
+        // Act
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target[0].send(message2);
+                    sentLatch.countDown();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        sender.start();
+        boolean sentBeforeReceive = sentLatch.await(100, TimeUnit.MILLISECONDS);
+        BlockingQueue<Envelope> receivedEnvelopes = listen(target[1]);
+
+        // Assert
+        assertFalse(sentBeforeReceive);
+        assertSame(message1, receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        assertSame(message2, receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        assertTrue(sentLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void send_remoteQueueFullAfterTimeout_throwsIOException() throws Exception {
+        // Arrange
+        pair = InProcessTransport.createPair(1, 100, ThreadFactories.platform());
+        InProcessTransport[] target = pair;
+        Message message1 = createMessage(createTextContent());
+        Message message2 = createMessage(createTextContent());
+        target[0].send(message1);
+        long start = System.currentTimeMillis();
+
+        try {
+            // Act
+            target[0].send(message2);
+            fail("The exception was not thrown");
+        } catch (IOException e) {
+            // Assert
+            assertTrue(System.currentTimeMillis() - start >= 90);
+            assertTrue(target[0].isConnected());
+            assertEquals(1, target[1].getQueuedCount());
+        }
+    }
+
+    @Test
+    public void send_listenersEchoingWithFullQueues_failsInsteadOfDeadlocking() throws Exception {
+        // Arrange
+        pair = InProcessTransport.createPair(1, 100, ThreadFactories.platform());
+        final InProcessTransport[] target = pair;
+        final BlockingQueue<Exception> exceptions = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 2; i++) {
+            final InProcessTransport transport = target[i];
+            transport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+                @Override
+                public void onReceive(Envelope envelope) {
+                    try {
+                        // Each received envelope is echoed twice, so the queues get full
+                        transport.send(envelope);
+                        transport.send(envelope);
+                    } catch (IOException e) {
+                        exceptions.add(e);
+                    }
+                }
+            });
+        }
+
+        // Act
+        target[0].send(createMessage(createTextContent()));
+
+        // Assert
+        assertNotNull(exceptions.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void close_connectedPair_closesRemoteAfterPendingEnvelopes() throws Exception {
+        // Arrange
+        InProcessTransport[] target = getTarget();
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        final AtomicReference<Boolean> closingRaised = new AtomicReference<>(false);
+        target[1].setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+                closingRaised.set(true);
+            }
+
+            @Override
+            public void onClosed() {
+                closedLatch.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        Message message = createMessage(createTextContent());
+        target[0].send(message);
+
+        // Act
+        target[0].close();
+        BlockingQueue<Envelope> receivedEnvelopes = listen(target[1]);
+
+        // Assert
+        assertSame(message, receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(closingRaised.get());
+        assertFalse(target[0].isConnected());
+        assertFalse(target[1].isConnected());
+    }
+
+    @Test(expected = IOException.class)
+    public void send_closedTransport_throwsIOException() throws Exception {
+        // Arrange
+        InProcessTransport[] target = getTarget();
+        target[0].close();
+
+        // Act
+        target[0].send(createMessage(createTextContent()));
+    }
+
+    @Test
+    public void send_listenerThrows_raisesOnException() throws Exception {
+        // Arrange
+        InProcessTransport[] target = getTarget();
+        final BlockingQueue<Exception> exceptions = new LinkedBlockingQueue<>();
+        final RuntimeException exception = new RuntimeException("listener failure");
+        target[1].setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+            }
+
+            @Override
+            public void onException(Exception e) {
+                exceptions.add(e);
+            }
+        });
+        target[1].setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                throw exception;
+            }
+        });
+
+        // Act
+        target[0].send(createMessage(createTextContent()));
+
+        // Assert
+        assertSame(exception, exceptions.poll(5, TimeUnit.SECONDS));
+        assertTrue(target[1].isConnected());
+    }
+
+    @Test
+    public void establishSession_clientAndServerChannels_exchangesEnvelopes() throws Exception {
+        // Arrange
+        InProcessTransport[] target = getTarget();
+        final Node serverNode = createNode();
+        final BlockingQueue<Message> receivedMessages = new LinkedBlockingQueue<>();
+        final BlockingQueue<Session> clientSessions = new LinkedBlockingQueue<>();
+        final ServerChannel serverChannel = new ServerChannelImpl(target[1], serverNode);
+        serverChannel.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedMessages.add(message);
+            }
+        }, false);
+        ClientChannel clientChannel = new ClientChannelImpl(target[0]);
+        Message message = createMessage(createTextContent());
+
+        // Act
+        serverChannel.establishSession(new SessionCompression[]{SessionCompression.NONE}, new SessionEncryption[]{SessionEncryption.NONE},
+                new Authentication.AuthenticationScheme[]{Authentication.AuthenticationScheme.GUEST},
+                new Authenticator() {
+                    @Override
+                    public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                        listener.onAuthenticated(node);
+                    }
+                },
+                new ServerChannel.EstablishSessionListener() {
+                    @Override
+                    public void onEstablished(Node remoteNode) {
+                    }
+
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+                });
+        clientChannel.establishSession(SessionCompression.NONE, SessionEncryption.NONE, createIdentity(), new GuestAuthentication(),
+                createInstanceName(), new ClientChannel.EstablishSessionListener() {
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+
+                    @Override
+                    public void onReceiveSession(Session session) {
+                        clientSessions.add(session);
+                    }
+                });
+        Session clientSession = clientSessions.poll(5, TimeUnit.SECONDS);
+        clientChannel.sendMessage(message);
+
+        // Assert
+        assertNotNull(clientSession);
+        assertEquals(Session.SessionState.ESTABLISHED, clientSession.getState());
+        assertEquals(serverNode, clientChannel.getRemoteNode());
+        assertSame(message, receivedMessages.poll(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,75 @@
+package org.limeprotocol.network;
+
+import org.junit.Test;
+import org.limeprotocol.testHelpers.TestTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TransportBaseTest {
+
+    private static Transport.TransportStateListener createStateListener(final List<String> events, final String name) {
+        return new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+                events.add(name + ":closing");
+            }
+
+            @Override
+            public void onClosed() {
+                events.add(name + ":closed");
+            }
+
+            @Override
+            public void onException(Exception e) {
+                events.add(name + ":exception");
+            }
+        };
+    }
+
+    @Test
+    public void close_setAndAddedStateListeners_raisesAllListenersInOrder() throws Exception {
+        // Arrange
+        List<String> events = new ArrayList<>();
+        TestTransport target = new TestTransport();
+        target.setStateListener(createStateListener(events, "set"));
+        target.addStateListener(createStateListener(events, "added"));
+
+        // Act
+        target.close();
+
+        // Assert
+        assertEquals(4, events.size());
+        assertEquals("set:closing", events.get(0));
+        assertEquals("added:closing", events.get(1));
+        assertEquals("set:closed", events.get(2));
+        assertEquals("added:closed", events.get(3));
+    }
+
+    @Test
+    public void close_removedStateListener_doesNotRaiseListener() throws Exception {
+        // Arrange
+        List<String> events = new ArrayList<>();
+        TestTransport target = new TestTransport();
+        Transport.TransportStateListener listener = createStateListener(events, "added");
+        target.addStateListener(listener);
+        target.removeStateListener(listener);
+
+        // Act
+        target.close();
+
+        // Assert
+        assertTrue(events.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addStateListener_nullListener_throwsIllegalArgumentException() {
+        // Arrange
+        TestTransport target = new TestTransport();
+
+        // Act
+        target.addStateListener(null);
+    }
+}
@@ -0,0 +1,159 @@
+package org.limeprotocol.network.shm;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SharedMemoryRingTest {
+
+    private final static int CAPACITY = 64;
+
+    private ByteBuffer buffer;
+
+    private SharedMemoryRing getTarget() {
+        buffer = ByteBuffer.allocateDirect(SharedMemoryRing.getLength(CAPACITY));
+        return new SharedMemoryRing(buffer, 0, CAPACITY);
+    }
+
+    private static byte[] createPayload(int length, int seed) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (seed + i);
+        }
+        return payload;
+    }
+
+    @Test
+    public void poll_offeredFrames_returnsFramesInOrder() {
+        // Arrange
+        SharedMemoryRing target = getTarget();
+        byte[] payload1 = createPayload(5, 1);
+        byte[] payload2 = createPayload(12, 2);
+        target.offer(payload1, 0, payload1.length);
+        target.offer(payload2, 0, payload2.length);
+
+        // Act
+        byte[] actual1 = target.poll();
+        byte[] actual2 = target.poll();
+        byte[] actual3 = target.poll();
+
+        // Assert
+        assertArrayEquals(payload1, actual1);
+        assertArrayEquals(payload2, actual2);
+        assertNull(actual3);
+        assertTrue(target.isEmpty());
+    }
+
+    @Test
+    public void offer_fullRing_returnsFalseUntilPolled() {
+        // Arrange
+        SharedMemoryRing target = getTarget();
+        byte[] payload = createPayload(12, 3);
+        for (int i = 0; i < CAPACITY / 16; i++) {
+            assertTrue(target.offer(payload, 0, payload.length));
+        }
+
+        // Act
+        boolean offeredWhenFull = target.offer(payload, 0, payload.length);
+        target.poll();
+        boolean offeredAfterPoll = target.offer(payload, 0, payload.length);
+
+        // Assert
+        assertFalse(offeredWhenFull);
+        assertTrue(offeredAfterPoll);
+    }
+
+    @Test
+    public void offer_frameAfterEndOfRegion_wrapsWithPadding() {
+        // Arrange
+        SharedMemoryRing target = getTarget();
+        byte[] payload = createPayload(20, 4);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            byte[] expected = createPayload(i % 2 == 0 ? 20 : 7, i);
+            assertTrue(target.offer(expected, 0, expected.length));
+            assertArrayEquals(expected, target.poll());
+        }
+        boolean offered = target.offer(payload, 0, payload.length);
+
+        // Assert
+        assertTrue(offered);
+        assertArrayEquals(payload, target.poll());
+        assertTrue(target.isEmpty());
+    }
+
+    @Test
+    public void constructor_ringInUse_continuesAfterPendingFrames() {
+        // Arrange
+        SharedMemoryRing producer = getTarget();
+        byte[] payload1 = createPayload(9, 5);
+        byte[] payload2 = createPayload(3, 6);
+        producer.offer(payload1, 0, payload1.length);
+
+        // Act
+        SharedMemoryRing target = new SharedMemoryRing(buffer, 0, CAPACITY);
+        target.offer(payload2, 0, payload2.length);
+
+        // Assert
+        assertArrayEquals(payload1, target.poll());
+        assertArrayEquals(payload2, target.poll());
+        assertNull(target.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offer_frameLargerThanHalfCapacity_throwsIllegalArgumentException() {
+        // Arrange
+        SharedMemoryRing target = getTarget();
+        byte[] payload = createPayload(target.getMaxFrameLength() + 1, 7);
+
+        // Act
+        target.offer(payload, 0, payload.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_capacityNotPowerOfTwo_throwsIllegalArgumentException() {
+        // Act
+        new SharedMemoryRing(ByteBuffer.allocateDirect(1024), 0, 100);
+    }
+
+    @Test
+    public void poll_concurrentProducer_receivesAllFramesInOrder() throws Exception {
+        // Arrange
+        final SharedMemoryRing target = getTarget();
+        final int count = 100000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    byte[] payload = createPayload(1 + i % 20, i);
+                    while (!target.offer(payload, 0, payload.length)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+
+        // Act
+        producer.start();
+        int received = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (received < count && System.currentTimeMillis() < deadline) {
+            byte[] payload = target.poll();
+            if (payload == null) {
+                Thread.yield();
+                continue;
+            }
+            assertTrue(Arrays.equals(createPayload(1 + received % 20, received), payload));
+            received++;
+        }
+        producer.join(5000);
+
+        // Assert
+        assertEquals(count, received);
+        assertTrue(target.isEmpty());
+    }
+}
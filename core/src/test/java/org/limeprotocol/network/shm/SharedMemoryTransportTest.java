@@ -0,0 +1,305 @@
+package org.limeprotocol.network.shm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannel;
+import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.security.GuestAuthentication;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.server.Authenticator;
+import org.limeprotocol.server.ServerChannel;
+import org.limeprotocol.server.ServerChannelImpl;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class SharedMemoryTransportTest {
+
+    private final static int RING_CAPACITY = 4096;
+
+    private File file;
+    private URI uri;
+    private EnvelopeSerializer envelopeSerializer;
+    private SharedMemoryTransport serverTransport;
+    private SharedMemoryTransport target;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(System.getProperty("java.io.tmpdir"), "lime-" + UUID.randomUUID() + ".shm");
+        uri = new URI(SharedMemoryTransport.URI_SCHEME, null, file.getAbsolutePath(), null);
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+        serverTransport = SharedMemoryTransport.create(file, RING_CAPACITY, envelopeSerializer, null,
+                WaitStrategies.getDefault(), ThreadFactories.platform());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (target != null) {
+            target.close();
+        }
+        serverTransport.close();
+        file.delete();
+    }
+
+    private SharedMemoryTransport getTarget() {
+        target = new SharedMemoryTransport(envelopeSerializer, null, WaitStrategies.busySpin(), ThreadFactories.platform());
+        return target;
+    }
+
+    private static BlockingQueue<Envelope> listen(Transport transport) {
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        transport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        return receivedEnvelopes;
+    }
+
+    @Test
+    public void open_createdFile_exchangesEnvelopesInBothDirections() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+        Message clientMessage = createMessage(createTextContent());
+        Message serverMessage = createMessage(createTextContent());
+        BlockingQueue<Envelope> serverEnvelopes = listen(serverTransport);
+
+        // Act
+        target.open(uri);
+        BlockingQueue<Envelope> clientEnvelopes = listen(target);
+        target.send(clientMessage);
+        serverTransport.send(serverMessage);
+
+        // Assert
+        assertTrue(target.isConnected());
+        assertTrue(serverTransport.isConnected());
+        Envelope actualServerEnvelope = serverEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actualServerEnvelope);
+        assertEquals(clientMessage.getId(), actualServerEnvelope.getId());
+        assertEquals(clientMessage.getContent().toString(), ((Message) actualServerEnvelope).getContent().toString());
+        Envelope actualClientEnvelope = clientEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actualClientEnvelope);
+        assertEquals(serverMessage.getId(), actualClientEnvelope.getId());
+    }
+
+    @Test
+    public void send_beforeClientAttaches_keepsEnvelopesInRing() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+        Message message1 = createMessage(createTextContent());
+        Message message2 = createMessage(createTextContent());
+
+        // Act
+        serverTransport.send(message1);
+        serverTransport.send(message2);
+        target.open(uri);
+        BlockingQueue<Envelope> receivedEnvelopes = listen(target);
+
+        // Assert
+        assertEquals(message1.getId(), receivedEnvelopes.poll(5, TimeUnit.SECONDS).getId());
+        assertEquals(message2.getId(), receivedEnvelopes.poll(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    public void send_moreEnvelopesThanRingCapacity_receivesAllInOrder() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+        target.open(uri);
+        BlockingQueue<Envelope> receivedEnvelopes = listen(serverTransport);
+        int count = 1000;
+        String[] ids = new String[count];
+
+        // Act
+        for (int i = 0; i < count; i++) {
+            Message message = createMessage(createTextContent());
+            ids[i] = message.getId();
+            target.send(message);
+        }
+
+        // Assert
+        for (int i = 0; i < count; i++) {
+            Envelope actual = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(actual);
+            assertEquals(ids[i], actual.getId());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void send_envelopeLargerThanHalfRing_throwsIOException() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+        target.open(uri);
+        Message message = new Message();
+        message.setId(EnvelopeId.newId());
+        message.setContent(new PlainDocument(createRandomString(RING_CAPACITY), MediaType.parse("text/plain")));
+
+        // Act
+        target.send(message);
+    }
+
+    @Test
+    public void open_fileAlreadyAttached_throwsIOException() throws Exception {
+        // Arrange
+        getTarget().open(uri);
+        SharedMemoryTransport otherClient = new SharedMemoryTransport(envelopeSerializer, null, WaitStrategies.busySpin(),
+                ThreadFactories.platform());
+
+        // Act
+        try {
+            otherClient.open(uri);
+            fail("The second client should not attach");
+        } catch (IOException e) {
+            // Assert
+            assertFalse(otherClient.isConnected());
+            assertTrue(target.isConnected());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_missingFile_throwsIOException() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+
+        // Act
+        target.open(new URI(SharedMemoryTransport.URI_SCHEME, null, file.getAbsolutePath() + ".missing", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_tcpScheme_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+
+        // Act
+        target.open(URI.create("net.tcp://localhost:55321"));
+    }
+
+    @Test
+    public void close_client_closesServerAfterPendingEnvelopes() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        serverTransport.setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                closedLatch.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        target.open(uri);
+        Message message = createMessage(createTextContent());
+        target.send(message);
+
+        // Act
+        target.close();
+        BlockingQueue<Envelope> receivedEnvelopes = listen(serverTransport);
+
+        // Assert
+        assertEquals(message.getId(), receivedEnvelopes.poll(5, TimeUnit.SECONDS).getId());
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(serverTransport.isConnected());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void close_server_refusesNewClients() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+
+        // Act
+        serverTransport.close();
+
+        // Assert
+        assertFalse(file.exists());
+        try {
+            target.open(uri);
+            fail("The client should not attach to a closed server");
+        } catch (IOException e) {
+            assertFalse(target.isConnected());
+        }
+    }
+
+    @Test
+    public void establishSession_clientAndServerChannels_exchangesEnvelopes() throws Exception {
+        // Arrange
+        SharedMemoryTransport target = getTarget();
+        target.open(uri);
+        final Node serverNode = createNode();
+        final BlockingQueue<Message> receivedMessages = new LinkedBlockingQueue<>();
+        final BlockingQueue<Session> clientSessions = new LinkedBlockingQueue<>();
+        final ServerChannel serverChannel = new ServerChannelImpl(serverTransport, serverNode);
+        serverChannel.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedMessages.add(message);
+            }
+        }, false);
+        ClientChannel clientChannel = new ClientChannelImpl(target);
+        Message message = createMessage(createTextContent());
+
+        // Act
+        serverChannel.establishSession(new SessionCompression[]{SessionCompression.NONE}, new SessionEncryption[]{SessionEncryption.NONE},
+                new Authentication.AuthenticationScheme[]{Authentication.AuthenticationScheme.GUEST},
+                new Authenticator() {
+                    @Override
+                    public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                        listener.onAuthenticated(node);
+                    }
+                },
+                new ServerChannel.EstablishSessionListener() {
+                    @Override
+                    public void onEstablished(Node remoteNode) {
+                    }
+
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+                });
+        clientChannel.establishSession(SessionCompression.NONE, SessionEncryption.NONE, createIdentity(), new GuestAuthentication(),
+                createInstanceName(), new ClientChannel.EstablishSessionListener() {
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+
+                    @Override
+                    public void onReceiveSession(Session session) {
+                        clientSessions.add(session);
+                    }
+                });
+        Session clientSession = clientSessions.poll(5, TimeUnit.SECONDS);
+        clientChannel.sendMessage(message);
+
+        // Assert
+        assertNotNull(clientSession);
+        assertEquals(Session.SessionState.ESTABLISHED, clientSession.getState());
+        assertEquals(serverNode, clientChannel.getRemoteNode());
+        Message actual = receivedMessages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actual);
+        assertEquals(message.getId(), actual.getId());
+    }
+}
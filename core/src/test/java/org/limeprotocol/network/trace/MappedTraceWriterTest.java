@@ -0,0 +1,241 @@
+package org.limeprotocol.network.trace;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedTraceWriterTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private File directory;
+    private MappedTraceWriter target;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("lime-trace").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (target != null) {
+            target.close();
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private MappedTraceWriter getTarget(int segmentSize, int maxSegments) throws IOException {
+        target = new MappedTraceWriter(directory, segmentSize, maxSegments, 1024, ThreadFactories.platform());
+        return target;
+    }
+
+    private static List<TraceRecord> readAll(File directory) throws IOException {
+        List<TraceRecord> records = new ArrayList<>();
+        for (File segment : MappedTraceWriter.listSegments(directory)) {
+            try (TraceLogReader reader = new TraceLogReader(segment)) {
+                TraceRecord record;
+                while ((record = reader.read()) != null) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void trace_bytesAndString_writesRecordsInOrder() throws Exception {
+        // Arrange
+        MappedTraceWriter target = getTarget(MappedTraceWriter.DEFAULT_SEGMENT_SIZE, 2);
+        byte[] buffer = "xx{\"id\":\"1\"}xx".getBytes(UTF8);
+        long before = System.currentTimeMillis();
+
+        // Act
+        target.trace(buffer, 2, buffer.length - 4, TraceWriter.DataOperation.RECEIVE);
+        target.trace("{\"id\":\"2\"}", TraceWriter.DataOperation.SEND);
+        target.close();
+
+        // Assert
+        assertFalse(target.isEnabled());
+        List<TraceRecord> records = readAll(directory);
+        assertEquals(2, records.size());
+        assertEquals("{\"id\":\"1\"}", new String(records.get(0).getData(), UTF8));
+        assertEquals(TraceWriter.DataOperation.RECEIVE, records.get(0).getOperation());
+        assertTrue(records.get(0).getTimestamp() >= before);
+        assertEquals("{\"id\":\"2\"}", new String(records.get(1).getData(), UTF8));
+        assertEquals(TraceWriter.DataOperation.SEND, records.get(1).getOperation());
+        assertEquals(0, target.getDroppedCount());
+    }
+
+    @Test
+    public void trace_segmentFull_rotatesAndDeletesOldestSegments() throws Exception {
+        // Arrange
+        MappedTraceWriter target = getTarget(256, 3);
+        String data = "{\"content\":\"0123456789012345678901234567890123456789\"}";
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            target.trace(data, TraceWriter.DataOperation.SEND);
+        }
+        target.close();
+
+        // Assert
+        File[] segments = MappedTraceWriter.listSegments(directory);
+        assertEquals(3, segments.length);
+        List<TraceRecord> records = readAll(directory);
+        assertTrue(records.size() > 0);
+        assertTrue(records.size() < 50);
+        for (TraceRecord record : records) {
+            assertEquals(data, new String(record.getData(), UTF8));
+        }
+    }
+
+    @Test
+    public void constructor_existingSegments_continuesSequence() throws Exception {
+        // Arrange
+        MappedTraceWriter first = getTarget(1024, 4);
+        first.trace("{\"id\":\"1\"}", TraceWriter.DataOperation.SEND);
+        first.close();
+
+        // Act
+        MappedTraceWriter target = getTarget(1024, 4);
+        target.trace("{\"id\":\"2\"}", TraceWriter.DataOperation.SEND);
+        target.close();
+
+        // Assert
+        assertEquals(2, MappedTraceWriter.listSegments(directory).length);
+        List<TraceRecord> records = readAll(directory);
+        assertEquals(2, records.size());
+        assertEquals("{\"id\":\"1\"}", new String(records.get(0).getData(), UTF8));
+        assertEquals("{\"id\":\"2\"}", new String(records.get(1).getData(), UTF8));
+    }
+
+    @Test
+    public void trace_recordLargerThanSegment_dropsRecord() throws Exception {
+        // Arrange
+        MappedTraceWriter target = getTarget(64, 2);
+
+        // Act
+        target.trace(new byte[100], 0, 100, TraceWriter.DataOperation.SEND);
+        target.close();
+
+        // Assert
+        assertEquals(1, target.getDroppedCount());
+        assertTrue(readAll(directory).isEmpty());
+    }
+
+    @Test
+    public void trace_emptyData_writesRecordAndFollowingRecords() throws Exception {
+        // Arrange
+        MappedTraceWriter target = getTarget(1024, 2);
+
+        // Act
+        target.trace("", TraceWriter.DataOperation.SEND);
+        target.trace("{\"id\":\"1\"}", TraceWriter.DataOperation.RECEIVE);
+        target.close();
+
+        // Assert
+        List<TraceRecord> records = readAll(directory);
+        assertEquals(2, records.size());
+        assertEquals(0, records.get(0).getData().length);
+        assertEquals(TraceWriter.DataOperation.SEND, records.get(0).getOperation());
+        assertEquals("{\"id\":\"1\"}", new String(records.get(1).getData(), UTF8));
+    }
+
+    @Test
+    public void close_concurrentTraces_writesEveryRecordTracedBeforeClose() throws Exception {
+        // Arrange
+        final MappedTraceWriter target = new MappedTraceWriter(directory, MappedTraceWriter.DEFAULT_SEGMENT_SIZE, 2,
+                64 * 1024, ThreadFactories.platform());
+        this.target = target;
+        final int threadCount = 4;
+        final int[] tracedCounts = new int[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int threadIndex = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 2000 && target.isEnabled(); j++) {
+                        target.trace(threadIndex + ":" + j, TraceWriter.DataOperation.SEND);
+                        tracedCounts[threadIndex] = j + 1;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // Act
+        Thread.sleep(5);
+        target.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        int[] nextIndexes = new int[threadCount];
+        for (TraceRecord record : readAll(directory)) {
+            String[] values = new String(record.getData(), UTF8).split(":");
+            int threadIndex = Integer.parseInt(values[0]);
+            assertEquals(nextIndexes[threadIndex], Integer.parseInt(values[1]));
+            nextIndexes[threadIndex]++;
+        }
+        for (int i = 0; i < threadCount; i++) {
+            // The last trace of each thread may have been ignored after the close
+            assertTrue(nextIndexes[i] >= tracedCounts[i] - 1);
+        }
+        assertEquals(0, target.getDroppedCount());
+    }
+
+    @Test
+    public void trace_closedWriter_ignoresRecord() throws Exception {
+        // Arrange
+        MappedTraceWriter target = getTarget(1024, 2);
+        target.close();
+
+        // Act
+        target.trace("{\"id\":\"1\"}", TraceWriter.DataOperation.SEND);
+
+        // Assert
+        assertTrue(readAll(directory).isEmpty());
+        assertEquals(0, target.getDroppedCount());
+    }
+
+    @Test
+    public void decode_logDirectory_writesJsonLines() throws Exception {
+        // Arrange
+        MappedTraceWriter writer = getTarget(1024, 2);
+        writer.trace("{\"id\":\"1\",\"method\":\"get\"}", TraceWriter.DataOperation.SEND);
+        writer.trace("aborted with \"3\" bytes", TraceWriter.DataOperation.RECEIVE);
+        writer.close();
+        TraceLogDecoder target = new TraceLogDecoder();
+        StringWriter output = new StringWriter();
+
+        // Act
+        int count = target.decode(directory, output);
+
+        // Assert
+        assertEquals(2, count);
+        String[] lines = output.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].matches("\\{\"timestamp\":\"\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z\",\"operation\":\"SEND\",\"envelope\":\\{\"id\":\"1\",\"method\":\"get\"\\}\\}"));
+        assertTrue(lines[1].endsWith("\"operation\":\"RECEIVE\",\"data\":\"aborted with \\\"3\\\" bytes\"}"));
+    }
+}
@@ -10,6 +10,9 @@ import org.limeprotocol.security.PlainAuthentication;
 import org.limeprotocol.testHelpers.JsonConstants;
 import org.limeprotocol.util.StringUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import static net.javacrumbs.jsonunit.fluent.JsonFluentAssert.assertThatJson;
@@ -226,6 +229,70 @@ public class JacksonEnvelopeSerializerTest {
 
     //endregion serialize
 
+    //region serialize to bytes
+
+    @Test
+    public void serializeToStream_MessageWithNonAsciiContent_WritesUtf8Json() throws Exception {
+        // Arrange
+        Message message = createMessage(new PlainDocument("Ol\u00e1, a\u00e7\u00e3o \u20ac", MediaType.parse("text/plain")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.write('x');
+
+        // Act
+        target.serialize(message, outputStream);
+
+        // Assert
+        assertEquals("x" + target.serialize(message), new String(outputStream.toByteArray(), "UTF-8"));
+    }
+
+    @Test
+    public void serializeToBuffer_ReceivedNotification_WritesInPositionAndReturnsLength() throws Exception {
+        // Arrange
+        Notification notification = createNotification(Notification.Event.RECEIVED);
+        byte[] expected = target.serialize(notification).getBytes("UTF-8");
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length + 10);
+        buffer.position(5);
+
+        // Act
+        int length = target.serialize(notification, buffer);
+
+        // Assert
+        assertEquals(expected.length, length);
+        assertEquals(5 + expected.length, buffer.position());
+        assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 5, 5 + length));
+    }
+
+    @Test
+    public void serializeToBuffer_BufferTooSmall_ThrowsBufferOverflowExceptionAndKeepsPosition() {
+        // Arrange
+        Notification notification = createNotification(Notification.Event.RECEIVED);
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        buffer.position(2);
+
+        // Act
+        try {
+            target.serialize(notification, buffer);
+            fail("A BufferOverflowException was expected");
+        } catch (BufferOverflowException e) {
+            // Assert
+            assertEquals(2, buffer.position());
+        }
+    }
+
+    @Test
+    public void serializeToBytes_ReceivedNotification_ReturnsUtf8Json() throws Exception {
+        // Arrange
+        Notification notification = createNotification(Notification.Event.RECEIVED);
+
+        // Act
+        byte[] bytes = EnvelopeSerializers.serialize(target, notification);
+
+        // Assert
+        assertArrayEquals(target.serialize(notification).getBytes("UTF-8"), bytes);
+    }
+
+    //endregion serialize to bytes
+
     //region deserialize method
 
     //region Session
@@ -364,6 +431,23 @@ public class JacksonEnvelopeSerializerTest {
         assertThat(session.getAuthentication()).isInstanceOf(GuestAuthentication.class);
     }
 
+    @Test
+    public void deserialize_SessionAuthenticationBeforeScheme_ReturnsValidInstance() {
+        // Arrange
+        String json = "{\"authentication\":{\"password\":\"Zg==\"},\"scheme\":\"plain\",\"state\":\"authenticating\",\"id\":\"ec9c196c-da09-43b0-923b-8ec162705c32\"}";
+
+        // Act
+        Envelope envelope = target.deserialize(json);
+
+        // Assert
+        assertThat(envelope).isInstanceOf(Session.class);
+
+        Session session = (Session)envelope;
+        assertThat(session.getState()).isEqualTo(SessionState.AUTHENTICATING);
+        assertThat(session.getAuthentication()).isInstanceOf(PlainAuthentication.class);
+        assertThat(((PlainAuthentication)session.getAuthentication()).getPassword()).isEqualTo("Zg==");
+    }
+
     //endregion Session
 
     //region Command
@@ -625,6 +709,106 @@ public class JacksonEnvelopeSerializerTest {
 
     }
 
+    @Test
+    public void deserialize_JsonContentBeforeTypeMessage_ReturnsValidInstance() {
+        // Arrange
+        String json = "{\"content\":{\"text\":\"Hello\",\"count\":2},\"type\":\"application/x-unit+json\",\"id\":\"1\"}";
+
+        // Act
+        Envelope envelope = target.deserialize(json);
+
+        // Assert
+        assertThat(envelope).isInstanceOf(Message.class);
+
+        Message message = (Message)envelope;
+        assertThat(message.getContent()).isInstanceOf(JsonDocument.class);
+        assertEquals(MediaType.parse("application/x-unit+json"), message.getType());
+
+        JsonDocument document = (JsonDocument)message.getContent();
+        assertEquals("Hello", document.get("text"));
+        assertEquals(2, document.get("count"));
+    }
+
+    @Test
+    public void deserialize_PlainContentBeforeTypeMessage_ReturnsValidInstance() {
+        // Arrange
+        String json = "{\"content\":\"Hello\",\"type\":\"text/x-unit\",\"id\":\"1\"}";
+
+        // Act
+        Envelope envelope = target.deserialize(json);
+
+        // Assert
+        assertThat(envelope).isInstanceOf(Message.class);
+        assertThat(((Message)envelope).getContent()).isInstanceOf(PlainDocument.class);
+        assertEquals("Hello", ((Message)envelope).getContent().toString());
+    }
+
+    @Test
+    public void deserialize_DocumentContainerValueBeforeTypeMessage_ReturnsValidInstance() {
+        // Arrange
+        SerializationUtil.registerDocumentClass(DocumentContainer.class);
+        String json = "{\"type\":\"application/vnd.lime.container+json\",\"content\":{\"value\":{\"text\":\"Hello\"},\"type\":\"application/x-unit+json\"},\"id\":\"1\"}";
+
+        // Act
+        Envelope envelope = target.deserialize(json);
+
+        // Assert
+        assertThat(envelope).isInstanceOf(Message.class);
+        assertThat(((Message)envelope).getContent()).isInstanceOf(DocumentContainer.class);
+
+        DocumentContainer container = (DocumentContainer)((Message)envelope).getContent();
+        assertThat(container.getValue()).isInstanceOf(JsonDocument.class);
+        assertEquals(MediaType.parse("application/x-unit+json"), container.getType());
+        assertEquals("Hello", ((JsonDocument)container.getValue()).get("text"));
+    }
+
+    @Test
+    public void deserialize_InvalidContentMessage_ThrowsOnlyWhenContentIsUsed() {
+        // Arrange
+        String json = "{\"type\":\"application/x-unit+json\",\"content\":[1,2],\"id\":\"1\"}";
+        Message message = (Message)target.deserialize(json);
+
+        // Act
+        MediaType type = message.getType();
+        IllegalStateException exception = null;
+        try {
+            message.getContent();
+        } catch (IllegalStateException e) {
+            exception = e;
+        }
+
+        // Assert
+        assertEquals(MediaType.parse("application/x-unit+json"), type);
+        assertNotNull(exception);
+    }
+
+    @Test
+    public void serialize_DeserializedMessageWithUnusedContent_WritesContentAsRead() {
+        // Arrange
+        String json = "{\"id\":\"1\",\"content\":{\"z\":{\"b\":[1,\"two\",null],\"a\":true},\"y\":\"Hello\",\"x\":2},\"type\":\"application/x-unit+json\"}";
+        Envelope envelope = target.deserialize(json);
+
+        // Act
+        String resultString = target.serialize(envelope);
+
+        // Assert
+        assertEquals(json, resultString);
+    }
+
+    @Test
+    public void serialize_DeserializedMessageWithChangedContent_WritesChangedContent() {
+        // Arrange
+        String json = "{\"id\":\"1\",\"type\":\"application/x-unit+json\",\"content\":{\"text\":\"Hello\"}}";
+        Message message = (Message)target.deserialize(json);
+        ((JsonDocument)message.getContent()).put("text", "Bye");
+
+        // Act
+        String resultString = target.serialize(message);
+
+        // Assert
+        assertThatJson(resultString).node("content.text").isEqualTo("Bye");
+    }
+
     //endregion Message
 
     //region Notification
@@ -677,6 +861,32 @@ public class JacksonEnvelopeSerializerTest {
         assertNull(notification.getReason());
     }
 
+    @Test
+    public void deserialize_SameNodesTwice_ReturnsChangeableNodes()
+    {
+        // Arrange
+        Node from = createNode();
+        Node to = createNode();
+        String json = StringUtils.format(
+                "{\"event\":\"received\",\"id\":\"{0}\",\"from\":\"{1}\",\"to\":\"{2}\"}",
+                EnvelopeId.newId(),
+                from,
+                to
+        );
+        Envelope envelope = target.deserialize(json);
+
+        // Act
+        envelope.getFrom().setInstance("otherInstance");
+        envelope.getTo().setDomain("otherDomain");
+        Envelope actual = target.deserialize(json);
+
+        // Assert
+        assertEquals("otherInstance", envelope.getFrom().getInstance());
+        assertEquals("otherDomain", envelope.getTo().getDomain());
+        assertEquals(from, actual.getFrom());
+        assertEquals(to, actual.getTo());
+    }
+
     @Test
     public void deserialize_FailedNotification_ReturnsValidInstance()
     {
@@ -715,8 +925,53 @@ public class JacksonEnvelopeSerializerTest {
         assertEquals(reasonDescription, notification.getReason().getDescription());
     }
 
+    @Test
+    public void deserialize_ReceivedNotificationBufferSlice_ReturnsValidInstance() throws Exception
+    {
+        String id = EnvelopeId.newId();
+        Node from = createNode();
+        Node to = createNode();
+        Notification.Event event = Notification.Event.RECEIVED;
+
+        String json = StringUtils.format(
+                "{\"event\":\"{0}\",\"id\":\"{1}\",\"from\":\"{2}\",\"to\":\"{3}\"}",
+                StringUtils.toCamelCase(event.toString()),
+                id,
+                from,
+                to);
+        String padding = createRandomString(10);
+        byte[] buffer = (padding + json + padding).getBytes("UTF-8");
+
+        Envelope envelope = target.deserialize(buffer, padding.length(), json.getBytes("UTF-8").length);
+
+        assertTrue(envelope instanceof Notification);
+        Notification notification = (Notification) envelope;
+        assertEquals(id, notification.getId());
+        assertEquals(from, notification.getFrom());
+        assertEquals(to, notification.getTo());
+        assertEquals(event, notification.getEvent());
+    }
+
     //endregion Notification
 
+    @Test(expected = IllegalArgumentException.class)
+    public void deserialize_UnknownEnvelope_ThrowsIllegalArgumentException() {
+        // Arrange
+        String json = "{\"id\":\"1\",\"from\":\"andre@takenet.com.br/MINELLI-NOTE\"}";
+
+        // Act
+        target.deserialize(json);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deserialize_JsonArray_ThrowsIllegalArgumentException() {
+        // Arrange
+        String json = "[{\"id\":\"1\",\"event\":\"received\"}]";
+
+        // Act
+        target.deserialize(json);
+    }
+
     //endregion deserialize
 
     public static void assertJsonEnvelopeProperties(Envelope expected, String jsonString, String... properties) {
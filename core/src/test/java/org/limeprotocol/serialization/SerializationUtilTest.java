@@ -0,0 +1,65 @@
+package org.limeprotocol.serialization;
+
+import org.junit.Test;
+import org.limeprotocol.Document;
+import org.limeprotocol.JsonDocument;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.PlainDocument;
+
+import static org.junit.Assert.*;
+
+public class SerializationUtilTest {
+
+    @Test
+    public void findDocumentClassFor_registeredMediaType_returnsDocumentClass() {
+        // Arrange
+        SerializationUtil.registerDocumentClass(MediaType.parse("application/x-registered+json"), JsonDocument.class);
+
+        // Act
+        Class<? extends Document> actual = SerializationUtil.findDocumentClassFor(MediaType.parse("application/x-registered+json"));
+
+        // Assert
+        assertEquals(JsonDocument.class, actual);
+    }
+
+    @Test
+    public void findDocumentClassFor_mediaTypeRegisteredTwice_returnsLastDocumentClass() {
+        // Arrange
+        MediaType mediaType = MediaType.parse("application/x-registered-twice");
+        SerializationUtil.registerDocumentClass(mediaType, JsonDocument.class);
+        SerializationUtil.registerDocumentClass(mediaType, PlainDocument.class);
+
+        // Act
+        Class<? extends Document> actual = SerializationUtil.findDocumentClassFor(MediaType.parse("application/x-registered-twice"));
+
+        // Assert
+        assertEquals(PlainDocument.class, actual);
+    }
+
+    @Test
+    public void findDocumentClassFor_mixedCaseMediaType_returnsDocumentClass() {
+        // Arrange
+        SerializationUtil.registerDocumentClass(MediaType.parse("application/x-mixed-case+json"), JsonDocument.class);
+
+        // Act
+        Class<? extends Document> actual = SerializationUtil.findDocumentClassFor(MediaType.parse("Application/X-Mixed-Case+JSON"));
+
+        // Assert
+        assertEquals(JsonDocument.class, actual);
+    }
+
+    @Test
+    public void findDocumentClassFor_unregisteredMediaType_returnsNull() {
+        // Act
+        Class<? extends Document> actual = SerializationUtil.findDocumentClassFor(MediaType.parse("application/x-unregistered+json"));
+
+        // Assert
+        assertNull(actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registerDocumentClass_abstractClass_throwsIllegalArgumentException() {
+        // Act
+        SerializationUtil.registerDocumentClass(MediaType.parse("application/x-abstract+json"), Document.class);
+    }
+}
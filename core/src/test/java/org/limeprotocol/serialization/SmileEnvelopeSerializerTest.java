@@ -0,0 +1,91 @@
+package org.limeprotocol.serialization;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class SmileEnvelopeSerializerTest {
+
+    private SmileEnvelopeSerializer target;
+    private JacksonEnvelopeSerializer jsonSerializer;
+
+    @Before
+    public void setUp() {
+        target = new SmileEnvelopeSerializer();
+        jsonSerializer = new JacksonEnvelopeSerializer();
+    }
+
+    /**
+     * Serializes and deserializes an envelope in the Smile format, returning the JSON of the deserialized envelope.
+     */
+    private String roundTrip(Envelope envelope) {
+        byte[] bytes = EnvelopeSerializers.serialize(target, envelope);
+        return jsonSerializer.serialize(target.deserialize(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void deserialize_serializedMessageWithJsonContent_returnsSameJsonModel() {
+        // Arrange
+        Message message = createMessage(createJsonDocument());
+        message.setPp(createNode());
+        message.setMetadata(createRandomMetadata("randomString1", "randomString2"));
+
+        // Act
+        String actual = roundTrip(message);
+
+        // Assert
+        assertEquals(jsonSerializer.serialize(message), actual);
+    }
+
+    @Test
+    public void deserialize_serializedCommandWithDocumentCollection_returnsSameJsonModel() {
+        // Arrange
+        Command command = createCommand(createDocumentCollection(createJsonDocument(), createJsonDocument()));
+        command.setUri(createRelativeLimeUri());
+        command.setStatus(Command.CommandStatus.SUCCESS);
+
+        // Act
+        String actual = roundTrip(command);
+
+        // Assert
+        assertEquals(jsonSerializer.serialize(command), actual);
+    }
+
+    @Test
+    public void deserialize_serializedSessionWithAuthentication_returnsSameJsonModel() {
+        // Arrange
+        Session session = createSession(Session.SessionState.AUTHENTICATING);
+        session.setAuthentication(createPlainAuthentication());
+
+        // Act
+        String actual = roundTrip(session);
+
+        // Assert
+        assertEquals(jsonSerializer.serialize(session), actual);
+    }
+
+    @Test
+    public void deserialize_serializedFailedNotification_returnsSameJsonModel() {
+        // Arrange
+        Notification notification = createNotification(Notification.Event.FAILED);
+        notification.setReason(createReason());
+
+        // Act
+        String actual = roundTrip(notification);
+
+        // Assert
+        assertEquals(jsonSerializer.serialize(notification), actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deserialize_truncatedBuffer_throwsIllegalArgumentException() {
+        // Arrange
+        byte[] bytes = EnvelopeSerializers.serialize(target, createMessage(createJsonDocument()));
+
+        // Act
+        target.deserialize(bytes, 0, bytes.length / 2);
+    }
+}
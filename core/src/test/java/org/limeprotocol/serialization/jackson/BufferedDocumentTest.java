@@ -0,0 +1,49 @@
+package org.limeprotocol.serialization.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.junit.Test;
+import org.limeprotocol.MediaType;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class BufferedDocumentTest {
+
+    private static BufferedDocument getTarget(String json, String mediaType) throws IOException {
+        JsonParser jsonParser = new ObjectMapper().getFactory().createParser(json);
+        jsonParser.nextToken();
+        TokenBuffer buffer = new TokenBuffer(jsonParser.getCodec(), false);
+        buffer.copyCurrentStructure(jsonParser);
+        return new BufferedDocument(buffer, MediaType.parse(mediaType));
+    }
+
+    @Test
+    public void toString_notRead_returnsBufferedJsonWithoutReading() throws IOException {
+        // Arrange
+        String json = "{\"z\":{\"b\":[1,\"two\",null],\"a\":true},\"y\":\"Hello\"}";
+        BufferedDocument target = getTarget(json, "application/x-unit+json");
+
+        // Act
+        String actual = target.toString();
+
+        // Assert
+        assertEquals(json, actual);
+        assertFalse(target.isRead());
+    }
+
+    @Test
+    public void toString_invalidValue_returnsBufferedJson() throws IOException {
+        // Arrange
+        BufferedDocument target = getTarget("[1,2]", "application/x-unit+json");
+
+        // Act
+        String actual = target.toString();
+
+        // Assert
+        assertEquals("[1,2]", actual);
+        assertFalse(target.isRead());
+    }
+}
@@ -0,0 +1,365 @@
+package org.limeprotocol.server;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.network.LimeException;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.security.GuestAuthentication;
+import org.limeprotocol.security.PlainAuthentication;
+import org.limeprotocol.testHelpers.TestTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.limeprotocol.Session.SessionState;
+import static org.limeprotocol.testHelpers.Dummy.*;
+
+public class ServerChannelImplTest {
+
+    private ReceivingTestTransport transport;
+    private Node serverNode;
+    private TestEstablishSessionListener listener;
+
+    @Before
+    public void setUp() {
+        transport = new ReceivingTestTransport();
+        serverNode = createNode();
+        listener = new TestEstablishSessionListener();
+    }
+
+    private ServerChannelImpl getTarget() {
+        return new ServerChannelImpl(transport, serverNode);
+    }
+
+    private void establishSession(ServerChannelImpl target, SessionEncryption[] encryptionOptions, Authenticator authenticator) throws Exception {
+        target.establishSession(new SessionCompression[]{SessionCompression.NONE}, encryptionOptions,
+                new Authentication.AuthenticationScheme[]{Authentication.AuthenticationScheme.GUEST}, authenticator, listener);
+    }
+
+    private Session getLastSentSession() {
+        Envelope[] sentEnvelopes = transport.getSentEnvelopes();
+        assertTrue(sentEnvelopes.length > 0);
+        return (Session) sentEnvelopes[sentEnvelopes.length - 1];
+    }
+
+    private static Session createClientSession(SessionState state) {
+        Session session = new Session();
+        session.setState(state);
+        return session;
+    }
+
+    private static Session createAuthenticatingSession(Node from, Authentication authentication) {
+        Session session = createClientSession(SessionState.AUTHENTICATING);
+        session.setFrom(from);
+        session.setAuthentication(authentication);
+        return session;
+    }
+
+    private static Authenticator createAuthenticator(final Node assignedNode) {
+        return new Authenticator() {
+            @Override
+            public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                listener.onAuthenticated(assignedNode != null ? assignedNode : node);
+            }
+        };
+    }
+
+    @Test
+    public void establishSession_singleOptions_skipsNegotiation() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE}, createAuthenticator(null));
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+
+        // Assert
+        Session actual = getLastSentSession();
+        assertEquals(1, transport.getSentEnvelopes().length);
+        assertEquals(SessionState.AUTHENTICATING, actual.getState());
+        assertEquals(target.getSessionId(), actual.getId());
+        assertEquals(serverNode, actual.getFrom());
+        assertArrayEquals(new Authentication.AuthenticationScheme[]{Authentication.AuthenticationScheme.GUEST}, actual.getSchemeOptions());
+        assertEquals(SessionState.AUTHENTICATING, target.getState());
+    }
+
+    @Test
+    public void establishSession_multipleOptions_sendsNegotiationOptionsAndConfirmation() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        SessionEncryption[] encryptionOptions = {SessionEncryption.NONE, SessionEncryption.TLS};
+        establishSession(target, encryptionOptions, createAuthenticator(null));
+        Session negotiatingSession = createClientSession(SessionState.NEGOTIATING);
+        negotiatingSession.setCompression(SessionCompression.NONE);
+        negotiatingSession.setEncryption(SessionEncryption.NONE);
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(negotiatingSession);
+
+        // Assert
+        Envelope[] sentEnvelopes = transport.getSentEnvelopes();
+        assertEquals(3, sentEnvelopes.length);
+        Session optionsSession = (Session) sentEnvelopes[0];
+        assertEquals(SessionState.NEGOTIATING, optionsSession.getState());
+        assertArrayEquals(encryptionOptions, optionsSession.getEncryptionOptions());
+        Session confirmationSession = (Session) sentEnvelopes[1];
+        assertEquals(SessionState.NEGOTIATING, confirmationSession.getState());
+        assertNull(confirmationSession.getEncryptionOptions());
+        assertEquals(SessionEncryption.NONE, confirmationSession.getEncryption());
+        assertEquals(SessionState.AUTHENTICATING, ((Session) sentEnvelopes[2]).getState());
+    }
+
+    @Test
+    public void establishSession_tlsOnly_sendsNegotiationOptionsAndAppliesTls() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        SessionEncryption[] encryptionOptions = {SessionEncryption.TLS};
+        establishSession(target, encryptionOptions, createAuthenticator(null));
+        Session negotiatingSession = createClientSession(SessionState.NEGOTIATING);
+        negotiatingSession.setCompression(SessionCompression.NONE);
+        negotiatingSession.setEncryption(SessionEncryption.TLS);
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(negotiatingSession);
+
+        // Assert
+        Envelope[] sentEnvelopes = transport.getSentEnvelopes();
+        assertEquals(3, sentEnvelopes.length);
+        Session optionsSession = (Session) sentEnvelopes[0];
+        assertEquals(SessionState.NEGOTIATING, optionsSession.getState());
+        assertArrayEquals(encryptionOptions, optionsSession.getEncryptionOptions());
+        assertEquals(SessionEncryption.TLS, ((Session) sentEnvelopes[1]).getEncryption());
+        assertEquals(SessionState.AUTHENTICATING, ((Session) sentEnvelopes[2]).getState());
+        assertEquals(SessionEncryption.TLS, transport.getEncryption());
+    }
+
+    @Test
+    public void establishSession_tlsOnlyNoneSelected_sendsFailedSession() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.TLS}, createAuthenticator(null));
+        Session negotiatingSession = createClientSession(SessionState.NEGOTIATING);
+        negotiatingSession.setCompression(SessionCompression.NONE);
+        negotiatingSession.setEncryption(SessionEncryption.NONE);
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(negotiatingSession);
+
+        // Assert
+        Session actual = getLastSentSession();
+        assertEquals(SessionState.FAILED, actual.getState());
+        assertEquals(ReasonCodes.SESSION_NEGOTIATION_INVALID_OPTIONS, actual.getReason().getCode());
+        assertEquals(SessionEncryption.NONE, transport.getEncryption());
+    }
+
+    @Test
+    public void establishSession_invalidNegotiationOption_sendsFailedSessionAndClosesTransport() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE, SessionEncryption.TLS}, createAuthenticator(null));
+        Session negotiatingSession = createClientSession(SessionState.NEGOTIATING);
+        negotiatingSession.setCompression(SessionCompression.GZIP);
+        negotiatingSession.setEncryption(SessionEncryption.NONE);
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(negotiatingSession);
+
+        // Assert
+        Session actual = getLastSentSession();
+        assertEquals(SessionState.FAILED, actual.getState());
+        assertEquals(ReasonCodes.SESSION_NEGOTIATION_INVALID_OPTIONS, actual.getReason().getCode());
+        assertEquals(SessionState.FAILED, target.getState());
+        assertTrue(transport.isClosed());
+        assertTrue(listener.failure instanceof LimeException);
+    }
+
+    @Test
+    public void establishSession_authenticated_sendsEstablishedSessionAndRaisesListener() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        Node clientNode = createNode();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE}, createAuthenticator(clientNode));
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(createAuthenticatingSession(new Node(clientNode.getName(), clientNode.getDomain(), null), new GuestAuthentication()));
+
+        // Assert
+        Session actual = getLastSentSession();
+        assertEquals(SessionState.ESTABLISHED, actual.getState());
+        assertEquals(serverNode, actual.getFrom());
+        assertEquals(clientNode, actual.getTo());
+        assertEquals(SessionState.ESTABLISHED, target.getState());
+        assertEquals(clientNode, target.getRemoteNode());
+        assertEquals(clientNode, listener.remoteNode);
+        assertNull(listener.failure);
+    }
+
+    @Test
+    public void establishSession_authenticated_receivesEnvelopes() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE}, createAuthenticator(null));
+        final List<Message> receivedMessages = new ArrayList<>();
+        target.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedMessages.add(message);
+            }
+        }, false);
+        Message message = createMessage(createTextContent());
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(createAuthenticatingSession(createNode(), new GuestAuthentication()));
+        transport.receive(message);
+
+        // Assert
+        assertEquals(1, receivedMessages.size());
+        assertSame(message, receivedMessages.get(0));
+    }
+
+    @Test
+    public void establishSession_unsupportedScheme_sendsFailedSession() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE}, createAuthenticator(null));
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(createAuthenticatingSession(createNode(), new PlainAuthentication()));
+
+        // Assert
+        Session actual = getLastSentSession();
+        assertEquals(SessionState.FAILED, actual.getState());
+        assertEquals(ReasonCodes.SESSION_AUTHENTICATION_FAILED, actual.getReason().getCode());
+        assertTrue(transport.isClosed());
+    }
+
+    @Test
+    public void establishSession_authenticatorFailure_sendsFailedSessionWithReason() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        final Reason reason = createReason();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE}, new Authenticator() {
+            @Override
+            public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                listener.onFailure(reason);
+            }
+        });
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(createAuthenticatingSession(createNode(), new GuestAuthentication()));
+
+        // Assert
+        Session actual = getLastSentSession();
+        assertEquals(SessionState.FAILED, actual.getState());
+        assertEquals(reason.getCode(), actual.getReason().getCode());
+        assertEquals(reason.getCode(), ((LimeException) listener.failure).getReason().getCode());
+        assertNull(listener.remoteNode);
+    }
+
+    @Test
+    public void establishSession_authenticatorRoundtrip_sendsAuthenticatingSessionAndWaitsResponse() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        final Authentication roundtrip = new GuestAuthentication();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE}, new Authenticator() {
+            private boolean isFirst = true;
+
+            @Override
+            public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                if (isFirst) {
+                    isFirst = false;
+                    listener.onRoundtrip(roundtrip);
+                } else {
+                    listener.onAuthenticated(node);
+                }
+            }
+        });
+        Node clientNode = createNode();
+
+        // Act
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(createAuthenticatingSession(clientNode, new GuestAuthentication()));
+        Session roundtripSession = getLastSentSession();
+        transport.receive(createAuthenticatingSession(clientNode, new GuestAuthentication()));
+
+        // Assert
+        assertEquals(SessionState.AUTHENTICATING, roundtripSession.getState());
+        assertSame(roundtrip, roundtripSession.getAuthentication());
+        assertEquals(SessionState.ESTABLISHED, getLastSentSession().getState());
+        assertEquals(clientNode, listener.remoteNode);
+    }
+
+    @Test
+    public void raiseOnReceiveSession_finishingWhenEstablished_sendsFinishedSessionAndClosesTransport() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        establishSession(target, new SessionEncryption[]{SessionEncryption.NONE}, createAuthenticator(null));
+        transport.receive(createClientSession(SessionState.NEW));
+        transport.receive(createAuthenticatingSession(createNode(), new GuestAuthentication()));
+
+        // Act
+        transport.receive(createClientSession(SessionState.FINISHING));
+
+        // Assert
+        assertEquals(SessionState.FINISHED, getLastSentSession().getState());
+        assertEquals(SessionState.FINISHED, target.getState());
+        assertTrue(transport.isClosed());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sendEstablishedSession_establishedState_throwsIllegalStateException() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+        target.sendEstablishedSession(createNode());
+
+        // Act
+        target.sendEstablishedSession(createNode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void establishSession_emptySchemeOptions_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        ServerChannelImpl target = getTarget();
+
+        // Act
+        target.establishSession(new SessionCompression[]{SessionCompression.NONE}, new SessionEncryption[]{SessionEncryption.NONE},
+                new Authentication.AuthenticationScheme[0], createAuthenticator(null), listener);
+    }
+
+    private static class ReceivingTestTransport extends TestTransport {
+        public void receive(Envelope envelope) {
+            raiseOnReceive(envelope);
+        }
+
+        @Override
+        public SessionEncryption[] getSupportedEncryption() {
+            return new SessionEncryption[]{SessionEncryption.NONE, SessionEncryption.TLS};
+        }
+    }
+
+    private static class TestEstablishSessionListener implements ServerChannel.EstablishSessionListener {
+        private Node remoteNode;
+        private Exception failure;
+
+        @Override
+        public void onEstablished(Node remoteNode) {
+            this.remoteNode = remoteNode;
+        }
+
+        @Override
+        public void onFailure(Exception exception) {
+            this.failure = exception;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.limeprotocol.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CanonicalCacheTest {
+
+    private static class CountingCache extends CanonicalCache<StringBuilder> {
+        private final AtomicInteger createCount = new AtomicInteger();
+
+        CountingCache(int size) {
+            super(size);
+        }
+
+        @Override
+        protected StringBuilder create(String value) {
+            createCount.incrementAndGet();
+            return new StringBuilder(value);
+        }
+    }
+
+    @Test
+    public void get_sameValue_createsOnceAndReturnsSameInstance() {
+        // Arrange
+        CountingCache target = new CountingCache(16);
+
+        // Act
+        StringBuilder actual1 = target.get("value");
+        StringBuilder actual2 = target.get(new String("value"));
+
+        // Assert
+        assertSame(actual1, actual2);
+        assertEquals(1, target.createCount.get());
+    }
+
+    @Test
+    public void get_moreValuesThanSize_returnsInstancesOfEachValue() {
+        // Arrange
+        CountingCache target = new CountingCache(1);
+
+        // Act
+        StringBuilder actual1 = target.get("value1");
+        StringBuilder actual2 = target.get("value2");
+        StringBuilder actual3 = target.get("value1");
+
+        // Assert
+        assertEquals("value1", actual1.toString());
+        assertEquals("value2", actual2.toString());
+        assertEquals("value1", actual3.toString());
+        assertNotSame(actual1, actual3);
+        assertEquals(3, target.createCount.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_sizeNotPowerOfTwo_throwsIllegalArgumentException() {
+        // Act
+        new CountingCache(100);
+    }
+}
@@ -0,0 +1,114 @@
+package org.limeprotocol.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ThreadFactoriesTest {
+
+    private static final Runnable EMPTY_RUNNABLE = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Test
+    public void newThread_platformFactory_createsNamedDaemonThread() {
+        // Act
+        Thread actual = ThreadFactories.newThread(ThreadFactories.platform(), EMPTY_RUNNABLE, "lime-test", true);
+
+        // Assert
+        assertEquals("lime-test", actual.getName());
+        assertTrue(actual.isDaemon());
+        assertEquals(Thread.State.NEW, actual.getState());
+    }
+
+    @Test
+    public void newThread_nonDaemon_keepsFactoryDaemonFlag() {
+        // Act
+        Thread actual = ThreadFactories.newThread(ThreadFactories.platform(), EMPTY_RUNNABLE, "lime-test", false);
+
+        // Assert
+        assertFalse(actual.isDaemon());
+    }
+
+    @Test
+    public void newThread_customFactory_usesFactory() throws InterruptedException {
+        // Arrange
+        final CountDownLatch createdLatch = new CountDownLatch(1);
+        final CountDownLatch runLatch = new CountDownLatch(1);
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                createdLatch.countDown();
+                return new Thread(runnable);
+            }
+        };
+
+        // Act
+        Thread actual = ThreadFactories.newThread(threadFactory, new Runnable() {
+            @Override
+            public void run() {
+                runLatch.countDown();
+            }
+        }, "lime-test", true);
+        actual.start();
+
+        // Assert
+        assertEquals(0, createdLatch.getCount());
+        assertTrue(runLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newThread_factoryReturnsNull_throwsIllegalStateException() {
+        // Arrange
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return null;
+            }
+        };
+
+        // Act
+        ThreadFactories.newThread(threadFactory, EMPTY_RUNNABLE, "lime-test", true);
+    }
+
+    @Test
+    public void virtual_runtimeSupport_createsDaemonThreadOrThrows() throws InterruptedException {
+        if (!ThreadFactories.isVirtualSupported()) {
+            try {
+                ThreadFactories.virtual();
+                fail("UnsupportedOperationException expected");
+            } catch (UnsupportedOperationException e) {
+                return;
+            }
+        }
+
+        // Arrange
+        final CountDownLatch runLatch = new CountDownLatch(1);
+
+        // Act
+        Thread actual = ThreadFactories.newThread(ThreadFactories.virtual(), new Runnable() {
+            @Override
+            public void run() {
+                runLatch.countDown();
+            }
+        }, "lime-test", false);
+        actual.start();
+
+        // Assert
+        assertEquals("lime-test", actual.getName());
+        assertTrue(actual.isDaemon());
+        assertTrue(runLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setDefault_nullFactory_throwsIllegalArgumentException() {
+        // Act
+        ThreadFactories.setDefault(null);
+    }
+}
@@ -0,0 +1,47 @@
+package org.limeprotocol.messaging;
+
+import org.limeprotocol.Document;
+import org.limeprotocol.DocumentCollection;
+import org.limeprotocol.DocumentContainer;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.messaging.contents.*;
+import org.limeprotocol.messaging.resources.*;
+import org.limeprotocol.serialization.DocumentTypeProvider;
+
+import java.util.Map;
+
+/**
+ * Provides the documents in the package, which are registered in the first document lookup of the serializers.
+ */
+public class MessagingDocumentTypeProvider implements DocumentTypeProvider {
+
+    @Override
+    public void addDocumentTypes(Map<MediaType, Class<? extends Document>> documentTypes) {
+        add(documentTypes, ChatState.MIME_TYPE, ChatState.class);
+        add(documentTypes, Invoice.MIME_TYPE, Invoice.class);
+        add(documentTypes, Location.MIME_TYPE, Location.class);
+        add(documentTypes, MediaLink.MIME_TYPE, MediaLink.class);
+        add(documentTypes, WebLink.MIME_TYPE, WebLink.class);
+        add(documentTypes, PaymentReceipt.MIME_TYPE, PaymentReceipt.class);
+        add(documentTypes, PlainText.MIME_TYPE, PlainText.class);
+        add(documentTypes, Select.MIME_TYPE, Select.class);
+        add(documentTypes, DocumentSelect.MIME_TYPE, DocumentSelect.class);
+        add(documentTypes, DocumentCollection.MIME_TYPE, DocumentCollection.class);
+        add(documentTypes, DocumentContainer.MIME_TYPE, DocumentContainer.class);
+        add(documentTypes, Account.MIME_TYPE, Account.class);
+        add(documentTypes, Capability.MIME_TYPE, Capability.class);
+        add(documentTypes, Contact.MIME_TYPE, Contact.class);
+        add(documentTypes, Delegation.MIME_TYPE, Delegation.class);
+        add(documentTypes, Group.MIME_TYPE, Group.class);
+        add(documentTypes, GroupMember.MIME_TYPE, GroupMember.class);
+        add(documentTypes, Ping.MIME_TYPE, Ping.class);
+        add(documentTypes, Presence.MIME_TYPE, Presence.class);
+        add(documentTypes, Quota.MIME_TYPE, Quota.class);
+        add(documentTypes, Receipt.MIME_TYPE, Receipt.class);
+        add(documentTypes, Subscription.MIME_TYPE, Subscription.class);
+    }
+
+    private static void add(Map<MediaType, Class<? extends Document>> documentTypes, String mimeType, Class<? extends Document> documentClass) {
+        documentTypes.put(MediaType.parse(mimeType), documentClass);
+    }
+}
@@ -1,11 +1,12 @@
 package org.limeprotocol.messaging;
 
-import org.limeprotocol.DocumentCollection;
-import org.limeprotocol.DocumentContainer;
-import org.limeprotocol.messaging.contents.*;
-import org.limeprotocol.messaging.resources.*;
+import org.limeprotocol.Document;
+import org.limeprotocol.MediaType;
 import org.limeprotocol.serialization.SerializationUtil;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Allow the registration of the package types.
  */
@@ -13,29 +14,14 @@ public class Registrator {
 
     /**
      * Register the documents in the package.
+     * The documents are also registered by the {@link MessagingDocumentTypeProvider} in the first document lookup,
+     * so this is needed only for replacing other registrations of the same media types.
      */
     public static void registerDocuments() {
-        SerializationUtil.registerDocumentClass(ChatState.class);
-        SerializationUtil.registerDocumentClass(Invoice.class);
-        SerializationUtil.registerDocumentClass(Location.class);
-        SerializationUtil.registerDocumentClass(MediaLink.class);
-        SerializationUtil.registerDocumentClass(WebLink.class);
-        SerializationUtil.registerDocumentClass(PaymentReceipt.class);
-        SerializationUtil.registerDocumentClass(PlainText.class);
-        SerializationUtil.registerDocumentClass(Select.class);
-        SerializationUtil.registerDocumentClass(DocumentSelect.class);
-        SerializationUtil.registerDocumentClass(DocumentCollection.class);
-        SerializationUtil.registerDocumentClass(DocumentContainer.class);
-        SerializationUtil.registerDocumentClass(Account.class);
-        SerializationUtil.registerDocumentClass(Capability.class);
-        SerializationUtil.registerDocumentClass(Contact.class);
-        SerializationUtil.registerDocumentClass(Delegation.class);
-        SerializationUtil.registerDocumentClass(Group.class);
-        SerializationUtil.registerDocumentClass(GroupMember.class);
-        SerializationUtil.registerDocumentClass(Ping.class);
-        SerializationUtil.registerDocumentClass(Presence.class);
-        SerializationUtil.registerDocumentClass(Quota.class);
-        SerializationUtil.registerDocumentClass(Receipt.class);
-        SerializationUtil.registerDocumentClass(Subscription.class);
+        Map<MediaType, Class<? extends Document>> documentTypes = new HashMap<>();
+        new MessagingDocumentTypeProvider().addDocumentTypes(documentTypes);
+        for (Map.Entry<MediaType, Class<? extends Document>> entry : documentTypes.entrySet()) {
+            SerializationUtil.registerDocumentClass(entry.getKey(), entry.getValue());
+        }
     }
 }
@@ -3,11 +3,13 @@ package org.limeprotocol.messaging.contents;
 import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Allows the chat clients to exchange
  * information about conversation events.
  */
+@GenerateSerializers
 public class ChatState extends DocumentBase {
     public static final String MIME_TYPE = "application/vnd.lime.chatstate+json";
 
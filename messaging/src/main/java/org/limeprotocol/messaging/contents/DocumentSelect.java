@@ -3,11 +3,13 @@ package org.limeprotocol.messaging.contents;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.DocumentContainer;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Aggregates a list of DocumentSelectOption for selection.
  * This class is similar to the Select, but allows generic documents to be defined in the select header and options, instead of plain text.
  */
+@GenerateSerializers
 public class DocumentSelect extends DocumentBase {
     public static final String MIME_TYPE = "application/vnd.lime.document-select+json";
 
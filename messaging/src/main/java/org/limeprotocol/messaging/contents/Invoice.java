@@ -2,6 +2,7 @@ package org.limeprotocol.messaging.contents;
 
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 import java.math.BigDecimal;
 import java.util.Date;
@@ -9,6 +10,7 @@ import java.util.Date;
 /**
  * Represents an invoice for requesting a payment.
  */
+@GenerateSerializers
 public class Invoice extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.invoice+json";
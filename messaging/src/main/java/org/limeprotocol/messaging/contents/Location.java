@@ -2,10 +2,12 @@ package org.limeprotocol.messaging.contents;
 
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Represents a geographic location information.
  */
+@GenerateSerializers
 public class Location extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.location+json";
@@ -1,10 +1,12 @@
 package org.limeprotocol.messaging.contents;
 
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Represents an external link to a media content.
  */
+@GenerateSerializers
 public class MediaLink extends Link {
 
     public static final String MIME_TYPE = "application/vnd.lime.media-link+json";
@@ -2,6 +2,7 @@ package org.limeprotocol.messaging.contents;
 
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 import java.math.BigDecimal;
 import java.text.DateFormat;
@@ -17,6 +18,7 @@ import static java.util.Currency.getAvailableCurrencies;
 /**
  * Defines a receipt for an invoice payment.
  */
+@GenerateSerializers
 public class PaymentReceipt extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.payment-receipt+json";
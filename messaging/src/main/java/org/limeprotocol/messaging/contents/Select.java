@@ -4,10 +4,12 @@ import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
 import org.limeprotocol.Node;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Aggregates a list of options for selection.
  */
+@GenerateSerializers
 public class Select extends DocumentBase {
     public static final String MIME_TYPE = "application/vnd.lime.select+json";
 
@@ -4,9 +4,11 @@ import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.Identity;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 import java.net.URI;
 
+@GenerateSerializers
 public class Account extends ContactDocument {
 
     public static final String RESOURCE_PATH = "/account";
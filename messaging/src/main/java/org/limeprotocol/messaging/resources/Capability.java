@@ -3,11 +3,13 @@ package org.limeprotocol.messaging.resources;
 import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Represents the capabilities
  * of the nodes of the network
  */
+@GenerateSerializers
 public class Capability extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.capability+json";
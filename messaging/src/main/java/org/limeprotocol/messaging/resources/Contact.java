@@ -4,7 +4,9 @@ import org.limeprotocol.DocumentBase;
 import org.limeprotocol.Identity;
 import org.limeprotocol.MediaType;
 import org.limeprotocol.util.StringUtils;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
+@GenerateSerializers
 public class Contact extends ContactDocument {
 
     public static final String MIME_TYPE = "application/vnd.lime.contact+json";
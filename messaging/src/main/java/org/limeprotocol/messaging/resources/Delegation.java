@@ -1,6 +1,7 @@
 package org.limeprotocol.messaging.resources;
 
 import org.limeprotocol.*;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 import static org.limeprotocol.Command.*;
 
@@ -12,6 +13,7 @@ import static org.limeprotocol.Command.*;
  * be revoked through a delete command.
  */
 
+@GenerateSerializers
 public class Delegation extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.delegation+json";
@@ -1,10 +1,12 @@
 package org.limeprotocol.messaging.resources;
 
 import org.limeprotocol.*;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 import java.net.URI;
 import java.util.Date;
 
+@GenerateSerializers
 public class Group extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.group+json";
@@ -3,7 +3,9 @@ package org.limeprotocol.messaging.resources;
 import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
+@GenerateSerializers
 public class Ping extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.ping+json";
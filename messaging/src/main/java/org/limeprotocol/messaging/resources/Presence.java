@@ -3,6 +3,7 @@ package org.limeprotocol.messaging.resources;
 import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 import java.util.Date;
 
@@ -14,6 +15,7 @@ import java.util.Date;
  * is enforced by the existing session).
  * In a new session, the node starts with an unavailable status.
  */
+@GenerateSerializers
 public class Presence extends DocumentBase {
 
     public static final String MIME_TYPE = "application/vnd.lime.presence+json";
@@ -3,11 +3,13 @@ package org.limeprotocol.messaging.resources;
 import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Allows the nodes to manage the
  * session envelope quota configuration.
  */
+@GenerateSerializers
 public class Quota extends DocumentBase {
     public static final String MIME_TYPE = "application/vnd.lime.quota+json";
 
@@ -10,7 +10,9 @@ import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.MediaType;
 import org.limeprotocol.Notification.Event;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
+@GenerateSerializers
 public class Receipt extends DocumentBase {
     public static final String MIME_TYPE = "application/vnd.lime.receipt+json";
 
@@ -4,6 +4,7 @@ import org.limeprotocol.Document;
 import org.limeprotocol.DocumentBase;
 import org.limeprotocol.Identity;
 import org.limeprotocol.MediaType;
+import org.limeprotocol.serialization.jackson.GenerateSerializers;
 
 /**
  * Represents a resource subscription information, which allows to a node receive the
@@ -13,6 +14,7 @@ import org.limeprotocol.MediaType;
  * caller, like a resource in a server. To be able to subscribe to another node resource,
  * the subscriber must have a get delegation for the resource in the publisher node.
  */
+@GenerateSerializers
 public class Subscription extends DocumentBase {
     public static final String MIME_TYPE = "application/vnd.lime.subscription+json";
 
@@ -0,0 +1,50 @@
+package org.limeprotocol.messaging;
+
+import org.junit.Test;
+import org.limeprotocol.Document;
+import org.limeprotocol.MediaType;
+import org.limeprotocol.messaging.contents.Location;
+import org.limeprotocol.messaging.contents.Select;
+import org.limeprotocol.serialization.SerializationUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MessagingDocumentTypeProviderTest {
+
+    @Test
+    public void addDocumentTypes_allDocuments_addsMediaTypesOfTheInstances() throws Exception {
+        // Arrange
+        MessagingDocumentTypeProvider target = new MessagingDocumentTypeProvider();
+        Map<MediaType, Class<? extends Document>> documentTypes = new HashMap<>();
+
+        // Act
+        target.addDocumentTypes(documentTypes);
+
+        // Assert
+        assertEquals(22, documentTypes.size());
+        for (Map.Entry<MediaType, Class<? extends Document>> entry : documentTypes.entrySet()) {
+            assertEquals(entry.getValue().getName(), entry.getValue().newInstance().getMediaType(), entry.getKey());
+        }
+    }
+
+    @Test
+    public void findDocumentClassFor_providedMediaType_returnsDocumentClass() {
+        // Act
+        Class<? extends Document> actual = SerializationUtil.findDocumentClassFor(MediaType.parse(Location.MIME_TYPE));
+
+        // Assert
+        assertEquals(Location.class, actual);
+    }
+
+    @Test
+    public void findDocumentClassFor_mixedCaseProvidedMediaType_returnsDocumentClass() {
+        // Act
+        Class<? extends Document> actual = SerializationUtil.findDocumentClassFor(MediaType.parse("application/vnd.lime.select+JSON"));
+
+        // Assert
+        assertEquals(Select.class, actual);
+    }
+}
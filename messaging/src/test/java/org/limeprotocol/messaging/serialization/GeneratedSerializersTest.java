@@ -0,0 +1,162 @@
+package org.limeprotocol.messaging.serialization;
+
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.messaging.Registrator;
+import org.limeprotocol.messaging.contents.PlainText;
+import org.limeprotocol.messaging.resources.Account;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.jackson.CustomSerializerModule;
+import org.limeprotocol.serialization.jackson.DocumentSerializerProvider;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the serializers generated for the documents annotated with the GenerateSerializers
+ * against the bean serialization of the core module.
+ */
+public class GeneratedSerializersTest {
+
+    private ObjectMapper generatedMapper;
+    private ObjectMapper beanMapper;
+    private List<Class<?>> documentClasses;
+
+    @Before
+    public void setUp() {
+        Registrator.registerDocuments();
+        generatedMapper = JacksonEnvelopeSerializer.createObjectMapper().registerModule(new CustomSerializerModule());
+        beanMapper = JacksonEnvelopeSerializer.createObjectMapper().registerModule(new CustomSerializerModule() {
+            // Skips the generated serializers, which are nested classes of the providers
+            @Override
+            public <T> SimpleModule addSerializer(Class<? extends T> type, JsonSerializer<T> serializer) {
+                return isGenerated(serializer) ? this : super.addSerializer(type, serializer);
+            }
+
+            @Override
+            public <T> SimpleModule addDeserializer(Class<T> type, JsonDeserializer<? extends T> deserializer) {
+                return isGenerated(deserializer) ? this : super.addDeserializer(type, deserializer);
+            }
+        });
+        documentClasses = new ArrayList<>();
+        for (DocumentSerializerProvider provider : ServiceLoader.load(DocumentSerializerProvider.class)) {
+            provider.addSerializers(new SimpleModule() {
+                @Override
+                public <T> SimpleModule addSerializer(Class<? extends T> type, JsonSerializer<T> serializer) {
+                    documentClasses.add(type);
+                    return this;
+                }
+            });
+        }
+    }
+
+    private static boolean isGenerated(Object serializer) {
+        Class<?> enclosingClass = serializer.getClass().getEnclosingClass();
+        return enclosingClass != null && DocumentSerializerProvider.class.isAssignableFrom(enclosingClass);
+    }
+
+    /**
+     * Creates a value with all the properties set, by the public setters.
+     */
+    private static Object createValue(Class<?> type, String name, int depth) throws Exception {
+        if (type == String.class) {
+            return name + "Value";
+        } else if (type == int.class || type == Integer.class) {
+            return 1;
+        } else if (type == long.class || type == Long.class) {
+            return 2L;
+        } else if (type == double.class || type == Double.class) {
+            return 3.5;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return true;
+        } else if (type == BigDecimal.class) {
+            return new BigDecimal("4.25");
+        } else if (type == Date.class) {
+            return new Date(1420070400000L);
+        } else if (type == URI.class) {
+            return URI.create("http://limeprotocol.org/" + name);
+        } else if (type == LimeUri.class) {
+            return LimeUri.parse("lime://john@limeprotocol.org/" + name);
+        } else if (type == Identity.class) {
+            return Identity.parse("john@limeprotocol.org");
+        } else if (type == Node.class) {
+            return Node.parse("john@limeprotocol.org/home");
+        } else if (type == MediaType.class) {
+            return MediaType.parse("application/x-" + name.toLowerCase() + "+json");
+        } else if (type == Document.class) {
+            return new PlainText(name + "Text");
+        } else if (type == Map.class) {
+            return Collections.singletonMap(name, name + "Value");
+        } else if (type.isEnum()) {
+            Object[] constants = type.getEnumConstants();
+            return constants[constants.length - 1];
+        } else if (type.isArray()) {
+            Object array = Array.newInstance(type.getComponentType(), 1);
+            Array.set(array, 0, createValue(type.getComponentType(), name, depth));
+            return array;
+        } else if (type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers())) {
+            // The inner classes can't be created by the deserializers
+            return null;
+        }
+        Object value = type.newInstance();
+        if (depth < 3) {
+            for (Method method : type.getMethods()) {
+                if (method.getName().startsWith("set") && method.getParameterTypes().length == 1 &&
+                        !Modifier.isStatic(method.getModifiers())) {
+                    method.invoke(value, createValue(method.getParameterTypes()[0], method.getName().substring(3), depth + 1));
+                }
+            }
+        }
+        return value;
+    }
+
+    @Test
+    public void serialize_allAnnotatedDocuments_returnsBeanSerialization() throws Exception {
+        assertTrue(documentClasses.contains(Account.class));
+        for (Class<?> documentClass : documentClasses) {
+            // Arrange
+            Object document = createValue(documentClass, documentClass.getSimpleName(), 0);
+            Object emptyDocument = documentClass.newInstance();
+
+            // Act
+            String actual = generatedMapper.writeValueAsString(document);
+            String actualEmpty = generatedMapper.writeValueAsString(emptyDocument);
+
+            // Assert
+            assertEquals(documentClass.getName(), beanMapper.writeValueAsString(document), actual);
+            assertEquals(documentClass.getName(), beanMapper.writeValueAsString(emptyDocument), actualEmpty);
+        }
+    }
+
+    @Test
+    public void deserialize_allAnnotatedDocuments_returnsBeanDeserialization() throws Exception {
+        assertTrue(documentClasses.contains(Account.class));
+        for (Class<?> documentClass : documentClasses) {
+            // Arrange
+            String json = beanMapper.writeValueAsString(createValue(documentClass, documentClass.getSimpleName(), 0));
+
+            // Act
+            Object actual = generatedMapper.readValue(json, documentClass);
+
+            // Assert
+            assertEquals(documentClass.getName(), json, beanMapper.writeValueAsString(actual));
+            assertEquals(documentClass.getName(), json, beanMapper.writeValueAsString(beanMapper.readValue(json, documentClass)));
+        }
+    }
+}
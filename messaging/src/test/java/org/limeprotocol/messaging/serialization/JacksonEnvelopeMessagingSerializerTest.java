@@ -10,6 +10,7 @@ import org.limeprotocol.messaging.contents.*;
 import org.limeprotocol.messaging.resources.Account;
 import org.limeprotocol.messaging.resources.Capability;
 import org.limeprotocol.messaging.resources.Contact;
+import org.limeprotocol.messaging.resources.Presence;
 import org.limeprotocol.messaging.resources.Receipt;
 import org.limeprotocol.messaging.testHelpers.MessagingJsonConstants;
 import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
@@ -673,6 +674,40 @@ public class JacksonEnvelopeMessagingSerializerTest {
         assertThat(command.getUri()).isNull();
     }
 
+    @Test
+    public void deserialize_PresenceRequestCommandWithUnknownAndNullProperties_ReturnsValidInstance() {
+        // Arrange
+        Command.CommandMethod method = SET;
+        String id = EnvelopeId.newId();
+
+        String json = StringUtils.format(
+                "{\"type\":\"application/vnd.lime.presence+json\",\"resource\":{\"status\":\"available\",\"unknown\":{\"value\":[1,2]},\"message\":null,\"routingRule\":\"identity\",\"priority\":\"2\",\"echo\":true,\"instances\":[\"home\",\"work\"]},\"method\":\"{0}\",\"id\":\"{1}\"}",
+                StringUtils.toCamelCase(method.toString()),
+                id);
+
+        // Act
+        Envelope envelope = target.deserialize(json);
+
+        // Assert
+        assertThat(envelope).isInstanceOf(Command.class);
+
+        Command command = (Command)envelope;
+
+        assertThat(command.getId()).isEqualTo(id);
+        assertThat(command.getMethod()).isEqualTo(method);
+
+        assertThat(command.getType().toString()).isEqualTo(Presence.MIME_TYPE);
+        assertThat(command.getResource()).isNotNull().isInstanceOf(Presence.class);
+        Presence presence = (Presence) command.getResource();
+        assertThat(presence.getStatus()).isEqualTo(Presence.PresenceStatus.AVAILABLE);
+        assertThat(presence.getMessage()).isNull();
+        assertThat(presence.getRoutingRule()).isEqualTo(Presence.RoutingRule.IDENTITY);
+        assertThat(presence.getPriority()).isEqualTo(2);
+        assertThat(presence.getLastSeen()).isNull();
+        assertThat(presence.getEcho()).isNotNull().isTrue();
+        assertThat(presence.getInstances()).containsOnly("home", "work");
+    }
+
     @Test
     public void deserialize_AccountRequestCommand_ReturnsValidInstance() throws URISyntaxException {
         // Arrange
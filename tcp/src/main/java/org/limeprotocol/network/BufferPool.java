@@ -0,0 +1,91 @@
+package org.limeprotocol.network;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size byte arrays, used to avoid keeping
+ * a receive buffer allocated for each idle connection.
+ */
+public class BufferPool {
+
+    public final static int DEFAULT_BUFFER_SIZE = 8192 * 8;
+    public final static int DEFAULT_MAX_POOLED_BUFFERS = 256;
+
+    private static volatile BufferPool defaultPool;
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Queue<byte[]> buffers;
+    private final AtomicInteger pooledBuffers;
+
+    public BufferPool(int bufferSize) {
+        this(bufferSize, DEFAULT_MAX_POOLED_BUFFERS);
+    }
+
+    public BufferPool(int bufferSize, int maxPooledBuffers) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize");
+        }
+        if (maxPooledBuffers < 0) {
+            throw new IllegalArgumentException("maxPooledBuffers");
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.buffers = new ConcurrentLinkedQueue<>();
+        this.pooledBuffers = new AtomicInteger();
+    }
+
+    /**
+     * Gets the pool shared by the transports in the process.
+     * @return
+     */
+    public static BufferPool getDefault() {
+        if (defaultPool == null) {
+            synchronized (BufferPool.class) {
+                if (defaultPool == null) {
+                    defaultPool = new BufferPool(DEFAULT_BUFFER_SIZE);
+                }
+            }
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Gets the size of the buffers of the pool.
+     * @return
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating a new one if the pool is empty.
+     * @return
+     */
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            return new byte[bufferSize];
+        }
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * Buffers with a different size or exceeding the pool capacity are discarded.
+     * @param buffer
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) {
+            return;
+        }
+        if (pooledBuffers.incrementAndGet() > maxPooledBuffers) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        buffers.add(buffer);
+    }
+}
@@ -0,0 +1,102 @@
+package org.limeprotocol.network;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct byte buffers with the same capacity.
+ * Direct buffers are expensive to allocate and are released only by the garbage collector,
+ * so they should be reused between connections.
+ */
+public class DirectBufferPool {
+
+    /**
+     * The default capacity fits a TLS record.
+     */
+    public final static int DEFAULT_BUFFER_SIZE = 17 * 1024;
+    public final static int DEFAULT_MAX_POOLED_BUFFERS = 256;
+
+    private static volatile DirectBufferPool defaultPool;
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Queue<ByteBuffer> buffers;
+    private final AtomicInteger pooledBuffers;
+
+    public DirectBufferPool(int bufferSize) {
+        this(bufferSize, DEFAULT_MAX_POOLED_BUFFERS);
+    }
+
+    public DirectBufferPool(int bufferSize, int maxPooledBuffers) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize");
+        }
+        if (maxPooledBuffers < 0) {
+            throw new IllegalArgumentException("maxPooledBuffers");
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.buffers = new ConcurrentLinkedQueue<>();
+        this.pooledBuffers = new AtomicInteger();
+    }
+
+    /**
+     * Gets the pool shared by the transports in the process.
+     * @return
+     */
+    public static DirectBufferPool getDefault() {
+        if (defaultPool == null) {
+            synchronized (DirectBufferPool.class) {
+                if (defaultPool == null) {
+                    defaultPool = new DirectBufferPool(DEFAULT_BUFFER_SIZE);
+                }
+            }
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Gets the capacity of the buffers of the pool.
+     * @return
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a cleared buffer with at least the specified capacity.
+     * Buffers bigger than the pool capacity are allocated and not pooled.
+     * @param minCapacity
+     * @return
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity > bufferSize) {
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * Buffers with a different capacity or exceeding the pool capacity are discarded.
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (pooledBuffers.incrementAndGet() > maxPooledBuffers) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        buffers.add(buffer);
+    }
+}
@@ -1,6 +1,22 @@
 package org.limeprotocol.network;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffer for extracting JSON frames from a stream of bytes.
+ * The frames are consumed by advancing a read offset, and the remaining bytes
+ * are moved to the start of the buffer only when there's no space left at its end.
+ * The buffer grows up to a maximum size and can be returned to a pool while there's no pending data.
+ * In the {@link ScanMode#LENGTH_PREFIXED} mode, the frames are delimited by their length instead of the JSON brackets,
+ * for the binary envelopes.
+ */
 public class JsonBuffer {
+    /**
+     * The size of the big-endian length that precedes the frames in the {@link ScanMode#LENGTH_PREFIXED} mode.
+     */
+    public final static int LENGTH_PREFIX_SIZE = 4;
+
     private int jsonStartPos;
     private int jsonCurPos;
     private int jsonStackedBrackets;
@@ -8,30 +24,248 @@ public class JsonBuffer {
     private boolean insideQuotes;
     private boolean isEscaping;
     private byte[] buffer;
+    private int bufferReadPos;
     private int bufferCurPos;
+    private boolean hasFrame;
+    private int frameOffset;
+    private int frameLength;
+    private final int initialBufferSize;
+    private final int maxBufferSize;
+    private final BufferPool bufferPool;
+    private final ScanMode scanMode;
 
+    /**
+     * Creates a buffer with a fixed size.
+     * @param bufferSize
+     */
     public JsonBuffer(int bufferSize) {
-        buffer = new byte[bufferSize];
+        this(bufferSize, bufferSize);
+    }
+
+    /**
+     * Creates a buffer that grows up to the specified maximum size.
+     * @param initialBufferSize
+     * @param maxBufferSize
+     */
+    public JsonBuffer(int initialBufferSize, int maxBufferSize) {
+        this(initialBufferSize, maxBufferSize, ScanMode.BYTE);
+    }
+
+    /**
+     * Creates a buffer that grows up to the specified maximum size, using the specified frame scanner.
+     * @param initialBufferSize
+     * @param maxBufferSize
+     * @param scanMode
+     */
+    public JsonBuffer(int initialBufferSize, int maxBufferSize, ScanMode scanMode) {
+        this(initialBufferSize, maxBufferSize, null, scanMode);
+    }
+
+    /**
+     * Creates a buffer that takes its initial array from the pool and grows up to the specified maximum size.
+     * @param bufferPool
+     * @param maxBufferSize
+     */
+    public JsonBuffer(BufferPool bufferPool, int maxBufferSize) {
+        this(bufferPool, maxBufferSize, ScanMode.BYTE);
+    }
+
+    /**
+     * Creates a buffer that takes its initial array from the pool and grows up to the specified maximum size,
+     * using the specified frame scanner.
+     * @param bufferPool
+     * @param maxBufferSize
+     * @param scanMode
+     */
+    public JsonBuffer(BufferPool bufferPool, int maxBufferSize, ScanMode scanMode) {
+        this(bufferPool.getBufferSize(), maxBufferSize, bufferPool, scanMode);
+    }
+
+    private JsonBuffer(int initialBufferSize, int maxBufferSize, BufferPool bufferPool, ScanMode scanMode) {
+        if (initialBufferSize <= 0) {
+            throw new IllegalArgumentException("initialBufferSize");
+        }
+        if (maxBufferSize < initialBufferSize) {
+            throw new IllegalArgumentException("maxBufferSize");
+        }
+        if (scanMode == null) {
+            throw new IllegalArgumentException("scanMode");
+        }
+        this.initialBufferSize = initialBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.bufferPool = bufferPool;
+        this.scanMode = scanMode;
+    }
+
+    public ScanMode getScanMode() {
+        return scanMode;
     }
 
+    /**
+     * Gets the buffer array, allocating it if needed.
+     * The array can change after calls to the {@link #ensureWritable()} and {@link #release()} methods.
+     * @return
+     */
     public byte[] getBuffer() {
+        if (buffer == null) {
+            buffer = bufferPool != null ? bufferPool.acquire() : new byte[initialBufferSize];
+        }
         return buffer;
     }
 
+    /**
+     * Gets the position in the buffer where the next read bytes should be written.
+     * @return
+     */
     public int getBufferCurPos() {
+        releaseFrame();
         return bufferCurPos;
     }
 
+    /**
+     * Gets the number of bytes that can be written at the current position.
+     * @return
+     */
+    public int getWritableLength() {
+        return getBuffer().length - getBufferCurPos();
+    }
+
     public void increaseBufferCurPos(int bytes) {
+        releaseFrame();
         bufferCurPos += bytes;
     }
 
+    /**
+     * Gets the number of received bytes that were not consumed as frames.
+     * @return
+     */
+    public int getPendingLength() {
+        releaseFrame();
+        return bufferCurPos - bufferReadPos;
+    }
+
+    /**
+     * Gets the maximum size of the buffer, which limits the size of a single frame.
+     * @return
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * Ensures that there's space for writing at the current position,
+     * moving the pending bytes to the start of the buffer or growing it if needed.
+     * @return False if the pending bytes already fill a buffer of the maximum size.
+     */
+    public boolean ensureWritable() {
+        releaseFrame();
+        byte[] buffer = getBuffer();
+        if (bufferCurPos < buffer.length) {
+            return true;
+        }
+        if (bufferReadPos > 0) {
+            compact();
+            return true;
+        }
+        if (buffer.length < maxBufferSize) {
+            int newSize = buffer.length > maxBufferSize / 2 ? maxBufferSize : buffer.length * 2;
+            byte[] newBuffer = new byte[newSize];
+            System.arraycopy(buffer, 0, newBuffer, 0, bufferCurPos);
+            if (bufferPool != null) {
+                bufferPool.release(buffer);
+            }
+            this.buffer = newBuffer;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the buffer array to the pool if there's no pending bytes.
+     * @return True if the array was released.
+     */
+    public boolean release() {
+        if (buffer == null) {
+            return true;
+        }
+        if (getPendingLength() > 0) {
+            return false;
+        }
+        if (bufferPool != null) {
+            bufferPool.release(buffer);
+        }
+        buffer = null;
+        bufferReadPos = 0;
+        bufferCurPos = 0;
+        jsonCurPos = 0;
+        jsonStartPos = 0;
+        return true;
+    }
+
+    /**
+     * Removes the bytes that were not consumed as frames from the buffer,
+     * for being handled by another reader.
+     * @return
+     */
+    public byte[] drainPending() {
+        int pendingLength = getPendingLength();
+        byte[] pending = new byte[pendingLength];
+        if (pendingLength > 0) {
+            System.arraycopy(buffer, bufferReadPos, pending, 0, pendingLength);
+        }
+        bufferReadPos = 0;
+        bufferCurPos = 0;
+        jsonCurPos = 0;
+        jsonStartPos = 0;
+        jsonStackedBrackets = 0;
+        jsonStarted = false;
+        insideQuotes = false;
+        isEscaping = false;
+        return pending;
+    }
+
+    /**
+     * Gets the offset in the buffer of the last read frame.
+     * @return
+     */
+    public int getFrameOffset() {
+        return frameOffset;
+    }
+
+    /**
+     * Gets the length of the last read frame.
+     * @return
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
     public JsonBufferReadResult tryExtractJsonFromBuffer() {
+        if (tryReadFrame()) {
+            byte[] json = new byte[frameLength];
+            System.arraycopy(buffer, frameOffset, json, 0, frameLength);
+            releaseFrame();
+            return new JsonBufferReadResult(true, json);
+        }
+        return new JsonBufferReadResult(false, null);
+    }
+
+    /**
+     * Tries to find the next JSON frame in the buffer, without copying it.
+     * If a frame is found, its bytes are available in the buffer at the frame offset
+     * until the next call to this method or to the buffer position methods.
+     * @return
+     */
+    public boolean tryReadFrame() {
+        releaseFrame();
+        byte[] buffer = getBuffer();
         if (bufferCurPos > buffer.length) {
             throw new IllegalArgumentException("Buffer current pos or length value is invalid", null);
         }
+        if (scanMode == ScanMode.LENGTH_PREFIXED) {
+            return tryReadLengthPrefixedFrame(buffer);
+        }
 
-        byte[] json = null;
         int jsonLength = 0;
         for (int i = jsonCurPos; i < bufferCurPos; i++) {
             jsonCurPos = i + 1;
@@ -71,22 +305,101 @@ public class JsonBuffer {
         }
 
         if (jsonLength > 1) {
-            json = new byte[jsonLength];
-            System.arraycopy(buffer, jsonStartPos, json, 0, jsonLength);
-
-            // Shifts the buffer to the left
-            bufferCurPos -= (jsonLength + jsonStartPos);
-            System.arraycopy(buffer, jsonLength + jsonStartPos, buffer, 0, bufferCurPos);
-            jsonCurPos = 0;
-            jsonStartPos = 0;
-            jsonStarted = false;
-            insideQuotes = false;
-            isEscaping = false;
+            frameOffset = jsonStartPos;
+            frameLength = jsonLength;
+            hasFrame = true;
+            return true;
+        }
 
-            return new JsonBufferReadResult(true, json);
+        if (!jsonStarted) {
+            // The scanned bytes are not part of a frame and can be discarded
+            bufferReadPos = jsonCurPos;
+            if (bufferReadPos == bufferCurPos) {
+                bufferReadPos = 0;
+                bufferCurPos = 0;
+                jsonCurPos = 0;
+            }
         }
 
-        return new JsonBufferReadResult(false, null);
+        return false;
+    }
+
+    private boolean tryReadLengthPrefixedFrame(byte[] buffer) {
+        int pendingLength = bufferCurPos - bufferReadPos;
+        if (pendingLength < LENGTH_PREFIX_SIZE) {
+            return false;
+        }
+        int length = (buffer[bufferReadPos] & 0xff) << 24 |
+                (buffer[bufferReadPos + 1] & 0xff) << 16 |
+                (buffer[bufferReadPos + 2] & 0xff) << 8 |
+                (buffer[bufferReadPos + 3] & 0xff);
+        if (length < 0) {
+            throw new IllegalStateException("Invalid frame length: " + length);
+        }
+        if (pendingLength - LENGTH_PREFIX_SIZE < length) {
+            // The frame is incomplete, and the buffer grows for it if needed
+            return false;
+        }
+        frameOffset = bufferReadPos + LENGTH_PREFIX_SIZE;
+        frameLength = length;
+        hasFrame = true;
+        return true;
+    }
+
+    /**
+     * Writes the length prefix of a frame, for the {@link ScanMode#LENGTH_PREFIXED} mode.
+     * @param outputStream
+     * @param frameLength
+     */
+    public static void writeLengthPrefix(OutputStream outputStream, int frameLength) throws IOException {
+        outputStream.write(frameLength >>> 24);
+        outputStream.write(frameLength >>> 16);
+        outputStream.write(frameLength >>> 8);
+        outputStream.write(frameLength);
+    }
+
+    private void releaseFrame() {
+        if (!hasFrame) {
+            return;
+        }
+
+        // Advances the read offset over the frame
+        bufferReadPos = frameOffset + frameLength;
+        if (bufferReadPos == bufferCurPos) {
+            // Nothing pending, the buffer can be reused from the start
+            bufferReadPos = 0;
+            bufferCurPos = 0;
+        }
+        jsonCurPos = bufferReadPos;
+        jsonStartPos = bufferReadPos;
+        jsonStarted = false;
+        insideQuotes = false;
+        isEscaping = false;
+        hasFrame = false;
+    }
+
+    private void compact() {
+        int pendingLength = bufferCurPos - bufferReadPos;
+        System.arraycopy(buffer, bufferReadPos, buffer, 0, pendingLength);
+        jsonCurPos -= bufferReadPos;
+        jsonStartPos -= bufferReadPos;
+        bufferCurPos = pendingLength;
+        bufferReadPos = 0;
+    }
+
+    /**
+     * Defines how the buffer is scanned for the frame boundaries.
+     */
+    public enum ScanMode {
+        /**
+         * Inspects each byte of the buffer.
+         */
+        BYTE,
+        /**
+         * Reads the frames prefixed by their length, which can have any bytes,
+         * like the envelopes of a {@link org.limeprotocol.serialization.BinaryEnvelopeSerializer}.
+         */
+        LENGTH_PREFIXED
     }
 
     public class JsonBufferReadResult {
@@ -0,0 +1,42 @@
+package org.limeprotocol.network.tcp;
+
+/**
+ * Options for the asynchronous send mode of the {@link TcpTransport}.
+ * In this mode, the envelopes are enqueued by the callers and written in batches
+ * by a dedicated thread, with a single flush for each batch.
+ */
+public class AsyncSendOptions {
+
+    public final static long DEFAULT_LINGER_MICROS = 0;
+    public final static int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    private final long lingerMicros;
+    private final int maxBatchSize;
+
+    public AsyncSendOptions() {
+        this(DEFAULT_LINGER_MICROS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param lingerMicros Time to wait for more envelopes after the first one of a batch is enqueued.
+     * @param maxBatchSize Maximum number of envelopes written before a flush.
+     */
+    public AsyncSendOptions(long lingerMicros, int maxBatchSize) {
+        if (lingerMicros < 0) {
+            throw new IllegalArgumentException("lingerMicros");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize");
+        }
+        this.lingerMicros = lingerMicros;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getLingerMicros() {
+        return lingerMicros;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+}
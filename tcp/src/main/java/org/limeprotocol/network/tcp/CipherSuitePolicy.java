@@ -0,0 +1,125 @@
+package org.limeprotocol.network.tcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Selects and orders the cipher suites enabled for the TLS sessions.
+ * The client proposes the suites in the enabled order, so the AEAD suites
+ * (AES-GCM and ChaCha20-Poly1305) with forward secrecy are placed first.
+ * AES-GCM comes before ChaCha20 when the processor is expected to have AES instructions.
+ * Suites without encryption or authentication and with broken ciphers are never enabled.
+ */
+public class CipherSuitePolicy {
+
+    private final static String[] INSECURE_MARKERS = { "_NULL_", "_anon_", "_EXPORT", "_RC4_", "_DES_", "_DES40_", "_3DES_", "_MD5" };
+    private final static String SIGNALING_SUFFIX = "_SCSV";
+
+    private static volatile CipherSuitePolicy defaultPolicy;
+
+    private final boolean preferAesGcm;
+    private final boolean allowCbc;
+
+    public CipherSuitePolicy() {
+        this(isAesAccelerated(), true);
+    }
+
+    /**
+     * @param preferAesGcm Indicates if AES-GCM suites should be placed before ChaCha20 suites.
+     * @param allowCbc Indicates if the CBC suites should be enabled, after the AEAD suites.
+     */
+    public CipherSuitePolicy(boolean preferAesGcm, boolean allowCbc) {
+        this.preferAesGcm = preferAesGcm;
+        this.allowCbc = allowCbc;
+    }
+
+    /**
+     * Gets the policy used by the transports when none is specified.
+     * @return
+     */
+    public static CipherSuitePolicy getDefault() {
+        if (defaultPolicy == null) {
+            synchronized (CipherSuitePolicy.class) {
+                if (defaultPolicy == null) {
+                    defaultPolicy = new CipherSuitePolicy();
+                }
+            }
+        }
+        return defaultPolicy;
+    }
+
+    /**
+     * Selects the suites to be enabled, in order of preference.
+     * The relative order of suites with the same preference is kept.
+     * @param supportedCipherSuites The suites supported by the socket or engine.
+     * @return
+     */
+    public String[] select(String[] supportedCipherSuites) {
+        if (supportedCipherSuites == null) {
+            throw new IllegalArgumentException("supportedCipherSuites");
+        }
+        List<List<String>> tiers = new ArrayList<>();
+        for (int i = 0; i <= 6; i++) {
+            tiers.add(new ArrayList<String>());
+        }
+        for (String cipherSuite : supportedCipherSuites) {
+            int tier = getTier(cipherSuite);
+            if (tier >= 0) {
+                tiers.get(tier).add(cipherSuite);
+            }
+        }
+        List<String> selectedCipherSuites = new ArrayList<>(supportedCipherSuites.length);
+        for (List<String> tier : tiers) {
+            selectedCipherSuites.addAll(tier);
+        }
+        return selectedCipherSuites.toArray(new String[selectedCipherSuites.size()]);
+    }
+
+    public boolean isPreferAesGcm() {
+        return preferAesGcm;
+    }
+
+    public boolean isAllowCbc() {
+        return allowCbc;
+    }
+
+    /**
+     * Gets the preference of the suite, where lower is better, or -1 if it should not be enabled.
+     */
+    private int getTier(String cipherSuite) {
+        if (cipherSuite.endsWith(SIGNALING_SUFFIX)) {
+            // Signaling values are not ciphers and must be kept, after all the others
+            return 6;
+        }
+        for (String marker : INSECURE_MARKERS) {
+            if (cipherSuite.contains(marker)) {
+                return -1;
+            }
+        }
+        boolean isGcm = cipherSuite.contains("_GCM_");
+        boolean isChaCha20 = cipherSuite.contains("_CHACHA20_");
+        if (isGcm || isChaCha20) {
+            int preferenceOffset = isGcm == preferAesGcm ? 0 : 1;
+            if (!cipherSuite.contains("_WITH_") || cipherSuite.contains("_ECDHE_") || cipherSuite.contains("_DHE_")) {
+                // TLS 1.3 suites do not name the key exchange, which is always ephemeral
+                return preferenceOffset;
+            }
+            return 2 + preferenceOffset;
+        }
+        if (!allowCbc) {
+            return -1;
+        }
+        if (cipherSuite.contains("_ECDHE_") || cipherSuite.contains("_DHE_")) {
+            return 4;
+        }
+        return 5;
+    }
+
+    private static boolean isAesAccelerated() {
+        // There's no portable way to query the processor features, but all current
+        // x86-64 and ARMv8 processors used in servers have AES instructions.
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+        return arch.equals("amd64") || arch.equals("x86_64") || arch.equals("aarch64");
+    }
+}
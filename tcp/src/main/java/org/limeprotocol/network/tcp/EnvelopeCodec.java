@@ -0,0 +1,53 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializers;
+
+/**
+ * Serializes the envelopes of a TCP transport with a text or a binary serializer.
+ * The envelopes of a binary serializer are framed by their length, since their bytes don't delimit them.
+ */
+final class EnvelopeCodec {
+
+    private final EnvelopeSerializer envelopeSerializer;
+    private final BinaryEnvelopeSerializer binaryEnvelopeSerializer;
+
+    private EnvelopeCodec(EnvelopeSerializer envelopeSerializer, BinaryEnvelopeSerializer binaryEnvelopeSerializer) {
+        this.envelopeSerializer = envelopeSerializer;
+        this.binaryEnvelopeSerializer = binaryEnvelopeSerializer;
+    }
+
+    static EnvelopeCodec of(EnvelopeSerializer envelopeSerializer) {
+        if (envelopeSerializer == null) {
+            throw new IllegalArgumentException("envelopeSerializer");
+        }
+        return new EnvelopeCodec(envelopeSerializer, null);
+    }
+
+    static EnvelopeCodec of(BinaryEnvelopeSerializer envelopeSerializer) {
+        if (envelopeSerializer == null) {
+            throw new IllegalArgumentException("envelopeSerializer");
+        }
+        return new EnvelopeCodec(null, envelopeSerializer);
+    }
+
+    boolean isLengthPrefixed() {
+        return binaryEnvelopeSerializer != null;
+    }
+
+    byte[] serialize(Envelope envelope) {
+        if (binaryEnvelopeSerializer != null) {
+            return EnvelopeSerializers.serialize(binaryEnvelopeSerializer, envelope);
+        }
+        return EnvelopeSerializers.serialize(envelopeSerializer, envelope);
+    }
+
+    Envelope deserialize(byte[] buffer, int offset, int length) {
+        if (binaryEnvelopeSerializer != null) {
+            return binaryEnvelopeSerializer.deserialize(buffer, offset, length);
+        }
+        return EnvelopeSerializers.deserialize(envelopeSerializer, buffer, offset, length);
+    }
+}
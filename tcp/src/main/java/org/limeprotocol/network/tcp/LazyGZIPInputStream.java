@@ -0,0 +1,56 @@
+package org.limeprotocol.network.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * GZIP input stream that reads the header only in the first read operation.
+ * The {@link GZIPInputStream} constructor blocks until the remote node sends the header,
+ * which would block the thread that is switching the transport compression.
+ */
+class LazyGZIPInputStream extends InputStream {
+
+    private final InputStream inputStream;
+    private GZIPInputStream gzipInputStream;
+
+    LazyGZIPInputStream(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    private GZIPInputStream getGzipInputStream() throws IOException {
+        if (gzipInputStream == null) {
+            gzipInputStream = new GZIPInputStream(inputStream);
+        }
+        return gzipInputStream;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return getGzipInputStream().read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return getGzipInputStream().read(b, off, len);
+    }
+
+    /**
+     * The inflater can't tell how many bytes can be read without blocking,
+     * so this method always returns zero, which makes the buffered readers
+     * return the bytes they already have instead of waiting for more data.
+     */
+    @Override
+    public int available() throws IOException {
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (gzipInputStream != null) {
+            gzipInputStream.close();
+        } else {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.limeprotocol.network.tcp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GZIP output stream that writes the header only in the first write operation.
+ * The {@link GZIPOutputStream} constructor writes the header to the stream, which would send it
+ * in plain text if the stream is replaced by an encrypted one before the first envelope.
+ */
+class LazyGZIPOutputStream extends OutputStream {
+
+    private final OutputStream outputStream;
+    private GZIPOutputStream gzipOutputStream;
+
+    LazyGZIPOutputStream(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    private GZIPOutputStream getGzipOutputStream() throws IOException {
+        if (gzipOutputStream == null) {
+            gzipOutputStream = new GZIPOutputStream(outputStream, true);
+        }
+        return gzipOutputStream;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        getGzipOutputStream().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        getGzipOutputStream().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (gzipOutputStream != null) {
+            gzipOutputStream.flush();
+        } else {
+            outputStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (gzipOutputStream != null) {
+            gzipOutputStream.close();
+        } else {
+            outputStream.close();
+        }
+    }
+}
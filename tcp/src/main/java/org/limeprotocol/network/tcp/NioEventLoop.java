@@ -0,0 +1,175 @@
+package org.limeprotocol.network.tcp;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single threaded selector loop that services the I/O events of many channels.
+ * All the channel registrations and interest changes are executed in the loop thread.
+ */
+public class NioEventLoop implements Runnable {
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private final AtomicBoolean wakenUp;
+    private final Thread thread;
+    private volatile boolean isStopping;
+
+    public NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.wakenUp = new AtomicBoolean();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Indicates if the current thread is the loop thread.
+     * @return
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Executes the task in the loop thread.
+     * If the caller is the loop thread, the task is executed immediately.
+     * @param task
+     */
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("task");
+        }
+        if (inEventLoop()) {
+            task.run();
+        } else {
+            tasks.add(task);
+            if (wakenUp.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Registers the channel in the loop selector.
+     * The handler is invoked in the loop thread when the channel is ready for any of the interest operations.
+     * @param channel
+     * @param interestOps
+     * @param handler
+     * @return
+     * @throws ClosedChannelException
+     */
+    public SelectionKey register(SelectableChannel channel, int interestOps, Handler handler) throws ClosedChannelException {
+        if (!inEventLoop()) {
+            throw new IllegalStateException("The channel registration must be done in the loop thread");
+        }
+        return channel.register(selector, interestOps, handler);
+    }
+
+    /**
+     * Deregisters the keys of the closed channels without waiting for the next selection,
+     * so the resources like a listening port are released immediately.
+     * Must be called in the loop thread.
+     * @throws IOException
+     */
+    public void purgeCancelledKeys() throws IOException {
+        if (!inEventLoop()) {
+            throw new IllegalStateException("The keys must be purged in the loop thread");
+        }
+        // The ready keys are added to the selected set and handled by the current iteration
+        selector.selectNow();
+    }
+
+    /**
+     * Stops the loop, closing the selector and all the registered channels.
+     */
+    public void stop() {
+        isStopping = true;
+        selector.wakeup();
+    }
+
+    public boolean isStopping() {
+        return isStopping;
+    }
+
+    @Override
+    public void run() {
+        while (!isStopping) {
+            try {
+                selector.select();
+                wakenUp.set(false);
+                runTasks();
+
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    Handler handler = (Handler) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        handler.onReady(key);
+                    } catch (CancelledKeyException e) {
+                        // The channel was closed by the handler
+                    } catch (Exception e) {
+                        handler.onException(e);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (ClosedSelectorException e) {
+                break;
+            }
+        }
+        closeSelector();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void closeSelector() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Defines a handler for the I/O events of a registered channel.
+     */
+    public interface Handler {
+        /**
+         * Occurs when the channel is ready for some of the registered interest operations.
+         * @param key
+         */
+        void onReady(SelectionKey key) throws IOException;
+
+        /**
+         * Occurs when an unhandled exception is thrown by the onReady method.
+         * @param e
+         */
+        void onException(Exception e);
+    }
+}
@@ -0,0 +1,77 @@
+package org.limeprotocol.network.tcp;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group of selector loops shared by the NIO transports.
+ * The channels are assigned to the loops in a round-robin fashion.
+ */
+public class NioEventLoopGroup {
+
+    private static volatile NioEventLoopGroup defaultGroup;
+
+    private final NioEventLoop[] eventLoops;
+    private final AtomicInteger nextIndex;
+
+    public NioEventLoopGroup() throws IOException {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public NioEventLoopGroup(int threadCount) throws IOException {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount");
+        }
+        this.eventLoops = new NioEventLoop[threadCount];
+        this.nextIndex = new AtomicInteger();
+        for (int i = 0; i < threadCount; i++) {
+            eventLoops[i] = new NioEventLoop(String.format("lime-nio-%d", i));
+        }
+    }
+
+    /**
+     * Gets the group shared by all the transports in the process,
+     * with one loop per available processor.
+     * @return
+     */
+    public static NioEventLoopGroup getDefault() {
+        if (defaultGroup == null) {
+            synchronized (NioEventLoopGroup.class) {
+                if (defaultGroup == null) {
+                    try {
+                        defaultGroup = new NioEventLoopGroup();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Could not create the default event loop group", e);
+                    }
+                }
+            }
+        }
+        return defaultGroup;
+    }
+
+    /**
+     * Gets the next loop to be assigned to a channel.
+     * @return
+     */
+    public NioEventLoop next() {
+        int index = Math.abs(nextIndex.getAndIncrement() % eventLoops.length);
+        return eventLoops[index];
+    }
+
+    /**
+     * Gets the number of loops in the group.
+     * @return
+     */
+    public int size() {
+        return eventLoops.length;
+    }
+
+    /**
+     * Stops all the loops in the group.
+     */
+    public void shutdown() {
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoop.stop();
+        }
+    }
+}
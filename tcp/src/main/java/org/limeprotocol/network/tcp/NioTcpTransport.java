@@ -0,0 +1,582 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.JsonBuffer;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.TraceWriters;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportBase;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking TCP transport implementation.
+ * The I/O operations are performed by a loop of a shared {@link NioEventLoopGroup},
+ * so many transports can be serviced by a small number of threads.
+ * The envelope listener is invoked in the loop thread and should not block.
+ * The TLS encryption is provided by a {@link SslEngineHandler}, without blocking the loop during the handshake.
+ * The transports for the connections accepted by a {@link NioTcpTransportListener} act as the TLS server.
+ * The envelopes of a {@link BinaryEnvelopeSerializer} are sent prefixed by their length, like in the {@link TcpTransport}.
+ */
+public class NioTcpTransport extends TransportBase implements Transport {
+
+    // Marks the position in the write queue where the encryption starts
+    private final static ByteBuffer START_TLS_BUFFER = ByteBuffer.allocate(0);
+
+    private final EnvelopeCodec envelopeCodec;
+    private final TraceWriter traceWriter;
+    private final NioEventLoopGroup eventLoopGroup;
+    private final BufferPool bufferPool;
+    private final int maxBufferSize;
+    private final SSLContext sslContext;
+    private final Queue<ByteBuffer> writeQueue;
+    private final AtomicBoolean flushScheduled;
+    private final Runnable flushTask;
+    private final Runnable updateInterestTask;
+    private final Runnable resumeTlsTask;
+
+    private SocketChannel socketChannel;
+    private NioEventLoop eventLoop;
+    private SelectionKey selectionKey;
+    private JsonBuffer jsonBuffer;
+    private boolean isProcessingBuffer;
+    private volatile SslEngineHandler sslEngineHandler;
+    private URI uri;
+    private boolean isServerMode;
+    private volatile boolean isConnected;
+
+    public NioTcpTransport() {
+        this(new JacksonEnvelopeSerializer());
+    }
+
+    public NioTcpTransport(EnvelopeSerializer envelopeSerializer) {
+        this(envelopeSerializer, null);
+    }
+
+    public NioTcpTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter) {
+        this(envelopeSerializer, traceWriter, NioEventLoopGroup.getDefault(), BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    public NioTcpTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, NioEventLoopGroup eventLoopGroup, BufferPool bufferPool, int maxBufferSize) {
+        this(envelopeSerializer, traceWriter, eventLoopGroup, bufferPool, maxBufferSize, null);
+    }
+
+    /**
+     * @param sslContext The context for creating the TLS engine. If null, the shared context of the default {@link SslContextCache} is used.
+     */
+    public NioTcpTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, NioEventLoopGroup eventLoopGroup, BufferPool bufferPool, int maxBufferSize, SSLContext sslContext) {
+        this(EnvelopeCodec.of(envelopeSerializer), traceWriter, eventLoopGroup, bufferPool, maxBufferSize, sslContext);
+    }
+
+    /**
+     * Creates a transport that sends the envelopes of a binary serializer prefixed by their length.
+     */
+    public NioTcpTransport(BinaryEnvelopeSerializer envelopeSerializer) {
+        this(envelopeSerializer, null, NioEventLoopGroup.getDefault(), BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE, null);
+    }
+
+    /**
+     * Creates a transport that sends the envelopes of a binary serializer prefixed by their length.
+     * @param sslContext The context for creating the TLS engine. If null, the shared context of the default {@link SslContextCache} is used.
+     */
+    public NioTcpTransport(BinaryEnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, NioEventLoopGroup eventLoopGroup, BufferPool bufferPool, int maxBufferSize, SSLContext sslContext) {
+        this(EnvelopeCodec.of(envelopeSerializer), traceWriter, eventLoopGroup, bufferPool, maxBufferSize, sslContext);
+    }
+
+    NioTcpTransport(EnvelopeCodec envelopeCodec, TraceWriter traceWriter, NioEventLoopGroup eventLoopGroup, BufferPool bufferPool, int maxBufferSize, SSLContext sslContext) {
+        if (eventLoopGroup == null) {
+            throw new IllegalArgumentException("eventLoopGroup");
+        }
+        if (bufferPool == null) {
+            throw new IllegalArgumentException("bufferPool");
+        }
+        this.envelopeCodec = envelopeCodec;
+        this.traceWriter = traceWriter;
+        this.eventLoopGroup = eventLoopGroup;
+        this.bufferPool = bufferPool;
+        this.maxBufferSize = maxBufferSize;
+        this.sslContext = sslContext;
+        this.writeQueue = new ConcurrentLinkedQueue<>();
+        this.flushScheduled = new AtomicBoolean();
+        this.flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushScheduled.set(false);
+                flush();
+            }
+        };
+        this.updateInterestTask = new Runnable() {
+            @Override
+            public void run() {
+                updateInterest();
+            }
+        };
+        this.resumeTlsTask = new Runnable() {
+            @Override
+            public void run() {
+                resumeTls();
+            }
+        };
+    }
+
+    /**
+     * Checks if the client is connected based on the state of the socket channel.
+     * @return
+     */
+    @Override
+    public boolean isConnected() {
+        SocketChannel socketChannel = this.socketChannel;
+        return isConnected && socketChannel != null && socketChannel.isOpen() && socketChannel.isConnected();
+    }
+
+    /**
+     * Sends an envelope to the remote node.
+     * The envelope is enqueued and written by the loop thread.
+     *
+     * @param envelope
+     */
+    @Override
+    public void send(Envelope envelope) throws IOException {
+        if (envelope == null) {
+            throw new IllegalArgumentException("envelope");
+        }
+        ensureSocketOpen();
+        byte[] envelopeBytes = envelopeCodec.serialize(envelope);
+        if (envelopeCodec.isLengthPrefixed()) {
+            // A single buffer, so the prefix of concurrent envelopes is not interleaved
+            ByteBuffer frame = ByteBuffer.allocate(JsonBuffer.LENGTH_PREFIX_SIZE + envelopeBytes.length);
+            frame.putInt(envelopeBytes.length);
+            frame.put(envelopeBytes);
+            frame.flip();
+            writeQueue.add(frame);
+        } else {
+            writeQueue.add(ByteBuffer.wrap(envelopeBytes));
+        }
+
+        if (traceWriter != null && traceWriter.isEnabled()) {
+            TraceWriters.trace(traceWriter, envelopeBytes, 0, envelopeBytes.length, TraceWriter.DataOperation.SEND);
+        }
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(flushTask);
+        }
+    }
+
+    @Override
+    public void setEnvelopeListener(TransportEnvelopeListener listener) {
+        super.setEnvelopeListener(listener);
+        NioEventLoop eventLoop = this.eventLoop;
+        if (eventLoop != null) {
+            eventLoop.execute(updateInterestTask);
+        }
+    }
+
+    /**
+     * Enumerates the supported encryption options for the transport.
+     *
+     * @return
+     */
+    @Override
+    public SessionEncryption[] getSupportedEncryption() {
+        if (isServerMode && sslContext == null) {
+            // The server requires a context with the certificate
+            return new SessionEncryption[]{SessionEncryption.NONE};
+        }
+        return new SessionEncryption[]{SessionEncryption.NONE, SessionEncryption.TLS};
+    }
+
+    /**
+     * Defines the encryption mode for the transport.
+     * The TLS handshake is started in the loop thread and this method doesn't wait for its completion.
+     * The envelopes sent after the call are encrypted and the handshake failures are reported to the state listener.
+     *
+     * @param encryption
+     */
+    @Override
+    public void setEncryption(SessionEncryption encryption) throws IOException {
+        switch (encryption) {
+            case TLS:
+                ensureSocketOpen();
+                if (isServerMode && sslContext == null) {
+                    throw new IllegalArgumentException("encryption");
+                }
+                if (sslEngineHandler == null) {
+                    final SSLEngine sslEngine;
+                    if (isServerMode) {
+                        sslEngine = sslContext.createSSLEngine();
+                        sslEngine.setUseClientMode(false);
+                    } else {
+                        sslEngine = getSslContext().createSSLEngine(uri.getHost(), uri.getPort());
+                        sslEngine.setUseClientMode(true);
+                    }
+                    sslEngine.setEnabledCipherSuites(CipherSuitePolicy.getDefault().select(sslEngine.getSupportedCipherSuites()));
+                    sslEngineHandler = new SslEngineHandler(sslEngine, socketChannel, new Runnable() {
+                        @Override
+                        public void run() {
+                            NioEventLoop eventLoop = NioTcpTransport.this.eventLoop;
+                            eventLoop.execute(resumeTlsTask);
+                        }
+                    });
+                    // The envelopes enqueued before this call are not encrypted
+                    writeQueue.add(START_TLS_BUFFER);
+                    eventLoop.execute(flushTask);
+                }
+                break;
+            case NONE:
+                if (sslEngineHandler != null) {
+                    throw new IllegalStateException("Cannot downgrade an encrypted connection");
+                }
+                break;
+        }
+        super.setEncryption(encryption);
+    }
+
+    /**
+     * Opens the transport connection with the specified Uri.
+     * The connection is established synchronously and then handed to an event loop.
+     *
+     * @param uri
+     */
+    @Override
+    protected void performOpen(URI uri) throws IOException {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri");
+        }
+        if (!uri.getScheme().equals("net.tcp")) {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is 'net.tcp'", null);
+        }
+        if (socketChannel != null) {
+            throw new IllegalStateException("The client is already open");
+        }
+
+        SocketChannel socketChannel = SocketChannel.open();
+        try {
+            socketChannel.connect(new InetSocketAddress(uri.getHost(), uri.getPort()));
+            socketChannel.socket().setTcpNoDelay(true);
+            socketChannel.configureBlocking(false);
+        } catch (IOException e) {
+            socketChannel.close();
+            throw e;
+        }
+
+        attach(socketChannel, uri);
+    }
+
+    /**
+     * Takes the ownership of a connection accepted by a listener.
+     * The envelopes are received only after an envelope listener is registered.
+     *
+     * @param socketChannel
+     */
+    void accept(SocketChannel socketChannel) throws IOException {
+        if (this.socketChannel != null) {
+            throw new IllegalStateException("The client is already open");
+        }
+        InetSocketAddress remoteAddress = (InetSocketAddress) socketChannel.getRemoteAddress();
+        URI uri;
+        try {
+            uri = new URI("net.tcp", null, remoteAddress.getHostString(), remoteAddress.getPort(), null, null, null);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid remote address", e);
+        }
+        socketChannel.socket().setTcpNoDelay(true);
+        socketChannel.configureBlocking(false);
+        this.isServerMode = true;
+        attach(socketChannel, uri);
+    }
+
+    /**
+     * Gets the remote node address.
+     * @return
+     */
+    public URI getRemoteUri() {
+        return uri;
+    }
+
+    private void attach(SocketChannel socketChannel, URI uri) {
+        this.socketChannel = socketChannel;
+        this.uri = uri;
+        this.jsonBuffer = new JsonBuffer(bufferPool, maxBufferSize,
+                envelopeCodec.isLengthPrefixed() ? JsonBuffer.ScanMode.LENGTH_PREFIXED : JsonBuffer.ScanMode.BYTE);
+        this.eventLoop = eventLoopGroup.next();
+        this.isConnected = true;
+        eventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                register();
+            }
+        });
+    }
+
+    @Override
+    protected void performClose() throws IOException {
+        isConnected = false;
+        writeQueue.clear();
+        final SslEngineHandler sslEngineHandler = this.sslEngineHandler;
+        if (sslEngineHandler != null && eventLoop != null) {
+            // The handler buffers are only accessed by the loop thread
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sslEngineHandler.close();
+                    try {
+                        socketChannel.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            return;
+        }
+        if (socketChannel != null) {
+            // Closing the channel cancels its key in the loop selector
+            socketChannel.close();
+        }
+    }
+
+    private SSLContext getSslContext() {
+        if (sslContext != null) {
+            return sslContext;
+        }
+        // The shared context allows resuming the sessions on reconnects
+        return SslContextCache.getDefault().getSslContext(null);
+    }
+
+    private void startTls() throws IOException {
+        // The bytes received after the last envelope are part of the handshake
+        sslEngineHandler.beginHandshake(jsonBuffer.drainPending());
+    }
+
+    private void resumeTls() {
+        if (!isConnected || selectionKey == null || !selectionKey.isValid()) {
+            return;
+        }
+        flush();
+        try {
+            read();
+        } catch (IOException e) {
+            closeWithException(e);
+        }
+    }
+
+    private void ensureSocketOpen() throws IOException {
+        if (socketChannel == null) {
+            throw new IllegalStateException("The client is not open");
+        }
+        if (!isConnected()) {
+            throw new IOException("The transport is closed");
+        }
+    }
+
+    private void register() {
+        try {
+            selectionKey = eventLoop.register(socketChannel, 0, new TransportHandler());
+            updateInterest();
+            flush();
+        } catch (IOException e) {
+            closeWithException(e);
+        }
+    }
+
+    private void updateInterest() {
+        SelectionKey selectionKey = this.selectionKey;
+        if (selectionKey == null || !selectionKey.isValid()) {
+            return;
+        }
+
+        selectionKey.interestOps(getInterestOps());
+
+        // Envelopes may have been left in the buffer when the listener was removed.
+        // If the listener was set during the processing, the current loop takes care of them.
+        if (getEnvelopeListener() != null && !isProcessingBuffer) {
+            processBuffer();
+            SslEngineHandler sslEngineHandler = this.sslEngineHandler;
+            if (sslEngineHandler != null && sslEngineHandler.isStarted() && sslEngineHandler.hasBufferedInput() && getEnvelopeListener() != null) {
+                try {
+                    read();
+                } catch (IOException e) {
+                    closeWithException(e);
+                }
+            }
+        }
+    }
+
+    private int getInterestOps() {
+        SslEngineHandler sslEngineHandler = this.sslEngineHandler;
+        if (sslEngineHandler == null || !sslEngineHandler.isStarted()) {
+            int interestOps = 0;
+            if (getEnvelopeListener() != null) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+            if (!writeQueue.isEmpty()) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+            return interestOps;
+        }
+        if (sslEngineHandler.isRunningTasks()) {
+            // Waits for the callback of the delegated tasks
+            return 0;
+        }
+        int interestOps = 0;
+        if (getEnvelopeListener() != null || sslEngineHandler.needsRead()) {
+            interestOps |= SelectionKey.OP_READ;
+        }
+        if (sslEngineHandler.needsWrite() ||
+                (!writeQueue.isEmpty() && !sslEngineHandler.isHandshaking())) {
+            interestOps |= SelectionKey.OP_WRITE;
+        }
+        return interestOps;
+    }
+
+    private void flush() {
+        if (selectionKey == null || !selectionKey.isValid()) {
+            return;
+        }
+        try {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.peek()) != null) {
+                if (buffer == START_TLS_BUFFER) {
+                    writeQueue.poll();
+                    startTls();
+                    continue;
+                }
+                SslEngineHandler sslEngineHandler = this.sslEngineHandler;
+                if (sslEngineHandler != null && sslEngineHandler.isStarted()) {
+                    if (!sslEngineHandler.write(buffer)) {
+                        break;
+                    }
+                } else {
+                    socketChannel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        break;
+                    }
+                }
+                writeQueue.poll();
+            }
+            SslEngineHandler sslEngineHandler = this.sslEngineHandler;
+            if (sslEngineHandler != null && sslEngineHandler.isStarted()) {
+                // Sends the pending handshake messages
+                if (sslEngineHandler.flush() && writeQueue.isEmpty()) {
+                    // Returns the TLS buffers to the pool while the connection is idle
+                    sslEngineHandler.releaseIfIdle();
+                }
+            }
+            // Waits for the channel to be writable if the socket send buffer is full
+            selectionKey.interestOps(getInterestOps());
+        } catch (IOException e) {
+            closeWithException(e);
+        }
+    }
+
+    private void read() throws IOException {
+        SslEngineHandler sslEngineHandler = this.sslEngineHandler;
+        if (sslEngineHandler != null && !sslEngineHandler.isStarted()) {
+            sslEngineHandler = null;
+        }
+        boolean hasBufferedInput;
+        do {
+            if (!jsonBuffer.ensureWritable()) {
+                closeWithException(new BufferOverflowException("Maximum buffer size reached"));
+                return;
+            }
+            int read;
+            if (sslEngineHandler != null) {
+                read = sslEngineHandler.read(jsonBuffer.getBuffer(), jsonBuffer.getBufferCurPos(), jsonBuffer.getWritableLength());
+            } else {
+                read = socketChannel.read(ByteBuffer.wrap(jsonBuffer.getBuffer(), jsonBuffer.getBufferCurPos(), jsonBuffer.getWritableLength()));
+            }
+            if (read == -1) {
+                // The stream reached EOF, raise closed event.
+                close();
+                return;
+            }
+            jsonBuffer.increaseBufferCurPos(read);
+            processBuffer();
+            // The TLS handler may have decrypted more data than the buffer could receive
+            hasBufferedInput = sslEngineHandler != null && read > 0 && isConnected && getEnvelopeListener() != null;
+        } while (hasBufferedInput);
+
+        // Returns the buffer to the pool while the connection is idle
+        jsonBuffer.release();
+
+        if (sslEngineHandler != null) {
+            // The handshake may have been completed or may need to send data
+            flush();
+        }
+    }
+
+    private void processBuffer() {
+        isProcessingBuffer = true;
+        try {
+            while (isConnected && getEnvelopeListener() != null) {
+                if (!jsonBuffer.tryReadFrame()) {
+                    break;
+                }
+                byte[] buffer = jsonBuffer.getBuffer();
+                int frameOffset = jsonBuffer.getFrameOffset();
+                int frameLength = jsonBuffer.getFrameLength();
+                if (traceWriter != null && traceWriter.isEnabled()) {
+                    TraceWriters.trace(traceWriter, buffer, frameOffset, frameLength, TraceWriter.DataOperation.RECEIVE);
+                }
+                Envelope envelope;
+                try {
+                    envelope = envelopeCodec.deserialize(buffer, frameOffset, frameLength);
+                } catch (Exception e) {
+                    raiseOnException(e);
+                    continue;
+                }
+                raiseOnReceive(envelope);
+            }
+        } finally {
+            isProcessingBuffer = false;
+        }
+
+        // Stops reading from the socket if the listener was removed by the last envelope
+        if (getEnvelopeListener() == null && selectionKey != null && selectionKey.isValid()) {
+            selectionKey.interestOps(getInterestOps());
+        }
+    }
+
+    private void closeWithException(Exception exception) {
+        try {
+            close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        raiseOnException(exception);
+    }
+
+    private class TransportHandler implements NioEventLoop.Handler {
+
+        @Override
+        public void onReady(SelectionKey key) throws IOException {
+            if (key.isWritable()) {
+                flush();
+            }
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+        }
+
+        @Override
+        public void onException(Exception e) {
+            closeWithException(e);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Non-blocking TCP listener that accepts the connections as {@link NioTcpTransport} instances.
+ * The connections are accepted by a loop of the {@link NioEventLoopGroup} and the accepted
+ * transports are distributed between the loops of the group, so no thread is held by an idle connection.
+ * The accept listener is invoked in the loop thread and should not block.
+ */
+public class NioTcpTransportListener implements TransportListener {
+
+    public final static int DEFAULT_BACKLOG = 1024;
+
+    private final URI listenerUri;
+    private final EnvelopeCodec envelopeCodec;
+    private final TraceWriter traceWriter;
+    private final NioEventLoopGroup eventLoopGroup;
+    private final BufferPool bufferPool;
+    private final int maxBufferSize;
+    private final SSLContext sslContext;
+    private final int backlog;
+
+    private volatile TransportAcceptListener acceptListener;
+    private volatile ServerSocketChannel serverSocketChannel;
+    private NioEventLoop eventLoop;
+
+    public NioTcpTransportListener(URI listenerUri) {
+        this(listenerUri, null);
+    }
+
+    /**
+     * @param sslContext The context with the server certificate. If null, the accepted transports don't support TLS.
+     */
+    public NioTcpTransportListener(URI listenerUri, SSLContext sslContext) {
+        this(listenerUri, new JacksonEnvelopeSerializer(), null, NioEventLoopGroup.getDefault(), BufferPool.getDefault(),
+                TcpTransport.DEFAULT_MAX_BUFFER_SIZE, sslContext, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * @param listenerUri The address to bind, with the 'net.tcp' scheme. The port 0 binds to an ephemeral port.
+     * @param sslContext The context with the server certificate. If null, the accepted transports don't support TLS.
+     * @param backlog The maximum number of pending connections.
+     */
+    public NioTcpTransportListener(URI listenerUri, EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter,
+                                   NioEventLoopGroup eventLoopGroup, BufferPool bufferPool, int maxBufferSize,
+                                   SSLContext sslContext, int backlog) {
+        this(listenerUri, EnvelopeCodec.of(envelopeSerializer), traceWriter, eventLoopGroup, bufferPool, maxBufferSize, sslContext, backlog);
+    }
+
+    /**
+     * Creates a listener of transports that send the envelopes of a binary serializer prefixed by their length.
+     * @param listenerUri The address to bind, with the 'net.tcp' scheme. The port 0 binds to an ephemeral port.
+     * @param sslContext The context with the server certificate. If null, the accepted transports don't support TLS.
+     * @param backlog The maximum number of pending connections.
+     */
+    public NioTcpTransportListener(URI listenerUri, BinaryEnvelopeSerializer envelopeSerializer, TraceWriter traceWriter,
+                                   NioEventLoopGroup eventLoopGroup, BufferPool bufferPool, int maxBufferSize,
+                                   SSLContext sslContext, int backlog) {
+        this(listenerUri, EnvelopeCodec.of(envelopeSerializer), traceWriter, eventLoopGroup, bufferPool, maxBufferSize, sslContext, backlog);
+    }
+
+    private NioTcpTransportListener(URI listenerUri, EnvelopeCodec envelopeCodec, TraceWriter traceWriter,
+                                    NioEventLoopGroup eventLoopGroup, BufferPool bufferPool, int maxBufferSize,
+                                    SSLContext sslContext, int backlog) {
+        if (listenerUri == null) {
+            throw new IllegalArgumentException("listenerUri");
+        }
+        if (!"net.tcp".equals(listenerUri.getScheme())) {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is 'net.tcp'");
+        }
+        if (eventLoopGroup == null) {
+            throw new IllegalArgumentException("eventLoopGroup");
+        }
+        if (bufferPool == null) {
+            throw new IllegalArgumentException("bufferPool");
+        }
+        if (backlog <= 0) {
+            throw new IllegalArgumentException("backlog");
+        }
+        this.listenerUri = listenerUri;
+        this.envelopeCodec = envelopeCodec;
+        this.traceWriter = traceWriter;
+        this.eventLoopGroup = eventLoopGroup;
+        this.bufferPool = bufferPool;
+        this.maxBufferSize = maxBufferSize;
+        this.sslContext = sslContext;
+        this.backlog = backlog;
+    }
+
+    @Override
+    public URI[] getListenerUris() {
+        ServerSocketChannel serverSocketChannel = this.serverSocketChannel;
+        if (serverSocketChannel != null) {
+            try {
+                InetSocketAddress localAddress = (InetSocketAddress) serverSocketChannel.getLocalAddress();
+                return new URI[]{new URI(listenerUri.getScheme(), null, listenerUri.getHost(), localAddress.getPort(), null, null, null)};
+            } catch (IOException | URISyntaxException e) {
+                // The channel was closed
+            }
+        }
+        return new URI[]{listenerUri};
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (acceptListener == null) {
+            throw new IllegalStateException("The accept listener is not registered");
+        }
+        if (serverSocketChannel != null) {
+            throw new IllegalStateException("The listener is already started");
+        }
+
+        final ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        try {
+            serverSocketChannel.socket().setReuseAddress(true);
+            serverSocketChannel.bind(new InetSocketAddress(listenerUri.getHost(), Math.max(listenerUri.getPort(), 0)), backlog);
+            serverSocketChannel.configureBlocking(false);
+        } catch (IOException e) {
+            serverSocketChannel.close();
+            throw e;
+        }
+        this.serverSocketChannel = serverSocketChannel;
+
+        final NioEventLoop eventLoop = eventLoopGroup.next();
+        this.eventLoop = eventLoop;
+        eventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    eventLoop.register(serverSocketChannel, SelectionKey.OP_ACCEPT, new AcceptHandler(serverSocketChannel));
+                } catch (ClosedChannelException e) {
+                    // The listener was stopped before the registration
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+        ServerSocketChannel serverSocketChannel = this.serverSocketChannel;
+        if (serverSocketChannel == null) {
+            throw new IllegalStateException("The listener is not started");
+        }
+        this.serverSocketChannel = null;
+        if (eventLoop.isStopping()) {
+            serverSocketChannel.close();
+            return;
+        }
+
+        // A registered channel only releases the port when its key is deregistered by the loop
+        final ServerSocketChannel closingChannel = serverSocketChannel;
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        final IOException[] closeException = new IOException[1];
+        eventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    closingChannel.close();
+                    eventLoop.purgeCancelledKeys();
+                } catch (IOException e) {
+                    closeException[0] = e;
+                } finally {
+                    closedLatch.countDown();
+                }
+            }
+        });
+        try {
+            closedLatch.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while stopping the listener");
+        }
+        if (closeException[0] != null) {
+            throw closeException[0];
+        }
+    }
+
+    @Override
+    public boolean isListening() {
+        ServerSocketChannel serverSocketChannel = this.serverSocketChannel;
+        return serverSocketChannel != null && serverSocketChannel.isOpen();
+    }
+
+    @Override
+    public void setAcceptListener(TransportAcceptListener listener) {
+        this.acceptListener = listener;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isListening()) {
+            stop();
+        }
+    }
+
+    private class AcceptHandler implements NioEventLoop.Handler {
+
+        private final ServerSocketChannel serverSocketChannel;
+
+        public AcceptHandler(ServerSocketChannel serverSocketChannel) {
+            this.serverSocketChannel = serverSocketChannel;
+        }
+
+        @Override
+        public void onReady(SelectionKey key) throws IOException {
+            // Accepts all the pending connections, since a burst of clients is common after a node restart
+            SocketChannel socketChannel;
+            while ((socketChannel = serverSocketChannel.accept()) != null) {
+                NioTcpTransport transport = new NioTcpTransport(envelopeCodec, traceWriter, eventLoopGroup,
+                        bufferPool, maxBufferSize, sslContext);
+                try {
+                    transport.accept(socketChannel);
+                } catch (IOException e) {
+                    socketChannel.close();
+                    onException(e);
+                    continue;
+                }
+                try {
+                    acceptListener.onAccept(transport);
+                } catch (Exception e) {
+                    onException(e);
+                }
+            }
+        }
+
+        @Override
+        public void onException(Exception e) {
+            // Errors like the exhaustion of file descriptors don't stop the listener
+            TransportAcceptListener listener = acceptListener;
+            if (listener != null) {
+                listener.onException(e);
+            } else {
+                e.printStackTrace();
+            }
+        }
+    }
+}
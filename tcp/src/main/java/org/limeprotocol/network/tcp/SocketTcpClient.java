@@ -5,10 +5,9 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 
 public class SocketTcpClient implements TcpClient {
 
@@ -18,7 +17,11 @@ public class SocketTcpClient implements TcpClient {
     private final boolean socketTcpNoDelay;
     private final boolean socketKeepAlive;
     private final int socketSoTimeout;
+    private final SslContextCache sslContextCache;
+    private final CipherSuitePolicy cipherSuitePolicy;
     private final Socket socket;
+    // The host name used to connect, for the server name indication and the TLS session cache
+    private String host;
     private SSLSocket sslSocket;
     private SSLSocketFactory sslSocketFactory;
 
@@ -30,15 +33,34 @@ public class SocketTcpClient implements TcpClient {
     }
 
     public SocketTcpClient(X509TrustManager trustManager, boolean socketTcpNoDelay, boolean socketKeepAlive, int socketSoTimeout) {
+        this(trustManager, socketTcpNoDelay, socketKeepAlive, socketSoTimeout, SslContextCache.getDefault(), CipherSuitePolicy.getDefault());
+    }
+
+    /**
+     * @param sslContextCache The cache of the TLS contexts, shared between clients to allow session resumption.
+     * @param cipherSuitePolicy The policy for selecting the enabled cipher suites.
+     */
+    public SocketTcpClient(X509TrustManager trustManager, boolean socketTcpNoDelay, boolean socketKeepAlive, int socketSoTimeout, SslContextCache sslContextCache, CipherSuitePolicy cipherSuitePolicy) {
+        if (sslContextCache == null) {
+            throw new IllegalArgumentException("sslContextCache");
+        }
+        if (cipherSuitePolicy == null) {
+            throw new IllegalArgumentException("cipherSuitePolicy");
+        }
         this.trustManager = trustManager;
         this.socketTcpNoDelay = socketTcpNoDelay;
         this.socketKeepAlive = socketKeepAlive;
         this.socketSoTimeout = socketSoTimeout;
+        this.sslContextCache = sslContextCache;
+        this.cipherSuitePolicy = cipherSuitePolicy;
         socket = new Socket();
     }
 
     @Override
     public void connect(SocketAddress endpoint) throws IOException {
+        if (endpoint instanceof InetSocketAddress) {
+            host = ((InetSocketAddress) endpoint).getHostString();
+        }
         socket.connect(endpoint);
         socket.setTcpNoDelay(socketTcpNoDelay);
         socket.setKeepAlive(socketKeepAlive);
@@ -74,13 +96,13 @@ public class SocketTcpClient implements TcpClient {
 
         sslSocket = (SSLSocket) getSslSocketFactory().createSocket(
                 socket,
-                socket.getInetAddress().getHostAddress(),
+                host != null ? host : socket.getInetAddress().getHostAddress(),
                 socket.getPort(),
                 true);
 
-        String[] cypherSuites = sslSocket.getSupportedCipherSuites();
+        String[] cypherSuites = cipherSuitePolicy.select(sslSocket.getSupportedCipherSuites());
         sslSocket.setEnabledCipherSuites(cypherSuites);
-        
+
         sslSocket.startHandshake();
     }
 
@@ -103,25 +125,13 @@ public class SocketTcpClient implements TcpClient {
     }
 
     /**
-     * Returns a SSL Factory instance that accepts all server certificates.
-     * <pre>SSLSocket sock =
-     *     (SSLSocket) getSslSocketFactory.createSocket ( host, 443 ); </pre>
+     * Returns a SSL Factory instance from the shared context for the trust manager.
+     * If a trust manager is not defined, the platform trust managers are used.
      * @return  An SSL-specific socket factory.
-     * http://www.howardism.org/Technical/Java/SelfSignedCerts.html
      **/
     private final SSLSocketFactory getSslSocketFactory() {
         if (sslSocketFactory == null) {
-            if (trustManager != null) {
-                try {
-                    SSLContext sslContext = SSLContext.getInstance("SSL");
-                    sslContext.init(null, new TrustManager[]{ trustManager }, null);
-                    sslSocketFactory = sslContext.getSocketFactory();
-                } catch (NoSuchAlgorithmException | KeyManagementException e) {
-                    throw new RuntimeException("Could not set the custom TLS trust manager", e);
-                }
-            } else {
-                sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();   
-            }
+            sslSocketFactory = sslContextCache.getSocketFactory(trustManager);
         }
         return sslSocketFactory;
     }
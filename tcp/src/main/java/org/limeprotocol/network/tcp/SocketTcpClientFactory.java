@@ -7,6 +7,8 @@ public class SocketTcpClientFactory implements TcpClientFactory {
     private final boolean socketTcpNoDelay;
     private final boolean socketKeepAlive;
     private final int socketSoTimeout;
+    private final SslContextCache sslContextCache;
+    private final CipherSuitePolicy cipherSuitePolicy;
 
     public SocketTcpClientFactory() {
         this(null);
@@ -17,14 +19,26 @@ public class SocketTcpClientFactory implements TcpClientFactory {
     }
 
     public SocketTcpClientFactory(X509TrustManager trustManager, boolean socketTcpNoDelay, boolean socketKeepAlive, int socketSoTimeout) {
+        this(trustManager, socketTcpNoDelay, socketKeepAlive, socketSoTimeout, SslContextCache.getDefault(), CipherSuitePolicy.getDefault());
+    }
+
+    public SocketTcpClientFactory(X509TrustManager trustManager, boolean socketTcpNoDelay, boolean socketKeepAlive, int socketSoTimeout, SslContextCache sslContextCache, CipherSuitePolicy cipherSuitePolicy) {
+        if (sslContextCache == null) {
+            throw new IllegalArgumentException("sslContextCache");
+        }
+        if (cipherSuitePolicy == null) {
+            throw new IllegalArgumentException("cipherSuitePolicy");
+        }
         this.trustManager = trustManager;
         this.socketTcpNoDelay = socketTcpNoDelay;
         this.socketKeepAlive = socketKeepAlive;
         this.socketSoTimeout = socketSoTimeout;
+        this.sslContextCache = sslContextCache;
+        this.cipherSuitePolicy = cipherSuitePolicy;
     }
 
     @Override
     public TcpClient create() {
-        return new SocketTcpClient(trustManager, socketTcpNoDelay, socketKeepAlive, socketSoTimeout);
+        return new SocketTcpClient(trustManager, socketTcpNoDelay, socketKeepAlive, socketSoTimeout, sslContextCache, cipherSuitePolicy);
     }
 }
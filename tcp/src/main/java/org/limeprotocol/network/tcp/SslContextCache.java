@@ -0,0 +1,127 @@
+package org.limeprotocol.network.tcp;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide cache of TLS contexts keyed by trust manager.
+ * The client session cache belongs to the context, so sharing it between connections
+ * allows reconnects to the same host to resume the previous TLS session
+ * instead of doing a full handshake.
+ * The trust managers are compared by identity, so the same instance should be reused between clients.
+ */
+public class SslContextCache {
+
+    public final static String DEFAULT_PROTOCOL = "TLS";
+    public final static int DEFAULT_SESSION_CACHE_SIZE = 1024;
+    /**
+     * The default session timeout, in seconds.
+     */
+    public final static int DEFAULT_SESSION_TIMEOUT = 60 * 60;
+
+    private final static Object DEFAULT_TRUST_MANAGER_KEY = new Object();
+
+    private static volatile SslContextCache defaultCache;
+
+    private final String protocol;
+    private final int sessionCacheSize;
+    private final int sessionTimeout;
+    private final ConcurrentMap<Object, SSLContext> sslContexts;
+
+    public SslContextCache() {
+        this(DEFAULT_PROTOCOL, DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT);
+    }
+
+    /**
+     * @param protocol The protocol name used to create the contexts.
+     * @param sessionCacheSize The maximum number of client sessions kept by each context.
+     * @param sessionTimeout The time, in seconds, a client session can be resumed.
+     */
+    public SslContextCache(String protocol, int sessionCacheSize, int sessionTimeout) {
+        if (protocol == null) {
+            throw new IllegalArgumentException("protocol");
+        }
+        if (sessionCacheSize < 0) {
+            throw new IllegalArgumentException("sessionCacheSize");
+        }
+        if (sessionTimeout < 0) {
+            throw new IllegalArgumentException("sessionTimeout");
+        }
+        this.protocol = protocol;
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeout = sessionTimeout;
+        this.sslContexts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the cache shared by the clients in the process.
+     * @return
+     */
+    public static SslContextCache getDefault() {
+        if (defaultCache == null) {
+            synchronized (SslContextCache.class) {
+                if (defaultCache == null) {
+                    defaultCache = new SslContextCache();
+                }
+            }
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Gets the context for the specified trust manager, creating it on the first call.
+     * @param trustManager The trust manager for the server certificates. If null, the platform trust managers are used.
+     * @return
+     */
+    public SSLContext getSslContext(X509TrustManager trustManager) {
+        Object key = trustManager != null ? trustManager : DEFAULT_TRUST_MANAGER_KEY;
+        SSLContext sslContext = sslContexts.get(key);
+        if (sslContext == null) {
+            sslContext = createSslContext(trustManager);
+            SSLContext existingSslContext = sslContexts.putIfAbsent(key, sslContext);
+            if (existingSslContext != null) {
+                sslContext = existingSslContext;
+            }
+        }
+        return sslContext;
+    }
+
+    /**
+     * Gets a socket factory from the context for the specified trust manager.
+     * @param trustManager The trust manager for the server certificates. If null, the platform trust managers are used.
+     * @return
+     */
+    public SSLSocketFactory getSocketFactory(X509TrustManager trustManager) {
+        return getSslContext(trustManager).getSocketFactory();
+    }
+
+    /**
+     * Removes all cached contexts and their sessions.
+     */
+    public void clear() {
+        sslContexts.clear();
+    }
+
+    private SSLContext createSslContext(X509TrustManager trustManager) {
+        try {
+            SSLContext sslContext = SSLContext.getInstance(protocol);
+            TrustManager[] trustManagers = trustManager != null ? new TrustManager[]{ trustManager } : null;
+            sslContext.init(null, trustManagers, null);
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(sessionCacheSize);
+                sessionContext.setSessionTimeout(sessionTimeout);
+            }
+            return sslContext;
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            throw new RuntimeException("Could not create the TLS context", e);
+        }
+    }
+}
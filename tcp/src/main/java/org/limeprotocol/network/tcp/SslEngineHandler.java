@@ -0,0 +1,449 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.network.DirectBufferPool;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking TLS layer for a socket channel, built on the {@link SSLEngine}.
+ * The network and application data are kept in direct buffers taken from a pool,
+ * which can be returned while the connection is idle.
+ * The delegated tasks of the handshake run in an executor and, when they complete,
+ * the callback is invoked for the owner to resume the handshake.
+ * Except for the delegated tasks, all the methods must be called by the same thread.
+ */
+public class SslEngineHandler {
+
+    public final static int DEFAULT_TASK_QUEUE_SIZE = 1024;
+
+    private final static ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private static volatile ExecutorService defaultTaskExecutor;
+
+    private final SSLEngine engine;
+    private final SocketChannel socketChannel;
+    private final DirectBufferPool bufferPool;
+    private final Executor taskExecutor;
+    private final Runnable tasksCompletedCallback;
+
+    // The buffers are kept ready for writing and are null while released
+    private ByteBuffer netInBuffer;
+    private ByteBuffer netOutBuffer;
+    private ByteBuffer appInBuffer;
+    private boolean isStarted;
+    private volatile boolean isRunningTasks;
+
+    public SslEngineHandler(SSLEngine engine, SocketChannel socketChannel, Runnable tasksCompletedCallback) {
+        this(engine, socketChannel, DirectBufferPool.getDefault(), getDefaultTaskExecutor(), tasksCompletedCallback);
+    }
+
+    public SslEngineHandler(SSLEngine engine, SocketChannel socketChannel, DirectBufferPool bufferPool, Executor taskExecutor, Runnable tasksCompletedCallback) {
+        if (engine == null) {
+            throw new IllegalArgumentException("engine");
+        }
+        if (socketChannel == null) {
+            throw new IllegalArgumentException("socketChannel");
+        }
+        if (bufferPool == null) {
+            throw new IllegalArgumentException("bufferPool");
+        }
+        if (taskExecutor == null) {
+            throw new IllegalArgumentException("taskExecutor");
+        }
+        if (tasksCompletedCallback == null) {
+            throw new IllegalArgumentException("tasksCompletedCallback");
+        }
+        this.engine = engine;
+        this.socketChannel = socketChannel;
+        this.bufferPool = bufferPool;
+        this.taskExecutor = taskExecutor;
+        this.tasksCompletedCallback = tasksCompletedCallback;
+    }
+
+    /**
+     * Gets the executor shared by the handlers for running the delegated tasks.
+     * It has a thread for each available processor and a bounded queue,
+     * and runs the tasks in the calling thread when the queue is full.
+     * @return
+     */
+    public static ExecutorService getDefaultTaskExecutor() {
+        if (defaultTaskExecutor == null) {
+            synchronized (SslEngineHandler.class) {
+                if (defaultTaskExecutor == null) {
+                    int threadCount = Runtime.getRuntime().availableProcessors();
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                            threadCount,
+                            threadCount,
+                            60,
+                            TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(DEFAULT_TASK_QUEUE_SIZE),
+                            new ThreadFactory() {
+                                private final AtomicInteger threadCount = new AtomicInteger();
+
+                                @Override
+                                public Thread newThread(Runnable runnable) {
+                                    Thread thread = new Thread(runnable, String.format("lime-tls-task-%d", threadCount.getAndIncrement()));
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            },
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                    defaultTaskExecutor = executor;
+                }
+            }
+        }
+        return defaultTaskExecutor;
+    }
+
+    public SSLEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Starts the handshake.
+     * @param pendingInput Bytes received from the remote node before the handshake was started.
+     * @throws IOException
+     */
+    public void beginHandshake(byte[] pendingInput) throws IOException {
+        if (isStarted) {
+            throw new IllegalStateException("The handshake is already started");
+        }
+        isStarted = true;
+        int packetBufferSize = engine.getSession().getPacketBufferSize();
+        netInBuffer = bufferPool.acquire(Math.max(packetBufferSize, pendingInput.length));
+        netOutBuffer = bufferPool.acquire(packetBufferSize);
+        appInBuffer = bufferPool.acquire(engine.getSession().getApplicationBufferSize());
+        netInBuffer.put(pendingInput);
+        engine.beginHandshake();
+    }
+
+    /**
+     * Indicates if the handshake was started.
+     * @return
+     */
+    public boolean isStarted() {
+        return isStarted;
+    }
+
+    /**
+     * Indicates if the handshake is in progress.
+     * @return
+     */
+    public boolean isHandshaking() {
+        SSLEngineResult.HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
+        return handshakeStatus != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING &&
+                handshakeStatus != SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    /**
+     * Indicates if the delegated tasks of the handshake are running.
+     * @return
+     */
+    public boolean isRunningTasks() {
+        return isRunningTasks;
+    }
+
+    /**
+     * Indicates if the handshake is waiting for data from the remote node.
+     * @return
+     */
+    public boolean needsRead() {
+        return !isRunningTasks && engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_UNWRAP;
+    }
+
+    /**
+     * Indicates if there's data to be written to the channel, from the handshake or from previous writes.
+     * @return
+     */
+    public boolean needsWrite() {
+        return (netOutBuffer != null && netOutBuffer.position() > 0) ||
+                (!isRunningTasks && engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP);
+    }
+
+    /**
+     * Indicates if there's received data that was not returned by the read method.
+     * @return
+     */
+    public boolean hasBufferedInput() {
+        return appInBuffer != null && (appInBuffer.position() > 0 || netInBuffer.position() > 0);
+    }
+
+    /**
+     * Reads and decrypts the data from the channel, progressing with the handshake if needed.
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return The number of application bytes copied to the buffer, or -1 if the channel or the TLS session was closed.
+     * @throws IOException
+     */
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        acquireBuffers();
+        while (true) {
+            if (appInBuffer.position() > 0) {
+                appInBuffer.flip();
+                int count = Math.min(length, appInBuffer.remaining());
+                appInBuffer.get(buffer, offset, count);
+                appInBuffer.compact();
+                return count;
+            }
+            if (isHandshaking()) {
+                if (!handshake(true)) {
+                    // Waiting for the remote node or for the delegated tasks
+                    return 0;
+                }
+                continue;
+            }
+            if (netInBuffer.position() > 0) {
+                netInBuffer.flip();
+                SSLEngineResult result = engine.unwrap(netInBuffer, appInBuffer);
+                netInBuffer.compact();
+                switch (result.getStatus()) {
+                    case OK:
+                        if (result.bytesConsumed() > 0 || result.bytesProduced() > 0) {
+                            continue;
+                        }
+                        break;
+                    case BUFFER_OVERFLOW:
+                        appInBuffer = ensureCapacity(appInBuffer, engine.getSession().getApplicationBufferSize());
+                        continue;
+                    case BUFFER_UNDERFLOW:
+                        netInBuffer = ensureCapacity(netInBuffer, engine.getSession().getPacketBufferSize());
+                        break;
+                    case CLOSED:
+                        return -1;
+                }
+            }
+            int read = socketChannel.read(netInBuffer);
+            if (read == -1) {
+                return -1;
+            }
+            if (read == 0) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Encrypts and writes the data to the channel.
+     * @param buffer
+     * @return True if all the bytes of the buffer were encrypted and written.
+     * If false, the method should be called again when the channel is writable or, during the handshake, readable.
+     * @throws IOException
+     */
+    public boolean write(ByteBuffer buffer) throws IOException {
+        if (!flush()) {
+            return false;
+        }
+        while (buffer.hasRemaining()) {
+            SSLEngineResult result = engine.wrap(buffer, netOutBuffer);
+            switch (result.getStatus()) {
+                case OK:
+                    break;
+                case BUFFER_OVERFLOW:
+                    if (netOutBuffer.position() == 0) {
+                        netOutBuffer = ensureCapacity(netOutBuffer, engine.getSession().getPacketBufferSize());
+                    }
+                    break;
+                case CLOSED:
+                    throw new SSLException("The TLS session is closed");
+                default:
+                    break;
+            }
+            if (!flush()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the pending encrypted data and the handshake messages to the channel.
+     * @return True if there's nothing left to be written and the handshake is not in progress.
+     * @throws IOException
+     */
+    public boolean flush() throws IOException {
+        acquireBuffers();
+        if (!writeNetOutBuffer()) {
+            return false;
+        }
+        return !isHandshaking() || handshake(false);
+    }
+
+    /**
+     * Sends the close notification to the remote node, if possible, and releases the buffers.
+     */
+    public void close() {
+        try {
+            engine.closeOutbound();
+            if (isStarted && socketChannel.isOpen()) {
+                acquireBuffers();
+                engine.wrap(EMPTY_BUFFER, netOutBuffer);
+                writeNetOutBuffer();
+            }
+        } catch (IOException e) {
+            // The connection is being closed anyway
+        }
+        releaseBuffers();
+    }
+
+    /**
+     * Returns the buffers to the pool if there's no buffered data, partial record or handshake in progress.
+     * They are taken again by the next read or write.
+     * @return True if the buffers are released.
+     */
+    public boolean releaseIfIdle() {
+        if (netInBuffer == null) {
+            return true;
+        }
+        if (isRunningTasks ||
+                isHandshaking() ||
+                netInBuffer.position() > 0 ||
+                netOutBuffer.position() > 0 ||
+                appInBuffer.position() > 0) {
+            return false;
+        }
+        releaseBuffers();
+        return true;
+    }
+
+    /**
+     * Progresses with the handshake.
+     * @param canRead Indicates if the data from the channel can be read.
+     * @return True if the handshake is finished.
+     * @throws IOException
+     */
+    private boolean handshake(boolean canRead) throws IOException {
+        while (true) {
+            if (isRunningTasks) {
+                return false;
+            }
+            SSLEngineResult result;
+            switch (engine.getHandshakeStatus()) {
+                case NEED_WRAP:
+                    if (!writeNetOutBuffer()) {
+                        return false;
+                    }
+                    result = engine.wrap(EMPTY_BUFFER, netOutBuffer);
+                    if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                        netOutBuffer = ensureCapacity(netOutBuffer, engine.getSession().getPacketBufferSize());
+                    } else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        writeNetOutBuffer();
+                        throw new SSLException("The TLS session was closed during the handshake");
+                    }
+                    if (!writeNetOutBuffer()) {
+                        return false;
+                    }
+                    break;
+                case NEED_UNWRAP:
+                    if (!canRead) {
+                        return false;
+                    }
+                    netInBuffer.flip();
+                    result = engine.unwrap(netInBuffer, appInBuffer);
+                    netInBuffer.compact();
+                    if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                        netInBuffer = ensureCapacity(netInBuffer, engine.getSession().getPacketBufferSize());
+                        int read = socketChannel.read(netInBuffer);
+                        if (read == -1) {
+                            throw new EOFException("The connection was closed during the TLS handshake");
+                        }
+                        if (read == 0) {
+                            return false;
+                        }
+                    } else if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                        appInBuffer = ensureCapacity(appInBuffer, appInBuffer.position() + engine.getSession().getApplicationBufferSize());
+                    } else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("The TLS session was closed during the handshake");
+                    }
+                    break;
+                case NEED_TASK:
+                    if (!runDelegatedTasks()) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return writeNetOutBuffer();
+            }
+        }
+    }
+
+    /**
+     * Runs the delegated tasks in the executor.
+     * @return True if the tasks were run synchronously.
+     */
+    private boolean runDelegatedTasks() {
+        final Thread callerThread = Thread.currentThread();
+        isRunningTasks = true;
+        taskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                isRunningTasks = false;
+                if (Thread.currentThread() != callerThread) {
+                    tasksCompletedCallback.run();
+                }
+            }
+        });
+        return !isRunningTasks;
+    }
+
+    private void acquireBuffers() {
+        if (netInBuffer != null) {
+            return;
+        }
+        int packetBufferSize = engine.getSession().getPacketBufferSize();
+        netInBuffer = bufferPool.acquire(packetBufferSize);
+        netOutBuffer = bufferPool.acquire(packetBufferSize);
+        appInBuffer = bufferPool.acquire(engine.getSession().getApplicationBufferSize());
+    }
+
+    private void releaseBuffers() {
+        bufferPool.release(netInBuffer);
+        bufferPool.release(netOutBuffer);
+        bufferPool.release(appInBuffer);
+        netInBuffer = null;
+        netOutBuffer = null;
+        appInBuffer = null;
+    }
+
+    private boolean writeNetOutBuffer() throws IOException {
+        if (netOutBuffer.position() == 0) {
+            return true;
+        }
+        netOutBuffer.flip();
+        try {
+            socketChannel.write(netOutBuffer);
+            return !netOutBuffer.hasRemaining();
+        } finally {
+            netOutBuffer.compact();
+        }
+    }
+
+    private ByteBuffer ensureCapacity(ByteBuffer buffer, int capacity) {
+        if (buffer.capacity() >= capacity) {
+            return buffer;
+        }
+        ByteBuffer newBuffer = bufferPool.acquire(capacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        bufferPool.release(buffer);
+        return newBuffer;
+    }
+}
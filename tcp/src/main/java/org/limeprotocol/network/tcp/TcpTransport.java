@@ -1,58 +1,154 @@
 package org.limeprotocol.network.tcp;
 
 import org.limeprotocol.Envelope;
+import org.limeprotocol.SessionCompression;
 import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.EnvelopeSendException;
 import org.limeprotocol.network.JsonBuffer;
 import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.TraceWriters;
 import org.limeprotocol.network.Transport;
 import org.limeprotocol.network.TransportBase;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
 import org.limeprotocol.serialization.EnvelopeSerializer;
 import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
 
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Synchronous TCP transport implementation.
+ * Optionally, the envelopes can be sent asynchronously by a dedicated writer thread,
+ * which coalesces the envelopes enqueued by concurrent callers in a single write.
+ * The listener and writer threads are created by a {@link ThreadFactory}, which can create virtual threads.
+ * The blocking operations are guarded by locks instead of monitors, so virtual threads don't pin their carrier.
+ * The envelopes of a {@link BinaryEnvelopeSerializer}, like the {@link org.limeprotocol.serialization.SmileEnvelopeSerializer},
+ * are sent prefixed by their length, so both nodes of the link must use the same serializer.
  */
 public class TcpTransport extends TransportBase implements Transport {
 
-    public final static int DEFAULT_BUFFER_SIZE = 8192 * 8;
-    private final EnvelopeSerializer envelopeSerializer;
+    public final static int DEFAULT_BUFFER_SIZE = BufferPool.DEFAULT_BUFFER_SIZE;
+    public final static int DEFAULT_MAX_BUFFER_SIZE = 8192 * 1024;
+    private final EnvelopeCodec envelopeCodec;
     private final TcpClientFactory tcpClientFactory;
     private final TraceWriter traceWriter;
     private final int bufferSize;
+    private final int maxBufferSize;
+    private final BufferPool bufferPool;
+    private final AsyncSendOptions asyncSendOptions;
+    private final ThreadFactory threadFactory;
+    private final Lock writeLock;
+    private final Lock listenerLock;
     private TcpClient tcpClient;
     private BufferedOutputStream outputStream;
     private BufferedInputStream inputStream;
     private JsonListener jsonListener;
     private Thread jsonListenerThread;
+    private EnvelopeWriter envelopeWriter;
     private boolean isConnected;
 
     public TcpTransport() {
-        this(new JacksonEnvelopeSerializer(), new SocketTcpClientFactory(), null, DEFAULT_BUFFER_SIZE);
+        this(new JacksonEnvelopeSerializer(), new SocketTcpClientFactory(), null);
     }
 
     public TcpTransport(EnvelopeSerializer envelopeSerializer) {
-        this(envelopeSerializer, new SocketTcpClientFactory(), null, DEFAULT_BUFFER_SIZE);
+        this(envelopeSerializer, new SocketTcpClientFactory(), null);
     }
 
     public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory) {
-        this(envelopeSerializer, tcpClientFactory, null, DEFAULT_BUFFER_SIZE);
+        this(envelopeSerializer, tcpClientFactory, null);
     }
 
     public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter) {
-        this(envelopeSerializer, tcpClientFactory, traceWriter, DEFAULT_BUFFER_SIZE);
+        this(envelopeSerializer, tcpClientFactory, traceWriter, BufferPool.getDefault(), DEFAULT_MAX_BUFFER_SIZE);
     }
 
+    /**
+     * Creates a transport with a fixed size receive buffer.
+     */
     public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, int bufferSize) {
-        this.envelopeSerializer = envelopeSerializer;
+        this(EnvelopeCodec.of(envelopeSerializer), tcpClientFactory, traceWriter, bufferSize, bufferSize, null, null, ThreadFactories.getDefault());
+    }
+
+    /**
+     * Creates a transport that sends the envelopes asynchronously, using the specified options.
+     */
+    public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, AsyncSendOptions asyncSendOptions) {
+        this(envelopeSerializer, tcpClientFactory, traceWriter, BufferPool.getDefault(), DEFAULT_MAX_BUFFER_SIZE, asyncSendOptions);
+    }
+
+    /**
+     * Creates a transport with a receive buffer taken from the pool while there's pending data,
+     * which grows up to the maximum size for big envelopes.
+     */
+    public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize) {
+        this(envelopeSerializer, tcpClientFactory, traceWriter, bufferPool, maxBufferSize, null);
+    }
+
+    /**
+     * Creates a transport with a pooled receive buffer that sends the envelopes asynchronously
+     * if the send options are specified.
+     */
+    public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize, AsyncSendOptions asyncSendOptions) {
+        this(envelopeSerializer, tcpClientFactory, traceWriter, bufferPool, maxBufferSize, asyncSendOptions, ThreadFactories.getDefault());
+    }
+
+    /**
+     * Creates a transport with a pooled receive buffer that creates its listener and writer threads with the specified factory.
+     */
+    public TcpTransport(EnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize, AsyncSendOptions asyncSendOptions, ThreadFactory threadFactory) {
+        this(EnvelopeCodec.of(envelopeSerializer), tcpClientFactory, traceWriter, bufferPool, maxBufferSize, asyncSendOptions, threadFactory);
+    }
+
+    /**
+     * Creates a transport that sends the envelopes of a binary serializer prefixed by their length.
+     */
+    public TcpTransport(BinaryEnvelopeSerializer envelopeSerializer) {
+        this(envelopeSerializer, new SocketTcpClientFactory(), null, BufferPool.getDefault(), DEFAULT_MAX_BUFFER_SIZE, null, ThreadFactories.getDefault());
+    }
+
+    /**
+     * Creates a transport that sends the envelopes of a binary serializer prefixed by their length,
+     * with a pooled receive buffer, that sends the envelopes asynchronously if the send options are specified.
+     */
+    public TcpTransport(BinaryEnvelopeSerializer envelopeSerializer, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize, AsyncSendOptions asyncSendOptions, ThreadFactory threadFactory) {
+        this(EnvelopeCodec.of(envelopeSerializer), tcpClientFactory, traceWriter, bufferPool, maxBufferSize, asyncSendOptions, threadFactory);
+    }
+
+    TcpTransport(EnvelopeCodec envelopeCodec, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize, AsyncSendOptions asyncSendOptions, ThreadFactory threadFactory) {
+        this(envelopeCodec, tcpClientFactory, traceWriter, bufferPool.getBufferSize(), maxBufferSize, bufferPool, asyncSendOptions, threadFactory);
+    }
+
+    private TcpTransport(EnvelopeCodec envelopeCodec, TcpClientFactory tcpClientFactory, TraceWriter traceWriter, int bufferSize, int maxBufferSize, BufferPool bufferPool, AsyncSendOptions asyncSendOptions, ThreadFactory threadFactory) {
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        this.envelopeCodec = envelopeCodec;
         this.tcpClientFactory = tcpClientFactory;
         this.traceWriter = traceWriter;
         this.bufferSize = bufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.bufferPool = bufferPool;
+        this.asyncSendOptions = asyncSendOptions;
+        this.threadFactory = threadFactory;
+        this.writeLock = new ReentrantLock();
+        this.listenerLock = new ReentrantLock();
         this.isConnected = false;
     }
 
@@ -66,27 +162,43 @@ public class TcpTransport extends TransportBase implements Transport {
 
     /**
      * Sends an envelope to the remote node.
+     * In the asynchronous mode, the envelope is enqueued and the write failures
+     * are reported to the state listener as {@link EnvelopeSendException} instances.
      *
      * @param envelope
      */
     @Override
-    public synchronized void send(Envelope envelope) throws IOException {
+    public void send(Envelope envelope) throws IOException {
         if (envelope == null) {
             throw new IllegalArgumentException("envelope");
         }
         ensureSocketOpen();
-        String envelopeString = envelopeSerializer.serialize(envelope);
+        EnvelopeWriter envelopeWriter = this.envelopeWriter;
+        if (envelopeWriter != null) {
+            envelopeWriter.enqueue(new QueuedEnvelope(
+                    envelope,
+                    envelopeCodec.serialize(envelope),
+                    traceWriter != null && traceWriter.isEnabled()));
+        } else {
+            sendSynchronously(envelope);
+        }
+    }
+
+    private void sendSynchronously(Envelope envelope) throws IOException {
+        byte[] envelopeBytes = envelopeCodec.serialize(envelope);
 
         try {
-            byte[] envelopeBytes = envelopeString.getBytes("UTF-8");
-            outputStream.write(envelopeBytes);
-            outputStream.flush();
+            writeLock.lock();
+            try {
+                writeFrame(envelopeBytes);
+                outputStream.flush();
+            } finally {
+                writeLock.unlock();
+            }
 
             if (traceWriter != null && traceWriter.isEnabled()) {
-                traceWriter.trace(envelopeString, TraceWriter.DataOperation.SEND);
+                TraceWriters.trace(traceWriter, envelopeBytes, 0, envelopeBytes.length, TraceWriter.DataOperation.SEND);
             }
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalArgumentException("Could not convert the serialized envelope to a UTF-8 byte array", e);
         } catch (IOException e){
             close();
             throw e;
@@ -108,6 +220,9 @@ public class TcpTransport extends TransportBase implements Transport {
     @Override
     protected void performClose() throws IOException {
         stopListenerThread();
+        if (envelopeWriter != null) {
+            envelopeWriter.stop();
+        }
         if (tcpClient != null) {
             tcpClient.close();
         }
@@ -125,25 +240,112 @@ public class TcpTransport extends TransportBase implements Transport {
             throw new IllegalArgumentException("uri");
         }
 
+        SocketAddress endpoint = getEndpoint(uri);
+
+        if (tcpClient != null) {
+            throw new IllegalStateException("The client is already open");
+        }
+        TcpClient tcpClient = tcpClientFactory.create();
+        try {
+            tcpClient.connect(endpoint);
+        } catch (IOException e) {
+            tcpClient.close();
+            throw e;
+        }
+        start(tcpClient);
+    }
+
+    /**
+     * Gets the address to be connected for the URI.
+     *
+     * @param uri
+     * @return
+     */
+    protected SocketAddress getEndpoint(URI uri) {
         // TODO: This is the best scheme to use?
         if (!uri.getScheme().equals("net.tcp")) {
             throw new IllegalArgumentException("Invalid URI scheme. Expected is 'net.tcp'", null);
         }
+        return new InetSocketAddress(uri.getHost(), uri.getPort());
+    }
 
-        if (tcpClient != null) {
+    /**
+     * Starts the transport in a connected client, like the ones accepted by a listener.
+     *
+     * @param tcpClient
+     */
+    void start(TcpClient tcpClient) throws IOException {
+        if (this.tcpClient != null) {
             throw new IllegalStateException("The client is already open");
         }
-        tcpClient = tcpClientFactory.create();
-        tcpClient.connect(new InetSocketAddress(uri.getHost(), uri.getPort()));
+        this.tcpClient = tcpClient;
         isConnected = true;
 
         initializeStreams();
 
+        if (asyncSendOptions != null) {
+            envelopeWriter = new EnvelopeWriter(asyncSendOptions);
+            Thread envelopeWriterThread = ThreadFactories.newThread(threadFactory, envelopeWriter, "lime-tcp-writer", true);
+            envelopeWriter.start(envelopeWriterThread);
+        }
+
         if (getStateListener() != null) {
             startListenerThread();
         }
     }
 
+    /**
+     * Enumerates the supported compression options for the transport.
+     *
+     * @return
+     */
+    @Override
+    public SessionCompression[] getSupportedCompression() {
+        return new SessionCompression[]{SessionCompression.NONE, SessionCompression.GZIP};
+    }
+
+    /**
+     * Defines the compression mode for the transport.
+     * The GZIP streams are flushed after each envelope.
+     *
+     * @param compression
+     */
+    @Override
+    public void setCompression(SessionCompression compression) throws IOException {
+        switch (compression) {
+            case GZIP:
+                if (getCompression() != SessionCompression.GZIP) {
+                    // The bytes already read from the socket may be compressed
+                    byte[] pendingInput = isListening() ? jsonListener.drainPending() : new byte[0];
+                    stopListenerThread();
+                    try {
+                        writeLock.lock();
+                        try {
+                            if (envelopeWriter != null) {
+                                envelopeWriter.writeQueued();
+                            }
+                            pendingInput = concat(pendingInput, drainInputStream());
+                            super.setCompression(compression);
+                            initializeStreams(pendingInput);
+                        } finally {
+                            writeLock.unlock();
+                        }
+                        restartListenerThread();
+                    } catch (IOException e) {
+                        close();
+                        throw e;
+                    }
+                }
+                break;
+            case NONE:
+                if (getCompression() != SessionCompression.NONE) {
+                    throw new IllegalStateException("Cannot disable the compression of a connection");
+                }
+                break;
+        }
+        super.setCompression(compression);
+    }
+
     /**
      * Enumerates the supported encryption options for the transport.
      *
@@ -166,11 +368,18 @@ public class TcpTransport extends TransportBase implements Transport {
                 if (!tcpClient.isTlsStarted()) {
                     stopListenerThread();
                     try {
-                        tcpClient.startTls();
-                        initializeStreams();
-                        if (getStateListener() != null) {
-                            startListenerThread();
+                        // The enqueued envelopes must be written before the handshake
+                        writeLock.lock();
+                        try {
+                            if (envelopeWriter != null) {
+                                envelopeWriter.writeQueued();
+                            }
+                            tcpClient.startTls();
+                            initializeStreams();
+                        } finally {
+                            writeLock.unlock();
                         }
+                        restartListenerThread();
                     } catch (IOException e) {
                         close();
                         throw e;
@@ -186,6 +395,17 @@ public class TcpTransport extends TransportBase implements Transport {
         super.setEncryption(encryption);
     }
 
+    /**
+     * Writes the envelope bytes, with the length prefix for the binary serializers.
+     * Must be called with the write lock.
+     */
+    private void writeFrame(byte[] envelopeBytes) throws IOException {
+        if (envelopeCodec.isLengthPrefixed()) {
+            JsonBuffer.writeLengthPrefix(outputStream, envelopeBytes.length);
+        }
+        outputStream.write(envelopeBytes);
+    }
+
     private boolean isSocketOpen() {
         return tcpClient != null;
     }
@@ -197,36 +417,284 @@ public class TcpTransport extends TransportBase implements Transport {
     }
 
     private void initializeStreams() throws IOException {
-        outputStream = new BufferedOutputStream(tcpClient.getOutputStream());
-        inputStream = new BufferedInputStream(tcpClient.getInputStream());
+        initializeStreams(new byte[0]);
+    }
+
+    private void initializeStreams(byte[] pendingInput) throws IOException {
+        OutputStream clientOutputStream = tcpClient.getOutputStream();
+        InputStream clientInputStream = tcpClient.getInputStream();
+        if (pendingInput.length > 0) {
+            clientInputStream = new SequenceInputStream(new ByteArrayInputStream(pendingInput), clientInputStream);
+        }
+        if (getCompression() == SessionCompression.GZIP) {
+            // The streams are created over the encrypted ones when TLS is started after the compression
+            clientOutputStream = new LazyGZIPOutputStream(clientOutputStream);
+            clientInputStream = new LazyGZIPInputStream(clientInputStream);
+        }
+        outputStream = new BufferedOutputStream(clientOutputStream);
+        inputStream = new BufferedInputStream(clientInputStream);
+    }
+
+    /**
+     * Reads the bytes available in the current input stream without blocking.
+     */
+    private byte[] drainInputStream() throws IOException {
+        int available = inputStream.available();
+        if (available <= 0) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[available];
+        int read = inputStream.read(bytes, 0, available);
+        if (read <= 0) {
+            return new byte[0];
+        }
+        return read == available ? bytes : Arrays.copyOf(bytes, read);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
     }
 
     private boolean isListening() {
         return jsonListener != null && !jsonListener.isStopping();
     }
 
-    private synchronized void startListenerThread() throws IOException {
-        ensureSocketOpen();
-        if(!isConnected()){
-            throw new IllegalStateException("The transport is not connected");
+    private void startListenerThread() throws IOException {
+        listenerLock.lock();
+        try {
+            ensureSocketOpen();
+            if(!isConnected()){
+                throw new IllegalStateException("The transport is not connected");
+            }
+            if (isListening()) {
+                throw new IllegalStateException("The input listener is already started");
+            }
+            jsonListener = new JsonListener(inputStream, createJsonBuffer());
+            jsonListenerThread = ThreadFactories.newThread(threadFactory, jsonListener, "lime-tcp-listener", false);
+            jsonListenerThread.start();
+        } finally {
+            listenerLock.unlock();
         }
-        if (isListening()) {
-            throw new IllegalStateException("The input listener is already started");
+    }
+
+    private void stopListenerThread() {
+        listenerLock.lock();
+        try {
+            if (isListening()) {
+                jsonListener.stop();
+                if (jsonListenerThread != null && jsonListenerThread.isAlive()
+                        && jsonListenerThread != Thread.currentThread()) {
+                    jsonListenerThread.interrupt();
+                }
+                jsonListenerThread = null;
+            }
+        } finally {
+            listenerLock.unlock();
+        }
+    }
+
+    /**
+     * Starts the listener again after a change of the streams.
+     * If the streams were changed in an envelope callback of the stopped listener, the new listener is started
+     * by the stopped one when it leaves, so the other changes of the same callback, like the TLS handshake
+     * after the compression, are applied before any read from the socket.
+     */
+    private void restartListenerThread() throws IOException {
+        if (getStateListener() == null) {
+            return;
+        }
+        listenerLock.lock();
+        try {
+            JsonListener jsonListener = this.jsonListener;
+            if (jsonListener != null && jsonListener.isStopping() && jsonListener.isCurrentThread()) {
+                jsonListener.restartOnExit();
+                return;
+            }
+        } finally {
+            listenerLock.unlock();
         }
-        jsonListener = new JsonListener(inputStream, bufferSize);
-        jsonListenerThread = new Thread(jsonListener);
-        jsonListenerThread.start();
+        startListenerThread();
     }
 
-    private synchronized void stopListenerThread() {
-        if (isListening()) {
-            jsonListener.stop();
-            if (jsonListenerThread != null && jsonListenerThread.isAlive()) {
-                jsonListenerThread.interrupt();
+    private static class QueuedEnvelope {
+        private final Envelope envelope;
+        private final byte[] envelopeBytes;
+        private final boolean isTraced;
+
+        QueuedEnvelope(Envelope envelope, byte[] envelopeBytes, boolean isTraced) {
+            this.envelope = envelope;
+            this.envelopeBytes = envelopeBytes;
+            this.isTraced = isTraced;
+        }
+    }
+
+    /**
+     * Writes the enqueued envelopes in batches, flushing the output stream once for each batch.
+     */
+    class EnvelopeWriter implements Runnable {
+
+        private final Queue<QueuedEnvelope> queue;
+        private final AtomicInteger queuedCount;
+        private final long lingerNanos;
+        private final int maxBatchSize;
+        private volatile Thread thread;
+        private volatile boolean isWaiting;
+        volatile private boolean isStopping;
+
+        EnvelopeWriter(AsyncSendOptions asyncSendOptions) {
+            this.queue = new ConcurrentLinkedQueue<>();
+            this.queuedCount = new AtomicInteger();
+            this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(asyncSendOptions.getLingerMicros());
+            this.maxBatchSize = asyncSendOptions.getMaxBatchSize();
+        }
+
+        void start(Thread thread) {
+            this.thread = thread;
+            thread.start();
+        }
+
+        void enqueue(QueuedEnvelope queuedEnvelope) throws IOException {
+            if (isStopping) {
+                throw new IOException("The transport is closed");
+            }
+            queue.add(queuedEnvelope);
+            int count = queuedCount.incrementAndGet();
+            if (isStopping && queue.remove(queuedEnvelope)) {
+                // The writer stopped before taking the envelope
+                queuedCount.decrementAndGet();
+                throw new IOException("The transport is closed");
+            }
+            // A full batch also ends the linger, which doesn't set the waiting flag
+            if (isWaiting || count == maxBatchSize) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isStopping && !Thread.currentThread().isInterrupted()) {
+                    if (queue.isEmpty()) {
+                        isWaiting = true;
+                        if (queue.isEmpty() && !isStopping) {
+                            LockSupport.park(this);
+                        }
+                        isWaiting = false;
+                        continue;
+                    }
+                    if (lingerNanos > 0) {
+                        linger();
+                    }
+                    writeBatch(maxBatchSize);
+                }
+            } catch (IOException e) {
+                try {
+                    TcpTransport.this.close();
+                } catch (IOException e1) {
+                    e1.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Writes all the enqueued envelopes, in the caller thread.
+         * @throws IOException
+         */
+        void writeQueued() throws IOException {
+            while (!queue.isEmpty()) {
+                writeBatch(Integer.MAX_VALUE);
             }
-            jsonListener = null;
-            jsonListenerThread = null;
         }
+
+        void stop() {
+            if (isStopping) {
+                return;
+            }
+            try {
+                writeQueued();
+            } catch (IOException e) {
+                // The failures were already reported for each envelope
+            }
+            isStopping = true;
+            failQueued(new IOException("The transport is closed"));
+            LockSupport.unpark(thread);
+        }
+
+        private void linger() {
+            long deadline = System.nanoTime() + lingerNanos;
+            long remaining;
+            while (!isStopping &&
+                    queuedCount.get() < maxBatchSize &&
+                    (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+
+        private void writeBatch(int batchSize) throws IOException {
+            List<QueuedEnvelope> batch = new ArrayList<>(Math.min(batchSize, maxBatchSize));
+            IOException exception = null;
+            writeLock.lock();
+            try {
+                QueuedEnvelope queuedEnvelope;
+                while (batch.size() < batchSize && (queuedEnvelope = queue.poll()) != null) {
+                    queuedCount.decrementAndGet();
+                    batch.add(queuedEnvelope);
+                }
+                try {
+                    for (QueuedEnvelope batchEnvelope : batch) {
+                        writeFrame(batchEnvelope.envelopeBytes);
+                    }
+                    outputStream.flush();
+                } catch (IOException e) {
+                    exception = e;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            if (exception != null) {
+                isStopping = true;
+                failBatch(batch, exception);
+                failQueued(exception);
+                throw exception;
+            }
+
+            if (traceWriter != null && traceWriter.isEnabled()) {
+                for (QueuedEnvelope batchEnvelope : batch) {
+                    if (batchEnvelope.isTraced) {
+                        TraceWriters.trace(traceWriter, batchEnvelope.envelopeBytes, 0, batchEnvelope.envelopeBytes.length,
+                                TraceWriter.DataOperation.SEND);
+                    }
+                }
+            }
+        }
+
+        private void failQueued(IOException exception) {
+            QueuedEnvelope queuedEnvelope;
+            while ((queuedEnvelope = queue.poll()) != null) {
+                queuedCount.decrementAndGet();
+                raiseOnException(new EnvelopeSendException(queuedEnvelope.envelope, exception));
+            }
+        }
+
+        private void failBatch(List<QueuedEnvelope> batch, IOException exception) {
+            for (QueuedEnvelope queuedEnvelope : batch) {
+                raiseOnException(new EnvelopeSendException(queuedEnvelope.envelope, exception));
+            }
+        }
+    }
+
+    private JsonBuffer createJsonBuffer() {
+        JsonBuffer.ScanMode scanMode = envelopeCodec.isLengthPrefixed() ? JsonBuffer.ScanMode.LENGTH_PREFIXED : JsonBuffer.ScanMode.BYTE;
+        if (bufferPool != null) {
+            return new JsonBuffer(bufferPool, maxBufferSize, scanMode);
+        }
+        return new JsonBuffer(bufferSize, maxBufferSize, scanMode);
     }
 
     class JsonListener implements Runnable {
@@ -234,42 +702,50 @@ public class TcpTransport extends TransportBase implements Transport {
         private final InputStream inputStream;
         private JsonBuffer jsonBuffer;
         volatile private boolean isStopping;
+        volatile private boolean isRestartPending;
+        volatile private Thread thread;
 
-        JsonListener(InputStream inputStream, int bufferSize) {
+        JsonListener(InputStream inputStream, JsonBuffer jsonBuffer) {
             this.inputStream = inputStream;
-            jsonBuffer = new JsonBuffer(bufferSize);
+            this.jsonBuffer = jsonBuffer;
         }
 
         @Override
         public void run() {
+            thread = Thread.currentThread();
             try {
                 while (getEnvelopeListener() != null && !isStopping() && !Thread.currentThread().isInterrupted()) {
                     Envelope envelope = null;
-                    while (envelope == null) {
-                        JsonBuffer.JsonBufferReadResult jsonBufferReadResult = jsonBuffer.tryExtractJsonFromBuffer();
-                        if (jsonBufferReadResult.isSuccess()) {
-                            String jsonString = new String(jsonBufferReadResult.getJsonBytes(), Charset.forName("UTF8"));
+                    // A stopped listener leaves after a read timeout, without taking the next envelope
+                    while (envelope == null && !isStopping()) {
+                        if (jsonBuffer.tryReadFrame()) {
+                            byte[] buffer = jsonBuffer.getBuffer();
+                            int frameOffset = jsonBuffer.getFrameOffset();
+                            int frameLength = jsonBuffer.getFrameLength();
                             if (traceWriter != null && traceWriter.isEnabled()) {
-                                traceWriter.trace(jsonString, TraceWriter.DataOperation.RECEIVE);
+                                TraceWriters.trace(traceWriter, buffer, frameOffset, frameLength, TraceWriter.DataOperation.RECEIVE);
                             }
-                            envelope = envelopeSerializer.deserialize(jsonString);
+                            envelope = envelopeCodec.deserialize(buffer, frameOffset, frameLength);
                         }
                         if (envelope == null) {
                             try {
-                                int read = this.inputStream.read(jsonBuffer.getBuffer(), jsonBuffer.getBufferCurPos(), jsonBuffer.getBuffer().length - jsonBuffer.getBufferCurPos());
+                                if (!jsonBuffer.ensureWritable()) {
+                                    TcpTransport.this.close();
+                                    throw new BufferOverflowException("Maximum buffer size reached");
+                                }
+                                int read = this.inputStream.read(jsonBuffer.getBuffer(), jsonBuffer.getBufferCurPos(), jsonBuffer.getWritableLength());
                                 if (read == -1) {
                                     // The stream reached EOF, raise closed event.
                                     close();
                                     break;
                                 }
                                 jsonBuffer.increaseBufferCurPos(read);
-                                if (jsonBuffer.getBufferCurPos() >= jsonBuffer.getBuffer().length) {
-                                    TcpTransport.this.close();
-                                    throw new BufferOverflowException("Maximum buffer size reached");
-                                }
                             } catch (SocketTimeoutException e) {
                                 if(!isConnected()){
                                     stop();
+                                } else {
+                                    // Idle connection, returns the buffer to the pool if there's nothing pending
+                                    jsonBuffer.release();
                                 }
                             } catch (IOException e){
                                 TcpTransport.this.close();
@@ -289,17 +765,37 @@ public class TcpTransport extends TransportBase implements Transport {
                     try {
                         bytesAvailable = this.inputStream.available();
                     }catch(Exception e) {}
-                    traceWriter.trace(String.format("TcpTransport JsonListener thread aborted with %d bytes in internal Buffer and %d bytes in input Stream", jsonBuffer.getBuffer().length, bytesAvailable), TraceWriter.DataOperation.RECEIVE);
+                    traceWriter.trace(String.format("TcpTransport JsonListener thread aborted with %d bytes in internal Buffer and %d bytes in input Stream", jsonBuffer.getPendingLength(), bytesAvailable), TraceWriter.DataOperation.RECEIVE);
                 }
+                jsonBuffer.release();
             }
 
             this.isStopping = true;
+            if (isRestartPending && isConnected() && !isListening()) {
+                try {
+                    startListenerThread();
+                } catch (Exception e) {
+                    raiseOnException(e);
+                }
+            }
+        }
+
+        boolean isCurrentThread() {
+            return thread == Thread.currentThread();
+        }
+
+        void restartOnExit() {
+            this.isRestartPending = true;
         }
 
         public boolean isStopping() {
             return this.isStopping;
         }
 
+        byte[] drainPending() {
+            return jsonBuffer.drainPending();
+        }
+
         public void stop() {
             this.isStopping = true;
         }
@@ -0,0 +1,141 @@
+package org.limeprotocol.network.tcp;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Access to the Unix domain socket channels of the Java 16+ runtimes, which are obtained by reflection
+ * since the library targets older runtimes.
+ */
+public class UnixDomainSockets {
+
+    public final static String URI_SCHEME = "net.unix";
+
+    private final static ProtocolFamily UNIX_FAMILY;
+    private final static Method ADDRESS_OF_METHOD;
+    private final static Method ADDRESS_GET_PATH_METHOD;
+    private final static Method SOCKET_CHANNEL_OPEN_METHOD;
+    private final static Method SERVER_SOCKET_CHANNEL_OPEN_METHOD;
+
+    static {
+        ProtocolFamily unixFamily = null;
+        Method addressOfMethod = null;
+        Method addressGetPathMethod = null;
+        Method socketChannelOpenMethod = null;
+        Method serverSocketChannelOpenMethod = null;
+        try {
+            unixFamily = StandardProtocolFamily.valueOf("UNIX");
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            addressOfMethod = addressClass.getMethod("of", String.class);
+            addressGetPathMethod = addressClass.getMethod("getPath");
+            socketChannelOpenMethod = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            serverSocketChannelOpenMethod = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+        } catch (IllegalArgumentException | ReflectiveOperationException e) {
+            // The runtime doesn't support Unix domain sockets
+            unixFamily = null;
+        }
+        UNIX_FAMILY = unixFamily;
+        ADDRESS_OF_METHOD = addressOfMethod;
+        ADDRESS_GET_PATH_METHOD = addressGetPathMethod;
+        SOCKET_CHANNEL_OPEN_METHOD = socketChannelOpenMethod;
+        SERVER_SOCKET_CHANNEL_OPEN_METHOD = serverSocketChannelOpenMethod;
+    }
+
+    private UnixDomainSockets() {
+    }
+
+    /**
+     * Indicates if the runtime supports Unix domain sockets.
+     * @return
+     */
+    public static boolean isSupported() {
+        return UNIX_FAMILY != null;
+    }
+
+    /**
+     * Creates the address of a socket file.
+     * @param path
+     * @return
+     */
+    public static SocketAddress createAddress(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("path");
+        }
+        ensureSupported();
+        return (SocketAddress) invoke(ADDRESS_OF_METHOD, null, path);
+    }
+
+    /**
+     * Creates the address of the socket file of a 'net.unix' URI, like 'net.unix:///var/run/lime.sock'.
+     * @param uri
+     * @return
+     */
+    public static SocketAddress createAddress(URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri");
+        }
+        if (!URI_SCHEME.equals(uri.getScheme())) {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is '" + URI_SCHEME + "'");
+        }
+        return createAddress(uri.getPath());
+    }
+
+    /**
+     * Gets the socket file path of an address.
+     * @param address
+     * @return
+     */
+    public static String getPath(SocketAddress address) {
+        ensureSupported();
+        return invoke(ADDRESS_GET_PATH_METHOD, address).toString();
+    }
+
+    public static SocketChannel openSocketChannel() throws IOException {
+        ensureSupported();
+        return (SocketChannel) invokeIO(SOCKET_CHANNEL_OPEN_METHOD, UNIX_FAMILY);
+    }
+
+    public static ServerSocketChannel openServerSocketChannel() throws IOException {
+        ensureSupported();
+        return (ServerSocketChannel) invokeIO(SERVER_SOCKET_CHANNEL_OPEN_METHOD, UNIX_FAMILY);
+    }
+
+    private static void ensureSupported() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or later");
+        }
+    }
+
+    private static Object invokeIO(Method method, Object argument) throws IOException {
+        try {
+            return method.invoke(null, argument);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... arguments) {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
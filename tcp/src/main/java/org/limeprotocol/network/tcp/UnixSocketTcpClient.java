@@ -0,0 +1,231 @@
+package org.limeprotocol.network.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Client over a Unix domain socket channel, for the connections between processes of the same host.
+ * The channel is not encrypted, since the access is controlled by the permissions of the socket file.
+ * The channel is used in the non-blocking mode, so the interruption of the listener thread doesn't close it
+ * like it would close a blocking channel, and the reads time out like the {@link SocketTcpClient} reads.
+ */
+public class UnixSocketTcpClient implements TcpClient {
+
+    private final int soTimeout;
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private volatile SocketChannel socketChannel;
+    private Selector readSelector;
+    private Selector writeSelector;
+
+    public UnixSocketTcpClient() {
+        this(SocketTcpClient.DEFAULT_SO_TIMEOUT);
+    }
+
+    /**
+     * @param soTimeout The maximum time to wait for data in a read, in milliseconds. If 0, the reads wait indefinitely.
+     */
+    public UnixSocketTcpClient(int soTimeout) {
+        if (soTimeout < 0) {
+            throw new IllegalArgumentException("soTimeout");
+        }
+        this.soTimeout = soTimeout;
+        this.inputStream = new ChannelInputStream();
+        this.outputStream = new ChannelOutputStream();
+    }
+
+    /**
+     * Creates a client for a channel accepted by a listener.
+     * @param socketChannel
+     * @param soTimeout
+     */
+    UnixSocketTcpClient(SocketChannel socketChannel, int soTimeout) throws IOException {
+        this(soTimeout);
+        if (socketChannel == null) {
+            throw new IllegalArgumentException("socketChannel");
+        }
+        initialize(socketChannel);
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint) throws IOException {
+        if (socketChannel != null) {
+            throw new IllegalStateException("The client is already connected");
+        }
+        SocketChannel socketChannel = UnixDomainSockets.openSocketChannel();
+        try {
+            socketChannel.connect(endpoint);
+            initialize(socketChannel);
+        } catch (IOException e) {
+            socketChannel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return outputStream;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return inputStream;
+    }
+
+    @Override
+    public boolean isTlsStarted() {
+        return false;
+    }
+
+    @Override
+    public void startTls() throws IOException {
+        throw new UnsupportedOperationException("TLS is not supported by Unix domain sockets");
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return !isOpen();
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return !isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        SocketChannel socketChannel = this.socketChannel;
+        if (socketChannel != null) {
+            try {
+                socketChannel.close();
+            } finally {
+                readSelector.close();
+                writeSelector.close();
+            }
+        }
+    }
+
+    private void initialize(SocketChannel socketChannel) throws IOException {
+        socketChannel.configureBlocking(false);
+        Selector readSelector = Selector.open();
+        Selector writeSelector = null;
+        try {
+            writeSelector = Selector.open();
+            socketChannel.register(readSelector, SelectionKey.OP_READ);
+            socketChannel.register(writeSelector, SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            readSelector.close();
+            if (writeSelector != null) {
+                writeSelector.close();
+            }
+            throw e;
+        }
+        this.readSelector = readSelector;
+        this.writeSelector = writeSelector;
+        this.socketChannel = socketChannel;
+    }
+
+    private boolean isOpen() {
+        SocketChannel socketChannel = this.socketChannel;
+        return socketChannel != null && socketChannel.isOpen();
+    }
+
+    private SocketChannel getConnectedChannel() throws IOException {
+        SocketChannel socketChannel = this.socketChannel;
+        if (socketChannel == null) {
+            throw new IOException("The client is not connected");
+        }
+        return socketChannel;
+    }
+
+    private static void select(Selector selector, long timeout) throws IOException {
+        try {
+            selector.select(timeout);
+            selector.selectedKeys().clear();
+        } catch (ClosedSelectorException e) {
+            throw new AsynchronousCloseException();
+        }
+    }
+
+    private class ChannelInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int read = read(buffer, 0, 1);
+            return read == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            SocketChannel socketChannel = getConnectedChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            long deadline = System.currentTimeMillis() + soTimeout;
+            while (true) {
+                int read = socketChannel.read(buffer);
+                if (read != 0) {
+                    return read;
+                }
+                long timeout = 0;
+                if (soTimeout > 0) {
+                    timeout = deadline - System.currentTimeMillis();
+                    if (timeout <= 0) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                }
+                select(readSelector, timeout);
+                if (Thread.interrupted()) {
+                    // Wakes the listener like a timeout, since the socket reads are not interruptible
+                    throw new SocketTimeoutException("Read interrupted");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixSocketTcpClient.this.close();
+        }
+    }
+
+    private class ChannelOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            SocketChannel socketChannel = getConnectedChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                if (socketChannel.write(buffer) == 0) {
+                    // The socket buffer is full, so waits for the remote endpoint to read
+                    select(writeSelector, 0);
+                    if (Thread.interrupted()) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Write interrupted");
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixSocketTcpClient.this.close();
+        }
+    }
+}
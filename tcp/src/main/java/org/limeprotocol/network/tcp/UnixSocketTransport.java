@@ -0,0 +1,83 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Transport over a Unix domain socket, for the nodes in the same host, like a proxy sidecar.
+ * The URIs have the 'net.unix' scheme and the socket file path, like 'net.unix:///var/run/lime.sock'.
+ * The envelopes are framed and serialized like in the {@link TcpTransport}, without the overhead of the TCP stack.
+ * Requires Java 16 or later.
+ */
+public class UnixSocketTransport extends TcpTransport {
+
+    private final static TcpClientFactory UNIX_SOCKET_CLIENT_FACTORY = new TcpClientFactory() {
+        @Override
+        public TcpClient create() {
+            return new UnixSocketTcpClient();
+        }
+    };
+
+    public UnixSocketTransport() {
+        this(new JacksonEnvelopeSerializer(), null);
+    }
+
+    public UnixSocketTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter) {
+        this(envelopeSerializer, traceWriter, BufferPool.getDefault(), DEFAULT_MAX_BUFFER_SIZE, null, ThreadFactories.getDefault());
+    }
+
+    /**
+     * Creates a transport with a pooled receive buffer that sends the envelopes asynchronously
+     * if the send options are specified.
+     */
+    public UnixSocketTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize,
+                               AsyncSendOptions asyncSendOptions, ThreadFactory threadFactory) {
+        this(EnvelopeCodec.of(envelopeSerializer), traceWriter, bufferPool, maxBufferSize, asyncSendOptions, threadFactory);
+    }
+
+    /**
+     * Creates a transport that sends the envelopes of a binary serializer prefixed by their length.
+     */
+    public UnixSocketTransport(BinaryEnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize,
+                               AsyncSendOptions asyncSendOptions, ThreadFactory threadFactory) {
+        this(EnvelopeCodec.of(envelopeSerializer), traceWriter, bufferPool, maxBufferSize, asyncSendOptions, threadFactory);
+    }
+
+    UnixSocketTransport(EnvelopeCodec envelopeCodec, TraceWriter traceWriter, BufferPool bufferPool, int maxBufferSize,
+                        AsyncSendOptions asyncSendOptions, ThreadFactory threadFactory) {
+        super(envelopeCodec, UNIX_SOCKET_CLIENT_FACTORY, traceWriter, bufferPool, maxBufferSize, asyncSendOptions, threadFactory);
+    }
+
+    /**
+     * The local connections are not encrypted.
+     *
+     * @return
+     */
+    @Override
+    public SessionEncryption[] getSupportedEncryption() {
+        return new SessionEncryption[]{SessionEncryption.NONE};
+    }
+
+    @Override
+    public void setEncryption(SessionEncryption encryption) throws IOException {
+        if (encryption != SessionEncryption.NONE) {
+            throw new IllegalArgumentException("encryption");
+        }
+        super.setEncryption(encryption);
+    }
+
+    @Override
+    protected SocketAddress getEndpoint(URI uri) {
+        return UnixDomainSockets.createAddress(uri);
+    }
+}
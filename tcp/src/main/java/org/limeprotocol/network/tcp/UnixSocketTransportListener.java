@@ -0,0 +1,210 @@
+package org.limeprotocol.network.tcp;
+
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Listener that accepts the Unix domain socket connections as {@link UnixSocketTransport} instances.
+ * The connections are accepted by a dedicated thread, which invokes the accept listener.
+ * The socket file is created when started and deleted when stopped, but a file left by a process
+ * that was not stopped must be deleted before starting a new listener for the same path.
+ * Requires Java 16 or later.
+ */
+public class UnixSocketTransportListener implements TransportListener {
+
+    public final static int DEFAULT_BACKLOG = 1024;
+
+    private final URI listenerUri;
+    private final EnvelopeCodec envelopeCodec;
+    private final TraceWriter traceWriter;
+    private final BufferPool bufferPool;
+    private final int maxBufferSize;
+    private final int backlog;
+    private final ThreadFactory threadFactory;
+
+    private volatile TransportAcceptListener acceptListener;
+    private volatile ServerSocketChannel serverSocketChannel;
+
+    /**
+     * @param listenerUri The socket file, with the 'net.unix' scheme, like 'net.unix:///var/run/lime.sock'.
+     */
+    public UnixSocketTransportListener(URI listenerUri) {
+        this(listenerUri, new JacksonEnvelopeSerializer(), null, BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE,
+                DEFAULT_BACKLOG, ThreadFactories.getDefault());
+    }
+
+    /**
+     * @param listenerUri The socket file, with the 'net.unix' scheme, like 'net.unix:///var/run/lime.sock'.
+     * @param backlog The maximum number of pending connections.
+     * @param threadFactory The factory for the accept thread and the listener threads of the accepted transports.
+     */
+    public UnixSocketTransportListener(URI listenerUri, EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter,
+                                       BufferPool bufferPool, int maxBufferSize, int backlog, ThreadFactory threadFactory) {
+        this(listenerUri, EnvelopeCodec.of(envelopeSerializer), traceWriter, bufferPool, maxBufferSize, backlog, threadFactory);
+    }
+
+    /**
+     * Creates a listener of transports that send the envelopes of a binary serializer prefixed by their length.
+     * @param listenerUri The socket file, with the 'net.unix' scheme, like 'net.unix:///var/run/lime.sock'.
+     * @param backlog The maximum number of pending connections.
+     * @param threadFactory The factory for the accept thread and the listener threads of the accepted transports.
+     */
+    public UnixSocketTransportListener(URI listenerUri, BinaryEnvelopeSerializer envelopeSerializer, TraceWriter traceWriter,
+                                       BufferPool bufferPool, int maxBufferSize, int backlog, ThreadFactory threadFactory) {
+        this(listenerUri, EnvelopeCodec.of(envelopeSerializer), traceWriter, bufferPool, maxBufferSize, backlog, threadFactory);
+    }
+
+    private UnixSocketTransportListener(URI listenerUri, EnvelopeCodec envelopeCodec, TraceWriter traceWriter,
+                                        BufferPool bufferPool, int maxBufferSize, int backlog, ThreadFactory threadFactory) {
+        if (listenerUri == null) {
+            throw new IllegalArgumentException("listenerUri");
+        }
+        if (!UnixDomainSockets.URI_SCHEME.equals(listenerUri.getScheme())) {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is '" + UnixDomainSockets.URI_SCHEME + "'");
+        }
+        if (bufferPool == null) {
+            throw new IllegalArgumentException("bufferPool");
+        }
+        if (backlog <= 0) {
+            throw new IllegalArgumentException("backlog");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        this.listenerUri = listenerUri;
+        this.envelopeCodec = envelopeCodec;
+        this.traceWriter = traceWriter;
+        this.bufferPool = bufferPool;
+        this.maxBufferSize = maxBufferSize;
+        this.backlog = backlog;
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public URI[] getListenerUris() {
+        return new URI[]{listenerUri};
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (acceptListener == null) {
+            throw new IllegalStateException("The accept listener is not registered");
+        }
+        if (serverSocketChannel != null) {
+            throw new IllegalStateException("The listener is already started");
+        }
+
+        ServerSocketChannel serverSocketChannel = UnixDomainSockets.openServerSocketChannel();
+        try {
+            serverSocketChannel.bind(UnixDomainSockets.createAddress(listenerUri), backlog);
+        } catch (IOException e) {
+            serverSocketChannel.close();
+            throw e;
+        }
+        this.serverSocketChannel = serverSocketChannel;
+        ThreadFactories.newThread(threadFactory, new AcceptTask(serverSocketChannel), "lime-unix-acceptor", true).start();
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+        ServerSocketChannel serverSocketChannel = this.serverSocketChannel;
+        if (serverSocketChannel == null) {
+            throw new IllegalStateException("The listener is not started");
+        }
+        this.serverSocketChannel = null;
+        try {
+            serverSocketChannel.close();
+        } finally {
+            // The socket file is not removed when the channel is closed
+            new File(listenerUri.getPath()).delete();
+        }
+    }
+
+    @Override
+    public boolean isListening() {
+        ServerSocketChannel serverSocketChannel = this.serverSocketChannel;
+        return serverSocketChannel != null && serverSocketChannel.isOpen();
+    }
+
+    @Override
+    public void setAcceptListener(TransportAcceptListener listener) {
+        this.acceptListener = listener;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isListening()) {
+            stop();
+        }
+    }
+
+    private void raiseOnException(Exception e) {
+        // Errors like the exhaustion of file descriptors don't stop the listener
+        TransportAcceptListener listener = acceptListener;
+        if (listener != null) {
+            listener.onException(e);
+        } else {
+            e.printStackTrace();
+        }
+    }
+
+    private class AcceptTask implements Runnable {
+
+        private final ServerSocketChannel serverSocketChannel;
+
+        public AcceptTask(ServerSocketChannel serverSocketChannel) {
+            this.serverSocketChannel = serverSocketChannel;
+        }
+
+        @Override
+        public void run() {
+            while (serverSocketChannel.isOpen()) {
+                SocketChannel socketChannel;
+                try {
+                    socketChannel = serverSocketChannel.accept();
+                } catch (ClosedChannelException e) {
+                    // The listener was stopped
+                    return;
+                } catch (IOException e) {
+                    raiseOnException(e);
+                    continue;
+                }
+                UnixSocketTransport transport = new UnixSocketTransport(envelopeCodec, traceWriter, bufferPool,
+                        maxBufferSize, null, threadFactory);
+                try {
+                    transport.start(new UnixSocketTcpClient(socketChannel, SocketTcpClient.DEFAULT_SO_TIMEOUT));
+                } catch (IOException e) {
+                    closeQuietly(socketChannel);
+                    raiseOnException(e);
+                    continue;
+                }
+                try {
+                    acceptListener.onAccept(transport);
+                } catch (Exception e) {
+                    raiseOnException(e);
+                }
+            }
+        }
+
+        private void closeQuietly(SocketChannel socketChannel) {
+            try {
+                socketChannel.close();
+            } catch (IOException e) {
+                // Already reported the accept failure
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.limeprotocol.network;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class JsonBufferTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private static void write(JsonBuffer target, String value) {
+        byte[] bytes = value.getBytes(UTF8);
+        write(target, bytes, 0, bytes.length);
+    }
+
+    private static void write(JsonBuffer target, byte[] bytes, int offset, int count) {
+        int written = 0;
+        while (written < count) {
+            assertTrue(target.ensureWritable());
+            int length = Math.min(target.getWritableLength(), count - written);
+            System.arraycopy(bytes, offset + written, target.getBuffer(), target.getBufferCurPos(), length);
+            target.increaseBufferCurPos(length);
+            written += length;
+        }
+    }
+
+    private static String readFrame(JsonBuffer target) {
+        assertTrue(target.tryReadFrame());
+        return new String(target.getBuffer(), target.getFrameOffset(), target.getFrameLength(), UTF8);
+    }
+
+    @Test
+    public void tryReadFrame_multipleFrames_returnsFramesInOrder() {
+        // Arrange
+        JsonBuffer target = new JsonBuffer(64);
+        write(target, "{\"id\":\"1\"}  {\"id\":\"2\",\"a\":\"}\"}");
+
+        // Act
+        String frame1 = readFrame(target);
+        String frame2 = readFrame(target);
+
+        // Assert
+        assertEquals("{\"id\":\"1\"}", frame1);
+        assertEquals("{\"id\":\"2\",\"a\":\"}\"}", frame2);
+        assertFalse(target.tryReadFrame());
+        assertEquals(0, target.getPendingLength());
+    }
+
+    @Test
+    public void ensureWritable_frameBiggerThanInitialSize_growsBuffer() {
+        // Arrange
+        JsonBuffer target = new JsonBuffer(8, 64);
+        String json = "{\"id\":\"0123456789\",\"to\":\"someone@domain.com\"}";
+
+        // Act
+        write(target, json);
+
+        // Assert
+        assertEquals(json, readFrame(target));
+        assertTrue(target.getBuffer().length > 8);
+        assertTrue(target.getBuffer().length <= 64);
+    }
+
+    @Test
+    public void ensureWritable_consumedFrameAtStart_compactsPendingBytes() {
+        // Arrange
+        JsonBuffer target = new JsonBuffer(16);
+        write(target, "{\"id\":\"1\"}{\"id\"");
+        assertEquals("{\"id\":\"1\"}", readFrame(target));
+        assertFalse(target.tryReadFrame());
+
+        // Act
+        write(target, ":\"2\"}");
+
+        // Assert
+        assertEquals(16, target.getBuffer().length);
+        assertEquals("{\"id\":\"2\"}", readFrame(target));
+    }
+
+    @Test
+    public void ensureWritable_pendingBytesFillMaxSize_returnsFalse() {
+        // Arrange
+        JsonBuffer target = new JsonBuffer(8, 16);
+        write(target, "{\"id\":\"012345678");
+        assertFalse(target.tryReadFrame());
+
+        // Act
+        boolean actual = target.ensureWritable();
+
+        // Assert
+        assertFalse(actual);
+    }
+
+    @Test
+    public void tryReadFrame_framesExactlyFillMaxSize_returnsFramesAndKeepsBufferWritable() {
+        // Arrange
+        JsonBuffer target = new JsonBuffer(8, 20);
+        write(target, "{\"id\":\"1\"}{\"id\":\"2\"}");
+        assertEquals(20, target.getBufferCurPos());
+
+        // Act
+        String frame1 = readFrame(target);
+        String frame2 = readFrame(target);
+
+        // Assert
+        assertEquals("{\"id\":\"1\"}", frame1);
+        assertEquals("{\"id\":\"2\"}", frame2);
+        assertFalse(target.tryReadFrame());
+        assertTrue(target.ensureWritable());
+        assertEquals(0, target.getPendingLength());
+    }
+
+    @Test
+    public void release_noPendingBytes_returnsBufferToPool() {
+        // Arrange
+        BufferPool bufferPool = new BufferPool(32, 1);
+        JsonBuffer target = new JsonBuffer(bufferPool, 64);
+        byte[] buffer = target.getBuffer();
+        write(target, "{\"id\":\"1\"}");
+        readFrame(target);
+
+        // Act
+        boolean actual = target.release();
+
+        // Assert
+        assertTrue(actual);
+        assertSame(buffer, bufferPool.acquire());
+    }
+
+    @Test
+    public void release_pendingBytes_keepsBuffer() {
+        // Arrange
+        BufferPool bufferPool = new BufferPool(32, 1);
+        JsonBuffer target = new JsonBuffer(bufferPool, 64);
+        write(target, "{\"id\":");
+        assertFalse(target.tryReadFrame());
+
+        // Act
+        boolean actual = target.release();
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(6, target.getPendingLength());
+    }
+
+    @Test
+    public void tryReadFrame_lengthPrefixedFramesInPartialWrites_returnsFramesInOrder() throws IOException {
+        // Arrange
+        JsonBuffer target = new JsonBuffer(8, 64, JsonBuffer.ScanMode.LENGTH_PREFIXED);
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        JsonBuffer.writeLengthPrefix(frames, 5);
+        frames.write("{\"}{\"".getBytes(UTF8));
+        JsonBuffer.writeLengthPrefix(frames, 0);
+        JsonBuffer.writeLengthPrefix(frames, 3);
+        frames.write("abc".getBytes(UTF8));
+        byte[] bytes = frames.toByteArray();
+
+        // Act
+        write(target, bytes, 0, 2);
+        boolean partialPrefixFrame = target.tryReadFrame();
+        write(target, bytes, 2, 5);
+        boolean partialValueFrame = target.tryReadFrame();
+        write(target, bytes, 7, bytes.length - 7);
+
+        // Assert
+        assertFalse(partialPrefixFrame);
+        assertFalse(partialValueFrame);
+        assertEquals("{\"}{\"", readFrame(target));
+        assertEquals("", readFrame(target));
+        assertEquals("abc", readFrame(target));
+        assertFalse(target.tryReadFrame());
+        assertEquals(0, target.getPendingLength());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tryReadFrame_negativeLengthPrefix_throwsIllegalStateException() throws IOException {
+        // Arrange
+        JsonBuffer target = new JsonBuffer(16, 16, JsonBuffer.ScanMode.LENGTH_PREFIXED);
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        JsonBuffer.writeLengthPrefix(frames, -1);
+        write(target, frames.toByteArray(), 0, frames.size());
+
+        // Act
+        target.tryReadFrame();
+    }
+}
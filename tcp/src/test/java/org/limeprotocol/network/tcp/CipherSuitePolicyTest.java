@@ -0,0 +1,79 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CipherSuitePolicyTest {
+
+    private final static String[] SUPPORTED_CIPHER_SUITES = {
+            "TLS_RSA_WITH_AES_128_CBC_SHA",
+            "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256",
+            "TLS_RSA_WITH_AES_128_GCM_SHA256",
+            "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+            "TLS_AES_128_GCM_SHA256",
+            "TLS_CHACHA20_POLY1305_SHA256",
+            "SSL_RSA_WITH_RC4_128_MD5",
+            "SSL_RSA_WITH_3DES_EDE_CBC_SHA",
+            "SSL_DH_anon_WITH_DES_CBC_SHA",
+            "TLS_RSA_WITH_NULL_SHA256",
+            "TLS_EMPTY_RENEGOTIATION_INFO_SCSV"
+    };
+
+    @Test
+    public void select_preferAesGcm_ordersAeadSuitesFirstAndRemovesInsecureSuites() {
+        // Arrange
+        CipherSuitePolicy target = new CipherSuitePolicy(true, true);
+
+        // Act
+        String[] actual = target.select(SUPPORTED_CIPHER_SUITES);
+
+        // Assert
+        assertEquals(Arrays.asList(
+                "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+                "TLS_AES_128_GCM_SHA256",
+                "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+                "TLS_CHACHA20_POLY1305_SHA256",
+                "TLS_RSA_WITH_AES_128_GCM_SHA256",
+                "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256",
+                "TLS_RSA_WITH_AES_128_CBC_SHA",
+                "TLS_EMPTY_RENEGOTIATION_INFO_SCSV"), Arrays.asList(actual));
+    }
+
+    @Test
+    public void select_preferChaCha20_ordersChaCha20SuitesBeforeAesGcm() {
+        // Arrange
+        CipherSuitePolicy target = new CipherSuitePolicy(false, true);
+
+        // Act
+        String[] actual = target.select(SUPPORTED_CIPHER_SUITES);
+
+        // Assert
+        assertEquals("TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256", actual[0]);
+        assertEquals("TLS_CHACHA20_POLY1305_SHA256", actual[1]);
+        assertEquals("TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384", actual[2]);
+    }
+
+    @Test
+    public void select_cbcNotAllowed_removesCbcSuites() {
+        // Arrange
+        CipherSuitePolicy target = new CipherSuitePolicy(true, false);
+
+        // Act
+        String[] actual = target.select(SUPPORTED_CIPHER_SUITES);
+
+        // Assert
+        for (String cipherSuite : actual) {
+            assertFalse(cipherSuite, cipherSuite.contains("_CBC_"));
+        }
+        assertEquals(6, actual.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void select_nullSuites_throwsIllegalArgumentException() {
+        new CipherSuitePolicy().select(null);
+    }
+}
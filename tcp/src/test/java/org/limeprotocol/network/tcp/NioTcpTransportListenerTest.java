@@ -0,0 +1,231 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannel;
+import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.security.GuestAuthentication;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.server.Authenticator;
+import org.limeprotocol.server.ServerChannel;
+import org.limeprotocol.server.ServerChannelImpl;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class NioTcpTransportListenerTest {
+
+    private NioEventLoopGroup eventLoopGroup;
+    private EnvelopeSerializer envelopeSerializer;
+    private SSLContext serverSslContext;
+    private SSLContext clientSslContext;
+    private BlockingQueue<Transport> acceptedTransports;
+    private NioTcpTransportListener target;
+
+    @Before
+    public void setUp() throws Exception {
+        eventLoopGroup = new NioEventLoopGroup(2);
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+        acceptedTransports = new LinkedBlockingQueue<>();
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream("/lime-test.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        clientSslContext = SSLContext.getInstance("TLS");
+        clientSslContext.init(null, new TrustManager[]{new CustomTrustManager(new X509Certificate[0])}, null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (target != null) {
+            target.close();
+        }
+        eventLoopGroup.shutdown();
+    }
+
+    private NioTcpTransportListener getTarget() throws IOException {
+        target = new NioTcpTransportListener(URI.create("net.tcp://localhost:0"), envelopeSerializer, null, eventLoopGroup,
+                BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE, serverSslContext, NioTcpTransportListener.DEFAULT_BACKLOG);
+        target.setAcceptListener(new TransportListener.TransportAcceptListener() {
+            @Override
+            public void onAccept(Transport transport) {
+                acceptedTransports.add(transport);
+            }
+
+            @Override
+            public void onException(Exception e) {
+                e.printStackTrace();
+            }
+        });
+        target.start();
+        return target;
+    }
+
+    private NioTcpTransport createClientTransport() {
+        return new NioTcpTransport(envelopeSerializer, null, eventLoopGroup, BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE, clientSslContext);
+    }
+
+    private static Message createMessage() {
+        Message message = new Message();
+        message.setId(EnvelopeId.newId());
+        message.setTo(Dummy.createNode());
+        message.setContent(new PlainDocument("hello", MediaType.parse("text/plain")));
+        return message;
+    }
+
+    @Test
+    public void start_ephemeralPort_acceptsConnectionsAsTransports() throws Exception {
+        // Arrange
+        NioTcpTransportListener target = getTarget();
+        URI listenerUri = target.getListenerUris()[0];
+        NioTcpTransport clientTransport = createClientTransport();
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        Message message = createMessage();
+
+        // Act
+        clientTransport.open(listenerUri);
+        Transport actual = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actual);
+        actual.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        clientTransport.send(message);
+
+        // Assert
+        assertTrue(target.isListening());
+        assertNotEquals(0, listenerUri.getPort());
+        assertTrue(actual.isConnected());
+        assertArrayEquals(new SessionEncryption[]{SessionEncryption.NONE, SessionEncryption.TLS}, actual.getSupportedEncryption());
+        Envelope receivedEnvelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(receivedEnvelope);
+        assertEquals(message.getId(), receivedEnvelope.getId());
+        clientTransport.close();
+        actual.close();
+    }
+
+    @Test
+    public void stop_started_stopsAcceptingConnections() throws Exception {
+        // Arrange
+        NioTcpTransportListener target = getTarget();
+        URI listenerUri = target.getListenerUris()[0];
+
+        // Act
+        target.stop();
+
+        // Assert
+        assertFalse(target.isListening());
+        try {
+            createClientTransport().open(listenerUri);
+            fail("The connection should be refused");
+        } catch (IOException e) {
+            assertNull(acceptedTransports.poll());
+        }
+    }
+
+    @Test
+    public void establishSession_tlsNegotiation_establishesEncryptedSession() throws Exception {
+        // Arrange
+        NioTcpTransportListener target = getTarget();
+        final Node serverNode = Node.parse("server@limeprotocol.org/default");
+        final BlockingQueue<Node> establishedNodes = new LinkedBlockingQueue<>();
+        final BlockingQueue<Message> receivedMessages = new LinkedBlockingQueue<>();
+        final BlockingQueue<Session> clientSessions = new LinkedBlockingQueue<>();
+        Identity clientIdentity = Identity.parse("client@limeprotocol.org");
+        ClientChannel clientChannel = new ClientChannelImpl(createClientTransport());
+        Message message = createMessage();
+
+        // Act
+        clientChannel.getTransport().open(target.getListenerUris()[0]);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        final ServerChannel serverChannel = new ServerChannelImpl(serverTransport, serverNode);
+        serverChannel.establishSession(
+                new SessionCompression[]{SessionCompression.NONE},
+                new SessionEncryption[]{SessionEncryption.NONE, SessionEncryption.TLS},
+                new Authentication.AuthenticationScheme[]{Authentication.AuthenticationScheme.GUEST},
+                new Authenticator() {
+                    @Override
+                    public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                        listener.onAuthenticated(new Node(node.getName(), node.getDomain(), "server-assigned"));
+                    }
+                },
+                new ServerChannel.EstablishSessionListener() {
+                    @Override
+                    public void onEstablished(Node remoteNode) {
+                        serverChannel.addMessageListener(new MessageChannel.MessageChannelListener() {
+                            @Override
+                            public void onReceiveMessage(Message message) {
+                                receivedMessages.add(message);
+                            }
+                        }, false);
+                        establishedNodes.add(remoteNode);
+                    }
+
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+                });
+        clientChannel.establishSession(SessionCompression.NONE, SessionEncryption.TLS, clientIdentity, new GuestAuthentication(), null,
+                new ClientChannel.EstablishSessionListener() {
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+
+                    @Override
+                    public void onReceiveSession(Session session) {
+                        clientSessions.add(session);
+                    }
+                });
+
+        // Assert
+        Session clientSession = clientSessions.poll(5, TimeUnit.SECONDS);
+        assertNotNull(clientSession);
+        assertEquals(Session.SessionState.ESTABLISHED, clientSession.getState());
+        Node remoteNode = establishedNodes.poll(5, TimeUnit.SECONDS);
+        assertEquals(new Node("client", "limeprotocol.org", "server-assigned"), remoteNode);
+        assertEquals(remoteNode, clientChannel.getLocalNode());
+        assertEquals(serverNode, clientChannel.getRemoteNode());
+        assertEquals(serverChannel.getSessionId(), clientChannel.getSessionId());
+        assertEquals(SessionEncryption.TLS, clientChannel.getTransport().getEncryption());
+        assertEquals(SessionEncryption.TLS, serverTransport.getEncryption());
+
+        clientChannel.sendMessage(message);
+        Message receivedMessage = receivedMessages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(receivedMessage);
+        assertEquals(message.getId(), receivedMessage.getId());
+        clientChannel.getTransport().close();
+        serverTransport.close();
+    }
+}
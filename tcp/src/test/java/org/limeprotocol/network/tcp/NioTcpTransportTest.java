@@ -0,0 +1,293 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Notification;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.JsonBuffer;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializers;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.serialization.SmileEnvelopeSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class NioTcpTransportTest {
+
+    private NioEventLoopGroup eventLoopGroup;
+    private ServerSocket serverSocket;
+    private EnvelopeSerializer envelopeSerializer;
+
+    @Before
+    public void setUp() throws IOException {
+        eventLoopGroup = new NioEventLoopGroup(2);
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverSocket.close();
+        eventLoopGroup.shutdown();
+    }
+
+    private NioTcpTransport getTarget() {
+        return new NioTcpTransport(envelopeSerializer, null, eventLoopGroup, BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    private URI getServerUri() {
+        return URI.create(String.format("net.tcp://localhost:%d", serverSocket.getLocalPort()));
+    }
+
+    private static Notification createNotification() {
+        Notification notification = new Notification();
+        notification.setId(Dummy.createRandomString(10));
+        notification.setTo(Dummy.createNode());
+        notification.setEvent(Notification.Event.RECEIVED);
+        return notification;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_invalidUriScheme_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        NioTcpTransport target = getTarget();
+
+        // Act
+        target.open(Dummy.createUri("http", 55321));
+    }
+
+    @Test
+    public void send_openTransport_writesEnvelopeToSocket() throws Exception {
+        // Arrange
+        NioTcpTransport target = getTarget();
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        Notification notification = createNotification();
+        byte[] expected = envelopeSerializer.serialize(notification).getBytes("UTF-8");
+
+        // Act
+        target.send(notification);
+
+        // Assert
+        byte[] actual = new byte[expected.length];
+        InputStream inputStream = socket.getInputStream();
+        int read = 0;
+        while (read < actual.length) {
+            read += inputStream.read(actual, read, actual.length - read);
+        }
+        assertArrayEquals(expected, actual);
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void onReceive_multipleEnvelopesInSingleWrite_raisesAllEnvelopesInOrder() throws Exception {
+        // Arrange
+        NioTcpTransport target = getTarget();
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        int count = Dummy.createRandomInt(50) + 2;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            Notification notification = createNotification();
+            notification.setId(String.valueOf(i));
+            builder.append(envelopeSerializer.serialize(notification));
+        }
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(builder.toString().getBytes("UTF-8"));
+        outputStream.flush();
+
+        // Assert
+        for (int i = 0; i < count; i++) {
+            Envelope envelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(envelope);
+            assertEquals(String.valueOf(i), envelope.getId());
+        }
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void send_binarySerializer_writesLengthPrefixedEnvelope() throws Exception {
+        // Arrange
+        SmileEnvelopeSerializer binarySerializer = new SmileEnvelopeSerializer();
+        NioTcpTransport target = new NioTcpTransport(binarySerializer, null, eventLoopGroup, BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE, null);
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        Notification notification = createNotification();
+
+        // Act
+        target.send(notification);
+
+        // Assert
+        DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+        byte[] actual = new byte[inputStream.readInt()];
+        inputStream.readFully(actual);
+        assertEquals(notification.getId(), binarySerializer.deserialize(actual, 0, actual.length).getId());
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void onReceive_binarySerializerMultipleEnvelopesInSingleWrite_raisesAllEnvelopesInOrder() throws Exception {
+        // Arrange
+        SmileEnvelopeSerializer binarySerializer = new SmileEnvelopeSerializer();
+        NioTcpTransport target = new NioTcpTransport(binarySerializer, null, eventLoopGroup, BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE, null);
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        int count = Dummy.createRandomInt(50) + 2;
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            Notification notification = createNotification();
+            notification.setId(String.valueOf(i));
+            byte[] bytes = EnvelopeSerializers.serialize(binarySerializer, notification);
+            JsonBuffer.writeLengthPrefix(frames, bytes.length);
+            frames.write(bytes);
+        }
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(frames.toByteArray());
+        outputStream.flush();
+
+        // Assert
+        for (int i = 0; i < count; i++) {
+            Envelope envelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(envelope);
+            assertEquals(String.valueOf(i), envelope.getId());
+        }
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void onReceive_remoteClosesSocket_closesTransport() throws Exception {
+        // Arrange
+        NioTcpTransport target = getTarget();
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        target.setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                closedLatch.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+            }
+        });
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+
+        // Act
+        socket.close();
+
+        // Assert
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(target.isConnected());
+    }
+
+    @Test(expected = IOException.class)
+    public void send_remoteClosedSocket_throwsIOException() throws Exception {
+        // Arrange
+        NioTcpTransport target = getTarget();
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        target.setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                closedLatch.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+            }
+        });
+        target.open(getServerUri());
+        serverSocket.accept().close();
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+
+        // Act
+        target.send(createNotification());
+    }
+
+    @Test
+    public void onReceive_listenerRemoved_stopsRaisingUntilListenerIsSetAgain() throws Exception {
+        // Arrange
+        final NioTcpTransport target = getTarget();
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        final Transport.TransportEnvelopeListener listener = new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+                target.setEnvelopeListener(null);
+            }
+        };
+        target.setEnvelopeListener(listener);
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        String json = envelopeSerializer.serialize(createNotification()) + envelopeSerializer.serialize(createNotification());
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(json.getBytes("UTF-8"));
+        outputStream.flush();
+        assertNotNull(receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        assertNull(receivedEnvelopes.poll(200, TimeUnit.MILLISECONDS));
+        target.setEnvelopeListener(listener);
+
+        // Assert
+        assertNotNull(receivedEnvelopes.poll(5, TimeUnit.SECONDS));
+        target.close();
+        socket.close();
+    }
+}
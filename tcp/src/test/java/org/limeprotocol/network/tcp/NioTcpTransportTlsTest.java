@@ -0,0 +1,189 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Notification;
+import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class NioTcpTransportTlsTest {
+
+    private NioEventLoopGroup eventLoopGroup;
+    private ServerSocket serverSocket;
+    private EnvelopeSerializer envelopeSerializer;
+    private SSLContext serverSslContext;
+    private SSLContext clientSslContext;
+
+    @Before
+    public void setUp() throws Exception {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream("/lime-test.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        clientSslContext = SSLContext.getInstance("TLS");
+        clientSslContext.init(null, new TrustManager[]{new CustomTrustManager(new X509Certificate[0])}, null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverSocket.close();
+        eventLoopGroup.shutdown();
+    }
+
+    private NioTcpTransport getTarget() {
+        return new NioTcpTransport(envelopeSerializer, null, eventLoopGroup, BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE, clientSslContext);
+    }
+
+    private URI getServerUri() {
+        return URI.create(String.format("net.tcp://localhost:%d", serverSocket.getLocalPort()));
+    }
+
+    private SSLSocket startServerTls(Socket socket) throws IOException {
+        SSLSocket sslSocket = (SSLSocket)serverSslContext.getSocketFactory().createSocket(socket, null, socket.getPort(), true);
+        sslSocket.setUseClientMode(false);
+        sslSocket.startHandshake();
+        return sslSocket;
+    }
+
+    private static Notification createNotification() {
+        Notification notification = new Notification();
+        notification.setId(Dummy.createRandomString(10));
+        notification.setTo(Dummy.createNode());
+        notification.setEvent(Notification.Event.RECEIVED);
+        return notification;
+    }
+
+    private static String readString(InputStream inputStream, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int count = inputStream.read(bytes, read, length - read);
+            assertTrue(count > 0);
+            read += count;
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    @Test
+    public void setEncryption_tls_encryptsEnvelopesSentAfterCall() throws Exception {
+        // Arrange
+        NioTcpTransport target = getTarget();
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        String plainJson = envelopeSerializer.serialize(createNotification());
+        String encryptedJson = envelopeSerializer.serialize(createNotification());
+
+        // Act
+        target.send(envelopeSerializer.deserialize(plainJson));
+        target.setEncryption(SessionEncryption.TLS);
+        target.send(envelopeSerializer.deserialize(encryptedJson));
+
+        // Assert
+        assertEquals(plainJson, readString(socket.getInputStream(), plainJson.getBytes("UTF-8").length));
+        SSLSocket sslSocket = startServerTls(socket);
+        assertEquals(encryptedJson, readString(sslSocket.getInputStream(), encryptedJson.getBytes("UTF-8").length));
+        assertEquals(SessionEncryption.TLS, target.getEncryption());
+        target.close();
+        sslSocket.close();
+    }
+
+    @Test
+    public void setEncryption_tlsInReceiveCallback_receivesEncryptedEnvelopes() throws Exception {
+        // Arrange
+        final NioTcpTransport target = getTarget();
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+                if (target.getEncryption() == SessionEncryption.NONE) {
+                    try {
+                        target.setEncryption(SessionEncryption.TLS);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        });
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        Notification plainNotification = createNotification();
+        Notification encryptedNotification = createNotification();
+        StringBuilder largeJson = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            largeJson.append(envelopeSerializer.serialize(encryptedNotification));
+        }
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(envelopeSerializer.serialize(plainNotification).getBytes("UTF-8"));
+        outputStream.flush();
+        SSLSocket sslSocket = startServerTls(socket);
+        sslSocket.getOutputStream().write(largeJson.toString().getBytes("UTF-8"));
+        sslSocket.getOutputStream().flush();
+
+        // Assert
+        Envelope actual = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actual);
+        assertEquals(plainNotification.getId(), actual.getId());
+        for (int i = 0; i < 500; i++) {
+            actual = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(actual);
+            assertEquals(encryptedNotification.getId(), actual.getId());
+        }
+        target.close();
+        sslSocket.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setEncryption_noneAfterTls_throwsIllegalStateException() throws Exception {
+        // Arrange
+        NioTcpTransport target = getTarget();
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        target.setEncryption(SessionEncryption.TLS);
+
+        try {
+            // Act
+            target.setEncryption(SessionEncryption.NONE);
+        } finally {
+            target.close();
+            socket.close();
+        }
+    }
+}
@@ -7,16 +7,20 @@ import javax.net.ssl.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertNotNull;
@@ -136,4 +140,45 @@ public class SocketTcpClientTest {
         // Assert
         assertFalse(actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void startTls_connectedByHostName_sendsHostNameToServer() throws Exception {
+        // Arrange
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream("/lime-test.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        final SSLContext serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Future<List<SNIServerName>> serverNames = Executors.newSingleThreadExecutor().submit(new Callable<List<SNIServerName>>() {
+            @Override
+            public List<SNIServerName> call() throws Exception {
+                Socket socket = serverSocket.accept();
+                sslSocket = (SSLSocket) serverSslContext.getSocketFactory().createSocket(socket, null, socket.getPort(), true);
+                sslSocket.setUseClientMode(false);
+                sslSocket.startHandshake();
+                return ((ExtendedSSLSession) sslSocket.getSession()).getRequestedServerNames();
+            }
+        });
+        SocketTcpClient target = new SocketTcpClient(new CustomTrustManager(new X509Certificate[0]));
+        target.connect(new InetSocketAddress(
+                InetAddress.getByAddress("lime.example.com", InetAddress.getLoopbackAddress().getAddress()),
+                serverSocket.getLocalPort()));
+
+        // Act
+        target.startTls();
+
+        // Assert
+        List<SNIServerName> actual = serverNames.get(5, TimeUnit.SECONDS);
+        assertEquals(1, actual.size());
+        assertEquals("lime.example.com", ((SNIHostName) actual.get(0)).getAsciiName());
+        target.close();
+        sslSocket.close();
+    }
+}
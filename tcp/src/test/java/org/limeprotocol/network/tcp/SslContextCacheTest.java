@@ -0,0 +1,139 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import static org.junit.Assert.*;
+
+public class SslContextCacheTest {
+
+    private SSLServerSocket serverSocket;
+    private Thread serverThread;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream("/lime-test.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        SSLContext serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        serverSocket = (SSLServerSocket)serverSslContext.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        SSLSocket socket = (SSLSocket)serverSocket.accept();
+                        socket.getOutputStream().write(1);
+                        socket.getOutputStream().flush();
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // The server socket was closed
+                }
+            }
+        });
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        serverThread.join();
+    }
+
+    private SSLSession connect(SslContextCache target, X509TrustManager trustManager) throws IOException {
+        Socket socket = target.getSocketFactory(trustManager).createSocket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        try {
+            // Reading the server data completes the handshake, including the session tickets
+            assertEquals(1, socket.getInputStream().read());
+            return ((SSLSocket)socket).getSession();
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void getSslContext_sameTrustManager_returnsSameContext() {
+        // Arrange
+        SslContextCache target = new SslContextCache();
+        X509TrustManager trustManager = new CustomTrustManager(new X509Certificate[0]);
+
+        // Act
+        SSLContext actual1 = target.getSslContext(trustManager);
+        SSLContext actual2 = target.getSslContext(trustManager);
+
+        // Assert
+        assertSame(actual1, actual2);
+    }
+
+    @Test
+    public void getSslContext_differentTrustManagers_returnsDifferentContexts() {
+        // Arrange
+        SslContextCache target = new SslContextCache();
+
+        // Act
+        SSLContext actual1 = target.getSslContext(new CustomTrustManager(new X509Certificate[0]));
+        SSLContext actual2 = target.getSslContext(new CustomTrustManager(new X509Certificate[0]));
+        SSLContext actual3 = target.getSslContext(null);
+
+        // Assert
+        assertNotSame(actual1, actual2);
+        assertNotSame(actual1, actual3);
+        assertSame(actual3, target.getSslContext(null));
+    }
+
+    @Test
+    public void getSslContext_anyTrustManager_appliesSessionCacheSettings() {
+        // Arrange
+        SslContextCache target = new SslContextCache(SslContextCache.DEFAULT_PROTOCOL, 10, 60);
+
+        // Act
+        SSLContext actual = target.getSslContext(null);
+
+        // Assert
+        assertEquals(10, actual.getClientSessionContext().getSessionCacheSize());
+        assertEquals(60, actual.getClientSessionContext().getSessionTimeout());
+    }
+
+    @Test
+    public void getSocketFactory_reconnect_resumesSession() throws Exception {
+        // Arrange
+        SslContextCache target = new SslContextCache();
+        X509TrustManager trustManager = new CustomTrustManager(new X509Certificate[0]);
+        SSLSession firstSession = connect(target, trustManager);
+        Thread.sleep(10);
+
+        // Act
+        SSLSession actual = connect(target, trustManager);
+
+        // Assert
+        // A resumed session keeps the creation time of the full handshake
+        assertEquals(firstSession.getCreationTime(), actual.getCreationTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_nullProtocol_throwsIllegalArgumentException() {
+        new SslContextCache(null, SslContextCache.DEFAULT_SESSION_CACHE_SIZE, SslContextCache.DEFAULT_SESSION_TIMEOUT);
+    }
+}
@@ -0,0 +1,210 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.network.DirectBufferPool;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SslEngineHandlerTest {
+
+    private ServerSocket serverSocket;
+    private SSLContext serverSslContext;
+    private SSLContext clientSslContext;
+    private CountingBufferPool bufferPool;
+    private Thread echoThread;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream("/lime-test.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        serverSslContext = SSLContext.getInstance("TLS");
+        serverSslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        clientSslContext = SSLContext.getInstance("TLS");
+        clientSslContext.init(null, new TrustManager[]{new CustomTrustManager(new X509Certificate[0])}, null);
+        bufferPool = new CountingBufferPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        if (echoThread != null) {
+            echoThread.join(5000);
+        }
+    }
+
+    private void startEchoServer(final int length) {
+        echoThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    SSLSocket sslSocket = (SSLSocket)serverSslContext.getSocketFactory().createSocket(socket, null, socket.getPort(), true);
+                    sslSocket.setUseClientMode(false);
+                    byte[] buffer = new byte[length];
+                    int read;
+                    while ((read = sslSocket.getInputStream().read(buffer)) != -1) {
+                        sslSocket.getOutputStream().write(buffer, 0, read);
+                        sslSocket.getOutputStream().flush();
+                    }
+                    sslSocket.close();
+                } catch (IOException e) {
+                    // The client closed the connection
+                }
+            }
+        });
+        echoThread.setDaemon(true);
+        echoThread.start();
+    }
+
+    private SslEngineHandler getTarget(SocketChannel socketChannel) {
+        SSLEngine engine = clientSslContext.createSSLEngine("localhost", serverSocket.getLocalPort());
+        engine.setUseClientMode(true);
+        return new SslEngineHandler(engine, socketChannel, bufferPool, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    private static SocketChannel connect(ServerSocket serverSocket) throws IOException {
+        SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort()));
+        socketChannel.configureBlocking(false);
+        return socketChannel;
+    }
+
+    private static void echo(SslEngineHandler target, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte[] readBuffer = new byte[data.length];
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!target.write(buffer)) {
+            target.read(readBuffer, 0, 0);
+            assertTrue(System.currentTimeMillis() < deadline);
+        }
+        int read = 0;
+        while (read < data.length) {
+            int count = target.read(readBuffer, read, data.length - read);
+            assertTrue(count >= 0);
+            read += count;
+            assertTrue(System.currentTimeMillis() < deadline);
+        }
+        assertArrayEquals(data, readBuffer);
+    }
+
+    @Test
+    public void releaseIfIdle_drainedConnection_returnsBuffersToPool() throws Exception {
+        // Arrange
+        byte[] data = Dummy.createRandomString(100).getBytes("UTF-8");
+        startEchoServer(data.length);
+        SocketChannel socketChannel = connect(serverSocket);
+        SslEngineHandler target = getTarget(socketChannel);
+        target.beginHandshake(new byte[0]);
+        echo(target, data);
+
+        // Act
+        boolean actual = target.releaseIfIdle();
+
+        // Assert
+        assertTrue(actual);
+        assertEquals(0, bufferPool.getAcquiredCount());
+        target.close();
+        socketChannel.close();
+    }
+
+    @Test
+    public void write_afterReleaseIfIdle_acquiresBuffersAndExchangesData() throws Exception {
+        // Arrange
+        byte[] data = Dummy.createRandomString(100).getBytes("UTF-8");
+        startEchoServer(data.length);
+        SocketChannel socketChannel = connect(serverSocket);
+        SslEngineHandler target = getTarget(socketChannel);
+        target.beginHandshake(new byte[0]);
+        echo(target, data);
+        target.releaseIfIdle();
+
+        // Act
+        echo(target, data);
+
+        // Assert
+        assertEquals(3, bufferPool.getAcquiredCount());
+        target.close();
+        assertEquals(0, bufferPool.getAcquiredCount());
+        socketChannel.close();
+    }
+
+    @Test
+    public void releaseIfIdle_handshakeInProgress_keepsBuffers() throws Exception {
+        // Arrange
+        startEchoServer(1);
+        SocketChannel socketChannel = connect(serverSocket);
+        SslEngineHandler target = getTarget(socketChannel);
+        target.beginHandshake(new byte[0]);
+
+        // Act
+        boolean actual = target.releaseIfIdle();
+
+        // Assert
+        assertFalse(actual);
+        assertEquals(3, bufferPool.getAcquiredCount());
+        target.close();
+        socketChannel.close();
+    }
+
+    private static class CountingBufferPool extends DirectBufferPool {
+        private final AtomicInteger acquiredCount = new AtomicInteger();
+
+        public CountingBufferPool() {
+            super(DEFAULT_BUFFER_SIZE);
+        }
+
+        public int getAcquiredCount() {
+            return acquiredCount.get();
+        }
+
+        @Override
+        public ByteBuffer acquire(int minCapacity) {
+            acquiredCount.incrementAndGet();
+            return super.acquire(minCapacity);
+        }
+
+        @Override
+        public void release(ByteBuffer buffer) {
+            if (buffer != null) {
+                acquiredCount.decrementAndGet();
+            }
+            super.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Notification;
+import org.limeprotocol.network.EnvelopeSendException;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TcpTransportAsyncSendTest {
+
+    private static Notification createNotification(String id) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setTo(Dummy.createNode());
+        notification.setEvent(Notification.Event.RECEIVED);
+        return notification;
+    }
+
+    private static TcpTransport getTarget(final OutputStream outputStream, AsyncSendOptions asyncSendOptions) {
+        TcpClientFactory tcpClientFactory = new TcpClientFactory() {
+            @Override
+            public TcpClient create() {
+                return new TestTcpClient(outputStream);
+            }
+        };
+        return new TcpTransport(new JacksonEnvelopeSerializer(), tcpClientFactory, null, asyncSendOptions);
+    }
+
+    @Test
+    public void send_concurrentCallers_writesAllEnvelopesWithLessFlushes() throws Exception {
+        // Arrange
+        final CountingOutputStream outputStream = new CountingOutputStream();
+        final TcpTransport target = getTarget(outputStream, new AsyncSendOptions(500, 32));
+        target.open(Dummy.createUri());
+        final int threadCount = 8;
+        final int envelopesPerThread = 200;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int threadId = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < envelopesPerThread; j++) {
+                            target.send(createNotification(threadId + "-" + j));
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // Act
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        target.close();
+
+        // Assert
+        String written = new String(outputStream.toByteArray(), "UTF-8");
+        EnvelopeSerializer serializer = new JacksonEnvelopeSerializer();
+        Set<String> expectedIds = new HashSet<>();
+        for (int i = 0; i < threadCount; i++) {
+            for (int j = 0; j < envelopesPerThread; j++) {
+                expectedIds.add(i + "-" + j);
+            }
+        }
+        Set<String> actualIds = new HashSet<>();
+        int start = 0;
+        while (start < written.length()) {
+            int end = written.indexOf("}{", start);
+            end = end == -1 ? written.length() : end + 1;
+            actualIds.add(serializer.deserialize(written.substring(start, end)).getId());
+            start = end;
+        }
+        assertEquals(expectedIds, actualIds);
+        assertTrue(outputStream.flushCount.get() < threadCount * envelopesPerThread);
+    }
+
+    @Test
+    public void send_singleCaller_keepsEnvelopesOrder() throws Exception {
+        // Arrange
+        CountingOutputStream outputStream = new CountingOutputStream();
+        TcpTransport target = getTarget(outputStream, new AsyncSendOptions());
+        target.open(Dummy.createUri());
+        EnvelopeSerializer serializer = new JacksonEnvelopeSerializer();
+        StringBuilder expected = new StringBuilder();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            Notification notification = createNotification(String.valueOf(i));
+            expected.append(serializer.serialize(notification));
+            target.send(notification);
+        }
+        target.close();
+
+        // Assert
+        assertEquals(expected.toString(), new String(outputStream.toByteArray(), "UTF-8"));
+    }
+
+    @Test
+    public void send_writeFails_reportsFailureForEachEnvelope() throws Exception {
+        // Arrange
+        final CountDownLatch writeLatch = new CountDownLatch(1);
+        OutputStream outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    writeLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Broken pipe");
+            }
+        };
+        TcpTransport target = getTarget(outputStream, new AsyncSendOptions(0, 1));
+        final BlockingQueue<Exception> exceptions = new LinkedBlockingQueue<>();
+        target.setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+            }
+
+            @Override
+            public void onException(Exception e) {
+                exceptions.add(e);
+            }
+        });
+        target.open(Dummy.createUri());
+        Set<Envelope> expected = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            Notification notification = createNotification(String.valueOf(i));
+            expected.add(notification);
+            target.send(notification);
+        }
+
+        // Act
+        writeLatch.countDown();
+
+        // Assert
+        Set<Envelope> actual = new HashSet<>();
+        for (int i = 0; i < expected.size(); i++) {
+            Exception exception = exceptions.poll(5, TimeUnit.SECONDS);
+            assertTrue(exception instanceof EnvelopeSendException);
+            actual.add(((EnvelopeSendException)exception).getEnvelope());
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void send_fullBatch_writesBeforeLingerEnds() throws Exception {
+        // Arrange
+        CountingOutputStream outputStream = new CountingOutputStream();
+        TcpTransport target = getTarget(outputStream, new AsyncSendOptions(TimeUnit.SECONDS.toMicros(30), 2));
+        target.open(Dummy.createUri());
+        Notification notification1 = createNotification("1");
+        Notification notification2 = createNotification("2");
+        target.send(notification1);
+        // Gives the writer the time to start lingering for the rest of the batch
+        Thread.sleep(200);
+
+        // Act
+        target.send(notification2);
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outputStream.flushCount.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, outputStream.flushCount.get());
+        EnvelopeSerializer serializer = new JacksonEnvelopeSerializer();
+        assertEquals(serializer.serialize(notification1) + serializer.serialize(notification2),
+                new String(outputStream.toByteArray(), "UTF-8"));
+        target.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void send_closedTransport_throwsIOException() throws Exception {
+        // Arrange
+        TcpTransport target = getTarget(new CountingOutputStream(), new AsyncSendOptions());
+        target.open(Dummy.createUri());
+        target.close();
+
+        // Act
+        target.send(createNotification("1"));
+    }
+
+    private static class CountingOutputStream extends ByteArrayOutputStream {
+        private final AtomicInteger flushCount = new AtomicInteger();
+
+        @Override
+        public void flush() throws IOException {
+            flushCount.incrementAndGet();
+        }
+    }
+
+    private static class TestTcpClient implements TcpClient {
+        private final OutputStream outputStream;
+        private volatile boolean closed;
+
+        TestTcpClient(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint) throws IOException {
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return outputStream;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    // Blocks until the client is closed, like an idle socket
+                    while (!closed) {
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                    }
+                    return -1;
+                }
+            };
+        }
+
+        @Override
+        public boolean isTlsStarted() {
+            return false;
+        }
+
+        @Override
+        public void startTls() throws IOException {
+        }
+
+        @Override
+        public boolean isInputShutdown() {
+            return closed;
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return closed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Notification;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.JsonBuffer;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.serialization.EnvelopeSerializers;
+import org.limeprotocol.serialization.SmileEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TcpTransportBinaryEncodingTest {
+
+    private ServerSocket serverSocket;
+    private SmileEnvelopeSerializer envelopeSerializer;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        envelopeSerializer = new SmileEnvelopeSerializer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverSocket.close();
+    }
+
+    private URI getServerUri() {
+        return URI.create(String.format("net.tcp://localhost:%d", serverSocket.getLocalPort()));
+    }
+
+    private static Notification createNotification(String id) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setTo(Dummy.createNode());
+        notification.setEvent(Notification.Event.RECEIVED);
+        return notification;
+    }
+
+    private Envelope readFrame(DataInputStream inputStream) throws IOException {
+        byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return envelopeSerializer.deserialize(bytes, 0, bytes.length);
+    }
+
+    private void writeFrame(OutputStream outputStream, Envelope envelope) throws IOException {
+        byte[] bytes = EnvelopeSerializers.serialize(envelopeSerializer, envelope);
+        JsonBuffer.writeLengthPrefix(outputStream, bytes.length);
+        outputStream.write(bytes);
+    }
+
+    @Test
+    public void send_binarySerializer_writesLengthPrefixedEnvelopes() throws Exception {
+        // Arrange
+        TcpTransport target = new TcpTransport(envelopeSerializer);
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+
+        // Act
+        target.send(createNotification("1"));
+        target.send(createNotification("2"));
+
+        // Assert
+        DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+        assertEquals("1", readFrame(inputStream).getId());
+        assertEquals("2", readFrame(inputStream).getId());
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void send_binarySerializerAsyncMode_writesLengthPrefixedEnvelopes() throws Exception {
+        // Arrange
+        TcpTransport target = new TcpTransport(envelopeSerializer, new SocketTcpClientFactory(), null,
+                BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE, new AsyncSendOptions(), ThreadFactories.getDefault());
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        int count = Dummy.createRandomInt(50) + 2;
+
+        // Act
+        for (int i = 0; i < count; i++) {
+            target.send(createNotification(String.valueOf(i)));
+        }
+
+        // Assert
+        DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+        for (int i = 0; i < count; i++) {
+            assertEquals(String.valueOf(i), readFrame(inputStream).getId());
+        }
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void onReceive_lengthPrefixedEnvelopesInSplitWrites_raisesAllEnvelopesInOrder() throws Exception {
+        // Arrange
+        TcpTransport target = new TcpTransport(envelopeSerializer);
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        int count = Dummy.createRandomInt(50) + 2;
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            writeFrame(frames, createNotification(String.valueOf(i)));
+        }
+        byte[] bytes = frames.toByteArray();
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        for (int offset = 0; offset < bytes.length; offset += 7) {
+            outputStream.write(bytes, offset, Math.min(7, bytes.length - offset));
+            outputStream.flush();
+        }
+
+        // Assert
+        for (int i = 0; i < count; i++) {
+            Envelope envelope = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(envelope);
+            assertEquals(String.valueOf(i), envelope.getId());
+        }
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void onReceive_lengthPrefixedEnvelopesFillMaxBufferSize_raisesAllEnvelopes() throws Exception {
+        // Arrange
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        writeFrame(frames, createNotification("1"));
+        writeFrame(frames, createNotification("2"));
+        byte[] bytes = frames.toByteArray();
+        TcpTransport target = new TcpTransport(envelopeSerializer, new SocketTcpClientFactory(), null,
+                new BufferPool(bytes.length), bytes.length, null, ThreadFactories.getDefault());
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(bytes);
+        outputStream.flush();
+
+        // Assert
+        Envelope envelope1 = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        Envelope envelope2 = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(envelope1);
+        assertEquals("1", envelope1.getId());
+        assertNotNull(envelope2);
+        assertEquals("2", envelope2.getId());
+        assertTrue(target.isConnected());
+        target.close();
+        socket.close();
+    }
+}
@@ -0,0 +1,258 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.Envelope;
+import org.limeprotocol.Notification;
+import org.limeprotocol.SessionCompression;
+import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TcpTransportCompressionTest {
+
+    private ServerSocket serverSocket;
+    private EnvelopeSerializer envelopeSerializer;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverSocket.close();
+    }
+
+    private URI getServerUri() {
+        return URI.create(String.format("net.tcp://localhost:%d", serverSocket.getLocalPort()));
+    }
+
+    private static Notification createNotification() {
+        Notification notification = new Notification();
+        notification.setId(Dummy.createRandomString(10));
+        notification.setTo(Dummy.createNode());
+        notification.setEvent(Notification.Event.RECEIVED);
+        return notification;
+    }
+
+    private static Transport.TransportStateListener createStateListener() {
+        return new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        };
+    }
+
+    private SSLSocket startServerTls(Socket socket) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream("/lime-test.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        SSLSocket sslSocket = (SSLSocket) sslContext.getSocketFactory().createSocket(socket, null, socket.getPort(), true);
+        sslSocket.setUseClientMode(false);
+        sslSocket.startHandshake();
+        return sslSocket;
+    }
+
+    private static String readString(InputStream inputStream, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int count = inputStream.read(bytes, read, length - read);
+            assertTrue(count > 0);
+            read += count;
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    @Test
+    public void getSupportedCompression_default_returnsNoneAndGzip() {
+        // Arrange
+        TcpTransport target = new TcpTransport();
+
+        // Act
+        SessionCompression[] actual = target.getSupportedCompression();
+
+        // Assert
+        assertEquals(Arrays.asList(SessionCompression.NONE, SessionCompression.GZIP), Arrays.asList(actual));
+    }
+
+    @Test
+    public void send_gzipCompression_writesCompressedEnvelope() throws Exception {
+        // Arrange
+        TcpTransport target = new TcpTransport(envelopeSerializer);
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        Notification notification = createNotification();
+        String expected = envelopeSerializer.serialize(notification);
+        target.setCompression(SessionCompression.GZIP);
+
+        // Act
+        target.send(notification);
+
+        // Assert
+        GZIPInputStream inputStream = new GZIPInputStream(socket.getInputStream());
+        assertEquals(expected, readString(inputStream, expected.getBytes("UTF-8").length));
+        assertEquals(SessionCompression.GZIP, target.getCompression());
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void onReceive_compressedBytesAfterSwitchingEnvelope_raisesCompressedEnvelope() throws Exception {
+        // Arrange
+        final TcpTransport target = new TcpTransport(envelopeSerializer);
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        target.setStateListener(createStateListener());
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+                if (target.getCompression() == SessionCompression.NONE) {
+                    try {
+                        target.setCompression(SessionCompression.GZIP);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        });
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        Notification plainNotification = createNotification();
+        Notification compressedNotification = createNotification();
+        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressedBytes, true);
+        gzipOutputStream.write(envelopeSerializer.serialize(compressedNotification).getBytes("UTF-8"));
+        gzipOutputStream.flush();
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(envelopeSerializer.serialize(plainNotification).getBytes("UTF-8"));
+        outputStream.write(compressedBytes.toByteArray());
+        outputStream.flush();
+
+        // Assert
+        Envelope actual1 = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        Envelope actual2 = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actual1);
+        assertEquals(plainNotification.getId(), actual1.getId());
+        assertNotNull(actual2);
+        assertEquals(compressedNotification.getId(), actual2.getId());
+        target.close();
+        socket.close();
+    }
+
+    @Test
+    public void setCompressionAndEncryption_gzipAndTlsInReceiveCallback_exchangesCompressedEnvelopesOverTls() throws Exception {
+        // Arrange
+        final TcpTransport target = new TcpTransport(envelopeSerializer,
+                new SocketTcpClientFactory(new CustomTrustManager(new X509Certificate[0])));
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        target.setStateListener(createStateListener());
+        target.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                try {
+                    // The same order of the client channel negotiation
+                    if (target.getCompression() == SessionCompression.NONE) {
+                        target.setCompression(SessionCompression.GZIP);
+                    }
+                    if (target.getEncryption() == SessionEncryption.NONE) {
+                        target.setEncryption(SessionEncryption.TLS);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        Notification plainNotification = createNotification();
+        Notification serverNotification = createNotification();
+        Notification clientNotification = createNotification();
+        String expected = envelopeSerializer.serialize(clientNotification);
+
+        // Act
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(envelopeSerializer.serialize(plainNotification).getBytes("UTF-8"));
+        outputStream.flush();
+        SSLSocket sslSocket = startServerTls(socket);
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(sslSocket.getOutputStream(), true);
+        gzipOutputStream.write(envelopeSerializer.serialize(serverNotification).getBytes("UTF-8"));
+        gzipOutputStream.flush();
+        target.send(clientNotification);
+
+        // Assert
+        Envelope actual1 = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        Envelope actual2 = receivedEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actual1);
+        assertEquals(plainNotification.getId(), actual1.getId());
+        assertNotNull(actual2);
+        assertEquals(serverNotification.getId(), actual2.getId());
+        GZIPInputStream inputStream = new GZIPInputStream(sslSocket.getInputStream());
+        assertEquals(expected, readString(inputStream, expected.getBytes("UTF-8").length));
+        target.close();
+        sslSocket.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setCompression_noneAfterGzip_throwsIllegalStateException() throws Exception {
+        // Arrange
+        TcpTransport target = new TcpTransport(envelopeSerializer);
+        target.open(getServerUri());
+        Socket socket = serverSocket.accept();
+        target.setCompression(SessionCompression.GZIP);
+
+        try {
+            // Act
+            target.setCompression(SessionCompression.NONE);
+        } finally {
+            target.close();
+            socket.close();
+        }
+    }
+}
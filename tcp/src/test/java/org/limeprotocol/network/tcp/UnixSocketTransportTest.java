@@ -0,0 +1,228 @@
+package org.limeprotocol.network.tcp;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.network.BufferPool;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UnixSocketTransportTest {
+
+    private File socketFile;
+    private URI listenerUri;
+    private EnvelopeSerializer envelopeSerializer;
+    private BlockingQueue<Transport> acceptedTransports;
+    private UnixSocketTransportListener listener;
+    private UnixSocketTransport target;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(UnixDomainSockets.isSupported());
+        socketFile = new File(System.getProperty("java.io.tmpdir"), "lime-" + UUID.randomUUID() + ".sock");
+        listenerUri = new URI(UnixDomainSockets.URI_SCHEME, null, socketFile.getAbsolutePath(), null);
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+        acceptedTransports = new LinkedBlockingQueue<>();
+        listener = new UnixSocketTransportListener(listenerUri, envelopeSerializer, null, BufferPool.getDefault(),
+                TcpTransport.DEFAULT_MAX_BUFFER_SIZE, UnixSocketTransportListener.DEFAULT_BACKLOG, ThreadFactories.platform());
+        listener.setAcceptListener(new TransportListener.TransportAcceptListener() {
+            @Override
+            public void onAccept(Transport transport) {
+                acceptedTransports.add(transport);
+            }
+
+            @Override
+            public void onException(Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (target != null) {
+            target.close();
+        }
+        Transport acceptedTransport;
+        while ((acceptedTransport = acceptedTransports.poll()) != null) {
+            acceptedTransport.close();
+        }
+        if (listener != null) {
+            listener.close();
+        }
+    }
+
+    private UnixSocketTransport getTarget() {
+        target = new UnixSocketTransport(envelopeSerializer, null, BufferPool.getDefault(), TcpTransport.DEFAULT_MAX_BUFFER_SIZE,
+                null, ThreadFactories.platform());
+        return target;
+    }
+
+    private static BlockingQueue<Envelope> listen(Transport transport) {
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        transport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        return receivedEnvelopes;
+    }
+
+    private static Message createMessage(String text) {
+        Message message = new Message();
+        message.setId(EnvelopeId.newId());
+        message.setTo(Dummy.createNode());
+        message.setContent(new PlainDocument(text, MediaType.parse("text/plain")));
+        return message;
+    }
+
+    @Test
+    public void open_startedListener_exchangesEnvelopesInBothDirections() throws Exception {
+        // Arrange
+        listener.start();
+        UnixSocketTransport target = getTarget();
+        Message clientMessage = createMessage("hello sidecar");
+        Message serverMessage = createMessage("hello worker");
+
+        // Act
+        target.open(listenerUri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        acceptedTransports.add(serverTransport);
+        BlockingQueue<Envelope> serverEnvelopes = listen(serverTransport);
+        BlockingQueue<Envelope> clientEnvelopes = listen(target);
+        target.send(clientMessage);
+        serverTransport.send(serverMessage);
+
+        // Assert
+        assertTrue(socketFile.exists());
+        assertTrue(target.isConnected());
+        assertTrue(serverTransport.isConnected());
+        Envelope actualServerEnvelope = serverEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actualServerEnvelope);
+        assertEquals(clientMessage.getId(), actualServerEnvelope.getId());
+        Envelope actualClientEnvelope = clientEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actualClientEnvelope);
+        assertEquals(serverMessage.getId(), actualClientEnvelope.getId());
+    }
+
+    @Test
+    public void setCompression_gzip_exchangesCompressedEnvelopes() throws Exception {
+        // Arrange
+        listener.start();
+        UnixSocketTransport target = getTarget();
+        Message message = createMessage(Dummy.createRandomString(10000));
+        target.open(listenerUri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        acceptedTransports.add(serverTransport);
+
+        // Act
+        target.setCompression(SessionCompression.GZIP);
+        serverTransport.setCompression(SessionCompression.GZIP);
+        BlockingQueue<Envelope> serverEnvelopes = listen(serverTransport);
+        target.send(message);
+
+        // Assert
+        Message actual = (Message) serverEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actual);
+        assertEquals(message.getContent().toString(), actual.getContent().toString());
+    }
+
+    @Test
+    public void setEncryption_tls_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        listener.start();
+        UnixSocketTransport target = getTarget();
+        target.open(listenerUri);
+
+        // Act
+        try {
+            target.setEncryption(SessionEncryption.TLS);
+            fail("The TLS encryption should not be supported");
+        } catch (IllegalArgumentException e) {
+            // Assert
+            assertArrayEquals(new SessionEncryption[]{SessionEncryption.NONE}, target.getSupportedEncryption());
+            assertTrue(target.isConnected());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_tcpScheme_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        UnixSocketTransport target = getTarget();
+
+        // Act
+        target.open(URI.create("net.tcp://localhost:55321"));
+    }
+
+    @Test
+    public void close_client_closesServerTransport() throws Exception {
+        // Arrange
+        listener.start();
+        UnixSocketTransport target = getTarget();
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        target.open(listenerUri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        serverTransport.setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                closedLatch.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        listen(serverTransport);
+
+        // Act
+        target.close();
+
+        // Assert
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(serverTransport.isConnected());
+    }
+
+    @Test
+    public void stop_started_deletesSocketFileAndRefusesConnections() throws Exception {
+        // Arrange
+        listener.start();
+        assertTrue(socketFile.exists());
+
+        // Act
+        listener.stop();
+
+        // Assert
+        assertFalse(listener.isListening());
+        assertFalse(socketFile.exists());
+        try {
+            getTarget().open(listenerUri);
+            fail("The connection should be refused");
+        } catch (IOException e) {
+            assertNull(acceptedTransports.poll());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.limeprotocol.network.websocket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The permessage-deflate extension of RFC 7692.
+ * Each message is a raw deflate block flushed with SYNC_FLUSH, without the trailing empty block.
+ * The compression context is kept between the messages, unless the peer negotiated the no context takeover
+ * parameter, since the LIME envelopes repeat most of their property names.
+ * The compression and the decompression are not thread safe, but can be invoked by different threads.
+ */
+class PerMessageDeflate {
+
+    public final static String EXTENSION_NAME = "permessage-deflate";
+    public final static String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    public final static String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    public final static String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    public final static String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    private final static byte[] TAIL = new byte[]{0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final boolean resetDeflater;
+    private final boolean resetInflater;
+    private final byte[] buffer;
+
+    /**
+     * @param resetDeflater Indicates if the compression context should be discarded after each message.
+     * @param resetInflater Indicates if the decompression context should be discarded after each message.
+     */
+    public PerMessageDeflate(boolean resetDeflater, boolean resetInflater) {
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        this.inflater = new Inflater(true);
+        this.resetDeflater = resetDeflater;
+        this.resetInflater = resetInflater;
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Compresses a message payload.
+     * @param payload
+     * @return
+     */
+    public byte[] compress(byte[] payload) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(payload.length / 2 + 16);
+        deflater.setInput(payload);
+        int length;
+        do {
+            length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            outputStream.write(buffer, 0, length);
+        } while (length == buffer.length);
+        if (resetDeflater) {
+            deflater.reset();
+        }
+        byte[] compressed = outputStream.toByteArray();
+        if (endsWithTail(compressed)) {
+            byte[] trimmed = new byte[compressed.length - TAIL.length];
+            System.arraycopy(compressed, 0, trimmed, 0, trimmed.length);
+            return trimmed;
+        }
+        return compressed;
+    }
+
+    /**
+     * Decompresses a message payload.
+     * @param payload
+     * @param maxLength The maximum length of the decompressed message.
+     * @return
+     * @throws IOException If the payload is invalid or the decompressed message exceeds the maximum length.
+     */
+    public byte[] decompress(byte[] payload, int maxLength) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(payload.length * 2 + 16);
+        try {
+            inflate(payload, outputStream, maxLength);
+            inflate(TAIL, outputStream, maxLength);
+        } catch (DataFormatException e) {
+            throw new WebSocketException(WebSocketException.INVALID_PAYLOAD, "Invalid compressed message", e);
+        }
+        if (resetInflater || inflater.finished()) {
+            inflater.reset();
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Releases the compression resources.
+     */
+    public void endCompression() {
+        deflater.end();
+    }
+
+    /**
+     * Releases the decompression resources.
+     */
+    public void endDecompression() {
+        inflater.end();
+    }
+
+    private void inflate(byte[] input, ByteArrayOutputStream outputStream, int maxLength) throws DataFormatException, IOException {
+        inflater.setInput(input);
+        int length;
+        do {
+            length = inflater.inflate(buffer);
+            outputStream.write(buffer, 0, length);
+            if (outputStream.size() > maxLength) {
+                throw new WebSocketException(WebSocketException.MESSAGE_TOO_BIG, "The decompressed message exceeds the maximum length of " + maxLength);
+            }
+        } while (length > 0);
+    }
+
+    private static boolean endsWithTail(byte[] compressed) {
+        if (compressed.length < TAIL.length) {
+            return false;
+        }
+        for (int i = 0; i < TAIL.length; i++) {
+            if (compressed[compressed.length - TAIL.length + i] != TAIL[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,320 @@
+package org.limeprotocol.network.websocket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The data framing of an open WebSocket connection (RFC 6455, section 5).
+ * The messages are read by a single thread, which also answers the ping and close frames,
+ * while the writes are serialized by a lock, so a frame is never interleaved with another.
+ */
+class WebSocketConnection {
+
+    public final static int OPCODE_CONTINUATION = 0x0;
+    public final static int OPCODE_TEXT = 0x1;
+    public final static int OPCODE_BINARY = 0x2;
+    public final static int OPCODE_CLOSE = 0x8;
+    public final static int OPCODE_PING = 0x9;
+    public final static int OPCODE_PONG = 0xA;
+
+    private final static int FIN = 0x80;
+    private final static int RSV1 = 0x40;
+    private final static int RSV2_RSV3 = 0x30;
+    private final static int MASK = 0x80;
+    private final static int MAX_CONTROL_PAYLOAD_LENGTH = 125;
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final Random maskRandom;
+    private final PerMessageDeflate perMessageDeflate;
+    private final int maxMessageSize;
+    private final ReentrantLock writeLock;
+    private final byte[] headerBuffer;
+    private final byte[] maskingKey;
+
+    private boolean isCloseSent;
+
+    /**
+     * @param inputStream
+     * @param outputStream
+     * @param maskRandom The source of the masking keys, which must be set only for the client endpoints.
+     * @param perMessageDeflate The negotiated compression extension or null, if the extension was not negotiated.
+     * @param maxMessageSize The maximum length of a received message, after the decompression.
+     */
+    public WebSocketConnection(InputStream inputStream, OutputStream outputStream, Random maskRandom,
+                               PerMessageDeflate perMessageDeflate, int maxMessageSize) {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.maskRandom = maskRandom;
+        this.perMessageDeflate = perMessageDeflate;
+        this.maxMessageSize = maxMessageSize;
+        this.writeLock = new ReentrantLock();
+        this.headerBuffer = new byte[8];
+        this.maskingKey = new byte[4];
+    }
+
+    public boolean isDeflateEnabled() {
+        return perMessageDeflate != null;
+    }
+
+    /**
+     * Writes a text message in a single frame.
+     * @param payload The UTF-8 encoded text.
+     * @param compress Indicates if the payload should be compressed by the permessage-deflate extension.
+     * @throws IOException
+     */
+    public void writeText(byte[] payload, boolean compress) throws IOException {
+        writeLock.lock();
+        try {
+            ensureCloseNotSent();
+            if (compress) {
+                if (perMessageDeflate == null) {
+                    throw new IllegalStateException("The permessage-deflate extension was not negotiated");
+                }
+                writeFrame(OPCODE_TEXT, true, perMessageDeflate.compress(payload));
+            } else {
+                writeFrame(OPCODE_TEXT, false, payload);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a close frame, if not already written.
+     * No data frame can be written after it.
+     * @param statusCode
+     * @param reason
+     * @throws IOException
+     */
+    public void writeClose(int statusCode, String reason) throws IOException {
+        writeLock.lock();
+        try {
+            if (isCloseSent) {
+                return;
+            }
+            isCloseSent = true;
+            try {
+                byte[] reasonBytes = reason != null ? reason.getBytes(UTF8) : new byte[0];
+                int reasonLength = Math.min(reasonBytes.length, MAX_CONTROL_PAYLOAD_LENGTH - 2);
+                byte[] payload = new byte[2 + reasonLength];
+                payload[0] = (byte) (statusCode >> 8);
+                payload[1] = (byte) statusCode;
+                System.arraycopy(reasonBytes, 0, payload, 2, reasonLength);
+                writeFrame(OPCODE_CLOSE, false, payload);
+            } finally {
+                if (perMessageDeflate != null) {
+                    perMessageDeflate.endCompression();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the next data message, answering the control frames received before it.
+     * @return The message payload, decompressed if needed, or null if the remote endpoint closed the connection.
+     * @throws WebSocketException If the remote endpoint violated the protocol.
+     * @throws IOException
+     */
+    public byte[] readMessage() throws IOException {
+        byte[] message = null;
+        int messageLength = 0;
+        boolean isFragmented = false;
+        boolean isCompressed = false;
+
+        while (true) {
+            readFully(headerBuffer, 0, 2);
+            int firstByte = headerBuffer[0] & 0xff;
+            int secondByte = headerBuffer[1] & 0xff;
+            boolean isFinal = (firstByte & FIN) != 0;
+            boolean isRsv1 = (firstByte & RSV1) != 0;
+            int opcode = firstByte & 0x0f;
+            if ((firstByte & RSV2_RSV3) != 0) {
+                throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Unexpected reserved bits");
+            }
+            if (((secondByte & MASK) != 0) == (maskRandom != null)) {
+                throw new WebSocketException(WebSocketException.PROTOCOL_ERROR,
+                        maskRandom != null ? "The server frames must not be masked" : "The client frames must be masked");
+            }
+            long payloadLength = readPayloadLength(secondByte & 0x7f);
+
+            if (opcode >= OPCODE_CLOSE) {
+                if (!isFinal || isRsv1 || payloadLength > MAX_CONTROL_PAYLOAD_LENGTH) {
+                    throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Invalid control frame");
+                }
+                byte[] payload = readPayload((int) payloadLength);
+                if (opcode == OPCODE_CLOSE) {
+                    onCloseReceived(payload);
+                    return null;
+                } else if (opcode == OPCODE_PING) {
+                    writeControl(OPCODE_PONG, payload);
+                } else if (opcode != OPCODE_PONG) {
+                    throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Unknown opcode " + opcode);
+                }
+                continue;
+            }
+
+            if (opcode == OPCODE_CONTINUATION) {
+                if (!isFragmented || isRsv1) {
+                    throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Unexpected continuation frame");
+                }
+            } else if (opcode == OPCODE_TEXT || opcode == OPCODE_BINARY) {
+                if (isFragmented) {
+                    throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Expected a continuation frame");
+                }
+                if (isRsv1 && perMessageDeflate == null) {
+                    throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "The permessage-deflate extension was not negotiated");
+                }
+                isCompressed = isRsv1;
+            } else {
+                throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Unknown opcode " + opcode);
+            }
+
+            if (messageLength + payloadLength > maxMessageSize) {
+                throw new WebSocketException(WebSocketException.MESSAGE_TOO_BIG, "The message exceeds the maximum length of " + maxMessageSize);
+            }
+            byte[] payload = readPayload((int) payloadLength);
+            if (message == null) {
+                // Most messages are not fragmented, so the frame payload is used as is
+                message = payload;
+            } else {
+                byte[] joinedMessage = new byte[messageLength + payload.length];
+                System.arraycopy(message, 0, joinedMessage, 0, messageLength);
+                System.arraycopy(payload, 0, joinedMessage, messageLength, payload.length);
+                message = joinedMessage;
+            }
+            messageLength += payload.length;
+
+            if (!isFinal) {
+                isFragmented = true;
+                continue;
+            }
+            return isCompressed ? perMessageDeflate.decompress(message, maxMessageSize) : message;
+        }
+    }
+
+    /**
+     * Releases the decompression resources. Must be called by the reading thread after the last read.
+     */
+    public void endReading() {
+        if (perMessageDeflate != null) {
+            perMessageDeflate.endDecompression();
+        }
+    }
+
+    private void onCloseReceived(byte[] payload) throws IOException {
+        int statusCode = WebSocketException.NORMAL_CLOSURE;
+        if (payload.length >= 2) {
+            statusCode = ((payload[0] & 0xff) << 8) | (payload[1] & 0xff);
+        }
+        writeClose(statusCode, null);
+    }
+
+    private void writeControl(int opcode, byte[] payload) throws IOException {
+        writeLock.lock();
+        try {
+            if (!isCloseSent) {
+                writeFrame(opcode, false, payload);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void ensureCloseNotSent() throws IOException {
+        if (isCloseSent) {
+            throw new IOException("The connection is closing");
+        }
+    }
+
+    private void writeFrame(int opcode, boolean isRsv1, byte[] payload) throws IOException {
+        int length = payload.length;
+        int headerLength = 2 + (length <= 125 ? 0 : length <= 0xffff ? 2 : 8) + (maskRandom != null ? 4 : 0);
+        byte[] frame = new byte[headerLength + length];
+        frame[0] = (byte) (FIN | (isRsv1 ? RSV1 : 0) | opcode);
+        int index = 2;
+        if (length <= 125) {
+            frame[1] = (byte) length;
+        } else if (length <= 0xffff) {
+            frame[1] = 126;
+            frame[index++] = (byte) (length >> 8);
+            frame[index++] = (byte) length;
+        } else {
+            frame[1] = 127;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame[index++] = (byte) ((long) length >> shift);
+            }
+        }
+        if (maskRandom != null) {
+            frame[1] |= (byte) MASK;
+            maskRandom.nextBytes(maskingKey);
+            System.arraycopy(maskingKey, 0, frame, index, 4);
+            index += 4;
+            for (int i = 0; i < length; i++) {
+                frame[index + i] = (byte) (payload[i] ^ maskingKey[i & 3]);
+            }
+        } else {
+            System.arraycopy(payload, 0, frame, index, length);
+        }
+        // The frame is written at once, since the socket streams are not buffered
+        outputStream.write(frame);
+        outputStream.flush();
+    }
+
+    private long readPayloadLength(int length) throws IOException {
+        if (length == 126) {
+            readFully(headerBuffer, 0, 2);
+            return ((headerBuffer[0] & 0xff) << 8) | (headerBuffer[1] & 0xff);
+        }
+        if (length == 127) {
+            readFully(headerBuffer, 0, 8);
+            long extendedLength = 0;
+            for (int i = 0; i < 8; i++) {
+                extendedLength = (extendedLength << 8) | (headerBuffer[i] & 0xff);
+            }
+            if (extendedLength < 0) {
+                throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Invalid payload length");
+            }
+            if (extendedLength > maxMessageSize) {
+                throw new WebSocketException(WebSocketException.MESSAGE_TOO_BIG, "The message exceeds the maximum length of " + maxMessageSize);
+            }
+            return extendedLength;
+        }
+        return length;
+    }
+
+    private byte[] readPayload(int length) throws IOException {
+        byte[] frameMaskingKey = null;
+        if (maskRandom == null) {
+            frameMaskingKey = new byte[4];
+            readFully(frameMaskingKey, 0, 4);
+        }
+        byte[] payload = new byte[length];
+        readFully(payload, 0, length);
+        if (frameMaskingKey != null) {
+            for (int i = 0; i < length; i++) {
+                payload[i] ^= frameMaskingKey[i & 3];
+            }
+        }
+        return payload;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = inputStream.read(buffer, offset, length);
+            if (read == -1) {
+                throw new EOFException("The connection was closed by the remote endpoint");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+}
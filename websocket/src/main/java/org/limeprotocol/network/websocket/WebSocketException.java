@@ -0,0 +1,30 @@
+package org.limeprotocol.network.websocket;
+
+import java.io.IOException;
+
+/**
+ * Violation of the WebSocket protocol, with the status code sent to the peer when closing the connection.
+ */
+public class WebSocketException extends IOException {
+
+    public final static int NORMAL_CLOSURE = 1000;
+    public final static int PROTOCOL_ERROR = 1002;
+    public final static int INVALID_PAYLOAD = 1007;
+    public final static int MESSAGE_TOO_BIG = 1009;
+
+    private final int statusCode;
+
+    public WebSocketException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public WebSocketException(int statusCode, String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,155 @@
+package org.limeprotocol.network.websocket;
+
+import org.limeprotocol.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The HTTP upgrade requests and responses of the WebSocket opening handshake (RFC 6455, section 4).
+ */
+class WebSocketHandshake {
+
+    public final static String VERSION = "13";
+
+    private final static String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private final static Charset ASCII = Charset.forName("US-ASCII");
+    private final static int MAX_LINE_LENGTH = 8192;
+    private final static int MAX_HEADERS = 100;
+
+    private WebSocketHandshake() {
+    }
+
+    /**
+     * Creates a random Sec-WebSocket-Key value.
+     * @param random
+     * @return
+     */
+    public static String createKey(Random random) {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        return StringUtils.toBase64(nonce);
+    }
+
+    /**
+     * Computes the Sec-WebSocket-Accept value for a key.
+     * @param key
+     * @return
+     */
+    public static String computeAccept(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return StringUtils.toBase64(digest.digest((key + ACCEPT_GUID).getBytes(ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The SHA-1 algorithm is not available", e);
+        }
+    }
+
+    /**
+     * Reads the start line and the headers of a HTTP request or response.
+     * @param inputStream
+     * @param headers Receives the headers, with lower case names. Repeated headers are joined by commas.
+     * @return The start line.
+     * @throws IOException
+     */
+    public static String readHead(InputStream inputStream, Map<String, String> headers) throws IOException {
+        String startLine = readLine(inputStream);
+        String line;
+        while (!(line = readLine(inputStream)).isEmpty()) {
+            int separatorIndex = line.indexOf(':');
+            if (separatorIndex <= 0) {
+                throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Invalid handshake header: " + line);
+            }
+            if (headers.size() >= MAX_HEADERS) {
+                throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "Too many handshake headers");
+            }
+            String name = line.substring(0, separatorIndex).trim().toLowerCase(Locale.ENGLISH);
+            String value = line.substring(separatorIndex + 1).trim();
+            String previousValue = headers.get(name);
+            headers.put(name, previousValue == null ? value : previousValue + ", " + value);
+        }
+        return startLine;
+    }
+
+    /**
+     * Checks if a comma separated header value contains a token, ignoring the case.
+     * @param headerValue
+     * @param token
+     * @return
+     */
+    public static boolean containsToken(String headerValue, String token) {
+        if (headerValue == null) {
+            return false;
+        }
+        for (String value : headerValue.split(",")) {
+            if (value.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the parameters of the first permessage-deflate offer of a Sec-WebSocket-Extensions header value
+     * that can be accepted with a window of 15 bits, which is the only size supported by {@link java.util.zip.Deflater}.
+     * @param extensionsHeader
+     * @return The parameters by name, with null values for the parameters without value, or null if there's no acceptable offer.
+     */
+    public static Map<String, String> getDeflateParameters(String extensionsHeader) {
+        if (extensionsHeader == null) {
+            return null;
+        }
+        for (String extension : extensionsHeader.split(",")) {
+            String[] parts = extension.split(";");
+            if (!parts[0].trim().equalsIgnoreCase(PerMessageDeflate.EXTENSION_NAME)) {
+                continue;
+            }
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                int separatorIndex = parameter.indexOf('=');
+                if (separatorIndex < 0) {
+                    parameters.put(parameter.toLowerCase(Locale.ENGLISH), null);
+                } else {
+                    String value = parameter.substring(separatorIndex + 1).trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    parameters.put(parameter.substring(0, separatorIndex).trim().toLowerCase(Locale.ENGLISH), value);
+                }
+            }
+            String serverMaxWindowBits = parameters.get(PerMessageDeflate.SERVER_MAX_WINDOW_BITS);
+            if (serverMaxWindowBits == null || "15".equals(serverMaxWindowBits)) {
+                return parameters;
+            }
+        }
+        return null;
+    }
+
+    private static String readLine(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int previous = -1;
+        int current;
+        while ((current = inputStream.read()) != -1) {
+            if (previous == '\r' && current == '\n') {
+                byte[] bytes = line.toByteArray();
+                return new String(bytes, 0, bytes.length - 1, ASCII);
+            }
+            if (line.size() >= MAX_LINE_LENGTH) {
+                throw new WebSocketException(WebSocketException.PROTOCOL_ERROR, "The handshake line exceeds the maximum length");
+            }
+            line.write(current);
+            previous = current;
+        }
+        throw new EOFException("The connection was closed during the handshake");
+    }
+}
@@ -0,0 +1,464 @@
+package org.limeprotocol.network.websocket;
+
+import org.limeprotocol.Envelope;
+import org.limeprotocol.SessionCompression;
+import org.limeprotocol.SessionEncryption;
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.TraceWriters;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportBase;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializers;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transport that exchanges the envelopes as WebSocket text messages, one envelope per message,
+ * so the messages boundaries delimit the envelopes without scanning the JSON.
+ * The 'ws' scheme is not encrypted and the 'wss' scheme is always encrypted with TLS, since the
+ * encryption is defined before the WebSocket handshake.
+ * The GZIP session compression is supported through the permessage-deflate extension (RFC 7692),
+ * if the remote endpoint accepts it in the handshake.
+ */
+public class WebSocketTransport extends TransportBase implements Transport {
+
+    public final static int DEFAULT_MAX_MESSAGE_SIZE = 8192 * 1024;
+    public final static String LIME_SUBPROTOCOL = "lime";
+
+    private final static Charset ASCII = Charset.forName("US-ASCII");
+
+    private final EnvelopeSerializer envelopeSerializer;
+    private final TraceWriter traceWriter;
+    private final SSLSocketFactory sslSocketFactory;
+    private final boolean isDeflateEnabled;
+    private final int maxMessageSize;
+    private final ThreadFactory threadFactory;
+    private final EnvelopeListener envelopeListener;
+
+    private volatile Socket socket;
+    private volatile WebSocketConnection connection;
+    private volatile boolean isConnected;
+    private volatile boolean isSecure;
+    // Read by the listener thread without synchronization
+    private volatile TransportEnvelopeListener transportEnvelopeListener;
+
+    public WebSocketTransport() {
+        this(new JacksonEnvelopeSerializer(), null);
+    }
+
+    public WebSocketTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter) {
+        this(envelopeSerializer, traceWriter, null, true, DEFAULT_MAX_MESSAGE_SIZE, ThreadFactories.getDefault());
+    }
+
+    /**
+     * @param sslSocketFactory The factory for the 'wss' connections. If null, the default factory is used.
+     * @param isDeflateEnabled Indicates if the permessage-deflate extension should be offered in the handshake.
+     * @param maxMessageSize The maximum length of a received message.
+     * @param threadFactory The factory for the listener thread.
+     */
+    public WebSocketTransport(EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter, SSLSocketFactory sslSocketFactory,
+                              boolean isDeflateEnabled, int maxMessageSize, ThreadFactory threadFactory) {
+        // The envelopes are sent in text messages, which can't have a binary encoding
+        if (envelopeSerializer == null || envelopeSerializer instanceof BinaryEnvelopeSerializer) {
+            throw new IllegalArgumentException("envelopeSerializer");
+        }
+        if (maxMessageSize <= 0) {
+            throw new IllegalArgumentException("maxMessageSize");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        this.envelopeSerializer = envelopeSerializer;
+        this.traceWriter = traceWriter;
+        this.sslSocketFactory = sslSocketFactory;
+        this.isDeflateEnabled = isDeflateEnabled;
+        this.maxMessageSize = maxMessageSize;
+        this.threadFactory = threadFactory;
+        this.envelopeListener = new EnvelopeListener();
+    }
+
+    /**
+     * Sends an envelope in a text message.
+     * The message is compressed when the session compression is GZIP.
+     *
+     * @param envelope
+     */
+    @Override
+    public void send(Envelope envelope) throws IOException {
+        if (envelope == null) {
+            throw new IllegalArgumentException("envelope");
+        }
+        WebSocketConnection connection = this.connection;
+        if (!isConnected || connection == null) {
+            throw new IOException("The transport is not connected");
+        }
+        byte[] envelopeBytes = EnvelopeSerializers.serialize(envelopeSerializer, envelope);
+        try {
+            connection.writeText(envelopeBytes, getCompression() == SessionCompression.GZIP);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        if (traceWriter != null && traceWriter.isEnabled()) {
+            TraceWriters.trace(traceWriter, envelopeBytes, 0, envelopeBytes.length, TraceWriter.DataOperation.SEND);
+        }
+    }
+
+    @Override
+    public void setEnvelopeListener(TransportEnvelopeListener listener) {
+        super.setEnvelopeListener(listener);
+        this.transportEnvelopeListener = listener;
+        if (listener != null) {
+            // Resumes the reading of the messages
+            envelopeListener.wakeUp();
+        }
+    }
+
+    @Override
+    protected TransportEnvelopeListener getEnvelopeListener() {
+        return transportEnvelopeListener;
+    }
+
+    /**
+     * Checks if the transport is connected.
+     * @return
+     */
+    @Override
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * The GZIP compression is supported only if the permessage-deflate extension was negotiated.
+     * @return
+     */
+    @Override
+    public SessionCompression[] getSupportedCompression() {
+        WebSocketConnection connection = this.connection;
+        if (connection != null && connection.isDeflateEnabled()) {
+            return new SessionCompression[] { SessionCompression.NONE, SessionCompression.GZIP };
+        }
+        return new SessionCompression[] { SessionCompression.NONE };
+    }
+
+    /**
+     * The encryption is defined by the URI scheme and cannot be changed.
+     * @return
+     */
+    @Override
+    public SessionEncryption getEncryption() {
+        return isSecure ? SessionEncryption.TLS : SessionEncryption.NONE;
+    }
+
+    @Override
+    protected void performOpen(URI uri) throws IOException {
+        if (isConnected) {
+            throw new IllegalStateException("The transport is already open");
+        }
+        boolean isSecure;
+        if ("wss".equals(uri.getScheme())) {
+            isSecure = true;
+        } else if ("ws".equals(uri.getScheme())) {
+            isSecure = false;
+        } else {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is 'ws' or 'wss'");
+        }
+        String host = uri.getHost();
+        int port = uri.getPort() > 0 ? uri.getPort() : isSecure ? 443 : 80;
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port));
+            socket.setTcpNoDelay(true);
+            if (isSecure) {
+                SSLSocketFactory sslSocketFactory = this.sslSocketFactory != null ?
+                        this.sslSocketFactory : (SSLSocketFactory) SSLSocketFactory.getDefault();
+                SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+                SSLParameters sslParameters = sslSocket.getSSLParameters();
+                sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(sslParameters);
+                sslSocket.startHandshake();
+                socket = sslSocket;
+            }
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            OutputStream outputStream = socket.getOutputStream();
+            SecureRandom random = new SecureRandom();
+            PerMessageDeflate perMessageDeflate = performClientHandshake(uri, host, port, isSecure, inputStream, outputStream, random);
+            start(socket, new WebSocketConnection(inputStream, outputStream, random, perMessageDeflate, maxMessageSize), isSecure);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Performs the server side of the handshake in a socket accepted by a {@link WebSocketTransportListener}
+     * and starts the transport.
+     * @param socket
+     * @param isSecure
+     * @param path The path of the listener. If not empty, the requests to other paths are refused.
+     * @param handshakeTimeout The maximum time to wait for the handshake request, in milliseconds.
+     * @throws IOException
+     */
+    void accept(Socket socket, boolean isSecure, String path, int handshakeTimeout) throws IOException {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(handshakeTimeout);
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            OutputStream outputStream = socket.getOutputStream();
+            PerMessageDeflate perMessageDeflate = performServerHandshake(path, inputStream, outputStream);
+            socket.setSoTimeout(0);
+            start(socket, new WebSocketConnection(inputStream, outputStream, null, perMessageDeflate, maxMessageSize), isSecure);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void performClose() throws IOException {
+        if (!isConnected) {
+            return;
+        }
+        isConnected = false;
+        try {
+            connection.writeClose(WebSocketException.NORMAL_CLOSURE, null);
+        } catch (IOException e) {
+            // The connection is already broken
+        } finally {
+            socket.close();
+            envelopeListener.stop();
+        }
+    }
+
+    private void start(Socket socket, WebSocketConnection connection, boolean isSecure) {
+        this.socket = socket;
+        this.connection = connection;
+        this.isSecure = isSecure;
+        this.isConnected = true;
+        envelopeListener.start(ThreadFactories.newThread(threadFactory, envelopeListener, "lime-websocket-listener", true));
+    }
+
+    private PerMessageDeflate performClientHandshake(URI uri, String host, int port, boolean isSecure,
+                                                     InputStream inputStream, OutputStream outputStream, SecureRandom random) throws IOException {
+        String key = WebSocketHandshake.createKey(random);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        boolean isDefaultPort = port == (isSecure ? 443 : 80);
+        StringBuilder request = new StringBuilder(256)
+                .append("GET ").append(path).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(host).append(isDefaultPort ? "" : ":" + port).append("\r\n")
+                .append("Upgrade: websocket\r\n")
+                .append("Connection: Upgrade\r\n")
+                .append("Sec-WebSocket-Key: ").append(key).append("\r\n")
+                .append("Sec-WebSocket-Version: ").append(WebSocketHandshake.VERSION).append("\r\n")
+                .append("Sec-WebSocket-Protocol: ").append(LIME_SUBPROTOCOL).append("\r\n");
+        if (isDeflateEnabled) {
+            request.append("Sec-WebSocket-Extensions: ").append(PerMessageDeflate.EXTENSION_NAME).append("\r\n");
+        }
+        request.append("\r\n");
+        outputStream.write(request.toString().getBytes(ASCII));
+        outputStream.flush();
+
+        Map<String, String> headers = new HashMap<>();
+        String statusLine = WebSocketHandshake.readHead(inputStream, headers);
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2 || !"101".equals(statusParts[1])) {
+            throw new IOException("The server refused the WebSocket handshake: " + statusLine);
+        }
+        if (!"websocket".equalsIgnoreCase(headers.get("upgrade")) ||
+                !WebSocketHandshake.containsToken(headers.get("connection"), "upgrade")) {
+            throw new IOException("Invalid WebSocket handshake upgrade headers");
+        }
+        if (!WebSocketHandshake.computeAccept(key).equals(headers.get("sec-websocket-accept"))) {
+            throw new IOException("Invalid WebSocket handshake accept key");
+        }
+        String protocol = headers.get("sec-websocket-protocol");
+        if (protocol != null && !LIME_SUBPROTOCOL.equals(protocol)) {
+            throw new IOException("Unexpected WebSocket subprotocol: " + protocol);
+        }
+
+        String extensions = headers.get("sec-websocket-extensions");
+        if (extensions == null) {
+            return null;
+        }
+        Map<String, String> deflateParameters = WebSocketHandshake.getDeflateParameters(extensions);
+        if (!isDeflateEnabled || deflateParameters == null || extensions.indexOf(',') >= 0 ||
+                deflateParameters.containsKey(PerMessageDeflate.CLIENT_MAX_WINDOW_BITS)) {
+            // The server can only accept the offered extension, without limiting the client window
+            throw new IOException("Unexpected WebSocket extensions: " + extensions);
+        }
+        return new PerMessageDeflate(
+                deflateParameters.containsKey(PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER),
+                deflateParameters.containsKey(PerMessageDeflate.SERVER_NO_CONTEXT_TAKEOVER));
+    }
+
+    private PerMessageDeflate performServerHandshake(String listenerPath, InputStream inputStream, OutputStream outputStream) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        String requestLine = WebSocketHandshake.readHead(inputStream, headers);
+        String[] requestParts = requestLine.split(" ");
+        String key = headers.get("sec-websocket-key");
+        if (requestParts.length != 3 || !"GET".equals(requestParts[0]) ||
+                !"websocket".equalsIgnoreCase(headers.get("upgrade")) ||
+                !WebSocketHandshake.containsToken(headers.get("connection"), "upgrade") ||
+                key == null) {
+            writeHandshakeError(outputStream, "400 Bad Request", null);
+            throw new IOException("Invalid WebSocket handshake request: " + requestLine);
+        }
+        if (!WebSocketHandshake.VERSION.equals(headers.get("sec-websocket-version"))) {
+            writeHandshakeError(outputStream, "426 Upgrade Required", "Sec-WebSocket-Version: " + WebSocketHandshake.VERSION);
+            throw new IOException("Unsupported WebSocket version: " + headers.get("sec-websocket-version"));
+        }
+        String requestPath = requestParts[1];
+        int queryIndex = requestPath.indexOf('?');
+        if (queryIndex >= 0) {
+            requestPath = requestPath.substring(0, queryIndex);
+        }
+        if (listenerPath != null && !listenerPath.isEmpty() && !listenerPath.equals(requestPath)) {
+            writeHandshakeError(outputStream, "404 Not Found", null);
+            throw new IOException("Invalid WebSocket request path: " + requestPath);
+        }
+
+        StringBuilder response = new StringBuilder(256)
+                .append("HTTP/1.1 101 Switching Protocols\r\n")
+                .append("Upgrade: websocket\r\n")
+                .append("Connection: Upgrade\r\n")
+                .append("Sec-WebSocket-Accept: ").append(WebSocketHandshake.computeAccept(key)).append("\r\n");
+        if (WebSocketHandshake.containsToken(headers.get("sec-websocket-protocol"), LIME_SUBPROTOCOL)) {
+            response.append("Sec-WebSocket-Protocol: ").append(LIME_SUBPROTOCOL).append("\r\n");
+        }
+        PerMessageDeflate perMessageDeflate = null;
+        Map<String, String> deflateParameters = isDeflateEnabled ?
+                WebSocketHandshake.getDeflateParameters(headers.get("sec-websocket-extensions")) : null;
+        if (deflateParameters != null) {
+            boolean isServerNoContextTakeover = deflateParameters.containsKey(PerMessageDeflate.SERVER_NO_CONTEXT_TAKEOVER);
+            boolean isClientNoContextTakeover = deflateParameters.containsKey(PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER);
+            response.append("Sec-WebSocket-Extensions: ").append(PerMessageDeflate.EXTENSION_NAME);
+            if (isServerNoContextTakeover) {
+                response.append("; ").append(PerMessageDeflate.SERVER_NO_CONTEXT_TAKEOVER);
+            }
+            if (isClientNoContextTakeover) {
+                response.append("; ").append(PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER);
+            }
+            response.append("\r\n");
+            perMessageDeflate = new PerMessageDeflate(isServerNoContextTakeover, isClientNoContextTakeover);
+        }
+        response.append("\r\n");
+        outputStream.write(response.toString().getBytes(ASCII));
+        outputStream.flush();
+        return perMessageDeflate;
+    }
+
+    private static void writeHandshakeError(OutputStream outputStream, String status, String header) throws IOException {
+        String response = "HTTP/1.1 " + status + "\r\n" +
+                (header != null ? header + "\r\n" : "") +
+                "Connection: close\r\nContent-Length: 0\r\n\r\n";
+        outputStream.write(response.getBytes(ASCII));
+        outputStream.flush();
+    }
+
+    /**
+     * Reads the messages while there's an envelope listener registered.
+     * The messages are not read while the channel is not listening, so they are kept by the socket
+     * until the channel resumes, like in the session negotiation.
+     */
+    private class EnvelopeListener implements Runnable {
+
+        private volatile Thread thread;
+        private volatile boolean isWaiting;
+
+        void start(Thread thread) {
+            this.thread = thread;
+            thread.start();
+        }
+
+        void wakeUp() {
+            Thread thread = this.thread;
+            if (isWaiting && thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void stop() {
+            Thread thread = this.thread;
+            if (thread != null && thread != Thread.currentThread()) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            WebSocketConnection connection = WebSocketTransport.this.connection;
+            try {
+                while (isConnected) {
+                    if (getEnvelopeListener() == null) {
+                        isWaiting = true;
+                        if (isConnected && getEnvelopeListener() == null) {
+                            LockSupport.park(this);
+                        }
+                        isWaiting = false;
+                        continue;
+                    }
+                    byte[] message = connection.readMessage();
+                    if (message == null) {
+                        break;
+                    }
+                    try {
+                        if (traceWriter != null && traceWriter.isEnabled()) {
+                            TraceWriters.trace(traceWriter, message, 0, message.length, TraceWriter.DataOperation.RECEIVE);
+                        }
+                        raiseOnReceive(EnvelopeSerializers.deserialize(envelopeSerializer, message, 0, message.length));
+                    } catch (Exception e) {
+                        // The frames delimit the envelopes, so an invalid envelope doesn't affect the next ones
+                        raiseOnException(e);
+                    }
+                }
+            } catch (WebSocketException e) {
+                try {
+                    connection.writeClose(e.getStatusCode(), e.getMessage());
+                } catch (IOException ce) {
+                    // The connection is already broken
+                }
+                raiseOnException(e);
+            } catch (IOException e) {
+                if (isConnected) {
+                    raiseOnException(e);
+                }
+            } finally {
+                connection.endReading();
+                closeFromListener();
+            }
+        }
+
+        private void closeFromListener() {
+            if (!isConnected) {
+                return;
+            }
+            try {
+                WebSocketTransport.this.close();
+            } catch (IOException e) {
+                raiseOnException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.limeprotocol.network.websocket;
+
+import org.limeprotocol.network.TraceWriter;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.util.ThreadFactories;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Listener that accepts the WebSocket connections as {@link WebSocketTransport} instances.
+ * The handshake of each connection is performed in its own thread, so a slow client doesn't delay the others,
+ * and the accept listener is invoked by that thread after the handshake.
+ */
+public class WebSocketTransportListener implements TransportListener {
+
+    public final static int DEFAULT_BACKLOG = 1024;
+    public final static int DEFAULT_HANDSHAKE_TIMEOUT = 30000;
+
+    private final URI listenerUri;
+    private final EnvelopeSerializer envelopeSerializer;
+    private final TraceWriter traceWriter;
+    private final SSLContext sslContext;
+    private final boolean isDeflateEnabled;
+    private final int maxMessageSize;
+    private final int backlog;
+    private final ThreadFactory threadFactory;
+
+    private volatile TransportAcceptListener acceptListener;
+    private volatile ServerSocket serverSocket;
+
+    public WebSocketTransportListener(URI listenerUri) {
+        this(listenerUri, null);
+    }
+
+    /**
+     * @param sslContext The context with the server certificate, required by the 'wss' scheme.
+     */
+    public WebSocketTransportListener(URI listenerUri, SSLContext sslContext) {
+        this(listenerUri, new JacksonEnvelopeSerializer(), null, sslContext, true,
+                WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE, DEFAULT_BACKLOG, ThreadFactories.getDefault());
+    }
+
+    /**
+     * @param listenerUri The address to bind, with the 'ws' or 'wss' scheme. The port 0 binds to an ephemeral port.
+     *                    If the URI has a path, the requests to other paths are refused.
+     * @param sslContext The context with the server certificate, required by the 'wss' scheme.
+     * @param isDeflateEnabled Indicates if the permessage-deflate extension offered by the clients should be accepted.
+     * @param maxMessageSize The maximum length of a received message.
+     * @param backlog The maximum number of pending connections.
+     * @param threadFactory The factory for the accept, handshake and transport listener threads.
+     */
+    public WebSocketTransportListener(URI listenerUri, EnvelopeSerializer envelopeSerializer, TraceWriter traceWriter,
+                                      SSLContext sslContext, boolean isDeflateEnabled, int maxMessageSize, int backlog,
+                                      ThreadFactory threadFactory) {
+        if (listenerUri == null) {
+            throw new IllegalArgumentException("listenerUri");
+        }
+        if ("wss".equals(listenerUri.getScheme())) {
+            if (sslContext == null) {
+                throw new IllegalArgumentException("sslContext");
+            }
+        } else if (!"ws".equals(listenerUri.getScheme())) {
+            throw new IllegalArgumentException("Invalid URI scheme. Expected is 'ws' or 'wss'");
+        }
+        // The envelopes are sent in text messages, which can't have a binary encoding
+        if (envelopeSerializer == null || envelopeSerializer instanceof BinaryEnvelopeSerializer) {
+            throw new IllegalArgumentException("envelopeSerializer");
+        }
+        if (maxMessageSize <= 0) {
+            throw new IllegalArgumentException("maxMessageSize");
+        }
+        if (backlog <= 0) {
+            throw new IllegalArgumentException("backlog");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory");
+        }
+        this.listenerUri = listenerUri;
+        this.envelopeSerializer = envelopeSerializer;
+        this.traceWriter = traceWriter;
+        this.sslContext = sslContext;
+        this.isDeflateEnabled = isDeflateEnabled;
+        this.maxMessageSize = maxMessageSize;
+        this.backlog = backlog;
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public URI[] getListenerUris() {
+        ServerSocket serverSocket = this.serverSocket;
+        if (serverSocket != null && serverSocket.getLocalPort() > 0) {
+            try {
+                return new URI[]{new URI(listenerUri.getScheme(), null, listenerUri.getHost(), serverSocket.getLocalPort(),
+                        listenerUri.getPath(), null, null)};
+            } catch (URISyntaxException e) {
+                // Keeps the configured URI
+            }
+        }
+        return new URI[]{listenerUri};
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (acceptListener == null) {
+            throw new IllegalStateException("The accept listener is not registered");
+        }
+        if (serverSocket != null) {
+            throw new IllegalStateException("The listener is already started");
+        }
+
+        ServerSocket serverSocket = isSecure() ?
+                sslContext.getServerSocketFactory().createServerSocket() : new ServerSocket();
+        try {
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(listenerUri.getHost(), Math.max(listenerUri.getPort(), 0)), backlog);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        this.serverSocket = serverSocket;
+        ThreadFactories.newThread(threadFactory, new AcceptTask(serverSocket), "lime-websocket-acceptor", true).start();
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+        ServerSocket serverSocket = this.serverSocket;
+        if (serverSocket == null) {
+            throw new IllegalStateException("The listener is not started");
+        }
+        this.serverSocket = null;
+        serverSocket.close();
+    }
+
+    @Override
+    public boolean isListening() {
+        ServerSocket serverSocket = this.serverSocket;
+        return serverSocket != null && !serverSocket.isClosed();
+    }
+
+    @Override
+    public void setAcceptListener(TransportAcceptListener listener) {
+        this.acceptListener = listener;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isListening()) {
+            stop();
+        }
+    }
+
+    private boolean isSecure() {
+        return "wss".equals(listenerUri.getScheme());
+    }
+
+    private void raiseOnException(Exception e) {
+        // Errors like the exhaustion of file descriptors or an invalid handshake don't stop the listener
+        TransportAcceptListener listener = acceptListener;
+        if (listener != null) {
+            listener.onException(e);
+        } else {
+            e.printStackTrace();
+        }
+    }
+
+    private class AcceptTask implements Runnable {
+
+        private final ServerSocket serverSocket;
+
+        public AcceptTask(ServerSocket serverSocket) {
+            this.serverSocket = serverSocket;
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    ThreadFactories.newThread(threadFactory, new HandshakeTask(socket), "lime-websocket-handshake", true).start();
+                } catch (SocketException e) {
+                    if (!serverSocket.isClosed()) {
+                        raiseOnException(e);
+                    }
+                } catch (IOException e) {
+                    raiseOnException(e);
+                }
+            }
+        }
+    }
+
+    private class HandshakeTask implements Runnable {
+
+        private final Socket socket;
+
+        public HandshakeTask(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            WebSocketTransport transport = new WebSocketTransport(envelopeSerializer, traceWriter, null,
+                    isDeflateEnabled, maxMessageSize, threadFactory);
+            try {
+                transport.accept(socket, isSecure(), listenerUri.getPath(), DEFAULT_HANDSHAKE_TIMEOUT);
+            } catch (IOException e) {
+                raiseOnException(e);
+                return;
+            }
+            try {
+                acceptListener.onAccept(transport);
+            } catch (Exception e) {
+                raiseOnException(e);
+            }
+        }
+    }
+}
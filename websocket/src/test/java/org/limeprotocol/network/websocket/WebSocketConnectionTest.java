@@ -0,0 +1,206 @@
+package org.limeprotocol.network.websocket;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WebSocketConnectionTest {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private ByteArrayOutputStream outputStream;
+
+    private WebSocketConnection getClientTarget(int[] input, PerMessageDeflate perMessageDeflate, int maxMessageSize) {
+        outputStream = new ByteArrayOutputStream();
+        return new WebSocketConnection(new ByteArrayInputStream(toBytes(input)), outputStream, new Random(), perMessageDeflate, maxMessageSize);
+    }
+
+    private WebSocketConnection getServerTarget(int[] input, PerMessageDeflate perMessageDeflate) {
+        outputStream = new ByteArrayOutputStream();
+        return new WebSocketConnection(new ByteArrayInputStream(toBytes(input)), outputStream, null, perMessageDeflate,
+                WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    private static byte[] toBytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void computeAccept_rfcSampleKey_returnsRfcSampleAccept() {
+        // Act
+        String actual = WebSocketHandshake.computeAccept("dGhlIHNhbXBsZSBub25jZQ==");
+
+        // Assert
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", actual);
+    }
+
+    @Test
+    public void readMessage_maskedClientFrame_returnsUnmaskedPayload() throws IOException {
+        // Arrange
+        WebSocketConnection target = getServerTarget(new int[]{0x81, 0x85, 0x37, 0xfa, 0x21, 0x3d, 0x7f, 0x9f, 0x4d, 0x51, 0x58}, null);
+
+        // Act
+        byte[] actual = target.readMessage();
+
+        // Assert
+        assertEquals("Hello", new String(actual, UTF8));
+    }
+
+    @Test
+    public void readMessage_fragmentedServerFrames_returnsJoinedPayload() throws IOException {
+        // Arrange
+        WebSocketConnection target = getClientTarget(new int[]{0x01, 0x03, 0x48, 0x65, 0x6c, 0x80, 0x02, 0x6c, 0x6f}, null,
+                WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE);
+
+        // Act
+        byte[] actual = target.readMessage();
+
+        // Assert
+        assertEquals("Hello", new String(actual, UTF8));
+    }
+
+    @Test
+    public void readMessage_compressedFrame_returnsDecompressedPayload() throws IOException {
+        // Arrange
+        WebSocketConnection target = getClientTarget(new int[]{0xc1, 0x07, 0xf2, 0x48, 0xcd, 0xc9, 0xc9, 0x07, 0x00},
+                new PerMessageDeflate(false, false), WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE);
+
+        // Act
+        byte[] actual = target.readMessage();
+
+        // Assert
+        assertEquals("Hello", new String(actual, UTF8));
+    }
+
+    @Test
+    public void writeText_compressed_writesRsv1FrameWithoutDeflateTail() throws IOException {
+        // Arrange
+        WebSocketConnection target = getServerTarget(new int[0], new PerMessageDeflate(false, false));
+
+        // Act
+        target.writeText("Hello".getBytes(UTF8), true);
+
+        // Assert
+        assertArrayEquals(toBytes(0xc1, 0x07, 0xf2, 0x48, 0xcd, 0xc9, 0xc9, 0x07, 0x00), outputStream.toByteArray());
+    }
+
+    @Test
+    public void writeText_clientLargePayload_writesMaskedFrameWithExtendedLength() throws IOException {
+        // Arrange
+        WebSocketConnection target = getClientTarget(new int[0], null, WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE);
+        byte[] payload = new byte[70000];
+        new Random().nextBytes(payload);
+
+        // Act
+        target.writeText(payload, false);
+
+        // Assert
+        byte[] frame = outputStream.toByteArray();
+        WebSocketConnection server = new WebSocketConnection(new ByteArrayInputStream(frame), new ByteArrayOutputStream(), null, null,
+                WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE);
+        assertEquals(2 + 8 + 4 + payload.length, frame.length);
+        assertEquals((byte) 0xff, frame[1]);
+        assertArrayEquals(payload, server.readMessage());
+    }
+
+    @Test
+    public void readMessage_pingBeforeMessage_writesPongAndReturnsMessage() throws IOException {
+        // Arrange
+        WebSocketConnection target = getClientTarget(new int[]{0x89, 0x02, 0x68, 0x69, 0x81, 0x02, 0x6f, 0x6b}, null,
+                WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE);
+
+        // Act
+        byte[] actual = target.readMessage();
+
+        // Assert
+        assertEquals("ok", new String(actual, UTF8));
+        byte[] pong = outputStream.toByteArray();
+        assertEquals(2 + 4 + 2, pong.length);
+        assertEquals((byte) 0x8a, pong[0]);
+        assertEquals((byte) 0x82, pong[1]);
+        assertEquals('h', (byte) (pong[6] ^ pong[2]));
+        assertEquals('i', (byte) (pong[7] ^ pong[3]));
+    }
+
+    @Test
+    public void readMessage_closeFrame_returnsNullAndEchoesStatusCode() throws IOException {
+        // Arrange
+        WebSocketConnection target = getServerTarget(new int[]{0x88, 0x82, 0x00, 0x00, 0x00, 0x00, 0x03, 0xe9}, null);
+
+        // Act
+        byte[] actual = target.readMessage();
+
+        // Assert
+        assertNull(actual);
+        assertArrayEquals(toBytes(0x88, 0x02, 0x03, 0xe9), outputStream.toByteArray());
+    }
+
+    @Test
+    public void readMessage_unmaskedClientFrame_throwsProtocolError() throws IOException {
+        // Arrange
+        WebSocketConnection target = getServerTarget(new int[]{0x81, 0x02, 0x6f, 0x6b}, null);
+
+        // Act
+        try {
+            target.readMessage();
+            fail("The frame should be refused");
+        } catch (WebSocketException e) {
+            // Assert
+            assertEquals(WebSocketException.PROTOCOL_ERROR, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void readMessage_compressedFrameWithoutExtension_throwsProtocolError() throws IOException {
+        // Arrange
+        WebSocketConnection target = getClientTarget(new int[]{0xc1, 0x07, 0xf2, 0x48, 0xcd, 0xc9, 0xc9, 0x07, 0x00}, null,
+                WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE);
+
+        // Act
+        try {
+            target.readMessage();
+            fail("The frame should be refused");
+        } catch (WebSocketException e) {
+            // Assert
+            assertEquals(WebSocketException.PROTOCOL_ERROR, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void readMessage_messageExceedsMaxSize_throwsMessageTooBig() throws IOException {
+        // Arrange
+        WebSocketConnection target = getClientTarget(new int[]{0x81, 0x05, 0x48, 0x65, 0x6c, 0x6c, 0x6f}, null, 4);
+
+        // Act
+        try {
+            target.readMessage();
+            fail("The message should be refused");
+        } catch (WebSocketException e) {
+            // Assert
+            assertEquals(WebSocketException.MESSAGE_TOO_BIG, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void getDeflateParameters_offerWithLimitedServerWindow_returnsNextOffer() {
+        // Act
+        Map<String, String> actual = WebSocketHandshake.getDeflateParameters(
+                "permessage-deflate; server_max_window_bits=10, permessage-deflate; client_no_context_takeover");
+
+        // Assert
+        assertNotNull(actual);
+        assertTrue(actual.containsKey(PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER));
+        assertFalse(actual.containsKey(PerMessageDeflate.SERVER_MAX_WINDOW_BITS));
+    }
+}
@@ -0,0 +1,395 @@
+package org.limeprotocol.network.websocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.limeprotocol.*;
+import org.limeprotocol.client.ClientChannel;
+import org.limeprotocol.client.ClientChannelImpl;
+import org.limeprotocol.network.MessageChannel;
+import org.limeprotocol.network.Transport;
+import org.limeprotocol.network.TransportListener;
+import org.limeprotocol.security.Authentication;
+import org.limeprotocol.security.GuestAuthentication;
+import org.limeprotocol.serialization.BinaryEnvelopeSerializer;
+import org.limeprotocol.serialization.EnvelopeSerializer;
+import org.limeprotocol.serialization.JacksonEnvelopeSerializer;
+import org.limeprotocol.server.Authenticator;
+import org.limeprotocol.server.ServerChannel;
+import org.limeprotocol.server.ServerChannelImpl;
+import org.limeprotocol.util.ThreadFactories;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.KeyStore;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WebSocketTransportTest {
+
+    private EnvelopeSerializer envelopeSerializer;
+    private BlockingQueue<Transport> acceptedTransports;
+    private WebSocketTransportListener listener;
+    private WebSocketTransport clientTransport;
+
+    @Before
+    public void setUp() {
+        envelopeSerializer = new JacksonEnvelopeSerializer();
+        acceptedTransports = new LinkedBlockingQueue<>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (clientTransport != null) {
+            clientTransport.close();
+        }
+        Transport acceptedTransport;
+        while ((acceptedTransport = acceptedTransports.poll()) != null) {
+            acceptedTransport.close();
+        }
+        if (listener != null) {
+            listener.close();
+        }
+    }
+
+    private URI startListener(String uri, SSLContext sslContext, boolean isDeflateEnabled) throws IOException {
+        listener = new WebSocketTransportListener(URI.create(uri), envelopeSerializer, null, sslContext, isDeflateEnabled,
+                WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE, WebSocketTransportListener.DEFAULT_BACKLOG, ThreadFactories.platform());
+        listener.setAcceptListener(new TransportListener.TransportAcceptListener() {
+            @Override
+            public void onAccept(Transport transport) {
+                acceptedTransports.add(transport);
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        listener.start();
+        return listener.getListenerUris()[0];
+    }
+
+    private WebSocketTransport getTarget(SSLContext sslContext, boolean isDeflateEnabled) {
+        clientTransport = new WebSocketTransport(envelopeSerializer, null, sslContext != null ? sslContext.getSocketFactory() : null,
+                isDeflateEnabled, WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE, ThreadFactories.platform());
+        return clientTransport;
+    }
+
+    private static BlockingQueue<Envelope> listen(Transport transport) {
+        final BlockingQueue<Envelope> receivedEnvelopes = new LinkedBlockingQueue<>();
+        transport.setEnvelopeListener(new Transport.TransportEnvelopeListener() {
+            @Override
+            public void onReceive(Envelope envelope) {
+                receivedEnvelopes.add(envelope);
+            }
+        });
+        return receivedEnvelopes;
+    }
+
+    private static Message createMessage(String text) {
+        Message message = new Message();
+        message.setId(EnvelopeId.newId());
+        message.setTo(Node.parse("server@limeprotocol.org/default"));
+        message.setContent(new PlainDocument(text, MediaType.parse("text/plain")));
+        return message;
+    }
+
+    private static SSLContext createSslContext(boolean isServer) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = WebSocketTransportTest.class.getResourceAsStream("/lime-test.jks");
+        try {
+            keyStore.load(keyStoreStream, "changeit".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        if (isServer) {
+            KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, "changeit".toCharArray());
+            sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        } else {
+            TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(keyStore);
+            sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        }
+        return sslContext;
+    }
+
+    @Test
+    public void open_localListener_exchangesEnvelopesInBothDirections() throws Exception {
+        // Arrange
+        URI uri = startListener("ws://localhost:0/lime", null, true);
+        WebSocketTransport target = getTarget(null, true);
+        Message clientMessage = createMessage("hello server");
+        Message serverMessage = createMessage("hello client");
+
+        // Act
+        target.open(uri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        BlockingQueue<Envelope> serverEnvelopes = listen(serverTransport);
+        BlockingQueue<Envelope> clientEnvelopes = listen(target);
+        target.send(clientMessage);
+        serverTransport.send(serverMessage);
+
+        // Assert
+        assertTrue(target.isConnected());
+        assertEquals(SessionEncryption.NONE, target.getEncryption());
+        Envelope actualServerEnvelope = serverEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actualServerEnvelope);
+        assertEquals(clientMessage.getId(), actualServerEnvelope.getId());
+        Envelope actualClientEnvelope = clientEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actualClientEnvelope);
+        assertEquals(serverMessage.getId(), actualClientEnvelope.getId());
+        acceptedTransports.add(serverTransport);
+    }
+
+    @Test
+    public void setCompression_gzip_exchangesDeflatedMessages() throws Exception {
+        // Arrange
+        URI uri = startListener("ws://localhost:0", null, true);
+        WebSocketTransport target = getTarget(null, true);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(UUID.randomUUID());
+        }
+        Message clientMessage = createMessage(text.toString());
+        Message serverMessage = createMessage("compressed reply");
+
+        // Act
+        target.open(uri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        target.setCompression(SessionCompression.GZIP);
+        serverTransport.setCompression(SessionCompression.GZIP);
+        BlockingQueue<Envelope> serverEnvelopes = listen(serverTransport);
+        BlockingQueue<Envelope> clientEnvelopes = listen(target);
+        for (int i = 0; i < 3; i++) {
+            target.send(clientMessage);
+        }
+        serverTransport.send(serverMessage);
+
+        // Assert
+        assertArrayEquals(new SessionCompression[]{SessionCompression.NONE, SessionCompression.GZIP}, target.getSupportedCompression());
+        assertArrayEquals(new SessionCompression[]{SessionCompression.NONE, SessionCompression.GZIP}, serverTransport.getSupportedCompression());
+        for (int i = 0; i < 3; i++) {
+            Message actual = (Message) serverEnvelopes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(actual);
+            assertEquals(text.toString(), ((PlainDocument) actual.getContent()).getValue());
+        }
+        Envelope actualClientEnvelope = clientEnvelopes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(actualClientEnvelope);
+        assertEquals(serverMessage.getId(), actualClientEnvelope.getId());
+        acceptedTransports.add(serverTransport);
+    }
+
+    @Test
+    public void open_deflateDisabledByServer_supportsOnlyNoCompression() throws Exception {
+        // Arrange
+        URI uri = startListener("ws://localhost:0", null, false);
+        WebSocketTransport target = getTarget(null, true);
+
+        // Act
+        target.open(uri);
+
+        // Assert
+        assertArrayEquals(new SessionCompression[]{SessionCompression.NONE}, target.getSupportedCompression());
+        try {
+            target.setCompression(SessionCompression.GZIP);
+            fail("The GZIP compression should not be supported");
+        } catch (IllegalArgumentException e) {
+            assertEquals(SessionCompression.NONE, target.getCompression());
+        }
+    }
+
+    @Test
+    public void send_noEnvelopeListener_keepsMessagesUntilListenerIsSet() throws Exception {
+        // Arrange
+        URI uri = startListener("ws://localhost:0", null, true);
+        WebSocketTransport target = getTarget(null, true);
+        Message message1 = createMessage("first");
+        Message message2 = createMessage("second");
+        target.open(uri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        acceptedTransports.add(serverTransport);
+
+        // Act
+        target.send(message1);
+        target.send(message2);
+        Thread.sleep(50);
+        BlockingQueue<Envelope> serverEnvelopes = listen(serverTransport);
+
+        // Assert
+        assertEquals(message1.getId(), serverEnvelopes.poll(5, TimeUnit.SECONDS).getId());
+        assertEquals(message2.getId(), serverEnvelopes.poll(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    public void close_client_closesServerTransport() throws Exception {
+        // Arrange
+        URI uri = startListener("ws://localhost:0", null, true);
+        WebSocketTransport target = getTarget(null, true);
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+        target.open(uri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        serverTransport.setStateListener(new Transport.TransportStateListener() {
+            @Override
+            public void onClosing() {
+            }
+
+            @Override
+            public void onClosed() {
+                closedLatch.countDown();
+            }
+
+            @Override
+            public void onException(Exception e) {
+            }
+        });
+        listen(serverTransport);
+
+        // Act
+        target.close();
+
+        // Assert
+        assertTrue(closedLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(target.isConnected());
+        assertFalse(serverTransport.isConnected());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_invalidPath_throwsIOException() throws Exception {
+        // Arrange
+        URI uri = startListener("ws://localhost:0/lime", null, true);
+        WebSocketTransport target = getTarget(null, true);
+
+        // Act
+        target.open(uri.resolve("/other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_binarySerializer_throwsIllegalArgumentException() {
+        // Act
+        new WebSocketTransport(new TextAndBinaryEnvelopeSerializer(), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newListener_binarySerializer_throwsIllegalArgumentException() {
+        // Act
+        new WebSocketTransportListener(URI.create("ws://localhost:0"), new TextAndBinaryEnvelopeSerializer(), null,
+                null, true, WebSocketTransport.DEFAULT_MAX_MESSAGE_SIZE, 50, ThreadFactories.getDefault());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_tcpScheme_throwsIllegalArgumentException() throws Exception {
+        // Arrange
+        WebSocketTransport target = getTarget(null, true);
+
+        // Act
+        target.open(URI.create("net.tcp://localhost:55321"));
+    }
+
+    @Test
+    public void open_secureListener_usesTlsEncryption() throws Exception {
+        // Arrange
+        URI uri = startListener("wss://localhost:0", createSslContext(true), true);
+        WebSocketTransport target = getTarget(createSslContext(false), true);
+        Message message = createMessage("secure");
+
+        // Act
+        target.open(uri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        acceptedTransports.add(serverTransport);
+        BlockingQueue<Envelope> serverEnvelopes = listen(serverTransport);
+        target.send(message);
+
+        // Assert
+        assertEquals(SessionEncryption.TLS, target.getEncryption());
+        assertEquals(SessionEncryption.TLS, serverTransport.getEncryption());
+        assertArrayEquals(new SessionEncryption[]{SessionEncryption.TLS}, target.getSupportedEncryption());
+        assertEquals(message.getId(), serverEnvelopes.poll(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    public void establishSession_gzipCompression_negotiatesPerMessageDeflate() throws Exception {
+        // Arrange
+        URI uri = startListener("ws://localhost:0", null, true);
+        final Node serverNode = Node.parse("server@limeprotocol.org/default");
+        final BlockingQueue<Message> receivedMessages = new LinkedBlockingQueue<>();
+        final BlockingQueue<Session> clientSessions = new LinkedBlockingQueue<>();
+        ClientChannel clientChannel = new ClientChannelImpl(getTarget(null, true));
+        Message message = createMessage("hello");
+
+        // Act
+        clientChannel.getTransport().open(uri);
+        Transport serverTransport = acceptedTransports.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverTransport);
+        acceptedTransports.add(serverTransport);
+        final ServerChannel serverChannel = new ServerChannelImpl(serverTransport, serverNode);
+        serverChannel.addMessageListener(new MessageChannel.MessageChannelListener() {
+            @Override
+            public void onReceiveMessage(Message message) {
+                receivedMessages.add(message);
+            }
+        }, false);
+        serverChannel.establishSession(serverTransport.getSupportedCompression(), serverTransport.getSupportedEncryption(),
+                new Authentication.AuthenticationScheme[]{Authentication.AuthenticationScheme.GUEST},
+                new Authenticator() {
+                    @Override
+                    public void authenticate(Node node, Authentication authentication, AuthenticationListener listener) {
+                        listener.onAuthenticated(node);
+                    }
+                },
+                new ServerChannel.EstablishSessionListener() {
+                    @Override
+                    public void onEstablished(Node remoteNode) {
+                    }
+
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+                });
+        clientChannel.establishSession(SessionCompression.GZIP, SessionEncryption.NONE, Identity.parse("client@limeprotocol.org"),
+                new GuestAuthentication(), null, new ClientChannel.EstablishSessionListener() {
+                    @Override
+                    public void onFailure(Exception exception) {
+                        exception.printStackTrace();
+                    }
+
+                    @Override
+                    public void onReceiveSession(Session session) {
+                        clientSessions.add(session);
+                    }
+                });
+        Session clientSession = clientSessions.poll(5, TimeUnit.SECONDS);
+        clientChannel.sendMessage(message);
+
+        // Assert
+        assertNotNull(clientSession);
+        assertEquals(Session.SessionState.ESTABLISHED, clientSession.getState());
+        assertEquals(SessionCompression.GZIP, clientChannel.getTransport().getCompression());
+        assertEquals(SessionCompression.GZIP, serverTransport.getCompression());
+        Message receivedMessage = receivedMessages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(receivedMessage);
+        assertEquals(message.getId(), receivedMessage.getId());
+    }
+
+    /**
+     * A serializer that is also binary, whose envelopes can't be sent in text messages.
+     */
+    private static class TextAndBinaryEnvelopeSerializer extends JacksonEnvelopeSerializer implements BinaryEnvelopeSerializer {
+    }
+}